@@ -34,6 +34,12 @@ import java.awt.image.Raster;
 import java.awt.image.SinglePixelPackedSampleModel;
 import java.awt.image.WritableRaster;
 import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
 
 import org.apache.batik.ext.awt.image.GraphicsUtil;
 
@@ -84,11 +90,29 @@ abstract class MultipleGradientPaintContext implements PaintContext {
          32, 0xff0000, 0xFF00, 0xFF, 0xFF000000,
          false, DataBuffer.TYPE_INT);
 
-     /** The cached colorModel */
-    protected static ColorModel cachedModel;
+    /** The number of rasters kept for reuse among instances */
+    private static final int RASTER_POOL_SIZE = 8;
 
-    /** The cached raster, which is reusable among instances */
-    protected static WeakReference cached;
+    /**
+     * The rasters released by disposed instances, as weak references
+     * to <code>PooledRaster</code>s, so they are reusable among
+     * instances and threads.
+     */
+    protected static final List rasterPool = new LinkedList();
+
+    /** The number of gradient tables kept for reuse among instances */
+    private static final int GRADIENT_CACHE_SIZE = 64;
+
+    /**
+     * The gradient tables of the recently used gradients, most recent
+     * last, keyed by <code>GradientKey</code>.
+     */
+    private static final Map gradientCache =
+        new LinkedHashMap(GRADIENT_CACHE_SIZE, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry eldest) {
+                return size() > GRADIENT_CACHE_SIZE;
+            }
+        };
 
     /** Raster is reused whenever possible */
     protected WritableRaster saved;
@@ -294,12 +318,119 @@ abstract class MultipleGradientPaintContext implements PaintContext {
             throw new IllegalArgumentException
                 ("Unsupported ColorSpace for interpolation");
 
-        calculateGradientFractions(loColors, hiColors);
+        // Gradients are often shared by many shapes: the tables only
+        // depend on the stops, the cycle method and the color spaces.
+        GradientKey key = new GradientKey(fractions, colors, cycleMethod,
+                                          colorSpace,
+                                          dataModel.getColorSpace());
+        GradientTables tables;
+        synchronized (gradientCache) {
+            tables = (GradientTables)gradientCache.get(key);
+        }
+        if (tables != null) {
+            tables.apply(this);
+        } else {
+            calculateGradientFractions(loColors, hiColors);
+            tables = new GradientTables(this);
+            synchronized (gradientCache) {
+                gradientCache.put(key, tables);
+            }
+        }
 
         model = GraphicsUtil.coerceColorModel(dataModel,
                                               cm.isAlphaPremultiplied());
     }
 
+    /**
+     * Identifies the gradient tables computed for a set of stops.
+     */
+    private static final class GradientKey {
+        private final float[] fractions;
+        private final int[] colors;
+        private final MultipleGradientPaint.CycleMethodEnum cycleMethod;
+        private final MultipleGradientPaint.ColorSpaceEnum colorSpace;
+        private final ColorSpace dataColorSpace;
+        private final int hashCode;
+
+        GradientKey(float[] fractions, Color[] colors,
+                    MultipleGradientPaint.CycleMethodEnum cycleMethod,
+                    MultipleGradientPaint.ColorSpaceEnum colorSpace,
+                    ColorSpace dataColorSpace) {
+            this.fractions = (float[])fractions.clone();
+            this.colors = new int[colors.length];
+            for (int i = 0; i < colors.length; i++) {
+                this.colors[i] = colors[i].getRGB();
+            }
+            this.cycleMethod = cycleMethod;
+            this.colorSpace = colorSpace;
+            this.dataColorSpace = dataColorSpace;
+
+            int h = Arrays.hashCode(this.fractions);
+            h = 31 * h + Arrays.hashCode(this.colors);
+            h = 31 * h + cycleMethod.hashCode();
+            h = 31 * h + colorSpace.hashCode();
+            hashCode = 31 * h + dataColorSpace.hashCode();
+        }
+
+        public int hashCode() {
+            return hashCode;
+        }
+
+        public boolean equals(Object o) {
+            if (!(o instanceof GradientKey)) {
+                return false;
+            }
+            GradientKey k = (GradientKey)o;
+            return hashCode == k.hashCode
+                && cycleMethod == k.cycleMethod
+                && colorSpace == k.colorSpace
+                && dataColorSpace == k.dataColorSpace
+                && Arrays.equals(fractions, k.fractions)
+                && Arrays.equals(colors, k.colors);
+        }
+    }
+
+    /**
+     * The results of <code>calculateGradientFractions</code>. The
+     * arrays are shared by the instances using the same gradient and
+     * must not be modified.
+     */
+    private static final class GradientTables {
+        private final ColorModel dataModel;
+        private final boolean isSimpleLookup;
+        private final boolean hasDiscontinuity;
+        private final int fastGradientArraySize;
+        private final int[] gradient;
+        private final int[][] gradients;
+        private final int gradientAverage;
+        private final int gradientsLength;
+        private final int transparencyTest;
+
+        GradientTables(MultipleGradientPaintContext ctx) {
+            dataModel = ctx.dataModel;
+            isSimpleLookup = ctx.isSimpleLookup;
+            hasDiscontinuity = ctx.hasDiscontinuity;
+            fastGradientArraySize = ctx.fastGradientArraySize;
+            gradient = ctx.gradient;
+            gradients = ctx.gradients;
+            gradientAverage = ctx.gradientAverage;
+            gradientsLength = ctx.gradientsLength;
+            transparencyTest = ctx.transparencyTest;
+        }
+
+        void apply(MultipleGradientPaintContext ctx) {
+            ctx.dataModel = dataModel;
+            ctx.isSimpleLookup = isSimpleLookup;
+            ctx.hasDiscontinuity = hasDiscontinuity;
+            ctx.fastGradientArraySize = fastGradientArraySize;
+            ctx.gradient = gradient;
+            ctx.gradients = gradients;
+            ctx.gradientAverage = gradientAverage;
+            ctx.gradientsLength = gradientsLength;
+            ctx.transparencyTest = transparencyTest;
+        }
+    }
+
 
     /** This function is the meat of this class.  It calculates an array of
      * gradient colors based on an array of fractions and color values at those
@@ -1404,23 +1535,26 @@ abstract class MultipleGradientPaintContext implements PaintContext {
                                        int x, int y, int w, int h);
 
 
-    /** Took this cacheRaster code from GradientPaint. It appears to recycle
-     * rasters for use by any other instance, as long as they are sufficiently
-     * large.
+    /**
+     * Returns a raster of at least the given size for the given color
+     * model, reusing one of the pooled rasters when possible.
      */
     protected static final
     synchronized WritableRaster getCachedRaster
         (ColorModel cm, int w, int h) {
-        if (cm == cachedModel) {
-            if (cached != null) {
-                WritableRaster ras = (WritableRaster) cached.get();
-                if (ras != null &&
-                    ras.getWidth() >= w &&
-                    ras.getHeight() >= h)
-                    {
-                        cached = null;
-                        return ras;
-                    }
+        Iterator i = rasterPool.iterator();
+        while (i.hasNext()) {
+            PooledRaster pr = (PooledRaster)((WeakReference)i.next()).get();
+            if (pr == null) {
+                i.remove();
+                continue;
+            }
+            WritableRaster ras = pr.raster;
+            if (pr.model == cm &&
+                ras.getWidth() >= w &&
+                ras.getHeight() >= h) {
+                i.remove();
+                return ras;
             }
         }
         // Don't create rediculously small rasters...
@@ -1429,30 +1563,51 @@ abstract class MultipleGradientPaintContext implements PaintContext {
         return cm.createCompatibleWritableRaster(w, h);
     }
 
-    /** Took this cacheRaster code from GradientPaint. It appears to recycle
-     * rasters for use by any other instance, as long as they are sufficiently
-     * large.
+    /**
+     * Makes the given raster, created for the given color model,
+     * reusable by other instances. When the pool is full the smallest
+     * raster is dropped.
      */
     protected static final
     synchronized void putCachedRaster(ColorModel cm,
-                                             WritableRaster ras) {
-        if (cached != null) {
-            WritableRaster cras = (WritableRaster) cached.get();
-            if (cras != null) {
-                int cw = cras.getWidth();
-                int ch = cras.getHeight();
-                int iw = ras.getWidth();
-                int ih = ras.getHeight();
-                if (cw >= iw && ch >= ih) {
-                    return;
-                }
-                if (cw * ch >= iw * ih) {
-                    return;
-                }
+                                      WritableRaster ras) {
+        int area = ras.getWidth() * ras.getHeight();
+        WeakReference smallest = null;
+        int smallestArea = Integer.MAX_VALUE;
+        Iterator i = rasterPool.iterator();
+        while (i.hasNext()) {
+            WeakReference ref = (WeakReference)i.next();
+            PooledRaster pr = (PooledRaster)ref.get();
+            if (pr == null) {
+                i.remove();
+                continue;
+            }
+            int a = pr.raster.getWidth() * pr.raster.getHeight();
+            if (a < smallestArea) {
+                smallest = ref;
+                smallestArea = a;
             }
         }
-        cachedModel = cm;
-        cached = new WeakReference(ras);
+        if (rasterPool.size() >= RASTER_POOL_SIZE) {
+            if (smallestArea >= area) {
+                return;
+            }
+            rasterPool.remove(smallest);
+        }
+        rasterPool.add(new WeakReference(new PooledRaster(cm, ras)));
+    }
+
+    /**
+     * A pooled raster and the color model it was created for.
+     */
+    protected static final class PooledRaster {
+        final ColorModel model;
+        final WritableRaster raster;
+
+        PooledRaster(ColorModel model, WritableRaster raster) {
+            this.model = model;
+            this.raster = raster;
+        }
     }
 
     /**
@@ -1460,7 +1615,9 @@ abstract class MultipleGradientPaintContext implements PaintContext {
      */
     public final void dispose() {
         if (saved != null) {
-            putCachedRaster(model, saved);
+            // saved was created for dataModel, model may only differ
+            // by the premultiplication of the data.
+            putCachedRaster(dataModel, saved);
             saved = null;
         }
     }
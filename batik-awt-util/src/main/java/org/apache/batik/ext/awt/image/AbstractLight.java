@@ -141,6 +141,76 @@ public abstract class AbstractLight implements Light {
 
         return ret;
     }
+
+    /**
+     * Returns a row of the light map, starting at (x, y) with dx
+     * increments, a given width, and z elevations stored in the
+     * fourth of each group of four values of the z array, as in the
+     * normal rows computed by a <code>BumpMap</code>.
+     *
+     * @param x x-axis coordinate where the light should be computed
+     * @param y y-axis coordinate where the light should be computed
+     * @param dx delta x for computing light vectors in user space
+     * @param width number of samples to compute on the x axis
+     * @param z array containing four values for each point, the z
+     *          elevation being the fourth one
+     * @param lightRow array to store the light info to, if null it will
+     *                 be allocated for you and returned.
+     *
+     * @return an array where each group of three values holds the
+     *         x, y and z components of the light vector.
+     */
+    public double[] getLightRow(double x, double y,
+                                final double dx, final int width,
+                                final double[] z,
+                                final double[] lightRow) {
+        return computeLightRow(this, x, y, dx, width, z, lightRow);
+    }
+
+    /**
+     * Returns a row of the light map of the given light, as computed by
+     * the <code>getLightRow</code> method of <code>AbstractLight</code>
+     * taking an array of z elevations. Lights which do not extend
+     * <code>AbstractLight</code> are computed pixel by pixel with
+     * <code>getLight</code>.
+     *
+     * @param light the light to compute the light vectors of
+     * @see #getLightRow(double, double, double, int, double[], double[])
+     */
+    public static double[] getLightRow(Light light,
+                                       double x, double y,
+                                       final double dx, final int width,
+                                       final double[] z,
+                                       final double[] lightRow) {
+        if (light instanceof AbstractLight)
+            return ((AbstractLight)light).getLightRow
+                (x, y, dx, width, z, lightRow);
+        return computeLightRow(light, x, y, dx, width, z, lightRow);
+    }
+
+    /**
+     * Computes a row of the light map of the given light pixel by pixel.
+     */
+    private static double[] computeLightRow(Light light,
+                                            double x, double y,
+                                            final double dx, final int width,
+                                            final double[] z,
+                                            final double[] lightRow) {
+        double [] ret = lightRow;
+        if (ret == null)
+            ret = new double[3*width];
+
+        final double[] L = new double[3];
+        for(int i=0, j=0; i<width; i++, j+=3){
+            light.getLight(x, y, z[4*i+3], L);
+            ret[j]   = L[0];
+            ret[j+1] = L[1];
+            ret[j+2] = L[2];
+            x += dx;
+        }
+
+        return ret;
+    }
 }
 
 
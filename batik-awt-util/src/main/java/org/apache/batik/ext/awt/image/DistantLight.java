@@ -140,5 +140,29 @@ public class DistantLight extends AbstractLight {
 
         return ret;
     }
+
+    /**
+     * Returns a row of the light map, which is constant for a
+     * distant light.
+     */
+    public double[] getLightRow(double x, double y,
+                                final double dx, final int width,
+                                final double[] z,
+                                final double[] lightRow) {
+        double [] ret = lightRow;
+        if (ret == null)
+            ret = new double[3*width];
+
+        final double lx = Lx;
+        final double ly = Ly;
+        final double lz = Lz;
+        for(int i=0; i<3*width; i+=3){
+            ret[i]   = lx;
+            ret[i+1] = ly;
+            ret[i+2] = lz;
+        }
+
+        return ret;
+    }
 }
 
@@ -47,6 +47,8 @@ import java.awt.image.renderable.RenderContext;
 import java.awt.image.renderable.RenderableImage;
 import java.lang.ref.Reference;
 import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.apache.batik.ext.awt.RenderingHintsKeyExt;
 import org.apache.batik.ext.awt.image.renderable.PaintRable;
@@ -57,7 +59,9 @@ import org.apache.batik.ext.awt.image.rendered.BufferedImageCachableRed;
 import org.apache.batik.ext.awt.image.rendered.CachableRed;
 import org.apache.batik.ext.awt.image.rendered.FormatRed;
 import org.apache.batik.ext.awt.image.rendered.RenderedImageCachableRed;
+import org.apache.batik.ext.awt.image.rendered.TileScheduler;
 import org.apache.batik.ext.awt.image.rendered.TranslateRed;
+import org.apache.batik.util.HaltingThread;
 
 
 /**
@@ -274,6 +278,8 @@ public class GraphicsUtil {
                 // underflow' bug on Mac OS X.  This should work
                 // around that problem.
                 g2d.drawImage(bi, clipR.x, clipR.y, null);
+            } else if (TileScheduler.canComputeConcurrently(cr)) {
+                drawTilesConcurrently(g2d, cr, crR, clipR);
             } else {
                 // Use tiles to draw image...
                 wr = Raster.createWritableRaster(srcSM, new Point(0,0));
@@ -384,6 +390,79 @@ public class GraphicsUtil {
     }
 
 
+    /**
+     * Draws the tiles of <code>cr</code> that intersect the clip
+     * rectangle. The tiles are computed concurrently, a few rows at
+     * a time, then drawn by the current thread.
+     */
+    private static void drawTilesConcurrently(Graphics2D g2d,
+                                              CachableRed cr,
+                                              Rectangle crR,
+                                              Rectangle clipR) {
+        final CachableRed src = cr;
+        ColorModel  srcCM = cr.getColorModel();
+        SampleModel srcSM = cr.getSampleModel();
+        int tw   = srcSM.getWidth();
+        int th   = srcSM.getHeight();
+        int xOff = cr.getTileGridXOffset();
+        int yOff = cr.getTileGridYOffset();
+
+        int xt0 = Math.max(cr.getMinTileX(), floorDiv(clipR.x-xOff, tw));
+        int yt0 = Math.max(cr.getMinTileY(), floorDiv(clipR.y-yOff, th));
+        int xt1 = Math.min(cr.getMinTileX()+cr.getNumXTiles()-1,
+                           floorDiv(clipR.x+clipR.width-1-xOff, tw));
+        int yt1 = Math.min(cr.getMinTileY()+cr.getNumYTiles()-1,
+                           floorDiv(clipR.y+clipR.height-1-yOff, th));
+        if ((xt1 < xt0) || (yt1 < yt0))
+            return;
+
+        int rowsPerBatch = Math.max
+            (1, 4*TileScheduler.getParallelism() / (xt1-xt0+1));
+        Thread currentThread = Thread.currentThread();
+        for (int y0=yt0; y0<=yt1; y0+=rowsPerBatch) {
+            int y1 = Math.min(yt1, y0+rowsPerBatch-1);
+            List tiles = new ArrayList();
+            for (int y=y0; y<=y1; y++) {
+                for (int x=xt0; x<=xt1; x++) {
+                    Rectangle tR = new Rectangle(x*tw+xOff, y*th+yOff, tw, th);
+                    Rectangle iR = crR.intersection(tR);
+                    if (iR.isEmpty())
+                        continue;
+                    WritableRaster wr
+                        = Raster.createWritableRaster(srcSM, new Point(0,0));
+                    tiles.add(wr.createWritableChild(0, 0,
+                                                     iR.width, iR.height,
+                                                     iR.x, iR.y, null));
+                }
+            }
+
+            Runnable [] tasks = new Runnable[tiles.size()];
+            for (int i=0; i<tasks.length; i++) {
+                final WritableRaster twr = (WritableRaster)tiles.get(i);
+                tasks[i] = new Runnable() {
+                        public void run() {
+                            src.copyData(twr);
+                        }
+                    };
+            }
+            TileScheduler.run(tasks);
+            if (HaltingThread.hasBeenHalted(currentThread))
+                return;
+
+            for (Object tile : tiles) {
+                WritableRaster twr = (WritableRaster)tile;
+                WritableRaster wr = twr.createWritableTranslatedChild(0, 0);
+                BufferedImage bi = new BufferedImage
+                    (srcCM, wr, srcCM.isAlphaPremultiplied(), null);
+                g2d.drawImage(bi, twr.getMinX(), twr.getMinY(), null);
+            }
+        }
+    }
+
+    private static int floorDiv(int a, int b) {
+        return (int)Math.floor(a/(double)b);
+    }
+
     /**
      * Draws a <code>Filter</code> (<code>RenderableImage</code>) into a
      * Graphics 2D after taking into account a particular
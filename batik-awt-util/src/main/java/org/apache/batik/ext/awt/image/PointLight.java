@@ -97,5 +97,39 @@ public class PointLight extends AbstractLight {
         L[ 1 ] = L1;
         L[ 2 ] = L2;
     }
+
+    /**
+     * Returns a row of the light map, computing the light vectors
+     * in place.
+     */
+    public double[] getLightRow(double x, final double y,
+                                final double dx, final int width,
+                                final double[] z,
+                                final double[] lightRow) {
+        double [] ret = lightRow;
+        if (ret == null)
+            ret = new double[3*width];
+
+        final double ly = lightY - y;
+        final double lyly = ly*ly;
+        for(int i=0, j=0; i<width; i++, j+=3){
+            double L0 = lightX - x;
+            double L1 = ly;
+            double L2 = lightZ - z[4*i+3];
+            final double norm = Math.sqrt( L0*L0 + lyly + L2*L2 );
+            if(norm > 0){
+                final double invNorm = 1.0/norm;
+                L0 *= invNorm;
+                L1 *= invNorm;
+                L2 *= invNorm;
+            }
+            ret[j]   = L0;
+            ret[j+1] = L1;
+            ret[j+2] = L2;
+            x += dx;
+        }
+
+        return ret;
+    }
 }
 
@@ -237,5 +237,59 @@ public class SpotLight extends AbstractLight {
         return ret;
     }
 
+    /**
+     * Returns a row of the light map, starting at (x, y) with dx
+     * increments, a given width, and z elevations stored in the
+     * fourth of each group of four values of the z array.
+     *
+     * @return an array where each group of four values holds the
+     *         normalized light vector and the intensity of the light,
+     *         as computed by <code>getLight4</code>.
+     */
+    public double[] getLightRow4(double x, final double y,
+                                 final double dx, final int width,
+                                 final double[] z,
+                                 final double[] lightRow) {
+        double [] ret = lightRow;
+        if (ret == null)
+            ret = new double[4*width];
+
+        final double[] L = new double[3];
+        for(int i=0; i<4*width; i+=4){
+            final double s = getLightBase(x, y, z[i+3], L);
+            ret[i]   = L[0];
+            ret[i+1] = L[1];
+            ret[i+2] = L[2];
+            ret[i+3] = s;
+            x += dx;
+        }
+
+        return ret;
+    }
+
+    /**
+     * Returns a row of the light map, the light vectors being scaled
+     * by the intensity of the light as in <code>getLight</code>.
+     */
+    public double[] getLightRow(double x, final double y,
+                                final double dx, final int width,
+                                final double[] z,
+                                final double[] lightRow) {
+        double [] ret = lightRow;
+        if (ret == null)
+            ret = new double[3*width];
+
+        final double[] L = new double[3];
+        for(int i=0, j=0; i<width; i++, j+=3){
+            final double s = getLightBase(x, y, z[4*i+3], L);
+            ret[j]   = L[0]*s;
+            ret[j+1] = L[1]*s;
+            ret[j+2] = L[2]*s;
+            x += dx;
+        }
+
+        return ret;
+    }
+
 }
 
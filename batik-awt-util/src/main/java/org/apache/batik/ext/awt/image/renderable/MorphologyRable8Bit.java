@@ -34,9 +34,9 @@ import org.apache.batik.ext.awt.image.PadMode;
 import org.apache.batik.ext.awt.image.rendered.AffineRed;
 import org.apache.batik.ext.awt.image.rendered.BufferedImageCachableRed;
 import org.apache.batik.ext.awt.image.rendered.CachableRed;
-import org.apache.batik.ext.awt.image.rendered.MorphologyOp;
 import org.apache.batik.ext.awt.image.rendered.PadRed;
 import org.apache.batik.ext.awt.image.rendered.RenderedImageCachableRed;
+import org.apache.batik.ext.awt.image.rendered.VanHerkMorphologyOp;
 
 /**
  * Implements a Morphology operation, where the kernel size is
@@ -178,9 +178,11 @@ public class MorphologyRable8Bit
         int radX = (int)Math.round(radiusX*scaleX);
         int radY = (int)Math.round(radiusY*scaleY);
 
-        MorphologyOp op = null;
+        // The cost of this operation per pixel does not depend on the
+        // radius, which matters for large dilations such as halos.
+        VanHerkMorphologyOp op = null;
         if(radX > 0 && radY > 0){
-            op = new MorphologyOp(radX, radY, doDilation);
+            op = new VanHerkMorphologyOp(radX, radY, doDilation);
         }
 
         // This is the affine transform between our intermediate
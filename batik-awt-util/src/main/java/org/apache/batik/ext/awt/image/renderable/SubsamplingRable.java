@@ -0,0 +1,219 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.ext.awt.image.renderable;
+
+import java.awt.Rectangle;
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.RenderedImage;
+import java.awt.image.renderable.RenderContext;
+import java.io.IOException;
+import java.lang.ref.Reference;
+import java.lang.ref.SoftReference;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.batik.ext.awt.image.rendered.CachableRed;
+
+/**
+ * A raster image which is decoded again for each rendering, at the
+ * resolution and over the area of the image this rendering needs.  A
+ * large image shown small is subsampled while it is decoded, and only
+ * the visible part of a large image shown large is decoded, instead of
+ * keeping the whole image decoded at its full resolution.
+ *
+ * Subclasses keep the encoded image and decode parts of it.  The last
+ * decoded part for each subsampling is kept while memory allows.
+ *
+ * @version $Id$
+ */
+public abstract class SubsamplingRable extends AbstractRable {
+
+    /**
+     * The number of pixels above which decoders should return a
+     * <code>SubsamplingRable</code> rather than the whole image.
+     */
+    public static final long MIN_PIXELS = 1 << 20;
+
+    /**
+     * The largest size of the part decoded by <code>checkData</code>.
+     */
+    public static final int CHECK_SIZE = 256;
+
+    /**
+     * The size of the image.
+     */
+    protected int width, height;
+
+    /**
+     * The last decoded part of the image for each subsampling.
+     */
+    protected Map parts = new HashMap();
+
+    /**
+     * @param width the width of the image.
+     * @param height the height of the image.
+     */
+    protected SubsamplingRable(int width, int height) {
+        this.width  = width;
+        this.height = height;
+    }
+
+    public Rectangle2D getBounds2D() {
+        return new Rectangle2D.Double(0, 0, width, height);
+    }
+
+    /**
+     * Decodes a part of the image.  The pixel <code>(0, 0)</code> of
+     * the result is the pixel <code>(region.x, region.y)</code> of the
+     * image, and only one pixel in <code>subsampling</code> is kept in
+     * each direction.
+     * @param region the part of the image to decode.
+     * @param subsampling the subsampling period.
+     */
+    protected abstract CachableRed decode(Rectangle region, int subsampling)
+        throws IOException;
+
+    /**
+     * Decodes the whole image with a subsampling giving at most
+     * <code>CHECK_SIZE</code> pixels in each direction, and keeps the
+     * result as the decoded part for this subsampling.  All of the
+     * encoded data is read, so decoders call this method when they
+     * create the image: corrupted data is then reported as a broken
+     * image, rather than making renderings fail later on.
+     * @throws IOException if the image cannot be decoded.
+     */
+    public void checkData() throws IOException {
+        int f = Math.max(1, Math.max(width, height) / CHECK_SIZE);
+        f = Math.min(f, Math.min(width, height));
+        Rectangle region = new Rectangle(0, 0, width, height);
+        Part part = new Part(region, decode(region, f));
+        synchronized (this) {
+            parts.put(new Integer(f), new SoftReference(part));
+        }
+    }
+
+    /**
+     * Returns the subsampling which keeps at least one pixel of the
+     * image for each device pixel with the given transform.
+     */
+    public static int getSubsampling(AffineTransform at) {
+        double sx = Math.sqrt(at.getScaleX() * at.getScaleX() +
+                              at.getShearY() * at.getShearY());
+        double sy = Math.sqrt(at.getShearX() * at.getShearX() +
+                              at.getScaleY() * at.getScaleY());
+        double s = Math.max(sx, sy);
+        if (s >= 1)
+            return 1;
+        return (int)Math.min(1 / s, Integer.MAX_VALUE);
+    }
+
+    public RenderedImage createRendering(RenderContext rc) {
+        AffineTransform at = rc.getTransform();
+        int f = getSubsampling(at);
+        f = Math.min(f, Math.min(width, height));
+
+        Rectangle bounds = new Rectangle(0, 0, width, height);
+        Rectangle r = bounds;
+        Shape aoi = rc.getAreaOfInterest();
+        if (aoi != null) {
+            // Includes the pixels interpolated with the visible ones.
+            r = aoi.getBounds();
+            r.grow(f, f);
+            r = r.intersection(bounds);
+            if (r.isEmpty())
+                return null;
+        }
+
+        Part part = getPart(r, f);
+        if (part == null)
+            return null;
+
+        // Maps the decoded pixels on the area they come from.
+        Rectangle pr = part.region;
+        CachableRed cr = part.image;
+        AffineTransform pat = new AffineTransform(at);
+        pat.translate(pr.x, pr.y);
+        pat.scale(pr.width  / (double)cr.getWidth(),
+                  pr.height / (double)cr.getHeight());
+        RenderContext prc = new RenderContext(pat, rc.getRenderingHints());
+        return new RedRable(cr).createRendering(prc);
+    }
+
+    /**
+     * Returns a decoded part of the image covering the given area, with
+     * the given subsampling, which is decoded if needed.  Most of the
+     * image is decoded if most of it is needed, otherwise the part is
+     * larger than the area, so that it can be reused while the area
+     * moves.  Returns null if the image cannot be decoded.
+     */
+    protected synchronized Part getPart(Rectangle r, int f) {
+        Integer key = new Integer(f);
+        Reference ref = (Reference)parts.get(key);
+        Part part = (ref == null) ? null : (Part)ref.get();
+        if ((part != null) && part.region.contains(r))
+            return part;
+
+        Rectangle region;
+        if ((long)r.width * r.height * 4 >= (long)width * height) {
+            region = new Rectangle(0, 0, width, height);
+        } else {
+            region = new Rectangle(r);
+            region.grow(r.width / 2, r.height / 2);
+            region = region.intersection(new Rectangle(0, 0, width, height));
+        }
+        // Aligns the region on the subsampling grid, so that the
+        // parts decoded with a given subsampling share their pixels.
+        int x0 = (region.x / f) * f;
+        int y0 = (region.y / f) * f;
+        region.setBounds(x0, y0,
+                         region.x + region.width  - x0,
+                         region.y + region.height - y0);
+
+        try {
+            part = new Part(region, decode(region, f));
+        } catch (IOException ioe) {
+            return null;
+        }
+        parts.put(key, new SoftReference(part));
+        return part;
+    }
+
+    /**
+     * A decoded part of the image.
+     */
+    protected static class Part {
+
+        /**
+         * The area of the image this part comes from.
+         */
+        public Rectangle region;
+
+        /**
+         * The decoded pixels.
+         */
+        public CachableRed image;
+
+        public Part(Rectangle region, CachableRed image) {
+            this.region = region;
+            this.image  = image;
+        }
+    }
+}
@@ -239,6 +239,6 @@ public class TurbulenceRable8Bit
 
         return new TurbulencePatternRed
             (baseFreqX, baseFreqY, numOctaves, seed, fractalNoise,
-             tile, patternTxf, devRect, cs, true);
+             tile, patternTxf, devRect, cs, true, rc.getRenderingHints());
     }
 }
@@ -495,6 +495,30 @@ public abstract class AbstractRed implements CachableRed {
         return inputRgn.intersection(bounds);
     }
 
+    /**
+     * Returns true if the data of this image may be requested by
+     * several threads at once, so that it can be computed by the
+     * <code>TileScheduler</code>. This requires the computation to
+     * only modify the raster it is given, and the sources to be
+     * thread safe as well. The default implementation returns false.
+     */
+    public boolean isThreadSafe() {
+        return false;
+    }
+
+    /**
+     * Returns true if all the sources of this image are thread safe.
+     * Subclasses whose computation is thread safe can implement
+     * <code>isThreadSafe</code> with this method.
+     */
+    protected boolean areSourcesThreadSafe() {
+        for (Object src : srcs) {
+            if (!(src instanceof AbstractRed) ||
+                !((AbstractRed)src).isThreadSafe())
+                return false;
+        }
+        return true;
+    }
 
     // This is not included but can be implemented by the following.
     // In which case you _must_ reimplement getTile.
@@ -25,6 +25,7 @@ import java.awt.image.DataBufferInt;
 import java.awt.image.Raster;
 import java.awt.image.SampleModel;
 import java.awt.image.WritableRaster;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
@@ -305,7 +306,10 @@ public abstract class AbstractTiledRed
         int yt0 = getYTile(rect.y);
         int yt1 = getYTile(rect.y+rect.height-1);
 
-        if ((xt0 == xt1) && (yt0 == yt1)) {
+        // The tiles may be shared with other threads computing
+        // concurrently, which must not see them modified.
+        if ((xt0 == xt1) && (yt0 == yt1) &&
+            !TileScheduler.isComputingConcurrently()) {
             Raster r = getTile(xt0, yt0);
             return r.createChild(rect.x, rect.y, rect.width, rect.height,
                                  rect.x, rect.y, null);
@@ -602,6 +606,11 @@ public abstract class AbstractTiledRed
     protected void drawBlockInPlace( TileBlock [] blocks, WritableRaster wr ) {
         // System.out.println("Ending Splits: " + blocks.length);
 
+        if (TileScheduler.canComputeConcurrently(this)) {
+            drawBlockConcurrently(blocks, wr);
+            return;
+        }
+
         // cache for reuse in hasBeenHalted()
         Thread currentThread = Thread.currentThread();
 
@@ -630,5 +639,32 @@ public abstract class AbstractTiledRed
             }
         }
     }
-}
 
+    /**
+     * Computes the blocks on several threads, one task per block.
+     */
+    protected void drawBlockConcurrently( TileBlock [] blocks,
+                                          WritableRaster wr ) {
+        List tasks = new ArrayList();
+        for (TileBlock curr : blocks) {
+            int xloc = curr.getXLoc() * tileWidth + tileGridXOff;
+            int yloc = curr.getYLoc() * tileHeight + tileGridYOff;
+            Rectangle tb = new Rectangle(xloc, yloc,
+                    curr.getWidth() * tileWidth,
+                    curr.getHeight() * tileHeight);
+            tb = tb.intersection(bounds);
+            if (tb.isEmpty())
+                continue;
+
+            final WritableRaster child =
+                wr.createWritableChild(tb.x, tb.y, tb.width, tb.height,
+                                       tb.x, tb.y, null);
+            tasks.add(new Runnable() {
+                    public void run() {
+                        genRect(child);
+                    }
+                });
+        }
+        TileScheduler.run((Runnable [])tasks.toArray(new Runnable[tasks.size()]));
+    }
+}
@@ -258,4 +258,8 @@ public class AffineRed extends AbstractRed {
 
         return cm.createCompatibleSampleModel(w, h);
     }
+
+    public boolean isThreadSafe() {
+        return areSourcesThreadSafe();
+    }
 }
@@ -278,4 +278,8 @@ public class Any2LumRed extends AbstractRed {
         int y = bufferedImage.getHeight() / 2;
         return 0xff & (bufferedImage.getRGB(x, y) >> 24);
     }
+
+    public boolean isThreadSafe() {
+        return areSourcesThreadSafe();
+    }
 }
@@ -361,4 +361,8 @@ public class Any2sRGBRed extends AbstractRed {
                  sm.getHeight(),
                  new int [] {0xFF0000, 0xFF00, 0xFF});
     }
+
+    public boolean isThreadSafe() {
+        return areSourcesThreadSafe();
+    }
 }
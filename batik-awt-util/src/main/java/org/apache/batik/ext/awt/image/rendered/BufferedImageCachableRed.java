@@ -132,4 +132,8 @@ public class BufferedImageCachableRed extends AbstractRed {
          */
         return wr;
     }
+
+    public boolean isThreadSafe() {
+        return areSourcesThreadSafe();
+    }
 }
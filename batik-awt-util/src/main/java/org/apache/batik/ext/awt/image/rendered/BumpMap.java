@@ -23,6 +23,7 @@ import java.awt.image.DataBufferInt;
 import java.awt.image.Raster;
 import java.awt.image.RenderedImage;
 import java.awt.image.SinglePixelPackedSampleModel;
+import java.util.Arrays;
 
 /**
  * Default BumpMap implementation.
@@ -80,40 +81,107 @@ public final class BumpMap {
     {
         final double[][][] N = new double[h][w][4];
 
+        if ((w <= 0) || (h <= 0))
+            return N;
+
+        final Raster r = getNormalData(x, y, w, h);
+        if (r == null)
+            return N;
+
+        double [] row = null;
+        for (int i=0; i<h; i++) {
+            row = getNormalRow(r, x, y+i, w, row);
+            final double [][] NRow = N[i];
+            for (int j=0, k=0; j<w; j++, k+=4) {
+                final double [] n = NRow[j];
+                n[0] = row[k];
+                n[1] = row[k+1];
+                n[2] = row[k+2];
+                n[3] = row[k+3];
+            }
+        }
+        return N;
+    }
+
+    /**
+     * Returns true if the texture may be read by several threads at
+     * once, that is if it is an <code>AbstractRed</code> reporting
+     * itself as thread safe.
+     */
+    public boolean isThreadSafe() {
+        return (texture instanceof AbstractRed)
+            && ((AbstractRed)texture).isThreadSafe();
+    }
+
+    /**
+     * Returns the part of the texture needed to compute the normals
+     * of the given area, or null if the area is outside of the
+     * texture. The normals are then computed row by row with
+     * <code>getNormalRow</code>.
+     */
+    public Raster getNormalData(final int x, final int y,
+                                final int w, final int h) {
         Rectangle srcRect = new Rectangle(x-1, y-1, w+2, h+2);
         Rectangle srcBound = new Rectangle
             (texture.getMinX(), texture.getMinY(),
              texture.getWidth(), texture.getHeight());
 
         if ( ! srcRect.intersects(srcBound) )
-            return N;
-
-        srcRect = srcRect.intersection(srcBound);
-        final Raster r = texture.getData(srcRect);
+            return null;
 
-        srcRect = r.getBounds();
+        return texture.getData(srcRect.intersection(srcBound));
+    }
 
-        // System.out.println("SrcRect: " + srcRect);
-        // System.out.println("rect: [" +
-        //                    x + ", " + y + ", " +
-        //                    w + ", " + h + "]");
+    /**
+     * Computes a row of normals. Four values are stored for each
+     * pixel: the normal and the height of the surface. They are zero
+     * for the pixels outside of the texture.
+     *
+     * @param r the texture data returned by <code>getNormalData</code>
+     *        for an area that contains the row, or null
+     * @param x x-axis coordinate of the first pixel of the row
+     * @param y y-axis coordinate of the row
+     * @param w number of pixels in the row
+     * @param N array receiving the normals, allocated if null or
+     *        too small
+     */
+    public double[] getNormalRow(final Raster r,
+                                 final int x, final int y, final int w,
+                                 double[] N) {
+        if ((N == null) || (N.length < 4*w))
+            N = new double[4*w];
+        else
+            Arrays.fill(N, 0, 4*w, 0);
+
+        if ((r == null) || (w <= 0))
+            return N;
 
-        final DataBufferInt db = (DataBufferInt)r.getDataBuffer();
+        final Rectangle srcRect = r.getBounds();
+        final int srcMaxX = srcRect.x+srcRect.width -1;
+        final int srcMaxY = srcRect.y+srcRect.height-1;
+        if ((y < srcRect.y) || (y > srcMaxY))
+            return N;
 
+        int xloc=x;
+        if (xloc < srcRect.x)
+            xloc = srcRect.x;
+        final int xEnd = Math.min(srcMaxX, x+w);
+        if (xloc > xEnd)
+            return N;
 
+        final DataBufferInt db = (DataBufferInt)r.getDataBuffer();
         final int[] pixels = db.getBankData()[0];
 
         final SinglePixelPackedSampleModel sppsm;
         sppsm = (SinglePixelPackedSampleModel)r.getSampleModel();
 
-
         final int scanStride = sppsm.getScanlineStride();
         final int scanStridePP = scanStride + 1;
         final int scanStrideMM = scanStride - 1;
         double prpc=0, prcc=0, prnc=0;
         double crpc=0, crcc=0, crnc=0;
         double nrpc=0, nrcc=0, nrnc=0;
-        double invNorm;
+        double n0, n1;
 
         final double quarterSurfaceScaleX = surfaceScaleX / 4f;
         final double quarterSurfaceScaleY = surfaceScaleY / 4f;
@@ -126,99 +194,57 @@ public final class BumpMap {
 
         final double pixelScale = 1.0/255;
 
-        if(w <= 0)
-            return N;
-        // Process pixels on the border
-        if(h <= 0)
-            return N;
-
-        final int xEnd   = Math.min(srcRect.x+srcRect.width -1, x+w);
-        final int yEnd   = Math.min(srcRect.y+srcRect.height-1, y+h);
-        final int offset =
-            (db.getOffset() +
-             sppsm.getOffset(srcRect.x -r.getSampleModelTranslateX(),
-                             srcRect.y -r.getSampleModelTranslateY()));
+        int p = (db.getOffset() +
+                 sppsm.getOffset(xloc-r.getSampleModelTranslateX(),
+                                 y   -r.getSampleModelTranslateY()));
+        int k = 4*(xloc-x);
 
-        int yloc=y;
-        if (yloc < srcRect.y) {
-            yloc = srcRect.y;
-        }
-
-        // Top edge extend filters...
-        if (yloc == srcRect.y) {
-            if (yloc == yEnd) {
+        // The filters are cut at the edges of the texture, so each of
+        // the top, middle and bottom rows has its own kernels, and so
+        // do the first and last pixels of each row.
+        if (y == srcRect.y) {
+            if (y == srcMaxY) {
                 // Only one row of pixels...
-                final double [][] NRow = N[yloc-y];
-                int xloc=x;
-                if (xloc < srcRect.x)
-                    xloc = srcRect.x;
-                int p  = (offset + (xloc-srcRect.x) +
-                          scanStride*(yloc-srcRect.y));
-
                 crcc = (pixels[p] >>> 24)*pixelScale;
 
                 if (xloc != srcRect.x) {
                     crpc = (pixels[p - 1] >>> 24)*pixelScale;
                 }
                 else if (xloc < xEnd) {
-                    // Top left pixel, in src (0, 0);
+                    // Leftmost pixel
                     crnc = (pixels[p+1] >>> 24)*pixelScale;
 
-                    final double [] n = NRow[xloc-x];
-
-                    n[0] = 2*surfaceScaleX*(crcc - crnc);
-                    invNorm = 1.0/Math.sqrt(n[0]*n[0] + 1);
-                    n[0] *= invNorm;
-                    n[1]  = 0;
-                    n[2]  = invNorm;
-                    n[3]  = crcc*surfaceScale;
+                    n0 = 2*surfaceScaleX*(crcc - crnc);
+                    setNormal(N, k, n0, 0, crcc*surfaceScale);
                     p++;
+                    k += 4;
                     xloc++;
                     crpc = crcc;
                     crcc = crnc;
                 } else {
-                    // Single pix.
                     crpc = crcc;
                 }
 
                 for (; xloc<xEnd; xloc++) {
-                    // Middle Top row...
                     crnc = (pixels[p+1] >>> 24)*pixelScale;
-                    final double [] n = NRow[xloc-x];
-
-                    n[0] = surfaceScaleX * (crpc - crnc );
-                    invNorm = 1.0/Math.sqrt(n[0]*n[0] + 1);
-                    n[0] *= invNorm;
-                    n[1]  = 0;
-                    n[2]  = invNorm;
-                    n[3]  = crcc*surfaceScale;
+
+                    n0 = surfaceScaleX * (crpc - crnc );
+                    setNormal(N, k, n0, 0, crcc*surfaceScale);
                     p++;
+                    k += 4;
                     crpc = crcc;
                     crcc = crnc;
                 }
 
-                if ((xloc < x+w) &&
-                    (xloc == srcRect.x+srcRect.width-1)) {
-                    // Last pixel of top row
-                    final double [] n = NRow[xloc-x];
-
-                    n[0] = 2*surfaceScaleX*(crpc - crcc);
-                    invNorm = 1.0/Math.sqrt(n[0]*n[0] + n[1]*n[1] + 1);
-                    n[0] *= invNorm;
-                    n[1] *= invNorm;
-                    n[2]  = invNorm;
-                    n[3]  = crcc*surfaceScale;
+                if ((xloc < x+w) && (xloc == srcMaxX)) {
+                    // Rightmost pixel
+                    n0 = 2*surfaceScaleX*(crpc - crcc);
+                    setNormal(N, k, n0, 0, crcc*surfaceScale);
                 }
                 return N;
             }
 
-            final double [][] NRow = N[yloc-y];
-            int p  = offset + scanStride*(yloc-srcRect.y);
-            int xloc=x;
-            if (xloc < srcRect.x)
-                xloc = srcRect.x;
-            p += xloc-srcRect.x;
-
+            // Top row...
             crcc = (pixels[p] >>> 24)*pixelScale;
             nrcc = (pixels[p + scanStride] >>> 24)*pixelScale;
 
@@ -227,186 +253,57 @@ public final class BumpMap {
                 nrpc = (pixels[p + scanStrideMM] >>> 24)*pixelScale;
             }
             else if (xloc < xEnd) {
-                // Top left pixel, in src (0, 0);
+                // Top left pixel
                 crnc = (pixels[p+1] >>> 24)*pixelScale;
                 nrnc = (pixels[p + scanStridePP] >>> 24)*pixelScale;
 
-                final double [] n = NRow[xloc-x];
-
-                n[0] = - twoThirdSurfaceScaleX *
+                n0 = - twoThirdSurfaceScaleX *
                     ((2*crnc + nrnc - 2*crcc - nrcc));
-                n[1] = - twoThirdSurfaceScaleY *
+                n1 = - twoThirdSurfaceScaleY *
                     ((2*nrcc + nrnc - 2*crcc - crnc));
-                invNorm = 1.0/Math.sqrt(n[0]*n[0] + n[1]*n[1] + 1);
-                n[0] *= invNorm;
-                n[1] *= invNorm;
-                n[2]  = invNorm;
-                n[3]  = crcc*surfaceScale;
+                setNormal(N, k, n0, n1, crcc*surfaceScale);
                 p++;
+                k += 4;
                 xloc++;
                 crpc = crcc;
                 nrpc = nrcc;
                 crcc = crnc;
                 nrcc = nrnc;
             } else {
-                // Single pix
                 crpc = crcc;
                 nrpc = nrcc;
             }
 
             for (; xloc<xEnd; xloc++) {
-                // Middle Top row...
                 crnc = (pixels[p+1] >>> 24)*pixelScale;
                 nrnc = (pixels[p + scanStridePP] >>> 24)*pixelScale;
 
-                final double [] n = NRow[xloc-x];
-
-                n[0] = - thirdSurfaceScaleX * (( 2*crnc + nrnc)
-                                               - (2*crpc + nrpc));
-                n[1] = - halfSurfaceScaleY *(( nrpc + 2*nrcc + nrnc)
-                                             - (crpc + 2*crcc + crnc));
-
-                invNorm = 1.0/Math.sqrt(n[0]*n[0] + n[1]*n[1] + 1);
-                n[0] *= invNorm;
-                n[1] *= invNorm;
-                n[2]  = invNorm;
-                n[3]  = crcc*surfaceScale;
+                n0 = - thirdSurfaceScaleX * (( 2*crnc + nrnc)
+                                             - (2*crpc + nrpc));
+                n1 = - halfSurfaceScaleY *(( nrpc + 2*nrcc + nrnc)
+                                           - (crpc + 2*crcc + crnc));
+                setNormal(N, k, n0, n1, crcc*surfaceScale);
                 p++;
+                k += 4;
                 crpc = crcc;
                 nrpc = nrcc;
                 crcc = crnc;
                 nrcc = nrnc;
             }
 
-            if ((xloc < x+w) &&
-                (xloc == srcRect.x+srcRect.width-1)) {
-                // Last pixel of top row
-                final double [] n = NRow[xloc-x];
-
-                n[0] = - twoThirdSurfaceScaleX *(( 2*crcc + nrcc)
-                                                 - (2*crpc + nrpc));
-                n[1] = - twoThirdSurfaceScaleY *(( 2*nrcc + nrpc)
-                                                 - (2*crcc + crpc));
-
-                invNorm = 1.0/Math.sqrt(n[0]*n[0] + n[1]*n[1] + 1);
-                n[0] *= invNorm;
-                n[1] *= invNorm;
-                n[2]  = invNorm;
-                n[3]  = crcc*surfaceScale;
-            }
-            yloc++;
-        }
-
-        for (; yloc<yEnd; yloc++) {
-            final double [][] NRow = N[yloc-y];
-            int p  = offset + scanStride*(yloc-srcRect.y);
-
-            int xloc=x;
-            if (xloc < srcRect.x)
-                xloc = srcRect.x;
-
-            p += xloc-srcRect.x;
-
-            prcc = (pixels[p - scanStride] >>> 24)*pixelScale;
-            crcc = (pixels[p] >>> 24)*pixelScale;
-            nrcc = (pixels[p + scanStride] >>> 24)*pixelScale;
-
-            if (xloc != srcRect.x) {
-                prpc = (pixels[p - scanStridePP] >>> 24)*pixelScale;
-                crpc = (pixels[p - 1] >>> 24)*pixelScale;
-                nrpc = (pixels[p + scanStrideMM] >>> 24)*pixelScale;
-            }
-            else if (xloc < xEnd) {
-                // Now, process left column, from (0, 1) to (0, h-1)
-                crnc = (pixels[p+1] >>> 24)*pixelScale;
-                prnc = (pixels[p - scanStrideMM] >>> 24)*pixelScale;
-                nrnc = (pixels[p + scanStridePP] >>> 24)*pixelScale;
-
-                final double [] n = NRow[xloc-x];
-
-                n[0] = - halfSurfaceScaleX *(( prnc + 2*crnc + nrnc)
-                                             - (prcc + 2*crcc + nrcc));
-                n[1] = - thirdSurfaceScaleY *(( 2*prcc + prnc)
-                                              - ( 2*crcc + crnc));
-
-                invNorm = 1.0/Math.sqrt(n[0]*n[0] + n[1]*n[1] + 1);
-                n[0] *= invNorm;
-                n[1] *= invNorm;
-                n[2]  = invNorm;
-                n[3]  = crcc*surfaceScale;
-
-                p++;
-                xloc++;
-
-                prpc = prcc;
-                crpc = crcc;
-                nrpc = nrcc;
-                prcc = prnc;
-                crcc = crnc;
-                nrcc = nrnc;
-            } else {
-                // Single pix
-                prpc = prcc;
-                crpc = crcc;
-                nrpc = nrcc;
-            }
-
-            for (; xloc<xEnd; xloc++) {
-                // Middle Middle row...
-                prnc = (pixels[p - scanStrideMM] >>> 24)*pixelScale;
-                crnc = (pixels[p+1] >>> 24)*pixelScale;
-                nrnc = (pixels[p + scanStridePP] >>> 24)*pixelScale;
-
-                final double [] n = NRow[xloc-x];
-
-                n[0] = - quarterSurfaceScaleX *(( prnc + 2*crnc + nrnc)
-                                                - (prpc + 2*crpc + nrpc));
-                n[1] = - quarterSurfaceScaleY *(( nrpc + 2*nrcc + nrnc)
-                                                - (prpc + 2*prcc + prnc));
-
-                invNorm = 1.0/Math.sqrt(n[0]*n[0] + n[1]*n[1] + 1);
-                n[0] *= invNorm;
-                n[1] *= invNorm;
-                n[2]  = invNorm;
-                n[3]  = crcc*surfaceScale;
-
-                p++;
-                prpc = prcc;
-                crpc = crcc;
-                nrpc = nrcc;
-                prcc = prnc;
-                crcc = crnc;
-                nrcc = nrnc;
-            }
-
-            if ((xloc < x+w) &&
-                (xloc == srcRect.x+srcRect.width-1)) {
-                // Now, proces right column, from (w-1, 1) to (w-1, h-1)
-                final double [] n = NRow[xloc-x];
-
-                n[0] = - halfSurfaceScaleX *( (prcc + 2*crcc + nrcc)
-                                             -(prpc + 2*crpc + nrpc));
-                n[1] = - thirdSurfaceScaleY *(( nrpc + 2*nrcc)
-                                              - ( prpc + 2*prcc));
-
-                invNorm = 1.0/Math.sqrt(n[0]*n[0] + n[1]*n[1] + 1);
-                n[0] *= invNorm;
-                n[1] *= invNorm;
-                n[2]  = invNorm;
-                n[3]  = crcc*surfaceScale;
+            if ((xloc < x+w) && (xloc == srcMaxX)) {
+                // Top right pixel
+                n0 = - twoThirdSurfaceScaleX *(( 2*crcc + nrcc)
+                                               - (2*crpc + nrpc));
+                n1 = - twoThirdSurfaceScaleY *(( 2*nrcc + nrpc)
+                                               - (2*crcc + crpc));
+                setNormal(N, k, n0, n1, crcc*surfaceScale);
             }
+            return N;
         }
 
-        if ((yloc < y+h) &&
-            (yloc == srcRect.y+srcRect.height-1)) {
-            final double [][] NRow = N[yloc-y];
-            int p  = offset + scanStride*(yloc-srcRect.y);
-            int xloc=x;
-            if (xloc < srcRect.x)
-                xloc = srcRect.x;
-
-            p += xloc-srcRect.x;
-
+        if (y == srcMaxY) {
+            // Bottom row...
             crcc = (pixels[p] >>> 24)*pixelScale;
             prcc = (pixels[p - scanStride] >>> 24)*pixelScale;
 
@@ -415,79 +312,133 @@ public final class BumpMap {
                 crpc = (pixels[p - 1] >>> 24)*pixelScale;
             }
             else if (xloc < xEnd) {
-                // Process first pixel of last row
+                // Bottom left pixel
                 crnc = (pixels[p + 1] >>> 24)*pixelScale;
                 prnc = (pixels[p - scanStrideMM] >>> 24)*pixelScale;
 
-                final double [] n = NRow[xloc-x];
-
-                n[0] = - twoThirdSurfaceScaleX * ((2*crnc + prnc - 2*crcc - prcc));
-                n[1] = - twoThirdSurfaceScaleY * ((2*crcc + crnc - 2*prcc - prnc));
-                invNorm = 1.0/Math.sqrt(n[0]*n[0] + n[1]*n[1] + 1);
-                n[0] *= invNorm;
-                n[1] *= invNorm;
-                n[2]  = invNorm;
-                n[3]  = crcc*surfaceScale;
-
+                n0 = - twoThirdSurfaceScaleX *
+                    ((2*crnc + prnc - 2*crcc - prcc));
+                n1 = - twoThirdSurfaceScaleY *
+                    ((2*crcc + crnc - 2*prcc - prnc));
+                setNormal(N, k, n0, n1, crcc*surfaceScale);
                 p++;
+                k += 4;
                 xloc++;
                 crpc = crcc;
                 prpc = prcc;
                 crcc = crnc;
                 prcc = prnc;
             } else {
-                // Single pix
                 crpc = crcc;
                 prpc = prcc;
             }
 
             for (; xloc<xEnd; xloc++) {
-                // Middle of Bottom row...
                 crnc = (pixels[p + 1] >>> 24)*pixelScale;
                 prnc = (pixels[p - scanStrideMM] >>> 24)*pixelScale;
 
-                // System.out.println("Vals: " +
-                //                    prpc + "," + prcc + "," + prnc + "  " +
-                //                    crpc + "," + crcc + "," + crnc );
-
-                final double [] n = NRow[xloc-x];
-
-                n[0] = - thirdSurfaceScaleX *(( 2*crnc + prnc)
-                                              - (2*crpc + prpc));
-                n[1] = - halfSurfaceScaleY *(( crpc + 2*crcc + crnc)
-                                             - (prpc + 2*prcc + prnc));
-
-                invNorm = 1.0/Math.sqrt(n[0]*n[0] + n[1]*n[1] + 1);
-                n[0] *= invNorm;
-                n[1] *= invNorm;
-                n[2]  = invNorm;
-                n[3]  = crcc*surfaceScale;
-
+                n0 = - thirdSurfaceScaleX *(( 2*crnc + prnc)
+                                            - (2*crpc + prpc));
+                n1 = - halfSurfaceScaleY *(( crpc + 2*crcc + crnc)
+                                           - (prpc + 2*prcc + prnc));
+                setNormal(N, k, n0, n1, crcc*surfaceScale);
                 p++;
+                k += 4;
                 crpc = crcc;
                 prpc = prcc;
                 crcc = crnc;
                 prcc = prnc;
             }
 
-            if ((xloc < x+w) &&
-                (xloc == srcRect.x+srcRect.width-1)) {
-                // Bottom right corner
-                final double [] n = NRow[xloc-x];
-
-                n[0] = - twoThirdSurfaceScaleX *(( 2*crcc + prcc)
-                                                 - (2*crpc + prpc));
-                n[1] = - twoThirdSurfaceScaleY *(( 2*crcc + crpc)
-                                                 - (2*prcc + prpc));
-
-                invNorm = 1.0/Math.sqrt(n[0]*n[0] + n[1]*n[1] + 1);
-                n[0] *= invNorm;
-                n[1] *= invNorm;
-                n[2]  = invNorm;
-                n[3]  = crcc*surfaceScale;
+            if ((xloc < x+w) && (xloc == srcMaxX)) {
+                // Bottom right pixel
+                n0 = - twoThirdSurfaceScaleX *(( 2*crcc + prcc)
+                                               - (2*crpc + prpc));
+                n1 = - twoThirdSurfaceScaleY *(( 2*crcc + crpc)
+                                               - (2*prcc + prpc));
+                setNormal(N, k, n0, n1, crcc*surfaceScale);
             }
+            return N;
+        }
+
+        // Middle row...
+        prcc = (pixels[p - scanStride] >>> 24)*pixelScale;
+        crcc = (pixels[p] >>> 24)*pixelScale;
+        nrcc = (pixels[p + scanStride] >>> 24)*pixelScale;
+
+        if (xloc != srcRect.x) {
+            prpc = (pixels[p - scanStridePP] >>> 24)*pixelScale;
+            crpc = (pixels[p - 1] >>> 24)*pixelScale;
+            nrpc = (pixels[p + scanStrideMM] >>> 24)*pixelScale;
+        }
+        else if (xloc < xEnd) {
+            // Left column
+            crnc = (pixels[p+1] >>> 24)*pixelScale;
+            prnc = (pixels[p - scanStrideMM] >>> 24)*pixelScale;
+            nrnc = (pixels[p + scanStridePP] >>> 24)*pixelScale;
+
+            n0 = - halfSurfaceScaleX *(( prnc + 2*crnc + nrnc)
+                                       - (prcc + 2*crcc + nrcc));
+            n1 = - thirdSurfaceScaleY *(( 2*prcc + prnc)
+                                        - ( 2*crcc + crnc));
+            setNormal(N, k, n0, n1, crcc*surfaceScale);
+            p++;
+            k += 4;
+            xloc++;
+            prpc = prcc;
+            crpc = crcc;
+            nrpc = nrcc;
+            prcc = prnc;
+            crcc = crnc;
+            nrcc = nrnc;
+        } else {
+            prpc = prcc;
+            crpc = crcc;
+            nrpc = nrcc;
+        }
+
+        for (; xloc<xEnd; xloc++) {
+            prnc = (pixels[p - scanStrideMM] >>> 24)*pixelScale;
+            crnc = (pixels[p+1] >>> 24)*pixelScale;
+            nrnc = (pixels[p + scanStridePP] >>> 24)*pixelScale;
+
+            n0 = - quarterSurfaceScaleX *(( prnc + 2*crnc + nrnc)
+                                          - (prpc + 2*crpc + nrpc));
+            n1 = - quarterSurfaceScaleY *(( nrpc + 2*nrcc + nrnc)
+                                          - (prpc + 2*prcc + prnc));
+            setNormal(N, k, n0, n1, crcc*surfaceScale);
+            p++;
+            k += 4;
+            prpc = prcc;
+            crpc = crcc;
+            nrpc = nrcc;
+            prcc = prnc;
+            crcc = crnc;
+            nrcc = nrnc;
+        }
+
+        if ((xloc < x+w) && (xloc == srcMaxX)) {
+            // Right column
+            n0 = - halfSurfaceScaleX *( (prcc + 2*crcc + nrcc)
+                                        -(prpc + 2*crpc + nrpc));
+            n1 = - thirdSurfaceScaleY *(( nrpc + 2*nrcc)
+                                        - ( prpc + 2*prcc));
+            setNormal(N, k, n0, n1, crcc*surfaceScale);
         }
         return N;
     }
-}
 
+    /**
+     * Stores the unit vector along (n0, n1, 1) and the height at
+     * the given index.
+     */
+    private static void setNormal(final double[] N, final int k,
+                                  final double n0, final double n1,
+                                  final double height) {
+        final double invNorm = 1.0/Math.sqrt(n0*n0 + n1*n1 + 1);
+        N[k]   = n0*invNorm;
+        N[k+1] = n1*invNorm;
+        N[k+2] = invNorm;
+        N[k+3] = height;
+    }
+}
@@ -201,4 +201,7 @@ public class ColorMatrixRed extends AbstractRed{
         return wr;
     }
 
+    public boolean isThreadSafe() {
+        return areSourcesThreadSafe();
+    }
 }
@@ -78,4 +78,8 @@ public class ComponentTransferRed extends AbstractRed {
 
         return wr;
     }
+
+    public boolean isThreadSafe() {
+        return areSourcesThreadSafe();
+    }
 }
@@ -307,4 +307,8 @@ public class CompositeRed extends AbstractRed {
                                     masks[2], masks[3],
                                     true, DataBuffer.TYPE_INT);
     }
+
+    public boolean isThreadSafe() {
+        return areSourcesThreadSafe();
+    }
 }
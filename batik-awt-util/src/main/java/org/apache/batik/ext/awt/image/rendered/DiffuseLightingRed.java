@@ -21,10 +21,12 @@ package org.apache.batik.ext.awt.image.rendered;
 import java.awt.Rectangle;
 import java.awt.image.ColorModel;
 import java.awt.image.DataBufferInt;
+import java.awt.image.Raster;
 import java.awt.image.SampleModel;
 import java.awt.image.SinglePixelPackedSampleModel;
 import java.awt.image.WritableRaster;
 
+import org.apache.batik.ext.awt.image.AbstractLight;
 import org.apache.batik.ext.awt.image.GraphicsUtil;
 import org.apache.batik.ext.awt.image.Light;
 
@@ -123,91 +125,67 @@ public class DiffuseLightingRed extends AbstractRed{
         double x = scaleX*minX;
         double y = scaleY*minY;
         double NL = 0;
-
-        // final double[] L = new double[3];
-        final double[][][] NA = bumpMap.getNormalArray(minX, minY, w, h);
-        if(!light.isConstant()){
-            final double[][] LA = new double[w][3];
-
-            for(i=0; i<h; i++){
-                final double [][] NR = NA[i];
-                light.getLightRow(x, y+i*scaleY, scaleX, w, NR, LA);
-                for(j=0; j<w; j++){
-                    // Get Normal 
-                    final double [] N = NR[j];
-                    
-                    // Get Light Vector
-                    final double [] L = LA[j];
-                    
-                    NL = 255.*kd*(N[0]*L[0] + N[1]*L[1] + N[2]*L[2]);
-                    
-                    r = (int)(NL*lightColor[0]);
-                    g = (int)(NL*lightColor[1]);
-                    b = (int)(NL*lightColor[2]);
-                    
-                    // If any high bits are set we are not in range.
-                    // If the highest bit is set then we are negative so
-                    // clamp to zero else we are > 255 so clamp to 255.
-                    if ((r & 0xFFFFFF00) != 0)
-                        r = ((r & 0x80000000) != 0)?0:255;
-                    if ((g & 0xFFFFFF00) != 0)
-                        g = ((g & 0x80000000) != 0)?0:255;
-                    if ((b & 0xFFFFFF00) != 0)
-                        b = ((b & 0x80000000) != 0)?0:255;
-                    
-                    pixels[p++] = (0xff000000
-                                   |
-                                   r << 16
-                                   |
-                                   g << 8
-                                   |
-                                   b);
-                    
-                }
-                p += adjust;
-            }
-        }
-        else{
-            // System.out.println(">>>>>>>> Processing constant light ...");
+        final double kd255 = 255.*kd;
+
+        // The normals and the light vectors are computed one row at a
+        // time, in buffers reused for the whole tile.
+        final Raster normalData = bumpMap.getNormalData(minX, minY, w, h);
+        final double[] NR = new double[4*w];
+        final double[] LR = new double[3*w];
+        final boolean constant = light.isConstant();
+        if (constant) {
             // Constant light
             final double[] L = new double[3];
             light.getLight(0, 0, 0, L);
+            for(j=0; j<3*w; j+=3){
+                LR[j]   = L[0];
+                LR[j+1] = L[1];
+                LR[j+2] = L[2];
+            }
+        }
 
-            for(i=0; i<h; i++){
-                final double [][] NR = NA[i];
-                for(j=0; j<w; j++){
-                    // Get Normal 
-                    final double[] N = NR[j];
-                    
-                    NL = 255.*kd*(N[0]*L[0] + N[1]*L[1] + N[2]*L[2]);
-                    
-                    r = (int)(NL*lightColor[0]);
-                    g = (int)(NL*lightColor[1]);
-                    b = (int)(NL*lightColor[2]);
-                    
-                    // If any high bits are set we are not in range.
-                    // If the highest bit is set then we are negative so
-                    // clamp to zero else we are > 255 so clamp to 255.
-                    if ((r & 0xFFFFFF00) != 0)
-                        r = ((r & 0x80000000) != 0)?0:255;
-                    if ((g & 0xFFFFFF00) != 0)
-                        g = ((g & 0x80000000) != 0)?0:255;
-                    if ((b & 0xFFFFFF00) != 0)
-                        b = ((b & 0x80000000) != 0)?0:255;
-                    
-                    pixels[p++] = (0xff000000
-                                   |
-                                   r << 16
-                                   |
-                                   g << 8
-                                   |
-                                   b);
-                }
-                p += adjust;
+        for(i=0; i<h; i++){
+            bumpMap.getNormalRow(normalData, minX, minY+i, w, NR);
+            if (!constant)
+                AbstractLight.getLightRow
+                    (light, x, y+i*scaleY, scaleX, w, NR, LR);
+
+            for(j=0; j<w; j++){
+                final int n = 4*j;
+                final int l = 3*j;
+                NL = kd255*(NR[n]*LR[l] + NR[n+1]*LR[l+1] + NR[n+2]*LR[l+2]);
+
+                r = (int)(NL*lightColor[0]);
+                g = (int)(NL*lightColor[1]);
+                b = (int)(NL*lightColor[2]);
+
+                // If any high bits are set we are not in range.
+                // If the highest bit is set then we are negative so
+                // clamp to zero else we are > 255 so clamp to 255.
+                if ((r & 0xFFFFFF00) != 0)
+                    r = ((r & 0x80000000) != 0)?0:255;
+                if ((g & 0xFFFFFF00) != 0)
+                    g = ((g & 0x80000000) != 0)?0:255;
+                if ((b & 0xFFFFFF00) != 0)
+                    b = ((b & 0x80000000) != 0)?0:255;
+
+                pixels[p++] = (0xff000000
+                               |
+                               r << 16
+                               |
+                               g << 8
+                               |
+                               b);
             }
+            p += adjust;
         }
-        
+
         return wr;
     }
 
+    public boolean isThreadSafe() {
+        // The bump map texture is read by copyData, but is not one
+        // of the sources.
+        return areSourcesThreadSafe() && bumpMap.isThreadSafe();
+    }
 }
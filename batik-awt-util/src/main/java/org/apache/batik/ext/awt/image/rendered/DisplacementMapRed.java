@@ -205,7 +205,7 @@ public class DisplacementMapRed extends AbstractRed {
         return dest;
     }
 
-    public TileOffsets getXOffsets(int xTile) {
+    public synchronized TileOffsets getXOffsets(int xTile) {
         TileOffsets ret = xOffsets[xTile-getMinTileX()];
         if (ret != null)
             return ret;
@@ -238,7 +238,7 @@ public class DisplacementMapRed extends AbstractRed {
         return ret;
     }
 
-    public TileOffsets getYOffsets(int yTile) {
+    public synchronized TileOffsets getYOffsets(int yTile) {
         TileOffsets ret = yOffsets[yTile-getMinTileY()];
         if (ret != null)
             return ret;
@@ -750,6 +750,10 @@ public class DisplacementMapRed extends AbstractRed {
             System.out.println("Time: " + (end-start));
         }
     }// end of the filter() method for Raster
+
+    public boolean isThreadSafe() {
+        return areSourcesThreadSafe();
+    }
 }
 
 
@@ -66,4 +66,7 @@ public class FilterAlphaRed extends AbstractRed {
         return wr;
     }
 
+    public boolean isThreadSafe() {
+        return areSourcesThreadSafe();
+    }
 }    
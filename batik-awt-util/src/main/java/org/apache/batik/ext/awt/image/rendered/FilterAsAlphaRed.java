@@ -150,4 +150,7 @@ public class FilterAsAlphaRed extends AbstractRed {
         return wr;
     }
 
+    public boolean isThreadSafe() {
+        return areSourcesThreadSafe();
+    }
 }    
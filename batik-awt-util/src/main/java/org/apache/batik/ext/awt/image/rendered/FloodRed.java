@@ -120,6 +120,10 @@ public class FloodRed extends AbstractRed {
 
         return wr;
     }
+
+    public boolean isThreadSafe() {
+        return areSourcesThreadSafe();
+    }
 }
 
 
@@ -201,4 +201,8 @@ public class FormatRed extends AbstractRed {
         throw new IllegalArgumentException
             ("Unsupported SampleModel Type");
     }
+
+    public boolean isThreadSafe() {
+        return areSourcesThreadSafe();
+    }
 }
@@ -575,4 +575,8 @@ public class GaussianBlurRed8Bit extends AbstractRed {
                                     masks[2], masks[3],
                                     true, DataBuffer.TYPE_INT);
     }
+
+    public boolean isThreadSafe() {
+        return areSourcesThreadSafe();
+    }
 }
@@ -334,4 +334,8 @@ public class MultiplyAlphaRed extends AbstractRed {
                                        Transparency.TRANSLUCENT,
                                        DataBuffer.TYPE_BYTE);
     }
+
+    public boolean isThreadSafe() {
+        return areSourcesThreadSafe();
+    }
 }
@@ -506,4 +506,8 @@ public class PadRed extends AbstractRed {
 
         return sm.createCompatibleSampleModel(w, h);
     }
+
+    public boolean isThreadSafe() {
+        return areSourcesThreadSafe();
+    }
 }
@@ -21,10 +21,12 @@ package org.apache.batik.ext.awt.image.rendered;
 import java.awt.Rectangle;
 import java.awt.image.ColorModel;
 import java.awt.image.DataBufferInt;
+import java.awt.image.Raster;
 import java.awt.image.SampleModel;
 import java.awt.image.SinglePixelPackedSampleModel;
 import java.awt.image.WritableRaster;
 
+import org.apache.batik.ext.awt.image.AbstractLight;
 import org.apache.batik.ext.awt.image.GraphicsUtil;
 import org.apache.batik.ext.awt.image.Light;
 import org.apache.batik.ext.awt.image.SpotLight;
@@ -159,30 +161,30 @@ public class SpecularLightingRed extends AbstractTiledRed{
 
         // System.out.println("Pixel: 0x" + Integer.toHexString(pixel));
 
-        final double[][][] NA = bumpMap.getNormalArray(minX, minY, w, h);
+        // The normals and the light vectors are computed one row at a
+        // time, in buffers reused for the whole tile.
+        final Raster normalData = bumpMap.getNormalData(minX, minY, w, h);
+        final double[] NR = new double[4*w];
 
         // System.out.println("Entering Specular Lighting");
         if (light instanceof SpotLight) {
             SpotLight slight = (SpotLight)light;
-            final double[][] LA = new double[w][4];
+            final double[] LR = new double[4*w];
             for(i=0; i<h; i++){
                 // System.out.println("Row: " + i);
-                final double [][] NR = NA[i];
-                slight.getLightRow4(x, y+i*scaleY, scaleX, w, NR, LA);
-                for (j=0; j<w; j++){
-                    // Get Normal 
-                    final double [] N = NR[j];
-                    
-                    // Get Light Vector
-                    final double [] L = LA[j];
-                    double vs = L[3];
+                bumpMap.getNormalRow(normalData, minX, minY+i, w, NR);
+                slight.getLightRow4(x, y+i*scaleY, scaleX, w, NR, LR);
+                for (j=0; j<4*w; j+=4){
+                    double vs = LR[j+3];
                     if (vs == 0) {
                         a = 0;
                     } else {
-                        L[2] += 1;
-                        norm = L[0]*L[0] + L[1]*L[1] + L[2]*L[2];
+                        final double L0 = LR[j];
+                        final double L1 = LR[j+1];
+                        final double L2 = LR[j+2] + 1;
+                        norm = L0*L0 + L1*L1 + L2*L2;
                         norm = Math.sqrt(norm);
-                        double dot = N[0]*L[0] + N[1]*L[1] + N[2]*L[2];
+                        double dot = NR[j]*L0 + NR[j+1]*L1 + NR[j+2]*L2;
                         vs = vs*Math.pow(dot/norm, specularExponent);
                         a = (int)(mult*vs + 0.5);
                         if ((a & 0xFFFFFF00) != 0)
@@ -193,22 +195,21 @@ public class SpecularLightingRed extends AbstractTiledRed{
                 p += adjust;
             }
         } else if(!light.isConstant()){
-            final double[][] LA = new double[w][4];
+            final double[] LR = new double[3*w];
             for(i=0; i<h; i++){
                 // System.out.println("Row: " + i);
-                final double [][] NR = NA[i];
-                light.getLightRow(x, y+i*scaleY, scaleX, w, NR, LA);
+                bumpMap.getNormalRow(normalData, minX, minY+i, w, NR);
+                AbstractLight.getLightRow
+                    (light, x, y+i*scaleY, scaleX, w, NR, LR);
                 for (j=0; j<w; j++){
-                    // Get Normal 
-                    final double [] N = NR[j];
-                    
-                    // Get Light Vector
-                    final double [] L = LA[j];
-                    L[2] += 1;
-                    norm = L[0]*L[0] + L[1]*L[1] + L[2]*L[2];
+                    final int n = 4*j;
+                    final int l = 3*j;
+                    final double L0 = LR[l];
+                    final double L1 = LR[l+1];
+                    final double L2 = LR[l+2] + 1;
+                    norm = L0*L0 + L1*L1 + L2*L2;
                     norm = Math.sqrt(norm);
-                    double dot = N[0]*L[0] + N[1]*L[1] + N[2]*L[2];
-                    // vs = vs/norm;
+                    double dot = NR[n]*L0 + NR[n+1]*L1 + NR[n+2]*L2;
                     norm = Math.pow(dot/norm, specularExponent);
                     a = (int)(mult*norm + 0.5);
                     if ((a & 0xFFFFFF00) != 0)
@@ -231,16 +232,16 @@ public class SpecularLightingRed extends AbstractTiledRed{
                 L[1] /= norm;
                 L[2] /= norm;
             }
+            final double L0 = L[0];
+            final double L1 = L[1];
+            final double L2 = L[2];
 
             for(i=0; i<h; i++){
-                final double [][] NR = NA[i];
-                for(j=0; j<w; j++){
-                    // Get Normal 
-                    final double [] N = NR[j];
-                    
-                    a = (int)(mult*Math.pow(N[0]*L[0] + N[1]*L[1] + N[2]*L[2], 
+                bumpMap.getNormalRow(normalData, minX, minY+i, w, NR);
+                for(j=0; j<4*w; j+=4){
+                    a = (int)(mult*Math.pow(NR[j]*L0 + NR[j+1]*L1 + NR[j+2]*L2,
                                             specularExponent) + 0.5);
-                    
+
                     if ((a & 0xFFFFFF00) != 0)
                         a = ((a & 0x80000000) != 0)?0:255;
 
@@ -251,4 +252,10 @@ public class SpecularLightingRed extends AbstractTiledRed{
         }
         // System.out.println("Exiting Specular Lighting");
     }
+
+    public boolean isThreadSafe() {
+        // The bump map texture is read by copyData, but is not one
+        // of the sources.
+        return areSourcesThreadSafe() && bumpMap.isThreadSafe();
+    }
 }
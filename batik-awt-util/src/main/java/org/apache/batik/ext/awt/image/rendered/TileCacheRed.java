@@ -83,4 +83,8 @@ public class TileCacheRed extends AbstractTiledRed {
             for (int x=tx0; x<=tx1; x++)
                 store.setTile(x, y, null);
     }
+
+    public boolean isThreadSafe() {
+        return areSourcesThreadSafe();
+    }
 }
@@ -25,7 +25,8 @@ import org.apache.batik.util.HaltingThread;
 /**
  * This is a Grid based implementation of the TileStore.
  * This makes it pretty quick, but it can use a fair amount of
- * memory for large tile grids.
+ * memory for large tile grids.  Tiles may be requested by several
+ * threads at once.
  *
  * @version $Id$
  */
@@ -59,32 +60,25 @@ public class TileGrid implements TileStore {
         if ((x<0) || (x>=xSz)) return;
         if ((y<0) || (y>=ySz)) return;
 
-        TileLRUMember [] row = rasters[y];
         TileLRUMember item;
         if (ras == null) {
             // Clearing entry.
-            if (row == null) return;
-            item = row[x];
-            if (item == null) return;
+            synchronized (this) {
+                TileLRUMember [] row = rasters[y];
+                if (row == null) return;
+                item = row[x];
+                if (item == null) return;
 
-            row[x] = null;
+                row[x] = null;
+            }
             cache.remove(item);
             return;
         }
 
-        if (row != null) {
-            item = row[x];
-            if (item == null) {
-                item = new TileLRUMember();
-                row[x] = item;
-            }
-        } else {
-            row = new TileLRUMember[xSz];
-            item = new TileLRUMember();
-            row[x] = item;
-            rasters[y] = row;
+        synchronized (this) {
+            item = getItem(x, y);
+            item.setRaster(ras);
         }
-        item.setRaster(ras);
 
         cache.add(item);
 
@@ -100,10 +94,13 @@ public class TileGrid implements TileStore {
         if ((x<0) || (x>=xSz)) return null;
         if ((y<0) || (y>=ySz)) return null;
 
-        TileLRUMember [] row = rasters[y];
-        if (row == null)
-            return null;
-        TileLRUMember item = row[x];
+        TileLRUMember item;
+        synchronized (this) {
+            TileLRUMember [] row = rasters[y];
+            if (row == null)
+                return null;
+            item = row[x];
+        }
         if (item == null)
             return null;
         Raster ret = item.retrieveRaster();
@@ -122,28 +119,18 @@ public class TileGrid implements TileStore {
                                       (y+minTileY) + ")");
         if (COUNT) synchronized (TileGrid.class) { requests++; }
 
-        Raster       ras  = null;
-        TileLRUMember [] row  = rasters[y];
-        TileLRUMember    item = null;
-        if (row != null) {
-            item = row[x];
-            if (item != null)
-                ras = item.retrieveRaster();
-            else {
-                item = new TileLRUMember();
-                row[x] = item;
-            }
-        } else {
-            row = new TileLRUMember[xSz];
-            rasters[y] = row;
-            item = new TileLRUMember();
-            row[x] = item;
+        TileLRUMember item;
+        synchronized (this) {
+            item = getItem(x, y);
         }
+        Raster ras = item.retrieveRaster();
 
         if (ras == null) {
             if (DEBUG) System.out.println("Generating: ("+(x+minTileX)+", "+
                                           (y+minTileY) + ")");
             if (COUNT) synchronized (TileGrid.class) { misses++; }
+            // The tile is computed without holding the lock, so
+            // several threads may compute it concurrently.
             ras = source.genTile(x+minTileX, y+minTileY);
 
             // In all likelyhood the contents of this tile is junk!
@@ -161,6 +148,24 @@ public class TileGrid implements TileStore {
         return ras;
     }
 
+    /**
+     * Returns the item of the given tile, creating it if needed.
+     * The caller must hold the lock of this grid.
+     */
+    private TileLRUMember getItem(int x, int y) {
+        TileLRUMember [] row = rasters[y];
+        if (row == null) {
+            row = new TileLRUMember[xSz];
+            rasters[y] = row;
+        }
+        TileLRUMember item = row[x];
+        if (item == null) {
+            item = new TileLRUMember();
+            row[x] = item;
+        }
+        return item;
+    }
+
     static int requests;
     static int misses;
 }
@@ -27,7 +27,8 @@ import  java.lang.ref.SoftReference;
  * an LRU Cache.  When this object drops out of the LRU cache it
  * removes it's hard reference to the tile, but retains it's soft
  * reference allowing for the recovery of the tile when the JVM is
- * not under memory pressure
+ * not under memory pressure.  It may be used by several threads
+ * computing tiles concurrently.
  *
  * @version $Id$
  */
@@ -44,12 +45,12 @@ public class TileLRUMember implements LRUCache.LRUObj {
             setRaster(ras);
         }
 
-        public void setRaster(Raster ras) {
+        public synchronized void setRaster(Raster ras) {
             hRaster = ras;
             wRaster = new SoftReference(ras);
         }
 
-        public boolean checkRaster() {
+        public synchronized boolean checkRaster() {
             if (hRaster != null) return true;
 
             if ((wRaster       != null) &&
@@ -58,7 +59,7 @@ public class TileLRUMember implements LRUCache.LRUObj {
             return false;
         }
 
-        public Raster retrieveRaster() {
+        public synchronized Raster retrieveRaster() {
             if (hRaster != null) return hRaster;
             if (wRaster == null) return null;
 
@@ -70,9 +71,9 @@ public class TileLRUMember implements LRUCache.LRUObj {
             return hRaster;
         }
 
-        public LRUCache.LRUNode lruGet()         { return myNode; }
-        public void lruSet(LRUCache.LRUNode nde) { myNode = nde; }
-        public void lruRemove()                  {
+        public synchronized LRUCache.LRUNode lruGet() { return myNode; }
+        public synchronized void lruSet(LRUCache.LRUNode nde) { myNode = nde; }
+        public synchronized void lruRemove() {
             myNode  = null;
             hRaster = null;
             if (DEBUG) System.out.println("Removing");
@@ -45,8 +45,11 @@ public class TileMap implements TileStore {
             public void cleared() {
                 if (DEBUG) System.err.println("Cleaned: " + this);
                 TileMap tm = (TileMap)parent.get();
-                if (tm != null)
-                    tm.rasters.remove(pt);
+                if (tm != null) {
+                    synchronized (tm.rasters) {
+                        tm.rasters.remove(pt);
+                    }
+                }
             }
         }
 
@@ -56,7 +59,7 @@ public class TileMap implements TileStore {
             this.pt     = pt;
         }
 
-        public void setRaster(Raster ras) {
+        public synchronized void setRaster(Raster ras) {
             hRaster = ras;
             wRaster = new RasterSoftRef(ras);
         }
@@ -76,20 +79,25 @@ public class TileMap implements TileStore {
 
         if (ras == null) {
             // Clearing entry...
-            Object o = rasters.remove(pt);
+            Object o;
+            synchronized (rasters) {
+                o = rasters.remove(pt);
+            }
             if (o != null)
                 cache.remove((TileMapLRUMember)o);
             return;
         }
 
-        Object o = rasters.get(pt);
         TileMapLRUMember item;
-        if (o == null) {
-            item = new TileMapLRUMember(this, pt, ras);
-            rasters.put(pt, item);
-        } else {
-            item = (TileMapLRUMember)o;
-            item.setRaster(ras);
+        synchronized (rasters) {
+            Object o = rasters.get(pt);
+            if (o == null) {
+                item = new TileMapLRUMember(this, pt, ras);
+                rasters.put(pt, item);
+            } else {
+                item = (TileMapLRUMember)o;
+                item.setRaster(ras);
+            }
         }
 
         cache.add(item);
@@ -100,7 +108,10 @@ public class TileMap implements TileStore {
     // If it is not currently in the cache it returns null.
     public Raster getTileNoCompute(int x, int y) {
         Point pt = new Point(x, y);
-        Object o = rasters.get(pt);
+        Object o;
+        synchronized (rasters) {
+            o = rasters.get(pt);
+        }
         if (o == null)
             return null;
 
@@ -118,7 +129,10 @@ public class TileMap implements TileStore {
 
         Raster       ras  = null;
         Point pt = new Point(x, y);
-        Object o = rasters.get(pt);
+        Object o;
+        synchronized (rasters) {
+            o = rasters.get(pt);
+        }
         TileMapLRUMember item = null;
         if (o != null) {
             item = (TileMapLRUMember)o;
@@ -137,11 +151,16 @@ public class TileMap implements TileStore {
             if (HaltingThread.hasBeenHalted())
                 return ras;
 
-            if (item != null)
-                item.setRaster(ras);
-            else  {
-                item = new TileMapLRUMember(this, pt, ras);
-                rasters.put(pt, item);
+            // The tile is computed without holding the lock, so
+            // another thread may have stored it in the meantime.
+            synchronized (rasters) {
+                item = (TileMapLRUMember)rasters.get(pt);
+                if (item != null)
+                    item.setRaster(ras);
+                else  {
+                    item = new TileMapLRUMember(this, pt, ras);
+                    rasters.put(pt, item);
+                }
             }
         }
 
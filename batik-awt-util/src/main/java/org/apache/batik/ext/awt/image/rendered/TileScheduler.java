@@ -0,0 +1,375 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.ext.awt.image.rendered;
+
+import java.util.LinkedList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.batik.util.HaltingThread;
+
+/**
+ * Computes independent parts of an image concurrently, on a pool of
+ * threads shared by the application.
+ *
+ * A batch of tasks is run by the thread that submits it (the owner
+ * of the batch) and by the threads of the pool. Images may only be
+ * computed this way if they are thread safe (see
+ * <code>AbstractRed.isThreadSafe</code>). Work that must stay on the
+ * owner thread, such as painting a GVT tree, is handed to it with
+ * <code>runConfined</code>: the owner executes it while waiting for
+ * the other tasks of the batch.
+ *
+ * The parts computed concurrently are the ones the sequential code
+ * computes one after the other (the blocks of tiles of an
+ * <code>AbstractTiledRed</code>, the tiles drawn by
+ * <code>GraphicsUtil</code>), since sources may produce slightly
+ * different pixels for different requests: the result does not
+ * depend on the parallelism.
+ *
+ * If the owner is a halted <code>HaltingThread</code>, the tasks not
+ * yet started are dropped and the tasks waiting for the owner are
+ * aborted, so that no partial result is put in a tile cache.
+ *
+ * @version $Id$
+ */
+public class TileScheduler {
+
+    /**
+     * The maximum number of threads computing a batch, including its
+     * owner.
+     */
+    private static int parallelism =
+        Runtime.getRuntime().availableProcessors();
+
+    /**
+     * The pool of threads, created on demand. Each batch uses at most
+     * <code>parallelism - 1</code> of them.
+     */
+    private static ExecutorService executor;
+
+    /**
+     * The batch the current thread is working for, if any.
+     */
+    private static final ThreadLocal currentBatch = new ThreadLocal();
+
+    private TileScheduler() {
+    }
+
+    /**
+     * Sets the maximum number of threads computing a batch. One
+     * disables concurrent computation.
+     */
+    public static synchronized void setParallelism(int n) {
+        if (n < 1) n = 1;
+        if (n == parallelism) return;
+        parallelism = n;
+        if (executor != null) {
+            executor.shutdown();
+            executor = null;
+        }
+    }
+
+    /**
+     * Returns the maximum number of threads computing a batch.
+     */
+    public static synchronized int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Returns true if the current thread is computing a task of a
+     * batch, for the batch or for its owner. Images must not hand out
+     * rasters shared with other threads, such as cached tiles, to
+     * such threads, since the receiver may modify them.
+     */
+    public static boolean isComputingConcurrently() {
+        return currentBatch.get() != null;
+    }
+
+    /**
+     * Returns true if the data of the given image may be computed by
+     * several threads from the current thread. Tasks of a batch do
+     * not start other batches.
+     */
+    public static boolean canComputeConcurrently(CachableRed cr) {
+        if (getParallelism() < 2)
+            return false;
+        Batch b = (Batch)currentBatch.get();
+        if ((b != null) && (b.owner != Thread.currentThread()))
+            return false;
+        return ((cr instanceof AbstractRed) &&
+                ((AbstractRed)cr).isThreadSafe());
+    }
+
+    /**
+     * Runs the given tasks, concurrently when the parallelism allows
+     * it, and returns when they have all completed or when the current
+     * thread has been halted. An exception thrown by a task is thrown
+     * again by this method.
+     */
+    public static void run(Runnable [] tasks) {
+        int n = tasks.length;
+        ExecutorService exec = (n > 1) ? getExecutor() : null;
+        if (exec == null) {
+            Thread t = Thread.currentThread();
+            for (int i = 0; i < n; i++) {
+                tasks[i].run();
+                if (HaltingThread.hasBeenHalted(t))
+                    return;
+            }
+            return;
+        }
+
+        final Batch batch = new Batch(tasks);
+        int helpers = Math.min(n, getParallelism()) - 1;
+        for (int i = 0; i < helpers; i++) {
+            exec.execute(new Runnable() {
+                    public void run() {
+                        batch.work();
+                    }
+                });
+        }
+
+        Object previous = currentBatch.get();
+        currentBatch.set(batch);
+        try {
+            batch.own();
+        } finally {
+            currentBatch.set(previous);
+        }
+    }
+
+    /**
+     * Runs the given work on the owner of the batch the current
+     * thread is working for, or on the current thread if it is not
+     * working for a batch. This method returns when the work has
+     * been done.
+     */
+    public static void runConfined(Runnable r) {
+        Batch b = (Batch)currentBatch.get();
+        if ((b == null) || (b.owner == Thread.currentThread())) {
+            r.run();
+            return;
+        }
+        b.runConfined(r);
+    }
+
+    /**
+     * Returns the pool of threads, or null if the parallelism is one.
+     */
+    protected static synchronized ExecutorService getExecutor() {
+        if (parallelism < 2)
+            return null;
+        if (executor == null) {
+            // Threads are created on demand: the workers of a batch
+            // may be waiting for its owner, which may have started
+            // another batch that needs workers of its own.
+            executor = new ThreadPoolExecutor
+                (0, Integer.MAX_VALUE, 30, TimeUnit.SECONDS,
+                 new SynchronousQueue(), new WorkerFactory());
+        }
+        return executor;
+    }
+
+    /**
+     * Creates the daemon threads of the pool.
+     */
+    protected static class WorkerFactory implements ThreadFactory {
+        protected int count;
+        public synchronized Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "TileScheduler-" + (++count));
+            t.setDaemon(true);
+            return t;
+        }
+    }
+
+    /**
+     * Thrown in the tasks waiting for a halted owner.
+     */
+    protected static class HaltedException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+    }
+
+    /**
+     * A set of tasks, and the work waiting for its owner.
+     */
+    protected static class Batch {
+
+        protected final Thread owner = Thread.currentThread();
+        protected final Runnable [] tasks;
+        protected int next;
+        protected int running;
+        protected boolean halted;
+        protected Throwable error;
+        protected final LinkedList confined = new LinkedList();
+
+        public Batch(Runnable [] tasks) {
+            this.tasks = tasks;
+        }
+
+        /**
+         * Returns the next task to run, or null if there is none.
+         */
+        protected synchronized Runnable claim() {
+            if (halted || (error != null) || (next == tasks.length))
+                return null;
+            running++;
+            return tasks[next++];
+        }
+
+        /**
+         * Records the completion of a claimed task.
+         */
+        protected synchronized void completed(Throwable t) {
+            running--;
+            if ((t != null) && (error == null) &&
+                !(t instanceof HaltedException))
+                error = t;
+            notifyAll();
+        }
+
+        /**
+         * Runs the tasks of the batch on a thread of the pool.
+         */
+        protected void work() {
+            currentBatch.set(this);
+            try {
+                Runnable task;
+                while ((task = claim()) != null) {
+                    Throwable t = null;
+                    try {
+                        task.run();
+                    } catch (Throwable th) {
+                        t = th;
+                    }
+                    completed(t);
+                }
+            } finally {
+                currentBatch.set(null);
+            }
+        }
+
+        /**
+         * Runs the tasks of the batch and the confined work on the
+         * owner, until all the tasks have completed.
+         */
+        protected void own() {
+            for (;;) {
+                Runnable job = null;
+                Runnable task = null;
+                synchronized (this) {
+                    if (!halted && HaltingThread.hasBeenHalted(owner)) {
+                        halted = true;
+                        // Abort the tasks waiting for the owner.
+                        notifyAll();
+                    }
+                    if (!halted && !confined.isEmpty()) {
+                        job = (Runnable)confined.removeFirst();
+                    } else {
+                        task = claim();
+                        if (task == null) {
+                            if (running == 0) {
+                                break;
+                            }
+                            try {
+                                // Also wake up to check the halt flag.
+                                wait(50);
+                            } catch (InterruptedException ie) {
+                                Thread.currentThread().interrupt();
+                                halted = true;
+                                notifyAll();
+                            }
+                            continue;
+                        }
+                    }
+                }
+                if (job != null) {
+                    job.run();
+                    continue;
+                }
+                Throwable t = null;
+                try {
+                    task.run();
+                } catch (Throwable th) {
+                    t = th;
+                }
+                completed(t);
+            }
+
+            if (error instanceof RuntimeException)
+                throw (RuntimeException)error;
+            if (error instanceof Error)
+                throw (Error)error;
+            if (error != null)
+                throw new RuntimeException(error);
+        }
+
+        /**
+         * Hands the given work to the owner and waits until it has
+         * been done.
+         */
+        protected void runConfined(final Runnable r) {
+            final boolean [] done = new boolean[1];
+            final Throwable [] thrown = new Throwable[1];
+            Runnable job = new Runnable() {
+                    public void run() {
+                        try {
+                            r.run();
+                        } catch (Throwable t) {
+                            thrown[0] = t;
+                        }
+                        synchronized (Batch.this) {
+                            done[0] = true;
+                            Batch.this.notifyAll();
+                        }
+                    }
+                };
+            boolean interrupted = false;
+            try {
+                synchronized (this) {
+                    if (halted)
+                        throw new HaltedException();
+                    confined.addLast(job);
+                    notifyAll();
+                    while (!done[0]) {
+                        if (halted && confined.remove(job))
+                            throw new HaltedException();
+                        try {
+                            wait();
+                        } catch (InterruptedException ie) {
+                            interrupted = true;
+                        }
+                    }
+                }
+            } finally {
+                if (interrupted)
+                    Thread.currentThread().interrupt();
+            }
+            Throwable t = thrown[0];
+            if (t instanceof RuntimeException)
+                throw (RuntimeException)t;
+            if (t instanceof Error)
+                throw (Error)t;
+        }
+    }
+}
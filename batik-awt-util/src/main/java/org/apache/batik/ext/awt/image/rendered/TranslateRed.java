@@ -106,4 +106,8 @@ public class TranslateRed extends AbstractRed {
 
         return wr;
     }
+
+    public boolean isThreadSafe() {
+        return areSourcesThreadSafe();
+    }
 }
@@ -20,6 +20,7 @@
 package org.apache.batik.ext.awt.image.rendered;
 
 import java.awt.Rectangle;
+import java.awt.RenderingHints;
 import java.awt.color.ColorSpace;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.Rectangle2D;
@@ -29,6 +30,10 @@ import java.awt.image.DataBufferInt;
 import java.awt.image.DirectColorModel;
 import java.awt.image.SinglePixelPackedSampleModel;
 import java.awt.image.WritableRaster;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 /**
  * This class creates a RenderedImage in conformance to the one
  * defined for the feTurbulence filter of the SVG specification.  What
@@ -58,6 +63,12 @@ import java.awt.image.WritableRaster;
  * The S curve function get's it's name because it looks a bit like as
  * 'S' from 0-&gt;1.
  *
+ * The lattice only depends on the seed, so it is shared by the
+ * instances using the same seed.  When the rendering hints ask for
+ * speed, unstitched four channel noise is computed a row at a time
+ * with float arithmetic; the result then differs from the default one
+ * by at most <code>FAST_TOLERANCE</code> code values per channel.
+ *
  * @author     <a href="mailto:vincent.hardy@eng.sun.com">Vincent Hardy</a>
  * @author     <a href="mailto:DeWeese@apache.org">Thomas DeWeese</a>
  * @version $Id$ */
@@ -210,8 +221,49 @@ public final class TurbulencePatternRed extends AbstractRed {
     private static final int BSize = 0x100;
     private static final int BM = 0xff;
     private static final double PerlinN = 0x1000;
-    private final int[] latticeSelector = new int[BSize + 1];
-    private final double[] gradient = new double[(BSize+1)*8];
+    private final int[] latticeSelector;
+    private final double[] gradient;
+
+    /**
+     * The gradients as floats, for the row engine.
+     */
+    private final float[] gradientF;
+
+    /**
+     * The maximum difference, in code values, between the channels
+     * computed by the row engine and by the default one.
+     */
+    public static final int FAST_TOLERANCE = 1;
+
+    /**
+     * True if the noise is computed by rows with float arithmetic.
+     */
+    private boolean fastNoise;
+
+    /**
+     * The number of lattices kept in the cache.
+     */
+    private static final int LATTICE_CACHE_SIZE = 16;
+
+    /**
+     * The lattices of the recently used seeds, most recent last.
+     */
+    private static final Map latticeCache =
+        new LinkedHashMap(LATTICE_CACHE_SIZE, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry eldest) {
+                return size() > LATTICE_CACHE_SIZE;
+            }
+        };
+
+    /**
+     * The lattice selector and gradients generated from a seed. They
+     * are shared, so they must not be modified.
+     */
+    private static final class Lattice {
+        final int[] latticeSelector = new int[BSize + 1];
+        final double[] gradient = new double[(BSize+1)*8];
+        final float[] gradientF = new float[(BSize+1)*8];
+    }
 
     public double getBaseFrequencyX(){
         return baseFrequencyX;
@@ -256,7 +308,30 @@ public final class TurbulencePatternRed extends AbstractRed {
         return result;
     }
 
-    private void initLattice(int seed) {
+    /**
+     * Returns the lattice for the given seed, from the cache when
+     * possible.
+     */
+    private Lattice getLattice(int seed) {
+        Integer key = new Integer(seed);
+        Lattice l;
+        synchronized (latticeCache) {
+            l = (Lattice)latticeCache.get(key);
+        }
+        if (l == null) {
+            l = new Lattice();
+            initLattice(seed, l.latticeSelector, l.gradient);
+            for (int i = 0; i < l.gradient.length; i++)
+                l.gradientF[i] = (float)l.gradient[i];
+            synchronized (latticeCache) {
+                latticeCache.put(key, l);
+            }
+        }
+        return l;
+    }
+
+    private void initLattice(int seed, int[] latticeSelector,
+                             double[] gradient) {
         double u, v, s;
         int i, j, k, s1, s2;
         seed = setupSeed(seed);
@@ -1038,6 +1113,267 @@ public final class TurbulencePatternRed extends AbstractRed {
         }
     }
 
+    /**
+     * Generates a row of four channel noise with float arithmetic.
+     * Each octave is computed for the whole row before the next one,
+     * and the sums of the channels are kept in separate parts of
+     * <code>sums</code>, so that the inner loop only does arithmetic
+     * and lattice lookups.
+     * @param destPixels The pixels to write to.
+     * @param dp The index of the first pixel of the row.
+     * @param w The width of the row.
+     * @param rowX The x coordinates of the pixels, multiplied by the
+     *        base frequency. They are modified.
+     * @param rowY The y coordinates of the pixels, multiplied by the
+     *        base frequency. They are modified.
+     * @param sums array used to avoid reallocating the sums for each row.
+     */
+    private final void noiseRow_4(final int[] destPixels, final int dp,
+                                  final int w,
+                                  final double[] rowX, final double[] rowY,
+                                  final float[] sums) {
+        final int[] latticeSelector = this.latticeSelector;
+        final float[] g = gradientF;
+        final boolean fractal = isFractalNoise;
+        final int s1 = w, s2 = 2*w, s3 = 3*w;
+        float ratio;
+        if (fractal) {
+            Arrays.fill(sums, 0, 4*w, 127.5f);
+            ratio = 127.5f;
+        } else {
+            Arrays.fill(sums, 0, 4*w, 0f);
+            ratio = 255f;
+        }
+
+        for (int nOctave = numOctaves; nOctave > 0; nOctave--){
+            for (int x = 0; x < w; x++) {
+                double px = rowX[x]+PerlinN;
+                double py = rowY[x]+PerlinN;
+                rowX[x] *= 2;
+                rowY[x] *= 2;
+
+                int b0 = ((int)px)&BM;
+                int i = latticeSelector[b0 ];
+                int j = latticeSelector[b0+1];
+
+                final float rx0 = (float)(px - (int)px);
+                final float rx1 = rx0 - 1f;
+                final float sx  = rx0 * rx0 * (3 - 2 * rx0);
+
+                b0 = ((int)py) & BM;
+                final int b1 = ((j + b0)&BM)<<3;
+                b0 = ((i + b0)&BM)<<3;
+
+                final float ry0 = (float)(py - (int)py);
+                final float ry1 = ry0 - 1f;
+                final float sy  = ry0 * ry0 * (3 - 2 * ry0);
+
+                float u, v, n;
+                u = rx0*g[b0+0] + ry0*g[b0+1];
+                u += sx*(rx1*g[b1+0] + ry0*g[b1+1] - u);
+                v = rx0*g[b0+8+0] + ry1*g[b0+8+1];
+                v += sx*(rx1*g[b1+8+0] + ry1*g[b1+8+1] - v);
+                n = u + sy*(v - u);
+                if (!fractal && (n < 0)) n = -n;
+                sums[x] += n*ratio;
+
+                u = rx0*g[b0+2] + ry0*g[b0+3];
+                u += sx*(rx1*g[b1+2] + ry0*g[b1+3] - u);
+                v = rx0*g[b0+8+2] + ry1*g[b0+8+3];
+                v += sx*(rx1*g[b1+8+2] + ry1*g[b1+8+3] - v);
+                n = u + sy*(v - u);
+                if (!fractal && (n < 0)) n = -n;
+                sums[s1+x] += n*ratio;
+
+                u = rx0*g[b0+4] + ry0*g[b0+5];
+                u += sx*(rx1*g[b1+4] + ry0*g[b1+5] - u);
+                v = rx0*g[b0+8+4] + ry1*g[b0+8+5];
+                v += sx*(rx1*g[b1+8+4] + ry1*g[b1+8+5] - v);
+                n = u + sy*(v - u);
+                if (!fractal && (n < 0)) n = -n;
+                sums[s2+x] += n*ratio;
+
+                u = rx0*g[b0+6] + ry0*g[b0+7];
+                u += sx*(rx1*g[b1+6] + ry0*g[b1+7] - u);
+                v = rx0*g[b0+8+6] + ry1*g[b0+8+7];
+                v += sx*(rx1*g[b1+8+6] + ry1*g[b1+8+7] - v);
+                n = u + sy*(v - u);
+                if (!fractal && (n < 0)) n = -n;
+                sums[s3+x] += n*ratio;
+            }
+            ratio *= .5f;
+        }
+
+        packRow_4(destPixels, dp, w, sums);
+    }
+
+    /**
+     * The part of the noise computation that only depends on the x
+     * coordinate, for a row of pixels and all the octaves.
+     */
+    private final class LatticeColumns {
+        final int w;
+        final int[] i, j;
+        final float[] rx0, sx;
+
+        LatticeColumns(int w, int numOctaves) {
+            this.w = w;
+            i = new int[w*numOctaves];
+            j = new int[w*numOctaves];
+            rx0 = new float[w*numOctaves];
+            sx = new float[w*numOctaves];
+        }
+
+        /**
+         * Sets the column for the given pixel.
+         * @param x The index of the pixel in the row.
+         * @param pointX The x coordinate of the pixel, multiplied by
+         *        the base frequency.
+         */
+        void set(int x, double pointX) {
+            for (int k = x; k < i.length; k += w) {
+                double px = pointX+PerlinN;
+                int b0 = ((int)px)&BM;
+                i[k] = latticeSelector[b0 ];
+                j[k] = latticeSelector[b0+1];
+                float r = (float)(px - (int)px);
+                rx0[k] = r;
+                sx[k] = r * r * (3 - 2 * r);
+                pointX *= 2;
+            }
+        }
+    }
+
+    /**
+     * Generates a row of four channel noise with float arithmetic,
+     * when the y coordinate is the same for all the pixels of the row.
+     * @param destPixels The pixels to write to.
+     * @param dp The index of the first pixel of the row.
+     * @param w The width of the row.
+     * @param cols The x dependent part of the computation.
+     * @param pointY The y coordinate of the row, multiplied by the
+     *        base frequency.
+     * @param sums array used to avoid reallocating the sums for each row.
+     */
+    private final void noiseRowAligned_4(final int[] destPixels,
+                                         final int dp, final int w,
+                                         final LatticeColumns cols,
+                                         double pointY,
+                                         final float[] sums) {
+        final float[] g = gradientF;
+        final int[] ci = cols.i, cj = cols.j;
+        final float[] crx0 = cols.rx0, csx = cols.sx;
+        final boolean fractal = isFractalNoise;
+        final int s1 = w, s2 = 2*w, s3 = 3*w;
+        float ratio;
+        if (fractal) {
+            Arrays.fill(sums, 0, 4*w, 127.5f);
+            ratio = 127.5f;
+        } else {
+            Arrays.fill(sums, 0, 4*w, 0f);
+            ratio = 255f;
+        }
+
+        for (int k = 0, nOctave = numOctaves; nOctave > 0;
+             nOctave--, k += w){
+            final double py = pointY+PerlinN;
+            final int by = ((int)py) & BM;
+            final float ry0 = (float)(py - (int)py);
+            final float ry1 = ry0 - 1f;
+            final float sy  = ry0 * ry0 * (3 - 2 * ry0);
+
+            // Within a lattice cell, the noise of a channel is
+            //   rx0*p + q + sx*(rx0*r + t)
+            // where p, q, r and t only depend on the cell and the row.
+            // Neighboring pixels are usually in the same cell, so they
+            // are only computed when it changes.
+            final float sy0 = 1 - sy;
+            int lb0 = -1, lb1 = -1;
+            float p0 = 0, p1 = 0, p2 = 0, p3 = 0, q0 = 0, q1 = 0, q2 = 0,
+                q3 = 0, r0 = 0, r1 = 0, r2 = 0, r3 = 0, t0 = 0, t1 = 0,
+                t2 = 0, t3 = 0;
+            for (int x = 0; x < w; x++) {
+                final float rx0 = crx0[k+x];
+                final float sx  = csx[k+x];
+                final int b0 = ((ci[k+x] + by)&BM)<<3;
+                final int b1 = ((cj[k+x] + by)&BM)<<3;
+                if ((b0 != lb0) || (b1 != lb1)) {
+                    lb0 = b0;
+                    lb1 = b1;
+                    p0 = sy0*g[b0+0]   + sy*g[b0+8+0];
+                    q0 = sy0*ry0*g[b0+1] + sy*ry1*g[b0+8+1];
+                    r0 = sy0*(g[b1+0] - g[b0+0])
+                        + sy*(g[b1+8+0] - g[b0+8+0]);
+                    t0 = sy0*(ry0*(g[b1+1] - g[b0+1]) - g[b1+0])
+                        + sy*(ry1*(g[b1+8+1] - g[b0+8+1]) - g[b1+8+0]);
+                    p1 = sy0*g[b0+2]   + sy*g[b0+8+2];
+                    q1 = sy0*ry0*g[b0+3] + sy*ry1*g[b0+8+3];
+                    r1 = sy0*(g[b1+2] - g[b0+2])
+                        + sy*(g[b1+8+2] - g[b0+8+2]);
+                    t1 = sy0*(ry0*(g[b1+3] - g[b0+3]) - g[b1+2])
+                        + sy*(ry1*(g[b1+8+3] - g[b0+8+3]) - g[b1+8+2]);
+                    p2 = sy0*g[b0+4]   + sy*g[b0+8+4];
+                    q2 = sy0*ry0*g[b0+5] + sy*ry1*g[b0+8+5];
+                    r2 = sy0*(g[b1+4] - g[b0+4])
+                        + sy*(g[b1+8+4] - g[b0+8+4]);
+                    t2 = sy0*(ry0*(g[b1+5] - g[b0+5]) - g[b1+4])
+                        + sy*(ry1*(g[b1+8+5] - g[b0+8+5]) - g[b1+8+4]);
+                    p3 = sy0*g[b0+6]   + sy*g[b0+8+6];
+                    q3 = sy0*ry0*g[b0+7] + sy*ry1*g[b0+8+7];
+                    r3 = sy0*(g[b1+6] - g[b0+6])
+                        + sy*(g[b1+8+6] - g[b0+8+6]);
+                    t3 = sy0*(ry0*(g[b1+7] - g[b0+7]) - g[b1+6])
+                        + sy*(ry1*(g[b1+8+7] - g[b0+8+7]) - g[b1+8+6]);
+                }
+
+                float n;
+                n = rx0*p0 + q0 + sx*(rx0*r0 + t0);
+                if (!fractal && (n < 0)) n = -n;
+                sums[x] += n*ratio;
+                n = rx0*p1 + q1 + sx*(rx0*r1 + t1);
+                if (!fractal && (n < 0)) n = -n;
+                sums[s1+x] += n*ratio;
+                n = rx0*p2 + q2 + sx*(rx0*r2 + t2);
+                if (!fractal && (n < 0)) n = -n;
+                sums[s2+x] += n*ratio;
+                n = rx0*p3 + q3 + sx*(rx0*r3 + t3);
+                if (!fractal && (n < 0)) n = -n;
+                sums[s3+x] += n*ratio;
+            }
+            ratio *= .5f;
+            pointY *= 2;
+        }
+
+        packRow_4(destPixels, dp, w, sums);
+    }
+
+    /**
+     * Clamps the channel sums of a row and packs them in ARGB pixels.
+     */
+    private static void packRow_4(final int[] destPixels, final int dp,
+                                  final int w, final float[] sums) {
+        final int s1 = w, s2 = 2*w, s3 = 3*w;
+        for (int x = 0; x < w; x++) {
+            int i, j;
+            i = (int)sums[x];
+            if ((i & 0xFFFFFF00) == 0) j  = i<<16;
+            else                       j  = ((i & 0x80000000) != 0)?0:0xFF0000;
+
+            i = (int)sums[s1+x];
+            if ((i & 0xFFFFFF00) == 0) j |= i<<8;
+            else                       j |= ((i & 0x80000000) != 0)?0:0xFF00;
+
+            i = (int)sums[s2+x];
+            if ((i & 0xFFFFFF00) == 0) j |= i;
+            else                       j |= ((i & 0x80000000) != 0)?0:0xFF;
+
+            i = (int)sums[s3+x];
+            if ((i & 0xFFFFFF00) == 0) j |= i<<24;
+            else                       j |= ((i & 0x80000000) != 0)?0:0xFF000000;
+            destPixels[dp+x] = j;
+        }
+    }
+
     /**
      * Generates a Perlin noise pattern into dest Raster.
      * @param dest Raster to fill with the pattern.
@@ -1086,7 +1422,41 @@ public final class TurbulencePatternRed extends AbstractRed {
         double point_0 = p[0];
         double point_1 = p[1];
 
-        if(isFractalNoise){
+        if (fastNoise && (tx1 == 0) && (ty[0] == 0)) {
+            // The x coordinates are the same for all the rows, and
+            // the y coordinate is the same along a row.
+            LatticeColumns cols = new LatticeColumns(w, numOctaves);
+            double px = point_0;
+            for(int x=0; x<w; x++){
+                cols.set(x, px * baseFrequencyX);
+                px += tx0;
+            }
+            final float[] sums = new float[4*w];
+            for(i=0; i<h; i++){
+                noiseRowAligned_4(destPixels, dp, w, cols,
+                                  point_1 * baseFrequencyY, sums);
+                point_1 += ty[1];
+                dp += w + dstAdjust;
+            }
+        }
+        else if (fastNoise) {
+            final double[] rowX = new double[w];
+            final double[] rowY = new double[w];
+            final float[] sums = new float[4*w];
+            for(i=0; i<h; i++){
+                for(int x=0; x<w; x++){
+                    rowX[x] = point_0 * baseFrequencyX;
+                    rowY[x] = point_1 * baseFrequencyY;
+                    point_0 += tx0;
+                    point_1 += tx1;
+                }
+                noiseRow_4(destPixels, dp, w, rowX, rowY, sums);
+                point_0 += ty0;
+                point_1 += ty1;
+                dp += w + dstAdjust;
+            }
+        }
+        else if(isFractalNoise){
             if(stitchInfo == null){
                 if (channels.length == 4) {
                     for(i=0; i<h; i++){
@@ -1227,6 +1597,40 @@ public final class TurbulencePatternRed extends AbstractRed {
                                 Rectangle       devRect,
                                 ColorSpace      cs,
                                 boolean         alpha) {
+        this(baseFrequencyX, baseFrequencyY, numOctaves, seed,
+             isFractalNoise, tile, txf, devRect, cs, alpha, null);
+    }
+
+    /**
+     * @param baseFrequencyX x-axis base frequency for the noise
+     * function along the x-axis
+     * @param baseFrequencyY y-axis base frequency for the noise
+     *        function along the x-axis
+     * @param numOctaves number of octaves in the noise
+     *        function. Positive integral value.
+     * @param seed starting number for the pseudo random number generator
+     * @param isFractalNoise defines whether the filter performs a
+     *        fractal noise or a turbulence function.
+     * @param tile defines the tile size. May be null if stitchTiles
+     *        is false. Otherwise, should not be null.
+     * @param txf The affine transform from device to user space.
+     * @param cs The Colorspace to output.
+     * @param alpha True if the data should have an alpha channel.
+     * @param hints The rendering hints. The noise is computed with
+     *        float arithmetic if KEY_RENDERING is VALUE_RENDER_SPEED.
+     *        May be null.
+     */
+    public TurbulencePatternRed(double baseFrequencyX,
+                                double baseFrequencyY,
+                                int     numOctaves,
+                                int     seed,
+                                boolean isFractalNoise,
+                                Rectangle2D tile,
+                                AffineTransform txf,
+                                Rectangle       devRect,
+                                ColorSpace      cs,
+                                boolean         alpha,
+                                RenderingHints  hints) {
         this.baseFrequencyX = baseFrequencyX;
         this.baseFrequencyY = baseFrequencyY;
         this.seed = seed;
@@ -1326,7 +1730,15 @@ public final class TurbulencePatternRed extends AbstractRed {
             //                     " maxLatticeY = " + maxLatticeY);
         }
 
-        initLattice(seed);
+        Lattice l = getLattice(seed);
+        latticeSelector = l.latticeSelector;
+        gradient = l.gradient;
+        gradientF = l.gradientF;
+
+        fastNoise = ((stitchInfo == null) && (channels.length == 4) &&
+                     (hints != null) &&
+                     RenderingHints.VALUE_RENDER_SPEED.equals
+                     (hints.get(RenderingHints.KEY_RENDERING)));
 
         ColorModel cm;
         if (alpha)
@@ -1344,4 +1756,7 @@ public final class TurbulencePatternRed extends AbstractRed {
              0, 0, null);
     }
 
+    public boolean isThreadSafe() {
+        return areSourcesThreadSafe();
+    }
 }
@@ -0,0 +1,608 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.ext.awt.image.rendered;
+
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.BufferedImageOp;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.Raster;
+import java.awt.image.RasterOp;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.util.Arrays;
+
+import org.apache.batik.ext.awt.image.GraphicsUtil;
+
+/**
+ * An implementation of the SVG feMorphology filter whose cost per
+ * pixel does not depend on the radius.
+ *
+ * Like <code>MorphologyOp</code>, the operation is done in two passes,
+ * along the rows and then along the columns, and the kernel is clipped
+ * to the image. Each pass
+ * uses the van Herk/Gil-Werman algorithm: a line is cut in segments
+ * as long as the kernel, the running max/min of each segment is
+ * computed from its start and from its end, and the max/min under the
+ * kernel is the better of two of these values.
+ *
+ * This operation works on rasters with 8 bit bands, either packed in
+ * a <code>DataBufferInt</code> (<code>SinglePixelPackedSampleModel</code>)
+ * or stored in a <code>DataBufferByte</code>
+ * (<code>ComponentSampleModel</code>). The samples of four bands are
+ * processed at once, as the bytes of an int.
+ *
+ * @version $Id$
+ */
+public class VanHerkMorphologyOp implements BufferedImageOp, RasterOp {
+    /**
+     * The radius of the operation on X axis
+     */
+    private final int radiusX;
+
+    /**
+     * The radius of the operation on Y axis
+     */
+    private final int radiusY;
+
+    /**
+     * Determine whether to do the dilation or erosion operation.
+     * Will do dilation when it's true and erosion when it's false.
+     */
+    private final boolean doDilation;
+
+    /**
+     * @param radiusX defines the radius of filter operation on X-axis.
+     *        Should be greater than zero.
+     * @param radiusY defines the radius of filter operation on Y-axis.
+     *        Should be greater than zero.
+     * @param doDilation defines whether to do dilation or erosion
+     *        operation. Will do dilation when the value is true, erosion
+     *        when false.
+     */
+    public VanHerkMorphologyOp(int radiusX, int radiusY, boolean doDilation){
+        if (radiusX<=0 || radiusY<=0){
+            throw new IllegalArgumentException( "The radius of X-axis or Y-axis should not be Zero or Negatives." );
+        }
+        this.radiusX = radiusX;
+        this.radiusY = radiusY;
+        this.doDilation = doDilation;
+    }
+
+    public Rectangle2D getBounds2D(Raster src){
+        checkCompatible(src.getSampleModel());
+        return new Rectangle(src.getMinX(), src.getMinY(),
+                             src.getWidth(), src.getHeight());
+    }
+
+    public Rectangle2D getBounds2D(BufferedImage src){
+        return new Rectangle(0, 0, src.getWidth(), src.getHeight());
+    }
+
+    public Point2D getPoint2D(Point2D srcPt, Point2D destPt){
+        // This operation does not affect pixel location
+        if(destPt==null)
+            destPt = new Point2D.Float();
+        destPt.setLocation(srcPt.getX(), srcPt.getY());
+        return destPt;
+    }
+
+    public RenderingHints getRenderingHints(){
+        return null;
+    }
+
+    /**
+     * Returns true if the given sample model stores 8 bit bands in a
+     * way this operation can process.
+     */
+    public static boolean isCompatible(SampleModel model){
+        if (model instanceof SinglePixelPackedSampleModel) {
+            if ((model.getDataType() != DataBuffer.TYPE_INT) ||
+                (model.getNumBands() > 4))
+                return false;
+            int [] sizes = model.getSampleSize();
+            for (int i=0; i<sizes.length; i++) {
+                if (sizes[i] > 8)
+                    return false;
+            }
+            return true;
+        }
+        if (model instanceof ComponentSampleModel) {
+            return model.getDataType() == DataBuffer.TYPE_BYTE;
+        }
+        return false;
+    }
+
+    /**
+     * Returns true if the given image can be processed as is: its
+     * samples are compatible and, if it has alpha, premultiplied.
+     */
+    private boolean isCompatible(BufferedImage bi){
+        ColorModel cm = bi.getColorModel();
+        if (!isCompatible(bi.getSampleModel()))
+            return false;
+        return !cm.hasAlpha() || cm.isAlphaPremultiplied();
+    }
+
+    private void checkCompatible(SampleModel model){
+        if (!isCompatible(model))
+            throw new IllegalArgumentException
+                ("VanHerkMorphologyOp only works with Rasters using 8 bit " +
+                 "bands, packed in a DataBufferInt or stored in a " +
+                 "DataBufferByte");
+    }
+
+    public WritableRaster createCompatibleDestRaster(Raster src){
+        checkCompatible(src.getSampleModel());
+        // Src Raster is OK: create a similar Raster for destination.
+        return src.createCompatibleWritableRaster();
+    }
+
+    public BufferedImage createCompatibleDestImage(BufferedImage src,
+                                                   ColorModel destCM){
+        if(destCM==null)
+            destCM = src.getColorModel();
+
+        WritableRaster wr;
+        wr = destCM.createCompatibleWritableRaster(src.getWidth(),
+                                                   src.getHeight());
+        checkCompatible(wr.getSampleModel());
+
+        return new BufferedImage(destCM, wr,
+                                 destCM.isAlphaPremultiplied(), null);
+    }
+
+    public WritableRaster filter(Raster src, WritableRaster dest){
+        if (src == null)
+            throw new NullPointerException("Source raster should not be null");
+        checkCompatible(src.getSampleModel());
+        if (dest == null)
+            dest = createCompatibleDestRaster(src);
+        else
+            checkCompatible(dest.getSampleModel());
+
+        if ((src.getWidth()  != dest.getWidth())  ||
+            (src.getHeight() != dest.getHeight()) ||
+            (src.getNumBands() != dest.getNumBands()))
+            throw new IllegalArgumentException
+                ("Source and destination rasters should have the same " +
+                 "size and number of bands");
+
+        if ((src.getWidth() == 0) || (src.getHeight() == 0))
+            return dest;
+
+        // The first pass reads the source and writes the destination,
+        // the second one works in place in the destination.
+        PixelAccess srcAccess = createAccess(src);
+        PixelAccess dstAccess = createAccess(dest);
+        filterRows(srcAccess, dstAccess);
+        filterColumns(dstAccess);
+        return dest;
+    }
+
+    /**
+     * This implementation of filter does the morphology operation
+     * on a premultiplied alpha image, like <code>MorphologyOp</code>.
+     */
+    public BufferedImage filter(BufferedImage src, BufferedImage dest){
+        if (src == null)
+            throw new NullPointerException("Source image should not be null");
+
+        BufferedImage origSrc   = src;
+        BufferedImage finalDest = dest;
+
+        if (!isCompatible(src.getSampleModel())) {
+            src = new BufferedImage(src.getWidth(), src.getHeight(),
+                                    BufferedImage.TYPE_INT_ARGB_PRE);
+            GraphicsUtil.copyData(origSrc, src);
+        }
+        else if (!isCompatible(src)) {
+            // Get a Premultipled CM.
+            ColorModel    srcCM, srcCMPre;
+            srcCM    = src.getColorModel();
+            srcCMPre = GraphicsUtil.coerceColorModel(srcCM, true);
+
+            src = new BufferedImage(srcCMPre, src.getRaster(),
+                                    true, null);
+
+            GraphicsUtil.copyData(origSrc, src);
+        }
+
+        if (dest == null) {
+            dest = createCompatibleDestImage(src, null);
+            finalDest = dest;
+        } else if (!isCompatible(dest.getSampleModel())) {
+            dest = createCompatibleDestImage(src, null);
+        } else if (!isCompatible(dest)) {
+            // Get a Premultipled CM.
+            ColorModel    dstCM, dstCMPre;
+            dstCM    = dest.getColorModel();
+            dstCMPre = GraphicsUtil.coerceColorModel(dstCM, true);
+
+            dest = new BufferedImage(dstCMPre, finalDest.getRaster(),
+                                     true, null);
+        }
+
+        if (src.getRaster().getNumBands() != dest.getRaster().getNumBands())
+            dest = createCompatibleDestImage(src, null);
+
+        filter(src.getRaster(), dest.getRaster());
+
+        // Check to see if we need to 'fix' our source (divide out alpha).
+        if ((src.getRaster() == origSrc.getRaster()) &&
+            (src.isAlphaPremultiplied() != origSrc.isAlphaPremultiplied())) {
+            // Copy our source back the way it was...
+            GraphicsUtil.copyData(src, origSrc);
+        }
+
+        // Check to see if we need to store our result...
+        if ((dest.getRaster() != finalDest.getRaster()) ||
+            (dest.isAlphaPremultiplied() != finalDest.isAlphaPremultiplied())){
+            // Coerce our source back the way it was requested...
+            GraphicsUtil.copyData(dest, finalDest);
+        }
+
+        return finalDest;
+    }
+
+    /**
+     * Computes the rows of dst from the rows of src.
+     */
+    private void filterRows(PixelAccess src, PixelAccess dst){
+        final int w = src.width;
+        final int h = src.height;
+        // Clipped to the image, a kernel wider than twice the width
+        // covers the whole row for every pixel.
+        final int r = Math.min(radiusX, w-1);
+
+        int [][] lines = createLines(src.nLines, w, r);
+        int [] fwd = new int[w+2*r];
+
+        for (int y=0; y<h; y++) {
+            src.getLine(src.offset + y*src.scanStride, src.pixelStride,
+                        w, r, lines);
+            for (int l=0; l<lines.length; l++)
+                extremum(lines[l], w, r, fwd);
+            dst.setLine(dst.offset + y*dst.scanStride, dst.pixelStride,
+                        w, r, lines);
+        }
+    }
+
+    /**
+     * Computes the columns of the given pixels in place.
+     */
+    private void filterColumns(PixelAccess pa){
+        final int w = pa.width;
+        final int h = pa.height;
+        final int r = Math.min(radiusY, h-1);
+
+        int [][] lines = createLines(pa.nLines, h, r);
+        int [] fwd = new int[h+2*r];
+
+        for (int x=0; x<w; x++) {
+            int col = pa.offset + x*pa.pixelStride;
+            pa.getLine(col, pa.scanStride, h, r, lines);
+            for (int l=0; l<lines.length; l++)
+                extremum(lines[l], h, r, fwd);
+            pa.setLine(col, pa.scanStride, h, r, lines);
+        }
+    }
+
+    /**
+     * Creates the lines holding <code>n</code> pixels padded with
+     * <code>r</code> values at each end that do not change the max
+     * (dilation) or min (erosion).
+     */
+    private int [][] createLines(int nLines, int n, int r){
+        int [][] lines = new int[nLines][n+2*r];
+        if (!doDilation) {
+            for (int l=0; l<nLines; l++)
+                Arrays.fill(lines[l], 0xffffffff);
+        }
+        return lines;
+    }
+
+    /**
+     * Replaces the <code>n</code> values of <code>line</code>, which
+     * start at index <code>r</code>, with the max (dilation) or min
+     * (erosion) of the values under a kernel of radius <code>r</code>
+     * centered on them. Each value holds up to four 8 bit samples,
+     * processed independently. The kernel is clipped to the values
+     * thanks to the padding of the line.
+     *
+     * The padded line is cut in segments of <code>2*r+1</code> values.
+     * <code>fwd[i]</code> is the extremum from the start of the segment
+     * of <code>i</code> up to <code>i</code>, and the extremum from
+     * <code>i</code> to the end of its segment is computed backward.
+     * The kernel of padded values <code>i</code> to <code>i+2*r</code>
+     * spans at most two segments, so its extremum is the better of
+     * these values for <code>i</code> and for <code>i+2*r</code>. The
+     * results can be stored in place since the kernel of index
+     * <code>i</code> is stored at <code>i+r</code>.
+     *
+     * @param fwd a work array of at least <code>n+2*r</code> values
+     */
+    private void extremum(int [] line, int n, int r, int [] fwd){
+        final int len = n + 2*r;
+        final int k   = 2*r + 1;
+        final int last = ((len-1)/k)*k;
+
+        if (doDilation) {
+            for (int s=0; s<len; s+=k) {
+                int e = Math.min(s+k, len);
+                int m = 0;
+                for (int i=s; i<e; i++) {
+                    m = maxBytes(m, line[i]);
+                    fwd[i] = m;
+                }
+            }
+            for (int s=last; s>=0; s-=k) {
+                int e = Math.min(s+k, len);
+                int m = 0;
+                for (int i=e-1; i>=s; i--) {
+                    m = maxBytes(m, line[i]);
+                    if (i < n)
+                        line[i+r] = maxBytes(m, fwd[i+2*r]);
+                }
+            }
+        } else {
+            for (int s=0; s<len; s+=k) {
+                int e = Math.min(s+k, len);
+                int m = 0xffffffff;
+                for (int i=s; i<e; i++) {
+                    m = minBytes(m, line[i]);
+                    fwd[i] = m;
+                }
+            }
+            for (int s=last; s>=0; s-=k) {
+                int e = Math.min(s+k, len);
+                int m = 0xffffffff;
+                for (int i=e-1; i>=s; i--) {
+                    m = minBytes(m, line[i]);
+                    if (i < n)
+                        line[i+r] = minBytes(m, fwd[i+2*r]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns a mask where the bytes of <code>x</code> that are not
+     * smaller than the bytes of <code>y</code>, as unsigned values, are
+     * set to 0xff.
+     */
+    private static int greaterOrEqualBytes(int x, int y){
+        // The high bit of each byte of t tells if the low seven bits
+        // of x are not smaller than the ones of y; no borrow crosses
+        // a byte.
+        int t  = (x | 0x80808080) - (y & 0x7f7f7f7f);
+        int ge = ((x & ~y) | (~(x ^ y) & t)) & 0x80808080;
+        return (ge - (ge >>> 7)) | ge;
+    }
+
+    /**
+     * Returns the max of each byte of the given values.
+     */
+    private static int maxBytes(int x, int y){
+        int ge = greaterOrEqualBytes(x, y);
+        return (x & ge) | (y & ~ge);
+    }
+
+    /**
+     * Returns the min of each byte of the given values.
+     */
+    private static int minBytes(int x, int y){
+        int ge = greaterOrEqualBytes(x, y);
+        return (y & ge) | (x & ~ge);
+    }
+
+    /**
+     * Returns the object used to read and write the samples of the
+     * given raster.
+     */
+    private static PixelAccess createAccess(Raster ras){
+        SampleModel sm = ras.getSampleModel();
+        int x0 = ras.getMinX() - ras.getSampleModelTranslateX();
+        int y0 = ras.getMinY() - ras.getSampleModelTranslateY();
+        if (sm instanceof SinglePixelPackedSampleModel)
+            return new PackedAccess(ras, (SinglePixelPackedSampleModel)sm,
+                                    x0, y0);
+        return new ByteAccess(ras, (ComponentSampleModel)sm, x0, y0);
+    }
+
+    /**
+     * Reads and writes lines of pixels of a raster. Each value of a
+     * line holds the samples of up to four bands, one per byte, so a
+     * pixel needs one line per group of four bands. Positions are
+     * indices in the data of the raster: a line of pixels starts at
+     * <code>start</code> and its pixels are <code>stride</code> apart.
+     */
+    abstract static class PixelAccess {
+        int width, height, nLines;
+        int offset, scanStride, pixelStride;
+
+        /**
+         * Reads <code>n</code> pixels into the lines, from index
+         * <code>pad</code>.
+         */
+        abstract void getLine(int start, int stride, int n, int pad,
+                              int [][] lines);
+
+        /**
+         * Writes <code>n</code> pixels of the lines, from index
+         * <code>pad</code>.
+         */
+        abstract void setLine(int start, int stride, int n, int pad,
+                              int [][] lines);
+    }
+
+    /**
+     * Bands packed in a <code>DataBufferInt</code>.
+     */
+    static final class PackedAccess extends PixelAccess {
+        final int [] pixels;
+        final int [] masks;
+        final int [] shifts;
+
+        /**
+         * True if every band fills a byte of the pixels, which can
+         * then be used as is.
+         */
+        final boolean byteBands;
+
+        /**
+         * The bits of the pixels used by the bands.
+         */
+        final int bandBits;
+
+        PackedAccess(Raster ras, SinglePixelPackedSampleModel sppsm,
+                     int x0, int y0){
+            DataBufferInt db = (DataBufferInt)ras.getDataBuffer();
+            pixels      = db.getBankData()[0];
+            masks       = sppsm.getBitMasks();
+            shifts      = sppsm.getBitOffsets();
+            width       = ras.getWidth();
+            height      = ras.getHeight();
+            nLines      = 1;
+            scanStride  = sppsm.getScanlineStride();
+            pixelStride = 1;
+            offset      = db.getOffset() + sppsm.getOffset(x0, y0);
+
+            boolean bytes = true;
+            int bits = 0;
+            for (int b=0; b<masks.length; b++) {
+                bits |= masks[b];
+                if (((shifts[b] & 7) != 0) ||
+                    ((masks[b] >>> shifts[b]) != 0xff))
+                    bytes = false;
+            }
+            byteBands = bytes;
+            bandBits  = bits;
+        }
+
+        void getLine(int start, int stride, int n, int pad,
+                     int [][] lines){
+            final int [] pixels = this.pixels;
+            final int [] line = lines[0];
+            int p = start;
+            if (byteBands) {
+                if (stride == 1) {
+                    System.arraycopy(pixels, p, line, pad, n);
+                } else {
+                    for (int i=pad; i<n+pad; i++, p+=stride)
+                        line[i] = pixels[p];
+                }
+                return;
+            }
+            // Move each band to its own byte.
+            for (int i=pad; i<n+pad; i++, p+=stride) {
+                int pel = pixels[p];
+                int v = 0;
+                for (int b=0; b<masks.length; b++)
+                    v |= ((pel & masks[b]) >>> shifts[b]) << (8*b);
+                line[i] = v;
+            }
+        }
+
+        void setLine(int start, int stride, int n, int pad,
+                     int [][] lines){
+            final int [] pixels = this.pixels;
+            final int [] line = lines[0];
+            int p = start;
+            if (byteBands) {
+                for (int i=pad; i<n+pad; i++, p+=stride)
+                    pixels[p] = (pixels[p] & ~bandBits) | (line[i] & bandBits);
+                return;
+            }
+            for (int i=pad; i<n+pad; i++, p+=stride) {
+                int v = line[i];
+                int pel = pixels[p] & ~bandBits;
+                for (int b=0; b<masks.length; b++)
+                    pel |= ((v >>> (8*b)) & 0xff) << shifts[b];
+                pixels[p] = pel;
+            }
+        }
+    }
+
+    /**
+     * Bands stored as bytes in a <code>DataBufferByte</code>.
+     */
+    static final class ByteAccess extends PixelAccess {
+        final byte [][] banks;
+        final int [] bandOffsets;
+
+        ByteAccess(Raster ras, ComponentSampleModel csm, int x0, int y0){
+            DataBufferByte db = (DataBufferByte)ras.getDataBuffer();
+            int nBands  = csm.getNumBands();
+            width       = ras.getWidth();
+            height      = ras.getHeight();
+            nLines      = (nBands+3)/4;
+            scanStride  = csm.getScanlineStride();
+            pixelStride = csm.getPixelStride();
+            offset      = y0*scanStride + x0*pixelStride;
+
+            int [] bankIndices = csm.getBankIndices();
+            int [] dbOffsets   = db.getOffsets();
+            int [] csmOffsets  = csm.getBandOffsets();
+            banks       = new byte[nBands][];
+            bandOffsets = new int[nBands];
+            for (int b=0; b<nBands; b++) {
+                banks[b]       = db.getData(bankIndices[b]);
+                bandOffsets[b] = dbOffsets[bankIndices[b]] + csmOffsets[b];
+            }
+        }
+
+        void getLine(int start, int stride, int n, int pad,
+                     int [][] lines){
+            for (int b=0; b<banks.length; b++) {
+                final byte [] data = banks[b];
+                final int [] line = lines[b/4];
+                final int shift = 8*(b&3);
+                int p = start + bandOffsets[b];
+                if (shift == 0) {
+                    for (int i=pad; i<n+pad; i++, p+=stride)
+                        line[i] = data[p] & 0xff;
+                } else {
+                    for (int i=pad; i<n+pad; i++, p+=stride)
+                        line[i] |= (data[p] & 0xff) << shift;
+                }
+            }
+        }
+
+        void setLine(int start, int stride, int n, int pad,
+                     int [][] lines){
+            for (int b=0; b<banks.length; b++) {
+                final byte [] data = banks[b];
+                final int [] line = lines[b/4];
+                final int shift = 8*(b&3);
+                int p = start + bandOffsets[b];
+                for (int i=pad; i<n+pad; i++, p+=stride)
+                    data[p] = (byte)(line[i] >>> shift);
+            }
+        }
+    }
+}
@@ -57,6 +57,8 @@ import org.apache.batik.dom.svg.SVGContext;
 import org.apache.batik.dom.xbl.XBLManager;
 import org.apache.batik.gvt.CompositeGraphicsNode;
 import org.apache.batik.gvt.GraphicsNode;
+import org.apache.batik.gvt.PatternTileCache;
+import org.apache.batik.gvt.RootGraphicsNode;
 import org.apache.batik.script.Interpreter;
 import org.apache.batik.script.InterpreterPool;
 import org.apache.batik.util.CSSConstants;
@@ -186,6 +188,26 @@ public class BridgeContext implements ErrorConstants, CSSContext {
      */
     protected Map elementDataMap;
 
+    /**
+     * The graphics nodes built for the content referenced by
+     * &lt;use&gt; elements, shared by the &lt;use&gt; elements that
+     * reference the same content in the same context. Keys are
+     * built by <code>SVGUseElementBridge.getInstanceKey</code>.
+     */
+    protected Map sharedUseContentMap;
+
+    /**
+     * Whether the &lt;use&gt; elements of a static document share
+     * the graphics nodes of their content.
+     */
+    protected boolean useInstancing;
+
+    /**
+     * Whether the content of the container elements of a static
+     * document is built only when it is first needed.
+     */
+    protected boolean deferredBuild;
+
     /**
      * The interpreter pool used to handle scripts.
      */
@@ -196,6 +218,17 @@ public class BridgeContext implements ErrorConstants, CSSContext {
      */
     protected DocumentLoader documentLoader;
 
+    /**
+     * The loader fetching the external resources of the document
+     * before the build, or null.
+     */
+    protected ResourceLoader resourceLoader;
+
+    /**
+     * The resources fetched for the document, or null.
+     */
+    protected ResourcePrefetcher resourcePrefetcher;
+
     /**
      * The size of the document.
      */
@@ -350,6 +383,8 @@ public class BridgeContext implements ErrorConstants, CSSContext {
         subCtx.dynamicStatus = dynamicStatus;
         subCtx.setGVTBuilder(getGVTBuilder());
         subCtx.setTextPainter(getTextPainter());
+        subCtx.setUseInstancing(isUseInstancing());
+        subCtx.setResourceLoader(getResourceLoader());
         subCtx.setDocument(newDoc);
         subCtx.initializeDocument(newDoc);
         if (isInteractive())
@@ -492,6 +527,115 @@ public class BridgeContext implements ErrorConstants, CSSContext {
         return o;
     }
 
+    /**
+     * Sets whether the &lt;use&gt; elements of a static document
+     * share the graphics nodes of the content they reference when
+     * that content does not depend on the &lt;use&gt; element. This
+     * is disabled by default. The shared content is built once, outside
+     * of the tree of the &lt;use&gt; elements, so it is not associated
+     * with the elements of their shadow trees. Call this method before
+     * the build phase.
+     */
+    public void setUseInstancing(boolean useInstancing) {
+        this.useInstancing = useInstancing;
+    }
+
+    /**
+     * Returns whether the &lt;use&gt; elements of a static document
+     * share the graphics nodes of the content they reference.
+     */
+    public boolean isUseInstancing() {
+        return useInstancing;
+    }
+
+    /**
+     * Sets whether the GVT builder defers the construction of the
+     * content of the &lt;g&gt; and &lt;a&gt; elements of a static
+     * document until it is painted, hit tested or otherwise needed.
+     * The deferred content is represented by a
+     * <code>DeferredGraphicsNode</code> whose bounds are estimated from
+     * the DOM when that is cheap. This is disabled by default and is
+     * ignored for dynamic and SVG 1.2 documents. The errors found
+     * while building deferred content are reported to the user agent
+     * instead of being thrown by the builder. Call this method before
+     * the build phase.
+     */
+    public void setDeferredBuild(boolean deferredBuild) {
+        this.deferredBuild = deferredBuild;
+    }
+
+    /**
+     * Returns whether the GVT builder defers the construction of the
+     * content of the container elements of a static document.
+     */
+    public boolean isDeferredBuild() {
+        return deferredBuild;
+    }
+
+    /**
+     * Sets the loader used to fetch the external resources referenced
+     * by the document concurrently, before its GVT tree is built. The
+     * bridges load the resources one after another when this is null,
+     * which is the default. Call this method before the build phase.
+     */
+    public void setResourceLoader(ResourceLoader resourceLoader) {
+        this.resourceLoader = resourceLoader;
+    }
+
+    /**
+     * Returns the loader used to fetch the external resources of the
+     * document before the build, or null.
+     */
+    public ResourceLoader getResourceLoader() {
+        return resourceLoader;
+    }
+
+    /**
+     * Returns the resources fetched for the document, or null if no
+     * resource loader is set.
+     */
+    public ResourcePrefetcher getResourcePrefetcher() {
+        return resourcePrefetcher;
+    }
+
+    /**
+     * Starts fetching the external resources of the given document if
+     * a resource loader is set.
+     */
+    protected void prefetchResources(Document document) {
+        if (resourcePrefetcher != null) {
+            resourcePrefetcher.dispose();
+            resourcePrefetcher = null;
+        }
+        if (resourceLoader != null) {
+            resourcePrefetcher =
+                new ResourcePrefetcher(this, resourceLoader);
+            resourcePrefetcher.prefetch(document);
+        }
+    }
+
+    /**
+     * Returns the graphics node shared by the &lt;use&gt; elements
+     * with the given instance key, or null if there is none yet.
+     */
+    public GraphicsNode getSharedUseContent(Object key) {
+        if (sharedUseContentMap == null)
+            return null;
+        return (GraphicsNode)sharedUseContentMap.get(key);
+    }
+
+    /**
+     * Sets the graphics node shared by the &lt;use&gt; elements with
+     * the given instance key. The node must not be modified once it
+     * is shared.
+     */
+    public void setSharedUseContent(Object key, GraphicsNode node) {
+        if (sharedUseContentMap == null) {
+            sharedUseContentMap = new HashMap();
+        }
+        sharedUseContentMap.put(key, node);
+    }
+
     /**
      * Returns the user agent of this bridge context.
      */
@@ -1456,6 +1600,11 @@ public class BridgeContext implements ErrorConstants, CSSContext {
             animationEngine = null;
         }
 
+        if (resourcePrefetcher != null) {
+            resourcePrefetcher.dispose();
+            resourcePrefetcher = null;
+        }
+
         for (Object o : interpreterMap.values()) {
             Interpreter interpreter = (Interpreter) o;
             if (interpreter != null)
@@ -1467,8 +1616,19 @@ public class BridgeContext implements ErrorConstants, CSSContext {
             focusManager.dispose();
         }
         if (elementDataMap != null) {
+            // The shared tiles of the pattern contents would keep
+            // them, and the GVT tree they belong to, reachable.
+            for (Object o : elementDataMap.values()) {
+                Object data = ((SoftReference) o).get();
+                if (data instanceof RootGraphicsNode) {
+                    PatternTileCache.invalidate((RootGraphicsNode) data);
+                }
+            }
             elementDataMap.clear();
         }
+        if (sharedUseContentMap != null) {
+            sharedUseContentMap.clear();
+        }
         if (nodeElementMap != null) {
             nodeElementMap.clear();
         }
@@ -0,0 +1,120 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.bridge;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.batik.util.ParsedURL;
+
+/**
+ * The default <code>ResourceLoader</code>. It reads the resources in
+ * memory from a pool of daemon threads, which are stopped when they
+ * have been idle for a few seconds.
+ *
+ * @version $Id$
+ */
+public class DefaultResourceLoader implements ResourceLoader {
+
+    /**
+     * The default maximum number of resources fetched at once.
+     */
+    public static final int DEFAULT_THREAD_COUNT = 8;
+
+    /**
+     * The number of seconds an idle thread is kept.
+     */
+    protected static final long KEEP_ALIVE = 5;
+
+    /**
+     * The executor running the fetches.
+     */
+    protected ThreadPoolExecutor executor;
+
+    /**
+     * Creates a new DefaultResourceLoader which fetches up to
+     * {@link #DEFAULT_THREAD_COUNT} resources at once.
+     */
+    public DefaultResourceLoader() {
+        this(DEFAULT_THREAD_COUNT);
+    }
+
+    /**
+     * Creates a new DefaultResourceLoader.
+     * @param threads the maximum number of resources fetched at once
+     */
+    public DefaultResourceLoader(int threads) {
+        executor = new ThreadPoolExecutor
+            (threads, threads, KEEP_ALIVE, TimeUnit.SECONDS,
+             new LinkedBlockingQueue(),
+             new ThreadFactory() {
+                 public Thread newThread(Runnable r) {
+                     Thread t = new Thread(r, "Batik ResourceLoader");
+                     t.setDaemon(true);
+                     return t;
+                 }
+             });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Starts fetching the content of the given URL.
+     */
+    public Future fetch(final ParsedURL purl, final List mimeTypes) {
+        return executor.submit(new Callable() {
+                public Object call() throws IOException {
+                    InputStream in = purl.openStream(mimeTypes.iterator());
+                    try {
+                        return readFully(in);
+                    } finally {
+                        in.close();
+                    }
+                }
+            });
+    }
+
+    /**
+     * Stops the threads of this loader. The fetches in progress are
+     * interrupted.
+     */
+    public void dispose() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Reads the given stream until its end.
+     */
+    protected static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[8192];
+        int n;
+        while ((n = in.read(buf)) != -1) {
+            out.write(buf, 0, n);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,58 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.bridge;
+
+import java.util.EventObject;
+
+import org.apache.batik.gvt.GraphicsNode;
+
+/**
+ * This class represents an event fired by a <code>GVTBuilder</code>
+ * when deferred content has been built.
+ *
+ * @version $Id$
+ */
+public class DeferredBuildEvent extends EventObject {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The graphics node.
+     */
+    protected GraphicsNode node;
+
+    /**
+     * Creates a new DeferredBuildEvent.
+     * @param source the GVT builder that originated the event.
+     * @param node the deferred graphics node whose content was built,
+     *             or the root of the GVT tree when the tree is complete.
+     */
+    public DeferredBuildEvent(Object source, GraphicsNode node) {
+        super(source);
+        this.node = node;
+    }
+
+    /**
+     * Returns the deferred graphics node whose content was built, or
+     * the root of the GVT tree when the tree is complete.
+     */
+    public GraphicsNode getGraphicsNode() {
+        return node;
+    }
+}
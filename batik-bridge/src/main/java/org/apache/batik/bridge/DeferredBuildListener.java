@@ -0,0 +1,43 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.bridge;
+
+import java.util.EventListener;
+
+/**
+ * This interface represents a listener to the DeferredBuildEvent
+ * events fired by a GVT builder whose bridge context defers the
+ * construction of the content of the container elements.
+ *
+ * @version $Id$
+ */
+public interface DeferredBuildListener extends EventListener {
+
+    /**
+     * Called when the content of a deferred graphics node was built.
+     */
+    void deferredContentBuilt(DeferredBuildEvent e);
+
+    /**
+     * Called when the content of all the deferred graphics nodes was
+     * built, so that the GVT tree is complete.
+     */
+    void deferredBuildCompleted(DeferredBuildEvent e);
+
+}
@@ -0,0 +1,442 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.bridge;
+
+import java.awt.Graphics2D;
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.Iterator;
+import java.util.ListIterator;
+
+import org.apache.batik.gvt.CompositeGraphicsNode;
+import org.apache.batik.gvt.GraphicsNode;
+
+import org.w3c.dom.Element;
+
+/**
+ * A composite graphics node holding the graphics nodes of the children
+ * of a container element, which are only built by the
+ * <code>GVTBuilder</code> the first time they are painted, hit tested
+ * or accessed. Until then, its bounds are an estimate computed from
+ * the DOM, when that can be done without building the graphics nodes.
+ *
+ * @version $Id$
+ */
+public class DeferredGraphicsNode extends CompositeGraphicsNode {
+
+    /**
+     * Marks a content whose bounds cannot be estimated.
+     */
+    private static final Rectangle2D UNKNOWN = new Rectangle2D.Double();
+
+    /**
+     * The builder of the content.
+     */
+    protected GVTBuilder builder;
+
+    /**
+     * The bridge context to use to build the content.
+     */
+    protected BridgeContext ctx;
+
+    /**
+     * The container element whose children are the content.
+     */
+    protected Element element;
+
+    /**
+     * Whether the content has been built.
+     */
+    protected volatile boolean built;
+
+    /**
+     * Whether the content is being built. Only accessed by the
+     * builder, with its lock held.
+     */
+    protected boolean building;
+
+    /**
+     * The estimated bounds of the content, UNKNOWN if they cannot be
+     * estimated, or null if not computed yet.
+     */
+    protected volatile Rectangle2D estimatedBounds;
+
+    /**
+     * Creates a new DeferredGraphicsNode.
+     * @param builder the builder of the content
+     * @param ctx the bridge context to use to build the content
+     * @param e the container element whose children are the content
+     */
+    public DeferredGraphicsNode(GVTBuilder builder,
+                                BridgeContext ctx,
+                                Element e) {
+        this.builder = builder;
+        this.ctx = ctx;
+        this.element = e;
+    }
+
+    /**
+     * Returns the builder of the content.
+     */
+    public GVTBuilder getBuilder() {
+        return builder;
+    }
+
+    /**
+     * Returns the bridge context used to build the content.
+     */
+    public BridgeContext getBridgeContext() {
+        return ctx;
+    }
+
+    /**
+     * Returns the container element whose children are the content.
+     */
+    public Element getElement() {
+        return element;
+    }
+
+    /**
+     * Returns whether the content has been built.
+     */
+    public boolean isBuilt() {
+        return built;
+    }
+
+    /**
+     * Builds the content if it has not been built yet.
+     */
+    public void build() {
+        if (!built) {
+            builder.buildDeferredContent(this);
+        }
+    }
+
+    /**
+     * Marks the content as built.
+     */
+    protected void setBuilt() {
+        built = true;
+    }
+
+    /**
+     * Invalidates the cached geometric bounds, except while the content
+     * is built: the bounds of the ancestors are then either being
+     * computed, or computed from the estimated bounds, which contain
+     * the actual ones. This node caches no bounds until it is built.
+     */
+    protected void invalidateGeometryCache() {
+        if (!building) {
+            super.invalidateGeometryCache();
+        }
+    }
+
+    /**
+     * Removes the graphics nodes built so far, when the build of the
+     * content has been interrupted.
+     */
+    protected void discardContent() {
+        while (count > 0) {
+            super.remove(count - 1);
+        }
+    }
+
+    /**
+     * Returns the estimated bounds of the content in the user space of
+     * this node, <code>NULL_RECT</code> if it paints nothing, or null
+     * if they cannot be estimated without building the content.
+     */
+    protected Rectangle2D getEstimatedBounds() {
+        Rectangle2D r = estimatedBounds;
+        if (r == null) {
+            r = builder.estimateDeferredContent(this);
+            if (r == null) {
+                r = UNKNOWN;
+            }
+            estimatedBounds = r;
+        }
+        return (r == UNKNOWN) ? null : r;
+    }
+
+    /**
+     * Returns the estimated bounds transformed by the given transform
+     * and the transform of this node.
+     */
+    protected Rectangle2D getTransformedEstimatedBounds(Rectangle2D r,
+                                                        AffineTransform txf) {
+        if (r == NULL_RECT) {
+            return null;
+        }
+        AffineTransform t = txf;
+        if (transform != null) {
+            t = new AffineTransform(txf);
+            t.concatenate(transform);
+        }
+        return t.createTransformedShape(r).getBounds2D();
+    }
+
+    //
+    // Drawing methods
+    //
+
+    /**
+     * Builds the content if needed and paints it. Paints nothing if the
+     * content has not been built and the builder does not build on
+     * paint.
+     */
+    public void primitivePaint(Graphics2D g2d) {
+        if (!built) {
+            if (!builder.isBuildOnPaint()) {
+                return;
+            }
+            build();
+        }
+        super.primitivePaint(g2d);
+    }
+
+    //
+    // Geometric methods
+    //
+
+    /**
+     * Returns the bounds of the area painted by this node, estimated
+     * and not cached if the content has not been built yet.
+     */
+    public Rectangle2D getBounds() {
+        if (!built) {
+            return normalizeRectangle(getPrimitiveBounds());
+        }
+        return super.getBounds();
+    }
+
+    /**
+     * Returns the bounds of the area covered by this node's primitive
+     * paint, estimated if the content has not been built yet.
+     */
+    public Rectangle2D getPrimitiveBounds() {
+        if (!built) {
+            Rectangle2D r = getEstimatedBounds();
+            if (r != null) {
+                return (r == NULL_RECT) ? null : (Rectangle2D)r.clone();
+            }
+            build();
+            if (!built) {
+                return null; // Being built by this thread.
+            }
+        }
+        return super.getPrimitiveBounds();
+    }
+
+    /**
+     * Returns the transformed bounds of this node's primitive paint,
+     * estimated if the content has not been built yet.
+     */
+    public Rectangle2D getTransformedPrimitiveBounds(AffineTransform txf) {
+        if (!built) {
+            Rectangle2D r = getEstimatedBounds();
+            if (r != null) {
+                return getTransformedEstimatedBounds(r, txf);
+            }
+            build();
+            if (!built) {
+                return null; // Being built by this thread.
+            }
+        }
+        return super.getTransformedPrimitiveBounds(txf);
+    }
+
+    /**
+     * Builds the content if needed and returns its geometry bounds,
+     * which must be exact as they define the object bounding box.
+     */
+    public Rectangle2D getGeometryBounds() {
+        build();
+        return super.getGeometryBounds();
+    }
+
+    /**
+     * Builds the content if needed and returns its transformed
+     * geometry bounds.
+     */
+    public Rectangle2D getTransformedGeometryBounds(AffineTransform txf) {
+        build();
+        return super.getTransformedGeometryBounds(txf);
+    }
+
+    /**
+     * Returns the bounds of the sensitive area covered by this node,
+     * estimated if the content has not been built yet.
+     */
+    public Rectangle2D getSensitiveBounds() {
+        if (!built) {
+            Rectangle2D r = getEstimatedBounds();
+            if (r != null) {
+                return (r == NULL_RECT) ? null : (Rectangle2D)r.clone();
+            }
+            build();
+            if (!built) {
+                return null; // Being built by this thread.
+            }
+        }
+        return super.getSensitiveBounds();
+    }
+
+    /**
+     * Returns the transformed bounds of the sensitive area covered by
+     * this node, estimated if the content has not been built yet.
+     */
+    public Rectangle2D getTransformedSensitiveBounds(AffineTransform txf) {
+        if (!built) {
+            Rectangle2D r = getEstimatedBounds();
+            if (r != null) {
+                return getTransformedEstimatedBounds(r, txf);
+            }
+            build();
+            if (!built) {
+                return null; // Being built by this thread.
+            }
+        }
+        return super.getTransformedSensitiveBounds(txf);
+    }
+
+    /**
+     * Returns true if the specified Point2D is inside the boundary of
+     * this node, false otherwise. The content is only built if the
+     * point is inside its estimated bounds.
+     */
+    public boolean contains(Point2D p) {
+        if (!built) {
+            Rectangle2D r = getEstimatedBounds();
+            if ((r != null) && ((r == NULL_RECT) || !r.contains(p))) {
+                return false;
+            }
+            build();
+        }
+        return super.contains(p);
+    }
+
+    /**
+     * Returns the graphics node at the specified point. The content is
+     * only built if the point is inside its estimated bounds.
+     */
+    public GraphicsNode nodeHitAt(Point2D p) {
+        if (!built) {
+            Rectangle2D r = getEstimatedBounds();
+            if ((r != null) && ((r == NULL_RECT) || !r.contains(p))) {
+                return null;
+            }
+            build();
+        }
+        return super.nodeHitAt(p);
+    }
+
+    /**
+     * Builds the content if needed and returns its outline.
+     */
+    public Shape getOutline() {
+        build();
+        return super.getOutline();
+    }
+
+    //
+    // List implementation, building the content first
+    //
+
+    public int size() {
+        build();
+        return super.size();
+    }
+
+    public boolean isEmpty() {
+        build();
+        return super.isEmpty();
+    }
+
+    public boolean contains(Object node) {
+        build();
+        return super.contains(node);
+    }
+
+    public Iterator iterator() {
+        build();
+        return super.iterator();
+    }
+
+    public Object [] toArray() {
+        build();
+        return super.toArray();
+    }
+
+    public Object[] toArray(Object [] a) {
+        build();
+        return super.toArray(a);
+    }
+
+    public Object get(int index) {
+        build();
+        return super.get(index);
+    }
+
+    public Object set(int index, Object o) {
+        build();
+        return super.set(index, o);
+    }
+
+    public boolean add(Object o) {
+        build();
+        return super.add(o);
+    }
+
+    public void add(int index, Object o) {
+        build();
+        super.add(index, o);
+    }
+
+    public boolean remove(Object o) {
+        build();
+        return super.remove(o);
+    }
+
+    public Object remove(int index) {
+        build();
+        return super.remove(index);
+    }
+
+    public int indexOf(Object node) {
+        build();
+        return super.indexOf(node);
+    }
+
+    public int lastIndexOf(Object node) {
+        build();
+        return super.lastIndexOf(node);
+    }
+
+    public ListIterator listIterator() {
+        build();
+        return super.listIterator();
+    }
+
+    public ListIterator listIterator(int index) {
+        build();
+        return super.listIterator(index);
+    }
+}
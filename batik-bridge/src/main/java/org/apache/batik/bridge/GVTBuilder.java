@@ -18,15 +18,36 @@
  */
 package org.apache.batik.bridge;
 
+import java.awt.BasicStroke;
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.GeneralPath;
+import java.awt.geom.Rectangle2D;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.batik.css.engine.SVGCSSEngine;
+import org.apache.batik.css.engine.value.Value;
 import org.apache.batik.gvt.CompositeGraphicsNode;
 import org.apache.batik.gvt.GraphicsNode;
 import org.apache.batik.gvt.RootGraphicsNode;
+import org.apache.batik.parser.AWTPathProducer;
+import org.apache.batik.parser.AWTPolygonProducer;
+import org.apache.batik.parser.AWTPolylineProducer;
+import org.apache.batik.parser.AWTTransformProducer;
+import org.apache.batik.parser.ParseException;
 import org.apache.batik.util.HaltingThread;
 import org.apache.batik.util.SVGConstants;
 
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
+import org.w3c.dom.css.CSSPrimitiveValue;
+import org.w3c.dom.css.CSSValue;
 
 /**
  * This class is responsible for creating a GVT tree using an SVG DOM tree.
@@ -36,6 +57,34 @@ import org.w3c.dom.Node;
  */
 public class GVTBuilder implements SVGConstants {
 
+    /**
+     * Whether the content of the container elements being built can be
+     * deferred.
+     */
+    protected boolean deferContent;
+
+    /**
+     * The deferred graphics nodes whose content has not been built yet,
+     * in creation order. Also the lock held while deferred content is
+     * estimated or built.
+     */
+    protected Set deferredNodes = new LinkedHashSet();
+
+    /**
+     * The root of the last GVT tree built from a document.
+     */
+    protected GraphicsNode rootNode;
+
+    /**
+     * Whether painting a deferred graphics node builds its content.
+     */
+    protected volatile boolean buildOnPaint = true;
+
+    /**
+     * The listeners notified when deferred content is built.
+     */
+    protected List deferredBuildListeners = new LinkedList();
+
     /**
      * Constructs a new builder.
      */
@@ -54,12 +103,20 @@ public class GVTBuilder implements SVGConstants {
         ctx.setDocument(document);
         ctx.initializeDocument(document);
 
+        // start fetching the external resources
+        ctx.prefetchResources(document);
+
         // inform the bridge context the builder to use
         ctx.setGVTBuilder(this);
 
         // build the GVT tree
         DocumentBridge dBridge = ctx.getDocumentBridge();
         RootGraphicsNode rootNode = null;
+        deferContent = ctx.isDeferredBuild()
+            && !ctx.isDynamic() && !ctx.isSVG12();
+        synchronized (deferredNodes) {
+            this.rootNode = null;
+        }
         try {
             // create the root node
             rootNode = dBridge.createGraphicsNode(ctx, document);
@@ -89,6 +146,8 @@ public class GVTBuilder implements SVGConstants {
             ex.setGraphicsNode(rootNode);
             //ex.printStackTrace();
             throw ex; // re-throw the udpated exception
+        } finally {
+            deferContent = false;
         }
 
         // For cursor handling
@@ -104,6 +163,15 @@ public class GVTBuilder implements SVGConstants {
             // register DOM listeners for dynamic support
             ctx.addDOMListeners();
         }
+
+        boolean complete;
+        synchronized (deferredNodes) {
+            this.rootNode = rootNode;
+            complete = deferredNodes.isEmpty();
+        }
+        if (complete && ctx.isDeferredBuild()) {
+            fireDeferredBuildCompleted();
+        }
         return rootNode;
     }
 
@@ -138,7 +206,15 @@ public class GVTBuilder implements SVGConstants {
         GraphicsNode gn = gnBridge.createGraphicsNode(ctx, e);
         if (gn != null) {
             if (gnBridge.isComposite()) {
-                buildComposite(ctx, e, (CompositeGraphicsNode)gn);
+                // The content of patterns, markers, <use> elements...
+                // is never deferred.
+                boolean defer = deferContent;
+                deferContent = false;
+                try {
+                    buildComposite(ctx, e, (CompositeGraphicsNode)gn);
+                } finally {
+                    deferContent = defer;
+                }
             } else {
                 handleGenericBridges(ctx, e);
             }
@@ -173,6 +249,142 @@ public class GVTBuilder implements SVGConstants {
         }
     }
 
+    /**
+     * Returns whether the build of the children of the specified
+     * container element can be deferred. Only the content of the
+     * &lt;g&gt; and &lt;a&gt; elements is deferred, as the other
+     * containers set up a viewport or select their children while
+     * they are built.
+     *
+     * @param e the container element
+     * @param bridge the bridge of the element
+     */
+    protected boolean isContentDeferrable(Element e,
+                                          GraphicsNodeBridge bridge) {
+        if (!(bridge instanceof SVGGElementBridge)
+                || (bridge instanceof SVGSVGElementBridge)) {
+            return false;
+        }
+        for (Node n = e.getFirstChild(); n != null; n = n.getNextSibling()) {
+            if (n.getNodeType() == Node.ELEMENT_NODE) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Defers the build of the children of a composite Element: a
+     * <code>DeferredGraphicsNode</code> which builds them when needed
+     * is added to the composite graphics node.
+     *
+     * @param ctx the bridge context
+     * @param e the element whose children are deferred
+     * @param parentNode the composite graphics node of the element
+     */
+    protected void deferComposite(BridgeContext ctx,
+                                  Element e,
+                                  CompositeGraphicsNode parentNode) {
+        DeferredGraphicsNode node = new DeferredGraphicsNode(this, ctx, e);
+        parentNode.getChildren().add(node);
+        synchronized (deferredNodes) {
+            deferredNodes.add(node);
+        }
+    }
+
+    /**
+     * Builds the content of the specified deferred graphics node if it
+     * has not been built yet. The content of its container children is
+     * deferred in turn. As this happens after the build phase, a
+     * <code>BridgeException</code> is reported to the user agent. If
+     * the current thread is halted, the content built so far is
+     * discarded and the node remains unbuilt.
+     *
+     * @param node the deferred graphics node to build
+     */
+    protected void buildDeferredContent(DeferredGraphicsNode node) {
+        BridgeContext ctx = node.getBridgeContext();
+        BridgeException error = null;
+        boolean complete;
+        synchronized (deferredNodes) {
+            if (node.built || node.building) {
+                return;
+            }
+            boolean defer = deferContent;
+            deferContent = true;
+            node.building = true;
+            try {
+                buildComposite(ctx, node.getElement(), node);
+            } catch (InterruptedBridgeException ex) {
+                node.discardContent();
+                return;
+            } catch (BridgeException ex) {
+                error = ex;
+            } finally {
+                node.building = false;
+                deferContent = defer;
+            }
+            node.setBuilt();
+            deferredNodes.remove(node);
+            complete = deferredNodes.isEmpty() && rootNode != null;
+        }
+        if (error != null) {
+            ctx.getUserAgent().displayError(error);
+        }
+        fireDeferredContentBuilt(node);
+        if (complete) {
+            fireDeferredBuildCompleted();
+        }
+    }
+
+    /**
+     * Builds the content of all the deferred graphics nodes, including
+     * the ones created meanwhile, so that the GVT tree is complete.
+     * Stops early if the current thread is halted.
+     */
+    public void completeBuild() {
+        for (;;) {
+            DeferredGraphicsNode node;
+            synchronized (deferredNodes) {
+                if (deferredNodes.isEmpty()) {
+                    return;
+                }
+                node = (DeferredGraphicsNode)deferredNodes.iterator().next();
+            }
+            if (HaltingThread.hasBeenHalted()) {
+                return;
+            }
+            node.build();
+        }
+    }
+
+    /**
+     * Sets whether painting a deferred graphics node builds its content.
+     * When false, the content not built yet is not painted, which lets
+     * a renderer show the content built so far.
+     */
+    public void setBuildOnPaint(boolean buildOnPaint) {
+        this.buildOnPaint = buildOnPaint;
+    }
+
+    /**
+     * Returns whether painting a deferred graphics node builds its
+     * content.
+     */
+    public boolean isBuildOnPaint() {
+        return buildOnPaint;
+    }
+
+    /**
+     * Returns whether some deferred graphics nodes have not been built
+     * yet.
+     */
+    public boolean hasDeferredContent() {
+        synchronized (deferredNodes) {
+            return !deferredNodes.isEmpty();
+        }
+    }
+
     /**
      * Builds a 'leaf' Element.
      *
@@ -216,7 +428,11 @@ public class GVTBuilder implements SVGConstants {
                 parentNode.getChildren().add(gn);
                 // check if the element has children to build
                 if (gnBridge.isComposite()) {
-                    buildComposite(ctx, e, (CompositeGraphicsNode)gn);
+                    if (deferContent && isContentDeferrable(e, gnBridge)) {
+                        deferComposite(ctx, e, (CompositeGraphicsNode)gn);
+                    } else {
+                        buildComposite(ctx, e, (CompositeGraphicsNode)gn);
+                    }
                 } else {
                     // if not then still handle the GenericBridges
                     handleGenericBridges(ctx, e);
@@ -258,4 +474,359 @@ public class GVTBuilder implements SVGConstants {
             }
         }
     }
+
+    // Deferred content estimation ////////////////////////////////////////
+
+    /**
+     * Returns the estimated bounds of the content of the specified
+     * deferred graphics node.
+     * @see #estimateContentBounds(BridgeContext,Element)
+     */
+    protected Rectangle2D estimateDeferredContent(DeferredGraphicsNode node) {
+        synchronized (deferredNodes) {
+            try {
+                return estimateContentBounds(node.getBridgeContext(),
+                                             node.getElement());
+            } catch (BridgeException ex) {
+                // Reported when the content is built.
+                return null;
+            } catch (ParseException ex) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Returns a conservative estimate of the area painted by the
+     * children of the specified container element, in its user space,
+     * computed from the DOM without building their graphics nodes.
+     * Returns <code>CompositeGraphicsNode.NULL_RECT</code> if the
+     * children paint nothing, or null if the area cannot be estimated,
+     * for instance because of text, filters or markers.
+     *
+     * @param ctx the bridge context
+     * @param e the container element
+     */
+    protected Rectangle2D estimateContentBounds(BridgeContext ctx,
+                                                Element e) {
+        Rectangle2D bounds = null;
+        for (Node n = e.getFirstChild(); n != null; n = n.getNextSibling()) {
+            if (n.getNodeType() != Node.ELEMENT_NODE) {
+                continue;
+            }
+            Element child = (Element)n;
+            if (!(ctx.getBridge(child) instanceof GraphicsNodeBridge)
+                    || !CSSUtilities.convertDisplay(child)) {
+                continue;
+            }
+            Rectangle2D r = estimateBounds(ctx, child);
+            if (r == null) {
+                return null;
+            }
+            if (r == CompositeGraphicsNode.NULL_RECT) {
+                continue;
+            }
+            if (bounds == null) {
+                bounds = r;
+            } else {
+                bounds.add(r);
+            }
+        }
+        return (bounds == null) ? CompositeGraphicsNode.NULL_RECT : bounds;
+    }
+
+    /**
+     * Returns a conservative estimate of the area painted by the
+     * specified graphic element, in the user space of its parent, or
+     * <code>CompositeGraphicsNode.NULL_RECT</code> or null as described
+     * in {@link #estimateContentBounds(BridgeContext,Element)}.
+     *
+     * @param ctx the bridge context
+     * @param e the graphic element
+     */
+    protected Rectangle2D estimateBounds(BridgeContext ctx, Element e) {
+        if (!SVG_NAMESPACE_URI.equals(e.getNamespaceURI())
+                || !isNone(e, SVGCSSEngine.FILTER_INDEX)) {
+            return null;
+        }
+        UnitProcessor.Context uctx = UnitProcessor.createContext(ctx, e);
+        String ln = e.getLocalName();
+        Rectangle2D r;
+        if (ln.equals(SVG_G_TAG) || ln.equals(SVG_A_TAG)) {
+            r = estimateContentBounds(ctx, e);
+        } else if (ln.equals(SVG_RECT_TAG)) {
+            r = estimateRegion(e, SVG_X_ATTRIBUTE, SVG_Y_ATTRIBUTE,
+                               SVG_WIDTH_ATTRIBUTE, SVG_HEIGHT_ATTRIBUTE,
+                               null, uctx);
+            r = addStroke(e, r);
+        } else if (ln.equals(SVG_CIRCLE_TAG)) {
+            r = estimateEllipse(e, SVG_R_ATTRIBUTE, SVG_R_ATTRIBUTE, uctx);
+            r = addStroke(e, r);
+        } else if (ln.equals(SVG_ELLIPSE_TAG)) {
+            r = estimateEllipse(e, SVG_RX_ATTRIBUTE, SVG_RY_ATTRIBUTE, uctx);
+            r = addStroke(e, r);
+        } else if (ln.equals(SVG_LINE_TAG)) {
+            if (hasMarkers(e)) {
+                return null;
+            }
+            float x1 = UnitProcessor.svgHorizontalCoordinateToUserSpace
+                (getAttribute(e, SVG_X1_ATTRIBUTE, "0"),
+                 SVG_X1_ATTRIBUTE, uctx);
+            float y1 = UnitProcessor.svgVerticalCoordinateToUserSpace
+                (getAttribute(e, SVG_Y1_ATTRIBUTE, "0"),
+                 SVG_Y1_ATTRIBUTE, uctx);
+            float x2 = UnitProcessor.svgHorizontalCoordinateToUserSpace
+                (getAttribute(e, SVG_X2_ATTRIBUTE, "0"),
+                 SVG_X2_ATTRIBUTE, uctx);
+            float y2 = UnitProcessor.svgVerticalCoordinateToUserSpace
+                (getAttribute(e, SVG_Y2_ATTRIBUTE, "0"),
+                 SVG_Y2_ATTRIBUTE, uctx);
+            // A line has no interior: only its stroke is painted.
+            if (isNone(e, SVGCSSEngine.STROKE_INDEX)) {
+                return CompositeGraphicsNode.NULL_RECT;
+            }
+            r = new Rectangle2D.Float(x1, y1, 0, 0);
+            r.add(x2, y2);
+            r = addStroke(e, r);
+        } else if (ln.equals(SVG_PATH_TAG)
+                   || ln.equals(SVG_POLYLINE_TAG)
+                   || ln.equals(SVG_POLYGON_TAG)) {
+            if (hasMarkers(e)) {
+                return null;
+            }
+            String d;
+            if (ln.equals(SVG_PATH_TAG)) {
+                d = e.getAttributeNS(null, SVG_D_ATTRIBUTE);
+            } else {
+                d = e.getAttributeNS(null, SVG_POINTS_ATTRIBUTE);
+            }
+            if (d.length() == 0) {
+                return CompositeGraphicsNode.NULL_RECT;
+            }
+            Shape s;
+            try {
+                StringReader sr = new StringReader(d);
+                int wr = GeneralPath.WIND_NON_ZERO;
+                if (ln.equals(SVG_PATH_TAG)) {
+                    s = AWTPathProducer.createShape(sr, wr);
+                } else if (ln.equals(SVG_POLYLINE_TAG)) {
+                    s = AWTPolylineProducer.createShape(sr, wr);
+                } else {
+                    s = AWTPolygonProducer.createShape(sr, wr);
+                }
+            } catch (IOException ex) {
+                return null; // Cannot happen with a StringReader.
+            }
+            r = addStroke(e, s.getBounds2D());
+        } else if (ln.equals(SVG_IMAGE_TAG)) {
+            // The image is clipped to its viewport.
+            if (!CSSUtilities.convertOverflow(e)
+                    || (CSSUtilities.convertClip(e) != null)) {
+                return null;
+            }
+            r = estimateRegion(e, SVG_X_ATTRIBUTE, SVG_Y_ATTRIBUTE,
+                               SVG_WIDTH_ATTRIBUTE, SVG_HEIGHT_ATTRIBUTE,
+                               null, uctx);
+        } else if (ln.equals(SVG_SVG_TAG)) {
+            // The content is clipped to the viewport, which is not
+            // affected by the 'transform' attribute.
+            if (!CSSUtilities.convertOverflow(e)
+                    || (CSSUtilities.convertClip(e) != null)) {
+                return null;
+            }
+            return estimateRegion(e, SVG_X_ATTRIBUTE, SVG_Y_ATTRIBUTE,
+                                  SVG_WIDTH_ATTRIBUTE, SVG_HEIGHT_ATTRIBUTE,
+                                  SVG_SVG_WIDTH_DEFAULT_VALUE, uctx);
+        } else {
+            // <text>, <use>, <switch>, foreign elements...
+            return null;
+        }
+        if ((r == null) || (r == CompositeGraphicsNode.NULL_RECT)) {
+            return r;
+        }
+
+        String s = e.getAttributeNS(null, SVG_TRANSFORM_ATTRIBUTE);
+        if (s.length() != 0) {
+            AffineTransform at = AWTTransformProducer.createAffineTransform(s);
+            r = at.createTransformedShape(r).getBounds2D();
+        }
+        return r;
+    }
+
+    /**
+     * Returns the region defined by the specified position and size
+     * attributes, NULL_RECT if it is empty, or null if the size is
+     * negative or missing with no default value.
+     */
+    private static Rectangle2D estimateRegion(Element e,
+                                              String xAttr, String yAttr,
+                                              String wAttr, String hAttr,
+                                              String defaultSize,
+                                              UnitProcessor.Context uctx) {
+        String ws = getAttribute(e, wAttr, defaultSize);
+        String hs = getAttribute(e, hAttr, defaultSize);
+        if ((ws == null) || (hs == null)) {
+            return null;
+        }
+        float x = UnitProcessor.svgHorizontalCoordinateToUserSpace
+            (getAttribute(e, xAttr, "0"), xAttr, uctx);
+        float y = UnitProcessor.svgVerticalCoordinateToUserSpace
+            (getAttribute(e, yAttr, "0"), yAttr, uctx);
+        float w = UnitProcessor.svgHorizontalLengthToUserSpace
+            (ws, wAttr, uctx);
+        float h = UnitProcessor.svgVerticalLengthToUserSpace
+            (hs, hAttr, uctx);
+        if ((w < 0) || (h < 0)) {
+            return null;
+        }
+        if ((w == 0) || (h == 0)) {
+            return CompositeGraphicsNode.NULL_RECT;
+        }
+        return new Rectangle2D.Float(x, y, w, h);
+    }
+
+    /**
+     * Returns the bounds of the circle or ellipse defined by the
+     * specified radius attributes, NULL_RECT if it is empty, or null if
+     * a radius is negative or missing.
+     */
+    private static Rectangle2D estimateEllipse(Element e,
+                                               String rxAttr, String ryAttr,
+                                               UnitProcessor.Context uctx) {
+        String rxs = getAttribute(e, rxAttr, null);
+        String rys = getAttribute(e, ryAttr, null);
+        if ((rxs == null) || (rys == null)) {
+            return null;
+        }
+        float cx = UnitProcessor.svgHorizontalCoordinateToUserSpace
+            (getAttribute(e, SVG_CX_ATTRIBUTE, "0"), SVG_CX_ATTRIBUTE, uctx);
+        float cy = UnitProcessor.svgVerticalCoordinateToUserSpace
+            (getAttribute(e, SVG_CY_ATTRIBUTE, "0"), SVG_CY_ATTRIBUTE, uctx);
+        float rx, ry;
+        if (rxAttr == ryAttr) {
+            rx = ry = UnitProcessor.svgOtherLengthToUserSpace
+                (rxs, rxAttr, uctx);
+        } else {
+            rx = UnitProcessor.svgHorizontalLengthToUserSpace
+                (rxs, rxAttr, uctx);
+            ry = UnitProcessor.svgVerticalLengthToUserSpace
+                (rys, ryAttr, uctx);
+        }
+        if ((rx < 0) || (ry < 0)) {
+            return null;
+        }
+        if ((rx == 0) || (ry == 0)) {
+            return CompositeGraphicsNode.NULL_RECT;
+        }
+        return new Rectangle2D.Float(cx - rx, cy - ry, 2 * rx, 2 * ry);
+    }
+
+    /**
+     * Grows the specified shape bounds by the largest distance the
+     * stroke of the element can extend beyond its outline: half the
+     * stroke width, times the miter limit for miter joins or the
+     * diagonal of square caps.
+     */
+    private static Rectangle2D addStroke(Element e, Rectangle2D r) {
+        if ((r == null) || (r == CompositeGraphicsNode.NULL_RECT)
+                || isNone(e, SVGCSSEngine.STROKE_INDEX)) {
+            return r;
+        }
+        BasicStroke stroke = (BasicStroke)PaintServer.convertStroke(e);
+        if (stroke == null) {
+            return r;
+        }
+        double f = Math.sqrt(2);
+        if ((stroke.getLineJoin() == BasicStroke.JOIN_MITER)
+                && (stroke.getMiterLimit() > f)) {
+            f = stroke.getMiterLimit();
+        }
+        double d = stroke.getLineWidth() / 2 * f;
+        return new Rectangle2D.Double(r.getX() - d, r.getY() - d,
+                                      r.getWidth() + 2 * d,
+                                      r.getHeight() + 2 * d);
+    }
+
+    /**
+     * Returns whether the element references markers.
+     */
+    private static boolean hasMarkers(Element e) {
+        return !isNone(e, SVGCSSEngine.MARKER_START_INDEX)
+            || !isNone(e, SVGCSSEngine.MARKER_MID_INDEX)
+            || !isNone(e, SVGCSSEngine.MARKER_END_INDEX);
+    }
+
+    /**
+     * Returns whether the computed value of the specified property is
+     * 'none'.
+     */
+    private static boolean isNone(Element e, int idx) {
+        Value v = CSSUtilities.getComputedStyle(e, idx);
+        return (v.getCssValueType() == CSSValue.CSS_PRIMITIVE_VALUE)
+            && (v.getPrimitiveType() == CSSPrimitiveValue.CSS_IDENT);
+    }
+
+    /**
+     * Returns the value of the specified attribute, or the default
+     * value if it is not specified.
+     */
+    private static String getAttribute(Element e, String attr, String def) {
+        String s = e.getAttributeNS(null, attr);
+        return (s.length() == 0) ? def : s;
+    }
+
+    // Deferred build events //////////////////////////////////////////////
+
+    /**
+     * Adds a listener notified when deferred content is built.
+     */
+    public void addDeferredBuildListener(DeferredBuildListener l) {
+        synchronized (deferredBuildListeners) {
+            deferredBuildListeners.add(l);
+        }
+    }
+
+    /**
+     * Removes a listener notified when deferred content is built.
+     */
+    public void removeDeferredBuildListener(DeferredBuildListener l) {
+        synchronized (deferredBuildListeners) {
+            deferredBuildListeners.remove(l);
+        }
+    }
+
+    /**
+     * Notifies the listeners that the content of a deferred graphics
+     * node was built.
+     */
+    protected void fireDeferredContentBuilt(DeferredGraphicsNode node) {
+        Object[] ls;
+        synchronized (deferredBuildListeners) {
+            if (deferredBuildListeners.isEmpty()) {
+                return;
+            }
+            ls = deferredBuildListeners.toArray();
+        }
+        DeferredBuildEvent ev = new DeferredBuildEvent(this, node);
+        for (int i = 0; i < ls.length; i++) {
+            ((DeferredBuildListener)ls[i]).deferredContentBuilt(ev);
+        }
+    }
+
+    /**
+     * Notifies the listeners that the GVT tree is complete.
+     */
+    protected void fireDeferredBuildCompleted() {
+        Object[] ls;
+        synchronized (deferredBuildListeners) {
+            if (deferredBuildListeners.isEmpty()) {
+                return;
+            }
+            ls = deferredBuildListeners.toArray();
+        }
+        DeferredBuildEvent ev = new DeferredBuildEvent(this, rootNode);
+        for (int i = 0; i < ls.length; i++) {
+            ((DeferredBuildListener)ls[i]).deferredBuildCompleted(ev);
+        }
+    }
 }
@@ -41,6 +41,22 @@ public class GlobalWrapper extends WindowWrapper {
      */
     public GlobalWrapper(Context context) {
         super(context);
+        defineGlobalProperties();
+    }
+
+    /**
+     * Creates a new GlobalWrapper which inherits the standard objects
+     * from the given shared scope.
+     */
+    public GlobalWrapper(Context context, Scriptable sharedScope) {
+        super(context, sharedScope);
+        defineGlobalProperties();
+    }
+
+    /**
+     * Defines the functions of the global object.
+     */
+    private void defineGlobalProperties() {
         String[] names = { "startMouseCapture", "stopMouseCapture" };
         this.defineFunctionProperties(names, GlobalWrapper.class,
                                       ScriptableObject.DONTENUM);
@@ -214,6 +214,150 @@ public class GlyphLayout implements TextSpanLayout {
         }
     }
 
+    /**
+     * Creates a text layout from the state of the layout of another
+     * character iterator holding the same characters with the same
+     * layout attributes. The glyphs are created from the glyph codes
+     * of the state and are positioned where the glyphs of the other
+     * layout are, translated by <code>(dx, dy)</code>, so neither the
+     * font matching nor the glyph layout are performed again.
+     *
+     * @param aci the AttributedCharacterIterator whose text is to
+     *  be laid out. It must provide the GVT_FONT and BIDI_LEVEL
+     *  attributes of the layout the state was taken from.
+     * @param state The state returned by <code>getLayoutState</code>.
+     * @param dx The translation along the x axis.
+     * @param dy The translation along the y axis.
+     * @param frc the FontRenderContext to use for generating glyphs.
+     */
+    public GlyphLayout(AttributedCharacterIterator aci,
+                       LayoutState state,
+                       float dx, float dy,
+                       FontRenderContext frc) {
+        this.aci = aci;
+        this.font = state.font;
+        this.metrics = state.metrics;
+        this.charMap = state.charMap;
+        this.vertical = state.vertical;
+        this.adjSpacing = state.adjSpacing;
+        this.xScale = state.xScale;
+        this.yScale = state.yScale;
+        this.advance = new Point2D.Float((float)state.advance.getX(),
+                                         (float)state.advance.getY());
+        this.offset = new Point2D.Float((float)state.offset.getX() + dx,
+                                        (float)state.offset.getY() + dy);
+
+        this.gv = font.createGlyphVector(frc, state.glyphCodes, aci);
+        this.gv.performDefaultLayout();
+        int numGlyphs = gv.getNumGlyphs();
+        float[] gp = state.glyphPositions;
+        Point2D.Float pos = new Point2D.Float();
+        for (int i = 0; i <= numGlyphs; i++) {
+            pos.x = gp[2*i  ] + dx;
+            pos.y = gp[2*i+1] + dy;
+            gv.setGlyphPosition(i, pos);
+        }
+        for (int i = 0; i < numGlyphs; i++) {
+            if (state.glyphTransforms[i] != null) {
+                gv.setGlyphTransform
+                    (i, new AffineTransform(state.glyphTransforms[i]));
+            }
+            if (!state.glyphVisible[i]) {
+                gv.setGlyphVisible(i, false);
+            }
+        }
+
+        this.layoutApplied  = state.layoutApplied;
+        this.spacingApplied = state.spacingApplied;
+        this.pathApplied    = state.pathApplied;
+    }
+
+    /**
+     * Returns the state of this layout, from which the layouts of
+     * other character iterators holding the same characters with the
+     * same layout attributes can be created, or null if this layout
+     * cannot be reproduced that way (text on a path, alternate glyphs,
+     * glyphs that do not map one to one to characters or fonts other
+     * than AWT fonts).
+     */
+    public LayoutState getLayoutState() {
+        if (textPath != null || isAltGlyph || !(font instanceof AWTGVTFont)) {
+            return null;
+        }
+        int numGlyphs = gv.getNumGlyphs();
+        if (numGlyphs != aci.getEndIndex() - aci.getBeginIndex()
+            || numGlyphs != charMap.length
+            || ArabicTextHandler.containsArabic(aci)) {
+            return null;
+        }
+        syncLayout();
+
+        LayoutState state = new LayoutState();
+        state.font = font;
+        state.metrics = metrics;
+        state.charMap = charMap;
+        state.vertical = vertical;
+        state.adjSpacing = adjSpacing;
+        state.xScale = xScale;
+        state.yScale = yScale;
+        state.advance = new Point2D.Float((float)advance.getX(),
+                                          (float)advance.getY());
+        state.offset = new Point2D.Float((float)offset.getX(),
+                                         (float)offset.getY());
+        state.glyphCodes = gv.getGlyphCodes(0, numGlyphs, null);
+        state.glyphPositions = gv.getGlyphPositions(0, numGlyphs+1, null);
+        state.glyphTransforms = new AffineTransform[numGlyphs];
+        state.glyphVisible = new boolean[numGlyphs];
+        for (int i = 0; i < numGlyphs; i++) {
+            AffineTransform tx = gv.getGlyphTransform(i);
+            if (tx != null) {
+                state.glyphTransforms[i] = new AffineTransform(tx);
+            }
+            state.glyphVisible[i] = gv.isGlyphVisible(i);
+        }
+        state.layoutApplied = layoutApplied;
+        state.spacingApplied = spacingApplied;
+        state.pathApplied = pathApplied;
+        return state;
+    }
+
+    /**
+     * The immutable state of a laid out GlyphLayout. It holds no
+     * reference to the character iterator of the layout, so it can
+     * be kept once the text it was created for is gone.
+     */
+    public static final class LayoutState {
+
+        private GVTFont font;
+        private GVTLineMetrics metrics;
+        private int [] charMap;
+        private boolean vertical, adjSpacing;
+        private float xScale, yScale;
+        private Point2D advance, offset;
+        private int [] glyphCodes;
+        private float [] glyphPositions;
+        private AffineTransform [] glyphTransforms;
+        private boolean [] glyphVisible;
+        private boolean layoutApplied, spacingApplied, pathApplied;
+
+        private LayoutState() {
+        }
+
+        /**
+         * Returns the font the glyphs are taken from.
+         */
+        public GVTFont getFont() {
+            return font;
+        }
+
+        /**
+         * Returns the number of glyphs of the layout.
+         */
+        public int getGlyphCount() {
+            return glyphCodes.length;
+        }
+    }
+
 
     public GVTGlyphVector getGlyphVector() {
         return this.gv;
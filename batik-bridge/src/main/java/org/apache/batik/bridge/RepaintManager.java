@@ -41,11 +41,47 @@ public class RepaintManager {
     static final int COPY_OVERHEAD      = 10000;
     static final int COPY_LINE_OVERHEAD = 10;
 
+    /**
+     * The largest overhead used to merge the rectangles before they
+     * are replaced by their bounds.
+     */
+    static final int MAX_COPY_OVERHEAD  = 1 << 24;
+
+    /**
+     * The default maximum number of rectangles repainted per update.
+     */
+    public static final int DEFAULT_MAX_RECTANGLES = 32;
+
     /**
      * The renderer used to repaint the buffer.
      */
     protected ImageRenderer renderer;
 
+    /**
+     * The maximum number of rectangles repainted per update.
+     */
+    protected int maxRectangles = DEFAULT_MAX_RECTANGLES;
+
+    /**
+     * The number of dirty areas of the last update.
+     */
+    protected int lastDirtyAreaCount;
+
+    /**
+     * The number of rectangles repainted by the last update.
+     */
+    protected int lastRectangleCount;
+
+    /**
+     * The number of pixels repainted by the last update.
+     */
+    protected long lastDirtyArea;
+
+    /**
+     * The time taken by the last update, in nanoseconds.
+     */
+    protected long lastUpdateTime;
+
     /**
      * Creates a new repaint manager.
      */
@@ -60,6 +96,7 @@ public class RepaintManager {
      */
     public Collection updateRendering(Collection areas)
         throws InterruptedException {
+        long t0 = System.nanoTime();
         renderer.flush(areas);
         List rects = new ArrayList(areas.size());
         AffineTransform at = renderer.getTransform();
@@ -82,14 +119,83 @@ public class RepaintManager {
         try {
             devRLM = new RectListManager(rects);
             devRLM.mergeRects(COPY_OVERHEAD, COPY_LINE_OVERHEAD);
+
+            // Merge more aggressively until few enough rectangles
+            // are left, as each one is repainted separately.
+            int overhead = COPY_OVERHEAD;
+            while (devRLM.size() > maxRectangles) {
+                overhead *= 2;
+                if (overhead > MAX_COPY_OVERHEAD) {
+                    devRLM = new RectListManager(devRLM.getBounds());
+                    break;
+                }
+                devRLM.mergeRects(overhead, COPY_LINE_OVERHEAD);
+            }
         } catch(Exception e) {
             e.printStackTrace();
         }
 
         renderer.repaint(devRLM);
+
+        lastDirtyAreaCount = areas.size();
+        lastRectangleCount = 0;
+        lastDirtyArea = 0;
+        if (devRLM != null) {
+            lastRectangleCount = devRLM.size();
+            for (Object o : devRLM) {
+                Rectangle r = (Rectangle) o;
+                lastDirtyArea += (long) r.width * r.height;
+            }
+        }
+        lastUpdateTime = System.nanoTime() - t0;
         return devRLM;
     }
 
+    /**
+     * Sets the maximum number of rectangles repainted per update. The
+     * dirty rectangles are merged until there are no more than this
+     * number of rectangles, at the cost of repainting more pixels.
+     */
+    public void setMaxRectangles(int maxRectangles) {
+        this.maxRectangles = Math.max(1, maxRectangles);
+    }
+
+    /**
+     * Returns the maximum number of rectangles repainted per update.
+     */
+    public int getMaxRectangles() {
+        return maxRectangles;
+    }
+
+    /**
+     * Returns the number of dirty areas given to the last update.
+     */
+    public int getLastDirtyAreaCount() {
+        return lastDirtyAreaCount;
+    }
+
+    /**
+     * Returns the number of rectangles repainted by the last update.
+     */
+    public int getLastRectangleCount() {
+        return lastRectangleCount;
+    }
+
+    /**
+     * Returns the number of pixels repainted by the last update,
+     * counting the pixels the rectangles share once per rectangle.
+     */
+    public long getLastDirtyArea() {
+        return lastDirtyArea;
+    }
+
+    /**
+     * Returns the time taken by the last update, in nanoseconds.
+     */
+    public long getLastUpdateTime() {
+        return lastUpdateTime;
+    }
+
     /**
      * Sets up the renderer so that it is ready to render for the new
      * 'context' defined by the user to device transform, double buffering
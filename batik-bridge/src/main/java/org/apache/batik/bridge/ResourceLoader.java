@@ -0,0 +1,46 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.bridge;
+
+import java.util.List;
+import java.util.concurrent.Future;
+
+import org.apache.batik.util.ParsedURL;
+
+/**
+ * This interface represents an object which fetches the content of
+ * external resources asynchronously, so that the resources referenced
+ * by a document can be loaded concurrently before they are needed by
+ * the bridges.
+ *
+ * @see BridgeContext#setResourceLoader(ResourceLoader)
+ * @version $Id$
+ */
+public interface ResourceLoader {
+
+    /**
+     * Starts fetching the content of the given URL. The returned future
+     * gives the content as a <code>byte[]</code>, or fails with the
+     * exception raised while reading it.
+     * @param purl the URL of the resource
+     * @param mimeTypes the list of the accepted MIME types, as strings
+     */
+    Future fetch(ParsedURL purl, List mimeTypes);
+
+}
@@ -0,0 +1,199 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.bridge;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.apache.batik.dom.AbstractNode;
+import org.apache.batik.dom.util.XLinkSupport;
+import org.apache.batik.ext.awt.image.spi.ImageTagRegistry;
+import org.apache.batik.util.MimeTypeConstants;
+import org.apache.batik.util.ParsedURL;
+import org.apache.batik.util.SVGConstants;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.svg.SVGDocument;
+
+/**
+ * Fetches the external resources referenced by a document before its
+ * GVT tree is built, using a <code>ResourceLoader</code>. The bridges
+ * then read the fetched content instead of opening the resources one
+ * after another.
+ *
+ * Only the images referenced by &lt;image&gt; elements are fetched.
+ * Resources which are already cached, which the user agent does not
+ * allow to load or which fail to load are left to the bridges, which
+ * report the errors as usual.
+ *
+ * @version $Id$
+ */
+public class ResourcePrefetcher implements SVGConstants {
+
+    /**
+     * The bridge context of the document.
+     */
+    protected BridgeContext ctx;
+
+    /**
+     * The loader fetching the resources.
+     */
+    protected ResourceLoader loader;
+
+    /**
+     * The fetches not yet consumed, keyed by URL.
+     */
+    protected Map fetches = new HashMap();
+
+    /**
+     * The MIME types accepted for images.
+     */
+    protected List imageMimeTypes;
+
+    /**
+     * Creates a new ResourcePrefetcher.
+     * @param ctx the bridge context of the document
+     * @param loader the loader fetching the resources
+     */
+    public ResourcePrefetcher(BridgeContext ctx, ResourceLoader loader) {
+        this.ctx = ctx;
+        this.loader = loader;
+        imageMimeTypes = new ArrayList
+            (ImageTagRegistry.getRegistry().getRegisteredMimeTypes());
+        imageMimeTypes.addAll(MimeTypeConstants.MIME_TYPES_SVG_LIST);
+    }
+
+    /**
+     * Starts fetching the resources referenced by the given document.
+     */
+    public void prefetch(Document doc) {
+        String docURL = ((SVGDocument) doc).getURL();
+        ParsedURL pDocURL = docURL == null ? null : new ParsedURL(docURL);
+        scan(doc.getDocumentElement(), pDocURL);
+    }
+
+    /**
+     * Starts fetching the resources referenced by the given element and
+     * its descendants.
+     */
+    protected void scan(Element e, ParsedURL pDocURL) {
+        if (SVG_NAMESPACE_URI.equals(e.getNamespaceURI())
+                && SVG_IMAGE_TAG.equals(e.getLocalName())) {
+            prefetchImage(e, pDocURL);
+        }
+        for (Node n = e.getFirstChild(); n != null; n = n.getNextSibling()) {
+            if (n.getNodeType() == Node.ELEMENT_NODE) {
+                scan((Element) n, pDocURL);
+            }
+        }
+    }
+
+    /**
+     * Starts fetching the resource referenced by an &lt;image&gt;
+     * element, as <code>SVGImageElementBridge</code> would open it.
+     */
+    protected void prefetchImage(Element e, ParsedURL pDocURL) {
+        String uriStr = XLinkSupport.getXLinkHref(e);
+        if (uriStr.length() == 0 || uriStr.indexOf('#') != -1) {
+            return;
+        }
+        String baseURI = AbstractNode.getBaseURI(e);
+        ParsedURL purl;
+        if (baseURI == null) {
+            purl = new ParsedURL(uriStr);
+        } else {
+            purl = new ParsedURL(baseURI, uriStr);
+        }
+        if ("data".equals(purl.getProtocol())) {
+            return;
+        }
+        String key = purl.toString();
+        synchronized (fetches) {
+            if (fetches.containsKey(key)) {
+                return;
+            }
+        }
+        try {
+            if (ctx.getDocumentLoader().checkCache(key) != null) {
+                return;
+            }
+        } catch (Exception ex) {
+            return;
+        }
+        if (ImageTagRegistry.getRegistry().checkCache(purl, null) != null) {
+            return;
+        }
+        try {
+            ctx.getUserAgent().checkLoadExternalResource(purl, pDocURL);
+        } catch (SecurityException ex) {
+            return;
+        }
+        Future f = loader.fetch(purl, imageMimeTypes);
+        synchronized (fetches) {
+            fetches.put(key, f);
+        }
+    }
+
+    /**
+     * Returns the content fetched for the given URL, waiting for the
+     * fetch to complete. The content is only returned once. Returns
+     * null if the resource was not prefetched or could not be fetched.
+     */
+    public byte[] getResource(ParsedURL purl) {
+        Future f;
+        synchronized (fetches) {
+            f = (Future) fetches.remove(purl.toString());
+        }
+        if (f == null) {
+            return null;
+        }
+        try {
+            return (byte[]) f.get();
+        } catch (ExecutionException ex) {
+            return null;
+        } catch (CancellationException ex) {
+            return null;
+        } catch (InterruptedException ex) {
+            f.cancel(true);
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    /**
+     * Cancels the fetches not yet consumed.
+     */
+    public void dispose() {
+        synchronized (fetches) {
+            Iterator i = fetches.values().iterator();
+            while (i.hasNext()) {
+                ((Future) i.next()).cancel(true);
+            }
+            fetches.clear();
+        }
+    }
+}
@@ -20,15 +20,17 @@ package org.apache.batik.bridge;
 
 import java.io.IOException;
 import java.io.Reader;
-import java.io.StringReader;
 import java.io.Writer;
 import java.net.URL;
 import java.security.AccessControlContext;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Locale;
 import java.util.MissingResourceException;
 
@@ -65,7 +67,29 @@ public class RhinoInterpreter implements Interpreter {
     /**
      * The number of cached compiled scripts to store.
      */
-    private static final int MAX_CACHED_SCRIPTS = 32;
+    private static final int MAX_CACHED_SCRIPTS = 128;
+
+    /**
+     * The compiled scripts shared by all the interpreters, keyed by
+     * <code>ScriptKey</code>, least recently used first.
+     */
+    private static final Map sharedCompiledScripts =
+        new LinkedHashMap(MAX_CACHED_SCRIPTS, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry eldest) {
+                return size() > MAX_CACHED_SCRIPTS;
+            }
+        };
+
+    /**
+     * Whether new interpreters inherit the standard objects from a
+     * shared sealed scope.
+     */
+    private static boolean useSharedScope;
+
+    /**
+     * The sealed scope holding the standard objects, created on demand.
+     */
+    private static ScriptableObject sharedScope;
 
     /**
      * Constant used to describe an SVG source
@@ -95,6 +119,9 @@ public class RhinoInterpreter implements Interpreter {
 
     /**
      * List of cached compiled scripts.
+     * @deprecated No longer used: the compiled scripts are cached by
+     *     {@link #getCompiledScript(Context,String,String,int)}, which
+     *     shares them among the interpreters.
      */
     protected LinkedList compiledScripts = new LinkedList();
 
@@ -115,6 +142,14 @@ public class RhinoInterpreter implements Interpreter {
      */
     protected RhinoClassLoader rhinoClassLoader;
 
+    /**
+     * Identifies the permissions of the scripts compiled by this
+     * interpreter, which depend on the document URL: compiled scripts
+     * are shared by the interpreters with the same security domain
+     * key. Null if scripts have no security domain.
+     */
+    private Object securityDomainKey;
+
     /**
      * The SecurityController implementation for Batik,
      * which ensures scripts have access to the
@@ -170,17 +205,28 @@ public class RhinoInterpreter implements Interpreter {
         } catch (SecurityException se) {
             rhinoClassLoader = null;
         }
+        if (rhinoClassLoader != null) {
+            securityDomainKey = Arrays.asList(new Object[] {
+                (documentURL == null) ? null : documentURL.toExternalForm(),
+                rhinoClassLoader.getParent() });
+        }
         ContextAction initAction = new ContextAction() {
             public Object run(Context cx) {
-                Scriptable scriptable = cx.initStandardObjects(null, false);
-                defineGlobalWrapperClass(scriptable);
-                globalObject = createGlobalObject(cx);
-                ClassCache cache = ClassCache.get(globalObject);
-                cache.setCachingEnabled(rhinoClassLoader != null);
-                
                 ImportInfo ii = imports;
                 if (ii == null) ii = ImportInfo.getImports();
 
+                // The classes of imported packages would hide the
+                // standard objects inherited from the shared scope.
+                if (isUsingSharedScope() && !ii.getPackages().hasNext()) {
+                    globalObject = createGlobalObject(cx, getSharedScope(cx));
+                } else {
+                    Scriptable scriptable = cx.initStandardObjects(null, false);
+                    defineGlobalWrapperClass(scriptable);
+                    globalObject = createGlobalObject(cx);
+                }
+                ClassCache cache = ClassCache.get(globalObject);
+                cache.setCachingEnabled(rhinoClassLoader != null);
+
                 // import Java lang package & DOM Level 3 & SVG DOM packages
                 StringBuffer sb = new StringBuffer();
                 Iterator iter;
@@ -198,8 +244,8 @@ public class RhinoInterpreter implements Interpreter {
                     sb.append(cls);
                     sb.append(");");
                 }
-                cx.evaluateString(globalObject, sb.toString(), null, 0,
-                                  rhinoClassLoader);
+                Script script = getCompiledScript(cx, sb.toString(), null, 0);
+                script.exec(cx, globalObject);
                 return null;
             }
         };
@@ -246,6 +292,97 @@ public class RhinoInterpreter implements Interpreter {
         return new WindowWrapper(ctx);
     }
 
+    /**
+     * Creates the global object, inheriting the standard objects from
+     * the given shared scope.
+     */
+    protected ScriptableObject createGlobalObject(Context ctx,
+                                                  Scriptable sharedScope) {
+        return new WindowWrapper(ctx, sharedScope);
+    }
+
+    /**
+     * Sets whether the interpreters created from now on inherit the
+     * standard objects (Object, Array, Math...) from a scope shared by
+     * all the interpreters instead of creating their own, which makes
+     * the creation of interpreters much cheaper. The shared scope is
+     * sealed: scripts can no longer modify the standard objects, for
+     * instance to add methods to their prototypes.
+     */
+    public static synchronized void setUseSharedScope(boolean b) {
+        useSharedScope = b;
+    }
+
+    /**
+     * Returns whether the interpreters created from now on inherit the
+     * standard objects from a shared scope.
+     */
+    public static synchronized boolean isUsingSharedScope() {
+        return useSharedScope;
+    }
+
+    /**
+     * Returns the sealed scope holding the standard objects.
+     */
+    protected static synchronized Scriptable getSharedScope(Context cx) {
+        if (sharedScope == null) {
+            ScriptableObject scope = cx.initStandardObjects(null, true);
+            // Resolve the lazily loaded standard objects now, since
+            // the scope is then used by several threads.
+            Object[] ids = scope.getAllIds();
+            for (int i = 0; i < ids.length; i++) {
+                if (ids[i] instanceof String) {
+                    ScriptableObject.getProperty(scope, (String)ids[i]);
+                }
+            }
+            sharedScope = scope;
+        }
+        return sharedScope;
+    }
+
+    /**
+     * Returns the given script compiled for the security domain of
+     * this interpreter. Compiled scripts are independent of the global
+     * object, so they are shared by all the interpreters with the
+     * same security domain.
+     */
+    protected Script getCompiledScript(final Context cx,
+                                       final String source,
+                                       final String sourceName,
+                                       final int lineno) {
+        ScriptKey key = new ScriptKey(source, sourceName, lineno,
+                                      securityDomainKey);
+        synchronized (sharedCompiledScripts) {
+            Script script = (Script)sharedCompiledScripts.get(key);
+            if (script != null) {
+                return script;
+            }
+        }
+
+        PrivilegedAction compile = new PrivilegedAction() {
+            public Object run() {
+                return cx.compileString(source, sourceName, lineno,
+                                        rhinoClassLoader);
+            }
+        };
+        Script script = (Script)AccessController.doPrivileged(compile);
+
+        synchronized (sharedCompiledScripts) {
+            sharedCompiledScripts.put(key, script);
+        }
+        return script;
+    }
+
+    /**
+     * Removes all the compiled scripts from the cache shared by the
+     * interpreters.
+     */
+    public static void clearCompiledScripts() {
+        synchronized (sharedCompiledScripts) {
+            sharedCompiledScripts.clear();
+        }
+    }
+
     /**
      * Returns the AccessControlContext associated with this Interpreter.
      * @see org.apache.batik.script.rhino.RhinoClassLoader
@@ -288,14 +425,15 @@ public class RhinoInterpreter implements Interpreter {
 
         ContextAction evaluateAction = new ContextAction() {
             public Object run(Context cx) {
+                String source;
                 try {
-                    return cx.evaluateReader(globalObject,
-                                             scriptReader,
-                                             description,
-                                             1, rhinoClassLoader);
+                    source = readScript(scriptReader);
                 } catch (IOException ioe) {
                     throw new WrappedException(ioe);
                 }
+                Script script = getCompiledScript(cx, source,
+                                                  description, 1);
+                return script.exec(cx, globalObject);
             }
         };
         try {
@@ -324,7 +462,8 @@ public class RhinoInterpreter implements Interpreter {
      * This method evaluates a piece of ECMA script.
      * The first time a String is passed, it is compiled and evaluated.
      * At next call, the piece of script will only be evaluated to
-     * prevent from recompiling it.
+     * prevent from recompiling it, by this interpreter or by any
+     * interpreter with the same security domain.
      * @param scriptStr the piece of script
      * @return if no exception is thrown during the call, should return the
      * value of the last expression evaluated in the script.
@@ -333,55 +472,8 @@ public class RhinoInterpreter implements Interpreter {
 
         ContextAction evalAction = new ContextAction() {
             public Object run(final Context cx) {
-                Script script = null;
-                Entry entry = null;
-                Iterator it = compiledScripts.iterator();
-                // between nlog(n) and log(n) because it is
-                // an AbstractSequentialList
-                while (it.hasNext()) {
-                    if ((entry = (Entry) it.next()).str.equals(scriptStr)) {
-                        // if it is not at the end, remove it because
-                        // it will change from place (it is faster
-                        // to remove it now)
-                        script = entry.script;
-                        it.remove();
-                        break;
-                    }
-                }
-
-                if (script == null) {
-                    // this script has not been compiled yet or has been
-                    // forgotten since the compilation:
-                    // compile it and store it for future use.
-
-                    PrivilegedAction compile = new PrivilegedAction() {
-                        public Object run() {
-                            try {
-                                return cx.compileReader
-                                    (new StringReader(scriptStr),
-                                     SOURCE_NAME_SVG, 1, rhinoClassLoader);
-                            } catch (IOException ioEx ) {
-                                // Should never happen: using a string
-                                throw new RuntimeException( ioEx.getMessage() );
-                            }
-                        }
-                    };
-                    script = (Script)AccessController.doPrivileged(compile);
-
-                    if (compiledScripts.size() + 1 > MAX_CACHED_SCRIPTS) {
-                        // too many cached items - we should delete the
-                        // oldest entry.  all of this is very fast on
-                        // linkedlist
-                        compiledScripts.removeFirst();
-                    }
-                    // storing is done here:
-                    compiledScripts.addLast(new Entry(scriptStr, script));
-                } else {
-                    // this script has been compiled before,
-                    // just update its index so it won't get deleted soon.
-                    compiledScripts.addLast(entry);
-                }
-
+                Script script = getCompiledScript(cx, scriptStr,
+                                                  SOURCE_NAME_SVG, 1);
                 return script.exec(cx, globalObject);
             }
         };
@@ -560,8 +652,23 @@ public class RhinoInterpreter implements Interpreter {
         return null;
     }
 
+    /**
+     * Reads the whole script from the given reader.
+     */
+    protected static String readScript(Reader r) throws IOException {
+        StringBuffer sb = new StringBuffer();
+        char[] buf = new char[4096];
+        int n;
+        while ((n = r.read(buf)) != -1) {
+            sb.append(buf, 0, n);
+        }
+        return sb.toString();
+    }
+
     /**
      * Class to store cached compiled scripts.
+     * @deprecated No longer used: the compiled scripts are cached with
+     *     a {@link ScriptKey}.
      */
     protected static class Entry {
 
@@ -584,6 +691,65 @@ public class RhinoInterpreter implements Interpreter {
         }
     }
 
+    /**
+     * The key of a compiled script in the cache.
+     */
+    protected static class ScriptKey {
+
+        /**
+         * The script string.
+         */
+        protected String source;
+
+        /**
+         * The source name and first line number given to the compiler.
+         */
+        protected String sourceName;
+        protected int lineno;
+
+        /**
+         * The key of the security domain the script is compiled for.
+         */
+        protected Object securityDomainKey;
+
+        protected int hashCode;
+
+        /**
+         * Creates a new script cache key.
+         */
+        public ScriptKey(String source, String sourceName, int lineno,
+                         Object securityDomainKey) {
+            this.source = source;
+            this.sourceName = sourceName;
+            this.lineno = lineno;
+            this.securityDomainKey = securityDomainKey;
+            hashCode = source.hashCode() ^ lineno;
+            if (sourceName != null)
+                hashCode ^= sourceName.hashCode();
+            if (securityDomainKey != null)
+                hashCode ^= securityDomainKey.hashCode();
+        }
+
+        public int hashCode() {
+            return hashCode;
+        }
+
+        public boolean equals(Object o) {
+            if (!(o instanceof ScriptKey))
+                return false;
+            ScriptKey k = (ScriptKey)o;
+            return (hashCode == k.hashCode)
+                && (lineno == k.lineno)
+                && source.equals(k.source)
+                && equals(sourceName, k.sourceName)
+                && equals(securityDomainKey, k.securityDomainKey);
+        }
+
+        private static boolean equals(Object o1, Object o2) {
+            return (o1 == null) ? (o2 == null) : o1.equals(o2);
+        }
+    }
+
     /**
      * Factory for Context objects.
      */
@@ -21,14 +21,17 @@ package org.apache.batik.bridge;
 import java.awt.Shape;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.Point2D;
+import java.lang.ref.WeakReference;
 import java.util.StringTokenizer;
 import java.util.List;
 import java.util.ArrayList;
 
 import org.apache.batik.gvt.CompositeGraphicsNode;
 import org.apache.batik.gvt.GraphicsNode;
+import org.apache.batik.gvt.font.AWTGlyphGeometryCache;
 import org.apache.batik.gvt.font.GVTFontFace;
 import org.apache.batik.gvt.font.Glyph;
+import org.apache.batik.gvt.font.GlyphGeometryCache;
 import org.apache.batik.gvt.text.TextPaintInfo;
 import org.apache.batik.parser.AWTPathProducer;
 import org.apache.batik.parser.ParseException;
@@ -91,24 +94,40 @@ public class SVGGlyphElementBridge extends AbstractSVGBridge
         String d = glyphElement.getAttributeNS(null, SVG_D_ATTRIBUTE);
         Shape dShape = null;
         if (d.length() != 0) {
-            AWTPathProducer app = new AWTPathProducer();
             // Glyph is supposed to use properties from text element.
-            app.setWindingRule(CSSUtilities.convertFillRule(textElement));
-            try {
-                PathParser pathParser = new PathParser();
-                pathParser.setPathHandler(app);
-                pathParser.parse(d);
-            } catch (ParseException pEx) {
-                throw new BridgeException(ctx, glyphElement,
-                                          pEx, ERR_ATTRIBUTE_VALUE_MALFORMED,
-                                          new Object [] {SVG_D_ATTRIBUTE});
-            } finally {
-                // transform the shape into the correct coord system
-                Shape shape = app.getShape();
-                Shape transformedShape
-                    = scaleTransform.createTransformedShape(shape);
-                dShape = transformedShape;
+            int windingRule = CSSUtilities.convertFillRule(textElement);
+
+            // The parsed outline, in font units, is cached by glyph
+            // element, which does not keep the element alive. The
+            // outline is parsed again for another winding rule.
+            GlyphGeometryCache glyphCache =
+                GlyphGeometryCache.getSharedCache();
+            OutlineKey outlineKey = new OutlineKey(glyphElement, windingRule);
+            AWTGlyphGeometryCache.Value v =
+                glyphCache.get(outlineKey, glyphCode);
+            Shape shape;
+            if (v != null) {
+                shape = v.getOutline();
+            } else {
+                AWTPathProducer app = new AWTPathProducer();
+                app.setWindingRule(windingRule);
+                try {
+                    PathParser pathParser = new PathParser();
+                    pathParser.setPathHandler(app);
+                    pathParser.parse(d);
+                } catch (ParseException pEx) {
+                    throw new BridgeException(ctx, glyphElement,
+                                              pEx, ERR_ATTRIBUTE_VALUE_MALFORMED,
+                                              new Object [] {SVG_D_ATTRIBUTE});
+                }
+                shape = app.getShape();
+                glyphCache.put(outlineKey, glyphCode,
+                               new AWTGlyphGeometryCache.Value
+                               (shape, shape.getBounds2D()));
             }
+
+            // transform the shape into the correct coord system
+            dShape = scaleTransform.createTransformedShape(shape);
         }
 
         // process any glyph children
@@ -325,4 +344,39 @@ public class SVGGlyphElementBridge extends AbstractSVGBridge
                          horizAdvX, vertAdvY, glyphCode,
                          tpi, dShape, glyphContentNode);
     }
+
+    /**
+     * Identifies the outline of a glyph element parsed with a winding
+     * rule in the glyph geometry cache. The element is only weakly
+     * referenced, so the cache does not keep documents alive; the
+     * entries of the elements collected are never found again and are
+     * eventually evicted.
+     */
+    protected static class OutlineKey {
+
+        protected WeakReference element;
+        protected int windingRule;
+        protected int hash;
+
+        public OutlineKey(Element element, int windingRule) {
+            this.element = new WeakReference(element);
+            this.windingRule = windingRule;
+            this.hash = System.identityHashCode(element) * 31 + windingRule;
+        }
+
+        public int hashCode() {
+            return hash;
+        }
+
+        public boolean equals(Object o) {
+            if (!(o instanceof OutlineKey)) {
+                return false;
+            }
+            OutlineKey k = (OutlineKey)o;
+            Object e = element.get();
+            return e != null
+                && windingRule == k.windingRule
+                && e == k.element.get();
+        }
+    }
 }
@@ -25,6 +25,7 @@ import java.awt.color.ICC_Profile;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.Rectangle2D;
 import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.io.InterruptedIOException;
 import java.io.IOException;
@@ -241,7 +242,7 @@ public class SVGImageElementBridge extends AbstractGraphicsNodeBridge {
          */
         ProtectedStream reference = null;
         try {
-            reference = openStream(e, purl);
+            reference = openStream(ctx, e, purl);
         } catch (SecurityException secEx ) {
             throw new BridgeException(ctx, e, secEx, ERR_URI_UNSECURE,
                                       new Object[] {purl});
@@ -278,7 +279,7 @@ public class SVGImageElementBridge extends AbstractGraphicsNodeBridge {
             reference = null;
             try {
                 // Couldn't reset stream so reopen it.
-                reference = openStream(e, purl);
+                reference = openStream(ctx, e, purl);
             } catch (IOException ioe2) {
                 // Since we already opened the stream this is unlikely.
                 return createBrokenImageNode(ctx, e, purl.toString(),
@@ -321,7 +322,7 @@ public class SVGImageElementBridge extends AbstractGraphicsNodeBridge {
             reference = null;
             try {
                 // Couldn't reset stream so reopen it.
-                reference = openStream(e, purl);
+                reference = openStream(ctx, e, purl);
             } catch (IOException ioe2) {
                 return createBrokenImageNode(ctx, e, purl.toString(),
                                              ioe2.getLocalizedMessage());
@@ -406,6 +407,45 @@ public class SVGImageElementBridge extends AbstractGraphicsNodeBridge {
         boolean isTied = false;
     }
 
+    /**
+     * A protected stream on content fetched ahead of the build.  It is
+     * retried by resetting the underlying byte array stream, so only
+     * the usual buffer is allocated whatever the size of the content.
+     */
+    static class ByteArrayProtectedStream extends ProtectedStream {
+        ByteArrayProtectedStream(byte[] data) {
+            super(new ByteArrayInputStream(data));
+        }
+
+        public synchronized void retry() throws IOException {
+            if (in == null) {
+                throw new IOException("Stream closed");
+            }
+            in.reset();
+            pos = count = 0;
+            markpos = -1;
+            wasClosed = false;
+            isTied = false;
+        }
+    }
+
+    /**
+     * Opens the given URL, reading the content fetched ahead of the
+     * build by the resource prefetcher of the bridge context, if any.
+     */
+    protected ProtectedStream openStream(BridgeContext ctx, Element e,
+                                         ParsedURL purl)
+        throws IOException {
+        ResourcePrefetcher prefetcher = ctx.getResourcePrefetcher();
+        if (prefetcher != null) {
+            byte[] data = prefetcher.getResource(purl);
+            if (data != null) {
+                return new ByteArrayProtectedStream(data);
+            }
+        }
+        return openStream(e, purl);
+    }
+
     protected ProtectedStream openStream(Element e, ParsedURL purl)
         throws IOException {
         List mimeTypes = new ArrayList
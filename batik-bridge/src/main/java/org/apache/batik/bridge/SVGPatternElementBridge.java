@@ -23,6 +23,7 @@ import java.awt.Paint;
 import java.awt.Shape;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.Rectangle2D;
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -218,12 +219,17 @@ public class SVGPatternElementBridge extends AnimatableGenericSVGBridge
             gn.setFilter(filter);
         }
 
-        
 
+        // The tiles are shared by the elements painted with the same
+        // pattern content, region, transforms and opacity.
         return new PatternPaint(gn,
                                 patternRegion,
                                 !overflowIsHidden,
-                                patternTransform);
+                                patternTransform,
+                                patternContentNode,
+                                Arrays.asList(new Object[] {
+                                    patternContentTransform,
+                                    new Float(opacity) }));
 
     }
 
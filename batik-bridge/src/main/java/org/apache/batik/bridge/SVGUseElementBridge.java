@@ -22,17 +22,22 @@ import java.awt.Cursor;
 import java.awt.RenderingHints;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.apache.batik.anim.dom.AbstractSVGAnimatedLength;
 import org.apache.batik.anim.dom.AnimatedLiveAttributeValue;
 import org.apache.batik.anim.dom.SVGOMAnimatedLength;
 import org.apache.batik.anim.dom.SVGOMDocument;
 import org.apache.batik.anim.dom.SVGOMUseElement;
+import org.apache.batik.css.engine.CSSEngine;
+import org.apache.batik.css.engine.StyleMap;
 import org.apache.batik.dom.events.NodeEventTarget;
 import org.apache.batik.dom.svg.LiveAttributeException;
 import org.apache.batik.dom.svg.SVGOMUseShadowRoot;
 import org.apache.batik.gvt.CompositeGraphicsNode;
 import org.apache.batik.gvt.GraphicsNode;
+import org.apache.batik.gvt.ProxyGraphicsNode;
 import org.apache.batik.util.XMLConstants;
 
 import org.w3c.dom.Attr;
@@ -135,6 +140,15 @@ public class SVGUseElementBridge extends AbstractGraphicsNodeBridge {
             theCtx = subCtx;
         }
             
+        if (gn == null) {
+            gn = new CompositeGraphicsNode();
+            associateSVGContext(ctx, e, node);
+        } else {
+            int s = gn.size();
+            for (int i=0; i<s; i++)
+                gn.remove(0);
+        }
+
         // import or clone the referenced element in current document
         Element localRefElement;
         localRefElement = (Element)document.importNode(refElement, true, true);
@@ -192,15 +206,6 @@ public class SVGUseElementBridge extends AbstractGraphicsNodeBridge {
         root = new SVGOMUseShadowRoot(document, e, isLocal);
         root.appendChild(localRefElement);
 
-        if (gn == null) {
-            gn = new CompositeGraphicsNode();
-            associateSVGContext(ctx, e, node);
-        } else {
-            int s = gn.size();
-            for (int i=0; i<s; i++)
-                gn.remove(0);
-        }
-
         Node oldRoot = ue.getCSSFirstChild();
         if (oldRoot != null) {
             disposeTree(oldRoot);
@@ -212,8 +217,35 @@ public class SVGUseElementBridge extends AbstractGraphicsNodeBridge {
         // compute URIs and style sheets for the used element
         CSSUtilities.computeStyleAndURIs(refElement, localRefElement, uri);
 
-        GVTBuilder builder = ctx.getGVTBuilder();
-        GraphicsNode refNode = builder.build(ctx, g);
+        // In static documents, the <use> elements referencing the
+        // same element in the same context share the content. Each of
+        // them still gets its own shadow tree.
+        Object instanceKey = null;
+        GraphicsNode refNode = null;
+        if (!ctx.isInteractive() && ctx.isUseInstancing()) {
+            instanceKey = getInstanceKey(ctx, ue, refElement);
+            if (instanceKey != null) {
+                GraphicsNode sharedNode =
+                    ctx.getSharedUseContent(instanceKey);
+                if (sharedNode != null) {
+                    refNode = createInstance(sharedNode);
+                }
+            }
+        }
+
+        if (refNode == null) {
+            GVTBuilder builder = ctx.getGVTBuilder();
+            refNode = builder.build(ctx, g);
+
+            if (instanceKey != null && refNode != null) {
+                // The proxies expect a source without transform,
+                // clip, mask or filter of its own.
+                CompositeGraphicsNode sharedNode = new CompositeGraphicsNode();
+                sharedNode.getChildren().add(refNode);
+                ctx.setSharedUseContent(instanceKey, sharedNode);
+                refNode = createInstance(sharedNode);
+            }
+        }
 
         ///////////////////////////////////////////////////////////////////////
 
@@ -297,6 +329,65 @@ public class SVGUseElementBridge extends AbstractGraphicsNodeBridge {
         return gn;
     }
 
+    /**
+     * Returns the key identifying the content built for the given
+     * &lt;use&gt; element, so that it can be shared by the
+     * &lt;use&gt; elements with the same key. The content depends on
+     * the referenced element and, through inheritance, 'inherit' and
+     * 'currentColor', on the computed style of the &lt;use&gt;
+     * element. Percentages depend on its viewport, and the 'width'
+     * and 'height' of a referenced 'svg' or 'symbol' on its own.
+     * The content is not shared when the &lt;use&gt; element or one of
+     * its ancestors enables background access, as filters reading
+     * 'BackgroundImage' or 'BackgroundAlpha' need the ancestors of the
+     * content. Returns null if the content must not be shared.
+     */
+    protected Object getInstanceKey(BridgeContext ctx,
+                                    SVGOMUseElement ue,
+                                    Element refElement) {
+        for (Node n = ue; n != null; n = CSSEngine.getCSSParentNode(n)) {
+            if (n.getNodeType() == Node.ELEMENT_NODE
+                && CSSUtilities.convertEnableBackground((Element) n) != null) {
+                return null;
+            }
+        }
+        StyleMap sm = ue.getComputedStyleMap(null);
+        if ((sm != null) && sm.hasFixedCascadedValues()) {
+            // The <use> element has been imported from another
+            // document: its style was cascaded by another engine,
+            // which may not know all the properties of this one.
+            return null;
+        }
+        CSSEngine eng = CSSUtilities.getCSSEngine(ue);
+        int n = eng.getNumberOfProperties();
+        List key = new ArrayList(n + 5);
+        key.add(refElement);
+        for (int i = 0; i < n; i++) {
+            key.add(CSSUtilities.getComputedStyle(ue, i).getCssText());
+        }
+        Viewport vp = ctx.getViewport(ue);
+        key.add(new Float(vp.getWidth()));
+        key.add(new Float(vp.getHeight()));
+        String ln = refElement.getLocalName();
+        if (SVG_SVG_TAG.equals(ln) || SVG_SYMBOL_TAG.equals(ln)) {
+            key.add(ue.getAttributeNS(null, SVG_WIDTH_ATTRIBUTE));
+            key.add(ue.getAttributeNS(null, SVG_HEIGHT_ATTRIBUTE));
+        }
+        return key;
+    }
+
+    /**
+     * Returns a new graphics node painting the given shared content.
+     *
+     * @param sharedNode the content built for the first &lt;use&gt;
+     *        element with the same instance key
+     */
+    protected GraphicsNode createInstance(GraphicsNode sharedNode) {
+        ProxyGraphicsNode proxy = new ProxyGraphicsNode();
+        proxy.setSource(sharedNode);
+        return proxy;
+    }
+
     public void dispose() {
         if (l != null) {
             // Remove event listeners
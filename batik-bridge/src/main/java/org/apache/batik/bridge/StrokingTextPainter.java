@@ -33,9 +33,11 @@ import java.text.AttributedCharacterIterator;
 import java.text.AttributedString;
 import java.text.CharacterIterator;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.apache.batik.gvt.font.GVTFont;
@@ -145,6 +147,12 @@ public class StrokingTextPainter extends BasicTextPainter {
         return singleton;
     }
 
+    /**
+     * The cache used to share the layouts of identical texts, or null.
+     */
+    protected TextLayoutCache textLayoutCache =
+        TextLayoutCache.getSharedCache();
+
     /**
      * Paints the specified text node using the specified Graphics2D.
      *
@@ -187,14 +195,140 @@ public class StrokingTextPainter extends BasicTextPainter {
             return textRuns;
         }
 
-        AttributedCharacterIterator[] chunkACIs = getTextChunkACIs(aci);
-        textRuns = computeTextRuns(node, aci, chunkACIs);
+        // Look for the layout of an identical text, maybe elsewhere.
+        TextLayoutCache cache = getTextLayoutCache();
+        TextLayoutCache.Key key = null;
+        if (cache != null) {
+            key = cache.createKey(aci, node.getLocation(),
+                                  getFontRenderContext(node));
+            if (key != null) {
+                TextLayoutCache.Entry entry = cache.get(key);
+                if (entry != null) {
+                    textRuns = createTextRuns(aci, key, entry);
+                }
+            }
+        }
+
+        if (textRuns == null) {
+            AttributedCharacterIterator[] chunkACIs = getTextChunkACIs(aci);
+            textRuns = computeTextRuns(node, aci, chunkACIs);
+
+            if (key != null) {
+                TextLayoutCache.Entry entry =
+                    createTextLayoutCacheEntry(key, textRuns);
+                if (entry != null) {
+                    cache.put(key, entry);
+                }
+            }
+        }
 
         // cache the textRuns so don't need to recalculate
         node.setTextRuns(textRuns);
         return node.getTextRuns();
    }
 
+    /**
+     * Returns the cache used to share the layouts of identical texts,
+     * or null if the layouts must not be shared.
+     */
+    public TextLayoutCache getTextLayoutCache() {
+        return textLayoutCache;
+    }
+
+    /**
+     * Sets the cache used to share the layouts of identical texts.
+     * By default, the layouts are shared by all the documents in
+     * {@link TextLayoutCache#getSharedCache()}. To lay out the texts of
+     * a document without the cache, set a painter whose cache is null
+     * on its bridge context with
+     * {@link BridgeContext#setTextPainter(TextPainter)}.
+     *
+     * @param textLayoutCache the cache, or null not to share layouts
+     */
+    public void setTextLayoutCache(TextLayoutCache textLayoutCache) {
+        this.textLayoutCache = textLayoutCache;
+    }
+
+    /**
+     * Returns the font render context the given text node is laid
+     * out with.
+     */
+    protected FontRenderContext getFontRenderContext(TextNode node) {
+        RenderingHints rh = node.getRenderingHints();
+        // Check for optimizeSpeed, optimizeLegibility
+        // in these cases setup hintedFRC
+        if ((rh != null) &&
+            (rh.get(RenderingHints.KEY_TEXT_ANTIALIASING) ==
+              RenderingHints.VALUE_TEXT_ANTIALIAS_OFF)) {
+            // In both these cases we want the non-antialiased
+            // font render context.
+            return aaOffFontRenderContext;
+        }
+        return fontRenderContext;
+    }
+
+    /**
+     * Returns the cache entry holding the layout of the given text
+     * runs, or null if they cannot be shared.
+     */
+    protected TextLayoutCache.Entry createTextLayoutCacheEntry
+        (TextLayoutCache.Key key, List textRuns) {
+        if (textRuns.isEmpty()) {
+            return null;
+        }
+        TextLayoutCache.Entry entry =
+            new TextLayoutCache.Entry(key.getPosition(), textRuns.size());
+        for (int i = 0; i < textRuns.size(); i++) {
+            TextRun run = (TextRun) textRuns.get(i);
+            TextSpanLayout layout = run.getLayout();
+            if (layout.getClass() != GlyphLayout.class ||
+                run.getBidiLevel() != 0) {
+                return null;
+            }
+            GlyphLayout.LayoutState state =
+                ((GlyphLayout) layout).getLayoutState();
+            if (state == null) {
+                return null;
+            }
+            AttributedCharacterIterator runaci = run.getACI();
+            entry.setRun(i, runaci.getBeginIndex(), runaci.getEndIndex(),
+                         run.isFirstRunInChunk(), state);
+        }
+        return entry;
+    }
+
+    /**
+     * Creates the text runs of a text from the cached layout of an
+     * identical text, translated to the position of the text.
+     */
+    protected List createTextRuns(AttributedCharacterIterator aci,
+                                  TextLayoutCache.Key key,
+                                  TextLayoutCache.Entry entry) {
+        Point2D translation = entry.getTranslation(key.getPosition());
+        float dx = (float) translation.getX();
+        float dy = (float) translation.getY();
+        FontRenderContext frc = key.getFontRenderContext();
+        Integer level = 0;
+
+        int n = entry.getRunCount();
+        List textRuns = new ArrayList(n);
+        for (int i = 0; i < n; i++) {
+            GlyphLayout.LayoutState state = entry.getLayoutState(i);
+            Map runAttributes = new HashMap(4);
+            runAttributes.put(GVT_FONT, state.getFont());
+            runAttributes.put(BIDI_LEVEL, level);
+            AttributedCharacterIterator runaci =
+                new TextLayoutCache.RunIterator
+                (aci, entry.getRunStart(i), entry.getRunLimit(i),
+                 runAttributes);
+            TextSpanLayout layout =
+                new GlyphLayout(runaci, state, dx, dy, frc);
+            textRuns.add(new TextRun(layout, runaci,
+                                     entry.isFirstRunInChunk(i)));
+        }
+        return textRuns;
+    }
+
     public List computeTextRuns(TextNode node,
                                 AttributedCharacterIterator aci,
                                 AttributedCharacterIterator [] chunkACIs) {
@@ -633,17 +767,7 @@ public class StrokingTextPainter extends BasicTextPainter {
                 }
             }
 
-            FontRenderContext frc = fontRenderContext;
-            RenderingHints rh = node.getRenderingHints();
-            // Check for optimizeSpeed, optimizeLegibility
-            // in these cases setup hintedFRC
-            if ((rh != null) &&
-                (rh.get(RenderingHints.KEY_TEXT_ANTIALIASING) ==
-                  RenderingHints.VALUE_TEXT_ANTIALIAS_OFF)) {
-                // In both these cases we want the non-antialiased
-                // font render context.
-                frc = aaOffFontRenderContext;
-            }
+            FontRenderContext frc = getFontRenderContext(node);
 
             layout = getTextLayoutFactory().createTextLayout
                 (runaci, subCharMap, offset, frc);
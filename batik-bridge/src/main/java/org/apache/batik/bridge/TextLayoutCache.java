@@ -0,0 +1,474 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.bridge;
+
+import java.awt.font.FontRenderContext;
+import java.awt.geom.Point2D;
+import java.text.AttributedCharacterIterator;
+import java.text.CharacterIterator;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.batik.gvt.font.AWTFontFamily;
+import org.apache.batik.gvt.text.AttributedCharacterSpanIterator;
+import org.apache.batik.gvt.text.GVTAttributedCharacterIterator;
+
+/**
+ * A cache of the layouts of text nodes. Documents such as charts or
+ * maps repeat the same strings with the same font attributes many
+ * times (axis ticks, labels); the layout of such a text only differs
+ * from the layout of the first occurrence by a translation.
+ *
+ * Entries are keyed by the characters of the text node and by the
+ * attributes that affect the layout, ignoring the absolute position
+ * of the text. They hold the immutable state of each
+ * <code>GlyphLayout</code>, from which the text runs of another
+ * occurrence are created without splitting the text in bidi runs,
+ * matching the fonts or laying out the glyphs again.
+ *
+ * Only texts laid out from a single position with AWT fonts are
+ * cached: texts with several absolute positions, on a path, with
+ * alternate glyphs, bidirectional texts and texts using SVG fonts
+ * are laid out as usual.
+ *
+ * @version $Id$
+ */
+public class TextLayoutCache {
+
+    /**
+     * The default maximum number of entries.
+     */
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    public static final AttributedCharacterIterator.Attribute X
+        = GVTAttributedCharacterIterator.TextAttribute.X;
+
+    public static final AttributedCharacterIterator.Attribute Y
+        = GVTAttributedCharacterIterator.TextAttribute.Y;
+
+    public static final AttributedCharacterIterator.Attribute GVT_FONT
+        = GVTAttributedCharacterIterator.TextAttribute.GVT_FONT;
+
+    public static final AttributedCharacterIterator.Attribute BIDI_LEVEL
+        = GVTAttributedCharacterIterator.TextAttribute.BIDI_LEVEL;
+
+    public static final AttributedCharacterIterator.Attribute
+        GVT_FONT_FAMILIES
+        = GVTAttributedCharacterIterator.TextAttribute.GVT_FONT_FAMILIES;
+
+    /**
+     * The attributes that are specific to a text element and do not
+     * affect the layout.
+     */
+    protected static final Set ignoredAttributes = new HashSet();
+
+    static {
+        ignoredAttributes.add
+            (GVTAttributedCharacterIterator.TextAttribute.PAINT_INFO);
+        ignoredAttributes.add
+            (GVTAttributedCharacterIterator.TextAttribute.TEXT_COMPOUND_ID);
+        ignoredAttributes.add
+            (GVTAttributedCharacterIterator.TextAttribute.TEXT_COMPOUND_DELIMITER);
+        // The fonts are derived for each element from the font
+        // families, which are part of the key.
+        ignoredAttributes.add
+            (GVTAttributedCharacterIterator.TextAttribute.GVT_FONTS);
+    }
+
+    /**
+     * The attributes that prevent a text from being cached.
+     */
+    protected static final Set uncachedAttributes = new HashSet();
+
+    static {
+        uncachedAttributes.add
+            (GVTAttributedCharacterIterator.TextAttribute.TEXTPATH);
+        uncachedAttributes.add
+            (GVTAttributedCharacterIterator.TextAttribute.ALT_GLYPH_HANDLER);
+        uncachedAttributes.add
+            (GVTAttributedCharacterIterator.TextAttribute.FLOW_PARAGRAPH);
+        uncachedAttributes.add
+            (GVTAttributedCharacterIterator.TextAttribute.FLOW_EMPTY_PARAGRAPH);
+        uncachedAttributes.add
+            (GVTAttributedCharacterIterator.TextAttribute.FLOW_LINE_BREAK);
+        uncachedAttributes.add
+            (GVTAttributedCharacterIterator.TextAttribute.FLOW_REGIONS);
+    }
+
+    /**
+     * The cache shared by the text painters.
+     */
+    protected static final TextLayoutCache sharedCache =
+        new TextLayoutCache(DEFAULT_CAPACITY);
+
+    /**
+     * Returns the cache shared by the text painters.
+     */
+    public static TextLayoutCache getSharedCache() {
+        return sharedCache;
+    }
+
+    /**
+     * The entries, least recently used first.
+     */
+    protected LinkedHashMap entries;
+
+    /**
+     * The maximum number of entries.
+     */
+    protected int capacity;
+
+    /**
+     * The statistics.
+     */
+    protected long hits, misses;
+
+    /**
+     * Creates a new TextLayoutCache.
+     * @param capacity The maximum number of entries.
+     */
+    public TextLayoutCache(int capacity) {
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap(16, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry eldest) {
+                return size() > TextLayoutCache.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * Returns the key of the given text, or null if the layout of the
+     * text cannot be cached.
+     *
+     * @param aci The attributed characters of the text node.
+     * @param location The location of the text node.
+     * @param frc The font render context the text is laid out with.
+     */
+    public Key createKey(AttributedCharacterIterator aci,
+                         Point2D location,
+                         FontRenderContext frc) {
+        int end = aci.getEndIndex();
+        if (aci.getBeginIndex() != 0 || end == 0) {
+            return null;
+        }
+
+        StringBuffer text = new StringBuffer(end);
+        for (char c = aci.first(); c != CharacterIterator.DONE; c = aci.next()) {
+            text.append(c);
+        }
+
+        // The position the text is laid out from, see
+        // StrokingTextPainter.adjustChunkOffsets.
+        float x = (float)location.getX();
+        float y = (float)location.getY();
+
+        List runs = new ArrayList();
+        int index = 0;
+        while (index < end) {
+            aci.setIndex(index);
+            int limit = aci.getRunLimit();
+            Map attrs = aci.getAttributes();
+            Map runAttrs = new HashMap(attrs.size());
+            for (Object o : attrs.entrySet()) {
+                Map.Entry e = (Map.Entry) o;
+                Object k = e.getKey();
+                Object v = e.getValue();
+                if (k == null || v == null || ignoredAttributes.contains(k)) {
+                    continue;
+                }
+                if (uncachedAttributes.contains(k)) {
+                    return null;
+                }
+                if (k == X || k == Y) {
+                    float f = (Float) v;
+                    if (Float.isNaN(f)) {
+                        continue;
+                    }
+                    if (index != 0) {
+                        // Several absolute positions.
+                        return null;
+                    }
+                    if (k == X) {
+                        x = f;
+                    } else {
+                        y = f;
+                    }
+                    continue;
+                }
+                if (k == GVT_FONT_FAMILIES) {
+                    // SVG fonts hold references to their document.
+                    for (Object ff : (List) v) {
+                        if (!(ff instanceof AWTFontFamily)) {
+                            return null;
+                        }
+                    }
+                }
+                runAttrs.put(k, v);
+            }
+            runs.add(limit);
+            runs.add(runAttrs);
+            index = limit;
+        }
+        return new Key(text.toString(), runs, frc, x, y);
+    }
+
+    /**
+     * Returns the entry of the given key, or null if there is none.
+     */
+    public synchronized Entry get(Key key) {
+        Entry entry = (Entry) entries.get(key);
+        if (entry == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return entry;
+    }
+
+    /**
+     * Puts an entry in the cache.
+     */
+    public synchronized void put(Key key, Entry entry) {
+        entries.put(key, entry);
+    }
+
+    /**
+     * Removes all the entries and resets the statistics.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        hits = misses = 0;
+    }
+
+    /**
+     * Returns the number of entries.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the number of lookups that found an entry.
+     */
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of lookups that did not find an entry.
+     */
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    public String toString() {
+        return "TextLayoutCache[size=" + size()
+            + ", hits=" + getHitCount()
+            + ", misses=" + getMissCount() + "]";
+    }
+
+    /**
+     * The key of an entry: the characters and the layout attributes
+     * of a text. The position of the text is not part of the key.
+     */
+    public static class Key {
+
+        protected String text;
+        protected List runs;
+        protected FontRenderContext frc;
+        protected float x, y;
+        protected int hash;
+
+        protected Key(String text, List runs, FontRenderContext frc,
+                      float x, float y) {
+            this.text = text;
+            this.runs = runs;
+            this.frc = frc;
+            this.x = x;
+            this.y = y;
+            this.hash = (text.hashCode() * 31 + runs.hashCode()) * 31
+                + frc.hashCode();
+        }
+
+        /**
+         * Returns the position the text is laid out from.
+         */
+        public Point2D getPosition() {
+            return new Point2D.Float(x, y);
+        }
+
+        /**
+         * Returns the font render context the text is laid out with.
+         */
+        public FontRenderContext getFontRenderContext() {
+            return frc;
+        }
+
+        public int hashCode() {
+            return hash;
+        }
+
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key k = (Key) o;
+            return hash == k.hash
+                && text.equals(k.text)
+                && frc.equals(k.frc)
+                && runs.equals(k.runs);
+        }
+    }
+
+    /**
+     * The layout of the text runs of a text laid out from a given
+     * position.
+     */
+    public static class Entry {
+
+        protected float x, y;
+        protected int [] runStarts;
+        protected int [] runLimits;
+        protected boolean [] firstRunInChunk;
+        protected GlyphLayout.LayoutState [] states;
+
+        /**
+         * Creates a new Entry.
+         * @param position The position the text was laid out from.
+         * @param runCount The number of text runs.
+         */
+        public Entry(Point2D position, int runCount) {
+            x = (float) position.getX();
+            y = (float) position.getY();
+            runStarts = new int[runCount];
+            runLimits = new int[runCount];
+            firstRunInChunk = new boolean[runCount];
+            states = new GlyphLayout.LayoutState[runCount];
+        }
+
+        /**
+         * Sets the layout of a text run.
+         */
+        public void setRun(int i, int start, int limit, boolean first,
+                           GlyphLayout.LayoutState state) {
+            runStarts[i] = start;
+            runLimits[i] = limit;
+            firstRunInChunk[i] = first;
+            states[i] = state;
+        }
+
+        public int getRunCount() {
+            return states.length;
+        }
+
+        public int getRunStart(int i) {
+            return runStarts[i];
+        }
+
+        public int getRunLimit(int i) {
+            return runLimits[i];
+        }
+
+        public boolean isFirstRunInChunk(int i) {
+            return firstRunInChunk[i];
+        }
+
+        public GlyphLayout.LayoutState getLayoutState(int i) {
+            return states[i];
+        }
+
+        /**
+         * Returns the translation from the position the entry was laid
+         * out from to the given one.
+         */
+        public Point2D getTranslation(Point2D position) {
+            return new Point2D.Float((float) position.getX() - x,
+                                     (float) position.getY() - y);
+        }
+    }
+
+    /**
+     * The characters of a text run, with the attributes that font
+     * matching and bidi analysis would have added.
+     */
+    public static class RunIterator extends AttributedCharacterSpanIterator {
+
+        protected Map runAttributes;
+
+        /**
+         * Creates a new RunIterator.
+         * @param aci The attributed characters of the text node.
+         * @param start the first index of the run
+         * @param stop the index of the first character after the run
+         * @param runAttributes the attributes added to all the
+         *        characters of the run
+         */
+        public RunIterator(AttributedCharacterIterator aci,
+                           int start, int stop, Map runAttributes) {
+            super(aci, start, stop);
+            this.runAttributes = runAttributes;
+        }
+
+        public Set getAllAttributeKeys() {
+            Set keys = new HashSet(super.getAllAttributeKeys());
+            keys.addAll(runAttributes.keySet());
+            return keys;
+        }
+
+        public Object getAttribute(AttributedCharacterIterator.Attribute attribute) {
+            Object v = runAttributes.get(attribute);
+            if (v != null) {
+                return v;
+            }
+            return super.getAttribute(attribute);
+        }
+
+        public Map getAttributes() {
+            Map attrs = new HashMap(super.getAttributes());
+            attrs.putAll(runAttributes);
+            return attrs;
+        }
+
+        public int getRunLimit(AttributedCharacterIterator.Attribute attribute) {
+            if (runAttributes.containsKey(attribute)) {
+                return getEndIndex();
+            }
+            return super.getRunLimit(attribute);
+        }
+
+        public int getRunStart(AttributedCharacterIterator.Attribute attribute) {
+            if (runAttributes.containsKey(attribute)) {
+                return getBeginIndex();
+            }
+            return super.getRunStart(attribute);
+        }
+
+        public Object clone() {
+            AttributedCharacterIterator aci =
+                (AttributedCharacterIterator) super.clone();
+            return new RunIterator(aci, getBeginIndex(), getEndIndex(),
+                                   runAttributes);
+        }
+    }
+}
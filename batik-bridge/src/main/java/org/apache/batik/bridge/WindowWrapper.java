@@ -24,9 +24,11 @@ import java.security.AccessController;
 import java.security.PrivilegedAction;
 
 
+import org.mozilla.javascript.ClassCache;
 import org.mozilla.javascript.Context;
 import org.mozilla.javascript.Function;
 import org.mozilla.javascript.ImporterTopLevel;
+import org.mozilla.javascript.NativeJavaTopPackage;
 import org.mozilla.javascript.NativeObject;
 import org.mozilla.javascript.Scriptable;
 import org.mozilla.javascript.ScriptableObject;
@@ -47,6 +49,12 @@ public class WindowWrapper extends ImporterTopLevel {
 
     private static final Object[] EMPTY_ARGUMENTS = new Object[0];
 
+    /**
+     * The number of members ImporterTopLevel exports (the JavaImporter
+     * constructor, importClass and importPackage).
+     */
+    private static final int IMPORTER_MAX_PROTOTYPE_ID = 3;
+
     /**
      * The rhino interpreter.
      */
@@ -62,6 +70,28 @@ public class WindowWrapper extends ImporterTopLevel {
      */
     public WindowWrapper(Context context) {
         super(context);
+        defineWindowProperties();
+    }
+
+    /**
+     * Creates a new WindowWrapper which inherits the standard objects
+     * from the given shared scope instead of defining its own.
+     */
+    public WindowWrapper(Context context, Scriptable sharedScope) {
+        setPrototype(sharedScope);
+        // The importer functions and the Java packages keep the
+        // imported classes: they are defined on the window itself.
+        exportAsJSClass(IMPORTER_MAX_PROTOTYPE_ID, this, false);
+        delete("constructor");
+        NativeJavaTopPackage.init(context, this, false);
+        new ClassCache().associate(this);
+        defineWindowProperties();
+    }
+
+    /**
+     * Defines the functions and properties of the window.
+     */
+    private void defineWindowProperties() {
         String[] names = { "setInterval", "setTimeout", "clearInterval",
                            "clearTimeout", "parseXML", "printNode", "getURL",
                            "postURL", "alert", "confirm", "prompt" };
@@ -18,15 +18,19 @@
  */
 package org.apache.batik.ext.awt.image.codec.imageio;
 
+import java.awt.Rectangle;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
 import java.awt.image.ColorModel;
 import java.awt.image.WritableRaster;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Iterator;
 
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
 import javax.imageio.ImageReader;
 import javax.imageio.stream.ImageInputStream;
 
@@ -34,6 +38,7 @@ import org.apache.batik.ext.awt.image.GraphicsUtil;
 import org.apache.batik.ext.awt.image.renderable.DeferRable;
 import org.apache.batik.ext.awt.image.renderable.Filter;
 import org.apache.batik.ext.awt.image.renderable.RedRable;
+import org.apache.batik.ext.awt.image.renderable.SubsamplingRable;
 import org.apache.batik.ext.awt.image.rendered.Any2sRGBRed;
 import org.apache.batik.ext.awt.image.rendered.CachableRed;
 import org.apache.batik.ext.awt.image.rendered.FormatRed;
@@ -79,6 +84,12 @@ public abstract class AbstractImageIORegistryEntry
         super(name, PRIORITY + 100, ext, mimeType, offset, magicNumber);
     }
 
+    /**
+     * The number of bytes of a stream which can be read to get the size
+     * of the image, and still be read again.
+     */
+    protected static final int HEADER_LIMIT = 1 << 16;
+
     /**
      * Decode the Stream into a RenderableImage
      *
@@ -109,36 +120,32 @@ public abstract class AbstractImageIORegistryEntry
                 public void run() {
                     Filter filt;
                     try{
-                        Iterator<ImageReader> iter = ImageIO.getImageReadersByMIMEType(
-                                getMimeTypes().get(0).toString());
-                        if (!iter.hasNext()) {
-                            throw new UnsupportedOperationException(
-                                    "No image reader for "
-                                        + getFormatName() + " available!");
-                        }
-                        ImageReader reader = iter.next();
+                        ImageReader reader = createReader();
+                        is.mark(HEADER_LIMIT);
                         ImageInputStream imageIn = ImageIO.createImageInputStream(is);
                         reader.setInput(imageIn, true);
 
                         int imageIndex = 0;
-                        dr.setBounds(new Rectangle2D.Double
-                                     (0, 0,
-                                      reader.getWidth(imageIndex),
-                                      reader.getHeight(imageIndex)));
-                        CachableRed cr;
-                        //Naive approach possibly wasting lots of memory
-                        //and ignoring the gamma correction done by PNGRed :-(
-                        //Matches the code used by the former JPEGRegistryEntry, though.
-                        BufferedImage bi = reader.read(imageIndex);
-                        cr = GraphicsUtil.wrap(bi);
-                        cr = new Any2sRGBRed(cr);
-                        cr = new FormatRed(cr, GraphicsUtil.sRGB_Unpre);
-                        WritableRaster wr = (WritableRaster)cr.getData();
-                        ColorModel cm = cr.getColorModel();
-                        BufferedImage image = new BufferedImage
-                            (cm, wr, cm.isAlphaPremultiplied(), null);
-                        cr = GraphicsUtil.wrap(image);
-                        filt = new RedRable(cr);
+                        int w = reader.getWidth(imageIndex);
+                        int h = reader.getHeight(imageIndex);
+                        dr.setBounds(new Rectangle2D.Double(0, 0, w, h));
+                        filt = null;
+                        if ((long)w * h > SubsamplingRable.MIN_PIXELS) {
+                            try {
+                                is.reset();
+                                filt = new ImageIOSubsamplingRable
+                                    (readData(is), w, h);
+                                reader.dispose();
+                            } catch (IOException ioe) {
+                                // The header was too large to read the
+                                // stream again, decode the whole image.
+                            }
+                        }
+                        if (filt == null) {
+                            filt = new RedRable(decode(reader, null));
+                        } else {
+                            ((SubsamplingRable)filt).checkData();
+                        }
                     } catch (IOException ioe) {
                         // Something bad happened here...
                         filt = ImageTagRegistry.getBrokenLinkImage
@@ -163,4 +170,86 @@ public abstract class AbstractImageIORegistryEntry
         return dr;
     }
 
+    /**
+     * Returns a new reader for the format of this entry.
+     */
+    protected ImageReader createReader() {
+        Iterator<ImageReader> iter = ImageIO.getImageReadersByMIMEType(
+                getMimeTypes().get(0).toString());
+        if (!iter.hasNext()) {
+            throw new UnsupportedOperationException(
+                    "No image reader for "
+                        + getFormatName() + " available!");
+        }
+        return iter.next();
+    }
+
+    /**
+     * Decodes the first image of a reader into an sRGB image.
+     * @param reader the reader, which input is set.
+     * @param param the parameters of the decoding, or null.
+     */
+    protected static CachableRed decode(ImageReader reader,
+                                        ImageReadParam param)
+        throws IOException {
+        CachableRed cr;
+        //Naive approach possibly wasting lots of memory
+        //and ignoring the gamma correction done by PNGRed :-(
+        //Matches the code used by the former JPEGRegistryEntry, though.
+        BufferedImage bi = reader.read(0, param);
+        cr = GraphicsUtil.wrap(bi);
+        cr = new Any2sRGBRed(cr);
+        cr = new FormatRed(cr, GraphicsUtil.sRGB_Unpre);
+        WritableRaster wr = (WritableRaster)cr.getData();
+        ColorModel cm = cr.getColorModel();
+        BufferedImage image = new BufferedImage
+            (cm, wr, cm.isAlphaPremultiplied(), null);
+        return GraphicsUtil.wrap(image);
+    }
+
+    /**
+     * Reads the rest of a stream.
+     */
+    protected static byte[] readData(InputStream is) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        byte[] buf = new byte[8192];
+        int n;
+        while ((n = is.read(buf)) != -1) {
+            bos.write(buf, 0, n);
+        }
+        is.close();
+        return bos.toByteArray();
+    }
+
+    /**
+     * A large image, decoded for each rendering at the resolution it
+     * needs.
+     */
+    protected class ImageIOSubsamplingRable extends SubsamplingRable {
+
+        /**
+         * The encoded image.
+         */
+        protected byte[] data;
+
+        public ImageIOSubsamplingRable(byte[] data, int width, int height) {
+            super(width, height);
+            this.data = data;
+        }
+
+        protected CachableRed decode(Rectangle region, int subsampling)
+            throws IOException {
+            ImageReader reader = createReader();
+            try {
+                reader.setInput(ImageIO.createImageInputStream
+                                (new ByteArrayInputStream(data)), true);
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceRegion(region);
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                return AbstractImageIORegistryEntry.decode(reader, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
 }
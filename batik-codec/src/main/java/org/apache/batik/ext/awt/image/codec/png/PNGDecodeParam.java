@@ -18,6 +18,8 @@
  */
 package org.apache.batik.ext.awt.image.codec.png;
 
+import java.awt.Rectangle;
+
 import org.apache.batik.ext.awt.image.codec.util.ImageDecodeParam;
 import org.apache.batik.ext.awt.image.codec.util.PropertyUtil;
 
@@ -308,6 +310,64 @@ public class PNGDecodeParam implements ImageDecodeParam {
         this.expandGrayAlpha = expandGrayAlpha;
     }
 
+    private Rectangle sourceRegion = null;
+
+    private int subsampling = 1;
+
+    /**
+     * Returns the area of the image which is decoded, or
+     * <code>null</code> if the whole image is decoded.
+     */
+    public Rectangle getSourceRegion() {
+        return sourceRegion;
+    }
+
+    /**
+     * Sets the area of the image which is decoded, in pixels of the
+     * image.  The pixels of the decoded image come from this area only:
+     * the top left one is the top left pixel of the area.  The rows
+     * of the image out of this area are still read but not processed.
+     *
+     * <p> By default, or if <code>null</code> is given, the whole image
+     * is decoded.
+     *
+     * @throws IllegalArgumentException if <code>sourceRegion</code> is
+     * empty.
+     */
+    public void setSourceRegion(Rectangle sourceRegion) {
+        if ((sourceRegion != null) && sourceRegion.isEmpty()) {
+            throw new IllegalArgumentException(PropertyUtil.getString("PNGDecodeParam2"));
+        }
+        this.sourceRegion = sourceRegion;
+    }
+
+    /**
+     * Returns the subsampling period of the decoding.
+     */
+    public int getSubsampling() {
+        return subsampling;
+    }
+
+    /**
+     * Sets the subsampling period of the decoding: only one pixel in
+     * <code>subsampling</code> of each row, and one row in
+     * <code>subsampling</code>, are kept, starting with the top left
+     * pixel of the decoded area.  The decoded image is thus
+     * <code>subsampling</code> times smaller in each direction, and
+     * only the kept rows are processed.
+     *
+     * <p> By default, every pixel is kept.
+     *
+     * @throws IllegalArgumentException if <code>subsampling</code> is
+     * less than 1.
+     */
+    public void setSubsampling(int subsampling) {
+        if (subsampling < 1) {
+            throw new IllegalArgumentException(PropertyUtil.getString("PNGDecodeParam3"));
+        }
+        this.subsampling = subsampling;
+    }
+
     private boolean generateEncodeParam = false;
 
     private PNGEncodeParam encodeParam = null;
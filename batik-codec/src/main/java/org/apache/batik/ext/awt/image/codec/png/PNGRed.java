@@ -297,6 +297,15 @@ public class PNGRed extends AbstractRed {
     private WritableRaster theTile;
     private Rectangle bounds;
 
+    /** The area of the image which is decoded, or null for all of it. */
+    private Rectangle sourceRegion = null;
+
+    /** The subsampling period of the decoding. */
+    private int subsampling = 1;
+
+    /** Whether only some pixels of the image are decoded. */
+    private boolean subsample = false;
+
     /** A Hashtable containing the image properties. */
     private Map properties = new HashMap();
 
@@ -375,6 +384,8 @@ public class PNGRed extends AbstractRed {
             output8BitGray = true;
         }
         this.generateEncodeParam = decodeParam.getGenerateEncodeParam();
+        this.sourceRegion = decodeParam.getSourceRegion();
+        this.subsampling = decodeParam.getSubsampling();
 
         if (emitProperties) {
             properties.put("file_type", "PNG v. 1.0");
@@ -764,8 +775,18 @@ public class PNGRed extends AbstractRed {
         if ((colorType == PNG_COLOR_PALETTE) && expandPalette) {
             depth = 8;
         }
-        int width  = bounds.width;
-        int height = bounds.height;
+        Rectangle region = bounds;
+        if (sourceRegion != null) {
+            region = bounds.intersection(sourceRegion);
+            if (region.isEmpty()) {
+                String msg = PropertyUtil.getString("PNGImageDecoder18");
+                throw new RuntimeException(msg);
+            }
+        }
+        sourceRegion = region;
+        subsample = (subsampling != 1) || !region.equals(bounds);
+        int width  = (region.width  + subsampling - 1)/subsampling;
+        int height = (region.height + subsampling - 1)/subsampling;
 
         int bytesPerRow = (outputBands*width*depth + 7)/8;
         int scanlineStride =
@@ -792,6 +813,7 @@ public class PNGRed extends AbstractRed {
         seqStream.close();
         streamVec = null;
 
+        bounds = new Rectangle(0, 0, width, height);
         SampleModel sm = theTile.getSampleModel();
         ColorModel  cm;
 
@@ -1779,6 +1801,16 @@ public class PNGRed extends AbstractRed {
             shortData = ((DataBufferUShort)dataBuffer).getData();
         }
 
+        // When only some pixels are kept, the kept rows are processed
+        // into rowRas, then the kept pixels are copied to imRas.
+        WritableRaster rowRas = null;
+        int[] pixel = null;
+        int rx = sourceRegion.x;
+        int ry = sourceRegion.y;
+        if (subsample) {
+            rowRas = imRas.createCompatibleWritableRaster(bounds.width, 1);
+        }
+
         // Decode the (sub)image row-by-row
         int srcY, dstY;
         for (srcY = 0, dstY = yOffset;
@@ -1814,20 +1846,40 @@ public class PNGRed extends AbstractRed {
                 throw new RuntimeException(msg);
             }
 
-            // Copy data into passRow byte by byte
-            if (bitDepth < 16) {
-                System.arraycopy(curr, 0, byteData, 0, bytesPerRow);
-            } else {
-                int idx = 0;
-                for (int j = 0; j < eltsPerRow; j++) {
-                    shortData[j] =
-                        (short)((curr[idx] << 8) | (curr[idx + 1] & 0xff));
-                    idx += 2;
+            boolean keep = !subsample ||
+                ((dstY >= ry) && (dstY < ry + sourceRegion.height) &&
+                 ((dstY - ry) % subsampling == 0));
+            if (keep) {
+                // Copy data into passRow byte by byte
+                if (bitDepth < 16) {
+                    System.arraycopy(curr, 0, byteData, 0, bytesPerRow);
+                } else {
+                    int idx = 0;
+                    for (int j = 0; j < eltsPerRow; j++) {
+                        shortData[j] =
+                            (short)((curr[idx] << 8) | (curr[idx + 1] & 0xff));
+                        idx += 2;
+                    }
                 }
             }
 
-            processPixels(postProcess,
-                          passRow, imRas, xOffset, xStep, dstY, passWidth);
+            if (!subsample) {
+                processPixels(postProcess,
+                              passRow, imRas, xOffset, xStep, dstY,
+                              passWidth);
+            } else if (keep) {
+                processPixels(postProcess,
+                              passRow, rowRas, xOffset, xStep, 0,
+                              passWidth);
+                int y = (dstY - ry)/subsampling;
+                int x1 = rx + sourceRegion.width;
+                for (int x = rx; x < x1; x += subsampling) {
+                    if ((x - xOffset) % xStep == 0) {
+                        pixel = rowRas.getPixel(x, 0, pixel);
+                        imRas.setPixel((x - rx)/subsampling, y, pixel);
+                    }
+                }
+            }
 
             // Swap curr and prior
             byte[] tmp = prior;
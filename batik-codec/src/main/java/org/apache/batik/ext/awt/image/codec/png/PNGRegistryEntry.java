@@ -18,10 +18,14 @@
  */
 package org.apache.batik.ext.awt.image.codec.png;
 
+import java.awt.Rectangle;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
 import java.awt.image.ColorModel;
 import java.awt.image.WritableRaster;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 
@@ -29,6 +33,7 @@ import org.apache.batik.ext.awt.image.GraphicsUtil;
 import org.apache.batik.ext.awt.image.renderable.DeferRable;
 import org.apache.batik.ext.awt.image.renderable.Filter;
 import org.apache.batik.ext.awt.image.renderable.RedRable;
+import org.apache.batik.ext.awt.image.renderable.SubsamplingRable;
 import org.apache.batik.ext.awt.image.rendered.Any2sRGBRed;
 import org.apache.batik.ext.awt.image.rendered.CachableRed;
 import org.apache.batik.ext.awt.image.rendered.FormatRed;
@@ -80,28 +85,25 @@ public class PNGRegistryEntry
                 public void run() {
                     Filter filt;
                     try {
-                        PNGDecodeParam param = new PNGDecodeParam();
-                        param.setExpandPalette(true);
-
-                        if (raw)
-                            param.setPerformGammaCorrection(false);
-                        else {
-                            param.setPerformGammaCorrection(true);
-                            param.setDisplayExponent(2.2f); // sRGB gamma
+                        // The size is in the IHDR chunk, which is first.
+                        is.mark(24);
+                        DataInputStream dis = new DataInputStream(is);
+                        dis.skipBytes(16);
+                        int w = dis.readInt();
+                        int h = dis.readInt();
+                        is.reset();
+                        if ((long)w * h > SubsamplingRable.MIN_PIXELS) {
+                            dr.setBounds(new Rectangle2D.Double(0, 0, w, h));
+                            PNGSubsamplingRable sr = new PNGSubsamplingRable
+                                (readData(is), w, h, raw);
+                            sr.checkData();
+                            filt = sr;
+                        } else {
+                            CachableRed cr = decode(is, raw, null, 1);
+                            dr.setBounds(new Rectangle2D.Double
+                                         (0, 0, cr.getWidth(), cr.getHeight()));
+                            filt = new RedRable(cr);
                         }
-                        CachableRed cr = new PNGRed(is, param);
-                        dr.setBounds(new Rectangle2D.Double
-                                     (0, 0, cr.getWidth(), cr.getHeight()));
-
-                        cr = new Any2sRGBRed(cr);
-                        cr = new FormatRed(cr, GraphicsUtil.sRGB_Unpre);
-                        WritableRaster wr = (WritableRaster)cr.getData();
-                        ColorModel cm = cr.getColorModel();
-                        BufferedImage image;
-                        image = new BufferedImage
-                            (cm, wr, cm.isAlphaPremultiplied(), null);
-                        cr = GraphicsUtil.wrap(image);
-                        filt = new RedRable(cr);
                     } catch (IOException ioe) {
                         filt = ImageTagRegistry.getBrokenLinkImage
                             (PNGRegistryEntry.this, errCode, errParam);
@@ -121,4 +123,86 @@ public class PNGRegistryEntry
         t.start();
         return dr;
     }
+
+    /**
+     * Decodes a PNG image into an sRGB image.
+     * @param is the stream of the PNG image.
+     * @param raw whether the gamma correction should not be applied.
+     * @param region the area of the image to decode, or null.
+     * @param subsampling the subsampling period.
+     */
+    protected static CachableRed decode(InputStream is, boolean raw,
+                                        Rectangle region, int subsampling)
+        throws IOException {
+        PNGDecodeParam param = new PNGDecodeParam();
+        param.setExpandPalette(true);
+
+        if (raw)
+            param.setPerformGammaCorrection(false);
+        else {
+            param.setPerformGammaCorrection(true);
+            param.setDisplayExponent(2.2f); // sRGB gamma
+        }
+        param.setSourceRegion(region);
+        param.setSubsampling(subsampling);
+        CachableRed cr = new PNGRed(is, param);
+
+        cr = new Any2sRGBRed(cr);
+        cr = new FormatRed(cr, GraphicsUtil.sRGB_Unpre);
+        WritableRaster wr = (WritableRaster)cr.getData();
+        ColorModel cm = cr.getColorModel();
+        BufferedImage image;
+        image = new BufferedImage
+            (cm, wr, cm.isAlphaPremultiplied(), null);
+        return GraphicsUtil.wrap(image);
+    }
+
+    /**
+     * Reads the rest of a stream.
+     */
+    protected static byte[] readData(InputStream is) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        byte[] buf = new byte[8192];
+        int n;
+        while ((n = is.read(buf)) != -1) {
+            bos.write(buf, 0, n);
+        }
+        is.close();
+        return bos.toByteArray();
+    }
+
+    /**
+     * A large PNG image, decoded for each rendering at the resolution
+     * it needs.
+     */
+    protected static class PNGSubsamplingRable extends SubsamplingRable {
+
+        /**
+         * The PNG data.
+         */
+        protected byte[] data;
+
+        /**
+         * Whether the gamma correction should not be applied.
+         */
+        protected boolean raw;
+
+        public PNGSubsamplingRable(byte[] data, int width, int height,
+                                   boolean raw) {
+            super(width, height);
+            this.data = data;
+            this.raw  = raw;
+        }
+
+        protected CachableRed decode(Rectangle region, int subsampling)
+            throws IOException {
+            try {
+                return PNGRegistryEntry.decode
+                    (new ByteArrayInputStream(data), raw, region, subsampling);
+            } catch (RuntimeException e) {
+                // PNGRed reports corrupted data this way.
+                throw new IOException(e.getMessage());
+            }
+        }
+    }
 }
@@ -26,10 +26,12 @@ import java.awt.geom.AffineTransform;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.ColorModel;
 import java.awt.image.Raster;
+import java.util.Arrays;
 
 import org.apache.batik.ext.awt.image.PadMode;
 import org.apache.batik.ext.awt.image.renderable.Filter;
 import org.apache.batik.ext.awt.image.renderable.PadRable8Bit;
+import org.apache.batik.util.HaltingThread;
 
 /**
  * The PatternPaint class provides a way to fill a Shape with a a pattern
@@ -72,6 +74,17 @@ public class PatternPaint implements Paint {
 
     private PatternPaintContext lastContext;
 
+    /**
+     * The root of the pattern content, if the tiles are shared.
+     */
+    private RootGraphicsNode content;
+
+    /**
+     * Identifies the tiles rendered by this paint, if they are shared
+     * with other paints through the <code>PatternTileCache</code>.
+     */
+    private Object tileKey;
+
     /**
      * Constructs a new <code>PatternPaint</code>.
      *
@@ -123,6 +136,50 @@ public class PatternPaint implements Paint {
         tile = new PadRable8Bit(gnr, padBounds, PadMode.ZERO_PAD);
     }
 
+    /**
+     * Constructs a new <code>PatternPaint</code> whose tiles are shared,
+     * through the <code>PatternTileCache</code>, with the paints
+     * rendering the same tiles. Paints render the same tiles when they
+     * have the same content, pattern region, overflow and pattern
+     * transform, and equal content parameters. The shared tiles are
+     * dropped when the content changes.
+     *
+     * @param node Used to generate the paint pixel pattern, it must
+     *        render the given content
+     * @param patternRegion Region to which this paint is constrained
+     * @param overflow controls whether or not the node can overflow
+     *        the patternRegion.
+     * @param patternTransform additional transform added on
+     *        top of the user space to device space transform.
+     * @param content the root of the pattern content
+     * @param contentParameters the other values which determine how
+     *        the node renders the content, compared with
+     *        <code>equals</code>
+     */
+    public PatternPaint(GraphicsNode node,
+                        Rectangle2D patternRegion,
+                        boolean overflow,
+                        AffineTransform patternTransform,
+                        RootGraphicsNode content,
+                        Object contentParameters){
+        this(node, patternRegion, overflow, patternTransform);
+        if (content == null) {
+            throw new IllegalArgumentException();
+        }
+        this.content = content;
+        this.tileKey = Arrays.asList(new Object[] {
+            content, patternRegion, overflow ? Boolean.TRUE : Boolean.FALSE,
+            patternTransform, contentParameters });
+    }
+
+    /**
+     * Returns the key of the tiles shared with other paints, or null
+     * if the tiles of this paint are not shared.
+     */
+    public Object getTileKey(){
+        return tileKey;
+    }
+
     /**
      * Returns the graphics node that define the pattern.
      */
@@ -162,6 +219,10 @@ public class PatternPaint implements Paint {
             xform.concatenate(patternTransform);
         }
 
+        if (tileKey != null) {
+            return createSharedContext(cm, xform, hints);
+        }
+
         if ((lastContext!= null) &&
             lastContext.getColorModel().equals(cm)) {
 
@@ -191,6 +252,35 @@ public class PatternPaint implements Paint {
         return lastContext;
     }
 
+    /**
+     * Creates a context using the shared tiles for the given color
+     * model and transform, which are rendered if not cached.
+     */
+    protected PaintContext createSharedContext(ColorModel      cm,
+                                               AffineTransform xform,
+                                               RenderingHints  hints) {
+        PatternTileCache.Entry e = PatternTileCache.get(tileKey, cm, xform);
+        if (e == null) {
+            PatternPaintContext ppc = new PatternPaintContext
+                (cm, xform, hints, tile, patternRegion, overflow);
+            // Don't share tiles whose rendering was interrupted.
+            if (!HaltingThread.hasBeenHalted()) {
+                PatternTileCache.put(tileKey, content, cm, ppc);
+            }
+            return ppc;
+        }
+
+        PatternPaintContext ppc = new PatternPaintContext
+            (e.usr2dev, e.tiled, e.rasterCM);
+        int xShift = (int)Math.floor
+            (e.usr2dev.getTranslateX() - xform.getTranslateX() + 0.5);
+        int yShift = (int)Math.floor
+            (e.usr2dev.getTranslateY() - xform.getTranslateY() + 0.5);
+        if ((xShift == 0) && (yShift == 0))
+            return ppc;
+        return new PatternPaintContextWrapper(ppc, xShift, yShift);
+    }
+
     /**
      * Returns the transparency mode for this pattern paint.
      */
@@ -143,6 +143,28 @@ public class PatternPaintContext implements PaintContext {
         }
     }
 
+    /**
+     * Creates a context sharing the rendered tiles of another one.
+     * @param usr2dev    user space to device space transform the tiles
+     *                   were rendered with
+     * @param tiled      the rendered tiles
+     * @param rasterCM   ColorModel for the Rasters created by this Paint
+     */
+    PatternPaintContext(AffineTransform usr2dev,
+                        RenderedImage   tiled,
+                        ColorModel      rasterCM) {
+        this.usr2dev  = usr2dev;
+        this.tiled    = tiled;
+        this.rasterCM = rasterCM;
+    }
+
+    /**
+     * Returns the rendered tiles of this context.
+     */
+    RenderedImage getTiled() {
+        return tiled;
+    }
+
     public void dispose(){
         raster = null;
     }
@@ -0,0 +1,289 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.gvt;
+
+import java.awt.geom.AffineTransform;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.RenderedImage;
+import java.awt.image.SampleModel;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.apache.batik.gvt.event.GraphicsNodeChangeAdapter;
+import org.apache.batik.gvt.event.GraphicsNodeChangeEvent;
+
+/**
+ * A cache of the tiles rendered by <code>PatternPaintContext</code>s,
+ * shared by all the <code>PatternPaint</code>s which render the same
+ * tiles (see <code>PatternPaint.getTileKey</code>).
+ *
+ * Tiles are looked up by tile key, destination color model and device
+ * transform. The transform is quantized: the linear part is rounded
+ * to float precision and the translation to
+ * <code>1/TRANSLATION_STEPS</code> of a pixel. Tiles rendered for
+ * transforms only differing by an integer translation are shared,
+ * the contexts shifting them as needed.
+ *
+ * The memory used by the tiles is bounded: the least recently used
+ * tiles are dropped when it exceeds <code>getMaxMemory</code>. The
+ * tiles of a pattern content are dropped when the content changes.
+ * Since the tiles hold their content, the owner of the content must
+ * drop them with <code>invalidate</code> once it is no longer used.
+ *
+ * @version $Id$
+ */
+public class PatternTileCache {
+
+    /**
+     * The default maximum memory used by the tiles, in bytes.
+     */
+    public static final long DEFAULT_MAX_MEMORY = 16L * 1024 * 1024;
+
+    /**
+     * The number of steps per pixel of the quantized translations.
+     */
+    public static final int TRANSLATION_STEPS = 64;
+
+    private static long maxMemory = DEFAULT_MAX_MEMORY;
+
+    private static long memory;
+
+    /**
+     * The cached tiles, least recently used first.
+     */
+    private static final Map entries = new LinkedHashMap(16, 0.75f, true);
+
+    /**
+     * The pattern contents whose changes are listened to.
+     */
+    private static final Map listenedContents = new WeakHashMap();
+
+    private PatternTileCache() {
+    }
+
+    /**
+     * Sets the maximum memory used by the tiles, in bytes.
+     */
+    public static synchronized void setMaxMemory(long max) {
+        maxMemory = max;
+        shrink();
+    }
+
+    /**
+     * Returns the maximum memory used by the tiles, in bytes.
+     */
+    public static synchronized long getMaxMemory() {
+        return maxMemory;
+    }
+
+    /**
+     * Returns the memory currently used by the tiles, in bytes.
+     */
+    public static synchronized long getMemory() {
+        return memory;
+    }
+
+    /**
+     * Drops all the tiles.
+     */
+    public static synchronized void clear() {
+        entries.clear();
+        memory = 0;
+    }
+
+    /**
+     * Drops the tiles rendered from the given pattern content.
+     */
+    public static synchronized void invalidate(RootGraphicsNode content) {
+        Iterator i = entries.values().iterator();
+        while (i.hasNext()) {
+            Entry e = (Entry)i.next();
+            if (e.content == content) {
+                memory -= e.memory;
+                i.remove();
+            }
+        }
+    }
+
+    /**
+     * Returns the tiles rendered for the given tile key, color model
+     * and device transform, or null if they are not cached.
+     */
+    static synchronized Entry get(Object tileKey, ColorModel cm,
+                                  AffineTransform usr2dev) {
+        return (Entry)entries.get(new Key(tileKey, cm, usr2dev));
+    }
+
+    /**
+     * Caches the tiles rendered by the given context.
+     * @param tileKey the key of the tiles
+     * @param content the pattern content the tiles are rendered from
+     * @param cm the color model the context was created for
+     * @param ppc the context
+     */
+    static synchronized Entry put(Object tileKey, RootGraphicsNode content,
+                                  ColorModel cm, PatternPaintContext ppc) {
+        Entry e = new Entry(content, ppc);
+        if (e.memory > maxMemory)
+            return e;
+
+        Entry old = (Entry)entries.put(new Key(tileKey, cm, e.usr2dev), e);
+        if (old != null)
+            memory -= old.memory;
+        memory += e.memory;
+        shrink();
+
+        if ((content != null) && !listenedContents.containsKey(content)) {
+            listenedContents.put(content, Boolean.TRUE);
+            content.addTreeGraphicsNodeChangeListener
+                (new ContentListener(content));
+        }
+        return e;
+    }
+
+    /**
+     * Drops the least recently used tiles until the memory used fits.
+     */
+    private static void shrink() {
+        Iterator i = entries.values().iterator();
+        while ((memory > maxMemory) && i.hasNext()) {
+            Entry e = (Entry)i.next();
+            memory -= e.memory;
+            i.remove();
+        }
+    }
+
+    /**
+     * Estimates the memory used by the given image: the size of one of
+     * its tiles, which is the whole tile of a pattern rendered in a
+     * single raster.
+     */
+    static long getMemory(RenderedImage ri) {
+        SampleModel sm = ri.getSampleModel();
+        long bits = 0;
+        int [] sizes = sm.getSampleSize();
+        if (sm.getNumDataElements() == 1) {
+            bits = DataBuffer.getDataTypeSize(sm.getDataType());
+        } else {
+            for (int i = 0; i < sizes.length; i++) {
+                bits += sizes[i];
+            }
+        }
+        return ((long)sm.getWidth()) * sm.getHeight() * ((bits + 7) / 8);
+    }
+
+    /**
+     * The rendered tiles of a pattern.
+     */
+    static class Entry {
+        final RootGraphicsNode content;
+        final AffineTransform usr2dev;
+        final RenderedImage tiled;
+        final ColorModel rasterCM;
+        final long memory;
+
+        Entry(RootGraphicsNode content, PatternPaintContext ppc) {
+            this.content = content;
+            this.usr2dev = new AffineTransform(ppc.getUsr2Dev());
+            this.tiled = ppc.getTiled();
+            this.rasterCM = ppc.getColorModel();
+            this.memory = getMemory(tiled);
+        }
+    }
+
+    /**
+     * The key of the tiles rendered for a device transform.
+     */
+    static class Key {
+        final Object tileKey;
+        final ColorModel cm;
+        final float m00, m10, m01, m11;
+        final int tx, ty;
+        final int hashCode;
+
+        Key(Object tileKey, ColorModel cm, AffineTransform usr2dev) {
+            this.tileKey = tileKey;
+            this.cm = cm;
+            m00 = (float)usr2dev.getScaleX();
+            m10 = (float)usr2dev.getShearY();
+            m01 = (float)usr2dev.getShearX();
+            m11 = (float)usr2dev.getScaleY();
+            tx = quantizeFraction(usr2dev.getTranslateX());
+            ty = quantizeFraction(usr2dev.getTranslateY());
+
+            int h = tileKey.hashCode();
+            h = 31 * h + cm.hashCode();
+            h = 31 * h + Float.floatToIntBits(m00);
+            h = 31 * h + Float.floatToIntBits(m10);
+            h = 31 * h + Float.floatToIntBits(m01);
+            h = 31 * h + Float.floatToIntBits(m11);
+            h = 31 * h + tx;
+            hashCode = 31 * h + ty;
+        }
+
+        /**
+         * Returns the fractional part of the given translation, in
+         * steps.
+         */
+        static int quantizeFraction(double t) {
+            long steps = Math.round(t * TRANSLATION_STEPS);
+            return (int)(steps - Math.floor(steps / (double)TRANSLATION_STEPS)
+                         * TRANSLATION_STEPS);
+        }
+
+        public int hashCode() {
+            return hashCode;
+        }
+
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key k = (Key)o;
+            return hashCode == k.hashCode
+                && m00 == k.m00 && m10 == k.m10
+                && m01 == k.m01 && m11 == k.m11
+                && tx == k.tx && ty == k.ty
+                && tileKey.equals(k.tileKey)
+                && cm.equals(k.cm);
+        }
+    }
+
+    /**
+     * Drops the tiles of a pattern content when it changes.
+     */
+    static class ContentListener extends GraphicsNodeChangeAdapter {
+        final RootGraphicsNode content;
+
+        ContentListener(RootGraphicsNode content) {
+            this.content = content;
+        }
+
+        public void changeStarted(GraphicsNodeChangeEvent gnce) {
+            invalidate(content);
+        }
+
+        public void changeCompleted(GraphicsNodeChangeEvent gnce) {
+            invalidate(content);
+        }
+    }
+}
@@ -64,6 +64,7 @@ public class UpdateTracker extends GraphicsNodeChangeAdapter {
             return null;
 
         List ret = new LinkedList();
+        Map chains = new HashMap();
         Set keys = dirtyNodes.keySet();
         for (Object key : keys) {
             WeakReference gnWRef = (WeakReference) key;
@@ -78,9 +79,6 @@ public class UpdateTracker extends GraphicsNodeChangeAdapter {
 
             AffineTransform oat;
             oat = (AffineTransform) dirtyNodes.get(gnWRef);
-            if (oat != null) {
-                oat = new AffineTransform(oat);
-            }
 
             Rectangle2D srcORgn = (Rectangle2D) fromBounds.remove(gnWRef);
 
@@ -90,75 +88,40 @@ public class UpdateTracker extends GraphicsNodeChangeAdapter {
                 // For change srcs don't use the new bounds of parent node.
                 srcNRgn = gn.getBounds();
                 nat = gn.getTransform();
-                if (nat != null)
-                    nat = new AffineTransform(nat);
             }
 
+            // The transforms and filter region of the ancestors are
+            // computed once for all the dirty nodes below them.
+            GraphicsNode parent = gn.getParent();
+            Chain pc = null;
+            if (parent != null)
+                pc = getChain(parent, chains);
+
+            Shape oRgn = srcORgn;
+            if ((oRgn != null) && (oRgn != NULL_RECT)) {
+                AffineTransform at = concatenate
+                    (pc == null ? null : pc.oldTransform, oat);
+                if (at != null)
+                    oRgn = at.createTransformedShape(srcORgn);
+                ret.add(oRgn);
+            }
 
-            // System.out.println("Rgns: " + srcORgn + " - " + srcNRgn);
-            // System.out.println("ATs: " + oat + " - " + nat);
-            do {
-                // f.invalidateCache(oRng);
-                // f.invalidateCache(nRng);
-
-                // f = gn.getEnableBackgroundGraphicsNodeRable(false);
-                // (need to push rgn through filter chain if any...)
-                // f.invalidateCache(oRng);
-                // f.invalidateCache(nRng);
-
-                gn = gn.getParent();
-                if (gn == null)
-                    break; // We reached the top of the tree
-
-                Filter f = gn.getFilter();
-                if (f != null) {
-                    srcNRgn = f.getBounds2D();
-                    nat = null;
-                }
-
-                // Get the parent's current Affine
-                AffineTransform at = gn.getTransform();
-                // Get the parent's Affine last time we rendered.
-                gnWRef = gn.getWeakReference();
-                AffineTransform poat = (AffineTransform) dirtyNodes.get(gnWRef);
-                if (poat == null) poat = at;
-                if (poat != null) {
-                    if (oat != null)
-                        oat.preConcatenate(poat);
-                    else
-                        oat = new AffineTransform(poat);
-                }
-
-                if (at != null) {
-                    if (nat != null)
-                        nat.preConcatenate(at);
-                    else
-                        nat = new AffineTransform(at);
-                }
-            } while (true);
-
-            if (gn == null) {
-                // We made it to the root graphics node so add them.
-                // System.out.println
-                //      ("Adding: " + oat + " - " + nat + "\n" +
-                //       srcORgn + "\n" + srcNRgn + "\n");
-                // <!>
-                Shape oRgn = srcORgn;
-                if ((oRgn != null) && (oRgn != NULL_RECT)) {
-                    if (oat != null)
-                        oRgn = oat.createTransformedShape(srcORgn);
-                    // System.err.println("GN: " + srcGN);
-                    // System.err.println("Src: " + oRgn.getBounds2D());
-                    ret.add(oRgn);
-                }
-
-                if (srcNRgn != null) {
-                    Shape nRgn = srcNRgn;
-                    if (nat != null)
-                        nRgn = nat.createTransformedShape(srcNRgn);
-                    if (nRgn != null)
-                        ret.add(nRgn);
+            if ((pc != null) && (pc.filter != null)) {
+                // The whole region of the filter is dirty, which
+                // only needs to be reported once.
+                Chain fc = pc.filter;
+                if (!fc.filterRegionAdded) {
+                    ret.add(fc.filterRegion);
+                    fc.filterRegionAdded = true;
                 }
+            } else if (srcNRgn != null) {
+                Shape nRgn = srcNRgn;
+                AffineTransform at = concatenate
+                    (pc == null ? null : pc.newTransform, nat);
+                if (at != null)
+                    nRgn = at.createTransformedShape(srcNRgn);
+                if (nRgn != null)
+                    ret.add(nRgn);
             }
         }
 
@@ -167,6 +130,64 @@ public class UpdateTracker extends GraphicsNodeChangeAdapter {
         return ret;
     }
 
+    /**
+     * Returns the transforms and filter region accumulated from the
+     * given node to the root of its tree, computing them from those of
+     * its parent the first time they are requested.
+     * @param gn the node
+     * @param chains the chains already computed, keyed by node
+     */
+    protected Chain getChain(GraphicsNode gn, Map chains) {
+        Chain c = (Chain) chains.get(gn);
+        if (c != null)
+            return c;
+
+        GraphicsNode parent = gn.getParent();
+        Chain pc = null;
+        if (parent != null)
+            pc = getChain(parent, chains);
+
+        // Get the node's current Affine
+        AffineTransform at = gn.getTransform();
+        // Get the node's Affine last time we rendered.
+        AffineTransform oat =
+            (AffineTransform) dirtyNodes.get(gn.getWeakReference());
+        if (oat == null) oat = at;
+
+        c = new Chain();
+        c.oldTransform = concatenate(pc == null ? null : pc.oldTransform, oat);
+        c.newTransform = concatenate(pc == null ? null : pc.newTransform, at);
+        if ((pc != null) && (pc.filter != null)) {
+            // The topmost filter determines the dirty region.
+            c.filter = pc.filter;
+        } else {
+            Filter f = gn.getFilter();
+            if (f != null) {
+                Shape s = f.getBounds2D();
+                if (c.newTransform != null)
+                    s = c.newTransform.createTransformedShape(s);
+                c.filterRegion = s;
+                c.filter = c;
+            }
+        }
+        chains.put(gn, c);
+        return c;
+    }
+
+    /**
+     * Returns the concatenation of two transforms, either of which may
+     * be null for the identity. The transforms are not modified.
+     */
+    protected static AffineTransform concatenate(AffineTransform at1,
+                                                 AffineTransform at2) {
+        if (at2 == null)
+            return at1;
+        AffineTransform ret = new AffineTransform(at2);
+        if (at1 != null)
+            ret.preConcatenate(at1);
+        return ret;
+    }
+
     /**
      * This returns the dirty region for gn in the coordinate system
      * given by <code>at</code>.
@@ -282,6 +303,40 @@ public class UpdateTracker extends GraphicsNodeChangeAdapter {
         fromBounds.put(gnWRef, r2d);
     }
 
+    /**
+     * The transforms and filter region accumulated from a node to the
+     * root of its tree.
+     */
+    static class Chain {
+        /**
+         * The transform from the node to the root when the tree was
+         * last rendered, or null for the identity.
+         */
+        AffineTransform oldTransform;
+
+        /**
+         * The current transform from the node to the root, or null.
+         */
+        AffineTransform newTransform;
+
+        /**
+         * The chain of the topmost node with a filter among the node
+         * and its ancestors, or null.
+         */
+        Chain filter;
+
+        /**
+         * The region of the filter of the node in the root space, if
+         * the node has a filter.
+         */
+        Shape filterRegion;
+
+        /**
+         * Whether the filter region was added to the dirty areas.
+         */
+        boolean filterRegionAdded;
+    }
+
     class ChngSrcRect extends Rectangle2D.Float {
         ChngSrcRect(Rectangle2D r2d) {
             super((float)r2d.getX(), (float)r2d.getY(),
@@ -33,6 +33,7 @@ import org.apache.batik.ext.awt.image.GraphicsUtil;
 import org.apache.batik.ext.awt.image.rendered.AbstractRed;
 import org.apache.batik.ext.awt.image.rendered.AbstractTiledRed;
 import org.apache.batik.ext.awt.image.rendered.CachableRed;
+import org.apache.batik.ext.awt.image.rendered.TileScheduler;
 import org.apache.batik.gvt.GraphicsNode;
 import org.apache.batik.util.Platform;
 
@@ -118,7 +119,21 @@ public class GraphicsNodeRed8Bit extends AbstractRed {
         return wr;
     }
 
-    public void genRect(WritableRaster wr) {
+    public void genRect(final WritableRaster wr) {
+        // The GVT tree may only be painted by one thread, so the
+        // tiles computed concurrently are painted by the thread that
+        // started their computation.
+        TileScheduler.runConfined(new Runnable() {
+                public void run() {
+                    paintRect(wr);
+                }
+            });
+    }
+
+    /**
+     * Paints the node into the given raster.
+     */
+    protected void paintRect(WritableRaster wr) {
         // System.out.println("  Rect: " + wr.getBounds());
         BufferedImage offScreen
             = new BufferedImage(cm, 
@@ -147,6 +162,10 @@ public class GraphicsNodeRed8Bit extends AbstractRed {
         g.dispose();
     }
 
+    public boolean isThreadSafe() {
+        return true;
+    }
+
     public ColorModel createColorModel() {
         if (Platform.isOSX)
             return GraphicsUtil.sRGB_Pre;
@@ -30,6 +30,7 @@ import java.awt.geom.Rectangle2D;
 import java.text.AttributedCharacterIterator;
 import java.text.CharacterIterator;
 import java.text.StringCharacterIterator;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -57,7 +58,6 @@ public class AWTGVTFont implements GVTFont {
         this.size = font.getSize2D();
         this.awtFont = font.deriveFont(FONT_SIZE);
         this.scale = size/awtFont.getSize2D();
-        initializeFontCache(awtFont);
     }
 
     /**
@@ -70,7 +70,6 @@ public class AWTGVTFont implements GVTFont {
         this.size = font.getSize2D()*scale;
         this.awtFont = font.deriveFont(FONT_SIZE);
         this.scale = size/awtFont.getSize2D();
-        initializeFontCache(awtFont);
     }
 
     /**
@@ -89,7 +88,6 @@ public class AWTGVTFont implements GVTFont {
             this.size = awtFont.getSize2D();
         }
         this.scale = size/awtFont.getSize2D();
-        initializeFontCache(awtFont);
     }
 
     /**
@@ -103,7 +101,6 @@ public class AWTGVTFont implements GVTFont {
         this.awtFont = new Font(name, style, (int)FONT_SIZE);
         this.size  = size;
         this.scale = size/awtFont.getSize2D();
-        initializeFontCache(awtFont);
     }
 
     /**
@@ -285,6 +282,9 @@ public class AWTGVTFont implements GVTFont {
      * Returns the geometry of the specified character. This method also put
      * the in cache the geometry associated to the specified character if
      * needed.
+     * @deprecated The character is ignored, the geometry is cached by
+     *             glyph code. Use
+     *             {@link #getGlyphGeometry(AWTGVTFont,GlyphVector,int,Point2D)}.
      */
     public static
         AWTGlyphGeometryCache.Value getGlyphGeometry(AWTGVTFont font,
@@ -292,11 +292,29 @@ public class AWTGVTFont implements GVTFont {
                                                      GlyphVector gv,
                                                      int glyphIndex,
                                                      Point2D glyphPos) {
+        return getGlyphGeometry(font, gv, glyphIndex, glyphPos);
+    }
+
+    /**
+     * Returns the geometry of the specified glyph. This method also puts
+     * in the shared {@link GlyphGeometryCache} the geometry associated to
+     * the glyph code if needed.
+     */
+    public static
+        AWTGlyphGeometryCache.Value getGlyphGeometry(AWTGVTFont font,
+                                                     GlyphVector gv,
+                                                     int glyphIndex,
+                                                     Point2D glyphPos) {
 
-        AWTGlyphGeometryCache glyphCache =
-            (AWTGlyphGeometryCache)fontCache.get(font.awtFont);
+        GlyphGeometryCache glyphCache = GlyphGeometryCache.getSharedCache();
+        // The outlines are computed at the size of the AWT font, which
+        // is part of the font key and is FONT_SIZE for all the sizes of
+        // a font; the glyph vectors scale them.
+        Font awtFont = font.awtFont;
+        int glyphCode = gv.getGlyphCode(glyphIndex);
 
-        AWTGlyphGeometryCache.Value v = glyphCache.get(c);
+        AWTGlyphGeometryCache.Value v =
+            glyphCache.get(awtFont, glyphCode);
         if (v == null) {
             Shape outline = gv.getGlyphOutline(glyphIndex);
             GlyphMetrics metrics = gv.getGlyphMetrics(glyphIndex);
@@ -307,8 +325,7 @@ public class AWTGVTFont implements GVTFont {
                 outline = tr.createTransformedShape(outline);
             }
             v = new AWTGlyphGeometryCache.Value(outline, gmB);
-            //System.out.println("put "+font.awtFont+" "+c);
-            glyphCache.put(c, v);
+            glyphCache.put(awtFont, glyphCode, v);
         }
         return v;
     }
@@ -317,13 +334,7 @@ public class AWTGVTFont implements GVTFont {
     // static cache for AWTGVTFont
     //
 
-    static Map fontCache = new HashMap(11);
-
-    static void initializeFontCache(Font awtFont) {
-        if (!fontCache.containsKey(awtFont)) {
-            fontCache.put(awtFont, new AWTGlyphGeometryCache());
-        }
-    }
+    static Map fontCache = Collections.synchronizedMap(new HashMap(11));
 
     static void putAWTGVTFont(AWTGVTFont font) {
         fontCache.put(font.awtFont, font);
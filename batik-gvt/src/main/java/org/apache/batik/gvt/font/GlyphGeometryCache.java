@@ -0,0 +1,263 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.gvt.font;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A thread-safe, bounded cache of glyph geometry, shared by all the
+ * documents of the application. Entries are keyed by a font and a
+ * glyph code, so that glyphs outside the basic multilingual plane and
+ * glyphs that do not map one to one to characters are cached as well.
+ * The font identifies the outlines at a single size: the outlines are
+ * scaled by the glyph vectors using them.
+ *
+ * The cache is split in segments, each one a least recently used map
+ * guarded by its own lock, so concurrent lookups seldom contend. The
+ * number of hits, misses and evictions is recorded.
+ *
+ * @version $Id$
+ */
+public class GlyphGeometryCache {
+
+    /**
+     * The default maximum number of entries.
+     */
+    public static final int DEFAULT_CAPACITY = 8192;
+
+    /**
+     * The number of segments.
+     */
+    protected static final int SEGMENTS = 16;
+
+    /**
+     * The cache shared by the glyph vectors.
+     */
+    protected static final GlyphGeometryCache sharedCache =
+        new GlyphGeometryCache(DEFAULT_CAPACITY);
+
+    /**
+     * Returns the cache shared by the glyph vectors.
+     */
+    public static GlyphGeometryCache getSharedCache() {
+        return sharedCache;
+    }
+
+    /**
+     * The segments.
+     */
+    protected Segment[] segments;
+
+    /**
+     * The statistics, guarded by the segments they belong to.
+     */
+    protected long[] hits, misses, evictions;
+
+    /**
+     * Creates a new GlyphGeometryCache.
+     * @param capacity The maximum number of entries.
+     */
+    public GlyphGeometryCache(int capacity) {
+        int segmentCapacity = Math.max(1, capacity / SEGMENTS);
+        segments = new Segment[SEGMENTS];
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(i, segmentCapacity);
+        }
+        hits = new long[SEGMENTS];
+        misses = new long[SEGMENTS];
+        evictions = new long[SEGMENTS];
+    }
+
+    /**
+     * Returns the geometry of the given glyph, or null if it is not
+     * in the cache.
+     *
+     * @param font The font, or any object identifying the outlines.
+     *        It must implement <code>equals</code> and
+     *        <code>hashCode</code>.
+     * @param glyphCode The glyph code.
+     */
+    public AWTGlyphGeometryCache.Value get(Object font, int glyphCode) {
+        Key key = new Key(font, glyphCode);
+        Segment s = segmentFor(key);
+        synchronized (s) {
+            AWTGlyphGeometryCache.Value v = (AWTGlyphGeometryCache.Value)s.get(key);
+            if (v == null) {
+                misses[s.index]++;
+            } else {
+                hits[s.index]++;
+            }
+            return v;
+        }
+    }
+
+    /**
+     * Puts the geometry of the given glyph in the cache.
+     *
+     * @param font The font, or any object identifying the outlines.
+     * @param glyphCode The glyph code.
+     * @param value The geometry. It is shared, so it must not be
+     *        modified once in the cache.
+     */
+    public void put(Object font, int glyphCode,
+                    AWTGlyphGeometryCache.Value value) {
+        Key key = new Key(font, glyphCode);
+        Segment s = segmentFor(key);
+        synchronized (s) {
+            s.put(key, value);
+        }
+    }
+
+    /**
+     * Removes all the entries and resets the statistics.
+     */
+    public void clear() {
+        for (int i = 0; i < SEGMENTS; i++) {
+            Segment s = segments[i];
+            synchronized (s) {
+                s.clear();
+                hits[i] = misses[i] = evictions[i] = 0;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of entries.
+     */
+    public int size() {
+        int size = 0;
+        for (Segment s : segments) {
+            synchronized (s) {
+                size += s.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Returns the number of lookups that found an entry.
+     */
+    public long getHitCount() {
+        return sum(hits);
+    }
+
+    /**
+     * Returns the number of lookups that did not find an entry.
+     */
+    public long getMissCount() {
+        return sum(misses);
+    }
+
+    /**
+     * Returns the number of entries removed to respect the capacity.
+     */
+    public long getEvictionCount() {
+        return sum(evictions);
+    }
+
+    public String toString() {
+        return "GlyphGeometryCache[size=" + size()
+            + ", hits=" + getHitCount()
+            + ", misses=" + getMissCount()
+            + ", evictions=" + getEvictionCount() + "]";
+    }
+
+    /**
+     * Sums the per segment statistics.
+     */
+    protected long sum(long[] counts) {
+        long sum = 0;
+        for (int i = 0; i < SEGMENTS; i++) {
+            synchronized (segments[i]) {
+                sum += counts[i];
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Returns the segment holding the given key.
+     */
+    protected Segment segmentFor(Key key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return segments[(h & 0x7FFFFFFF) % SEGMENTS];
+    }
+
+    /**
+     * A least recently used map.
+     */
+    protected class Segment extends LinkedHashMap {
+
+        /**
+         * The index of this segment.
+         */
+        protected int index;
+
+        /**
+         * The maximum number of entries.
+         */
+        protected int capacity;
+
+        public Segment(int index, int capacity) {
+            super(16, 0.75f, true);
+            this.index = index;
+            this.capacity = capacity;
+        }
+
+        protected boolean removeEldestEntry(Map.Entry eldest) {
+            if (size() > capacity) {
+                evictions[index]++;
+                return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * The key of an entry.
+     */
+    protected static class Key {
+
+        protected Object font;
+        protected int glyphCode;
+        protected int hash;
+
+        public Key(Object font, int glyphCode) {
+            this.font = font;
+            this.glyphCode = glyphCode;
+            this.hash = font.hashCode() * 31 + glyphCode;
+        }
+
+        public int hashCode() {
+            return hash;
+        }
+
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key k = (Key)o;
+            return hash == k.hash
+                && glyphCode == k.glyphCode
+                && font.equals(k.font);
+        }
+    }
+}
@@ -154,6 +154,12 @@ public class DynamicRenderer extends StaticRenderer {
         CachableRed cr;
         WritableRaster syncRaster;
         WritableRaster copyRaster;
+        WritableRaster moveRaster = null;
+
+        Point t = translation;
+        if ((t != null) && ((t.x != 0) || (t.y != 0)))
+            moveRaster = currentRaster;
+        translation = null;
 
         updateWorkingBuffers();
         if ((rootCR == null)           ||
@@ -202,9 +208,11 @@ public class DynamicRenderer extends StaticRenderer {
                 }
 
 
-                if ((isDoubleBuffered) &&
-                    (currentRaster != null) &&
-                    (damagedAreas  != null)) {
+                if (moveRaster != null) {
+                    moveOffScreen(moveRaster, copyRaster, t.x, t.y);
+                } else if ((isDoubleBuffered) &&
+                           (currentRaster != null) &&
+                           (damagedAreas  != null)) {
                     damagedAreas.subtract(devRLM, COPY_OVERHEAD,
                                           COPY_LINE_OVERHEAD);
                     damagedAreas.mergeRects(COPY_OVERHEAD,
@@ -273,6 +281,13 @@ public class DynamicRenderer extends StaticRenderer {
         currentBaseRaster = syncRaster;
         currentOffScreen  = tmpBI;
 
-        damagedAreas = devRLM;
+        if (moveRaster != null) {
+            // The whole buffer changed.
+            damagedAreas = new RectListManager
+                (new Rectangle(0, 0, offScreenWidth, offScreenHeight));
+        } else {
+            damagedAreas = devRLM;
+        }
+        translation = new Point(0, 0);
     }
 }
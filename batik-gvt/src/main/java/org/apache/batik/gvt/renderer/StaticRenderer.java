@@ -20,6 +20,7 @@ package org.apache.batik.gvt.renderer;
 
 import java.awt.AlphaComposite;
 import java.awt.Graphics2D;
+import java.awt.Paint;
 import java.awt.Point;
 import java.awt.Rectangle;
 import java.awt.RenderingHints;
@@ -27,12 +28,16 @@ import java.awt.Shape;
 import java.awt.geom.AffineTransform;
 import java.awt.image.BufferedImage;
 import java.awt.image.ColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferInt;
 import java.awt.image.Raster;
 import java.awt.image.RenderedImage;
 import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
 import java.awt.image.WritableRaster;
 import java.awt.image.renderable.RenderContext;
 import java.lang.ref.SoftReference;
+import java.util.Arrays;
 import java.util.Collection;
 
 import org.apache.batik.ext.awt.geom.RectListManager;
@@ -83,6 +88,15 @@ public class StaticRenderer implements ImageRenderer {
     protected int offScreenWidth;
     protected int offScreenHeight;
 
+    /**
+     * The translation, in device pixels, from the content of the current
+     * offscreen buffer to the current transform, or null if the content
+     * was not completely rendered with the current transform followed by
+     * a translation. The next repaint only renders the areas it is given
+     * if this is not (0, 0).
+     */
+    protected Point translation;
+
     /**
      * Passed to the GVT tree to describe the rendering environment
      */
@@ -139,6 +153,7 @@ public class StaticRenderer implements ImageRenderer {
         renderingHints = null;
         lastCache = null;
         lastCR = null;
+        translation = null;
     }
 
     /**
@@ -156,6 +171,7 @@ public class StaticRenderer implements ImageRenderer {
 
         currentOffScreen = null;
         currentRaster = null;
+        translation = null;
 
         // renderingHints = new RenderingHints(defaultRenderingHints);
     }
@@ -182,6 +198,7 @@ public class StaticRenderer implements ImageRenderer {
 
         currentOffScreen = null;
         currentRaster = null;
+        translation = null;
     }
 
     /**
@@ -209,6 +226,35 @@ public class StaticRenderer implements ImageRenderer {
             this.usr2dev = new AffineTransform(usr2dev);
 
         rootCR = null;
+        translation = null;
+    }
+
+    /**
+     * Sets the transform from the current user space to the device
+     * space, keeping the content of the current offscreen buffer. The
+     * new transform must be the current transform followed by a
+     * translation of <code>dx</code>, <code>dy</code> device pixels:
+     * the next repaint moves the content by this
+     * translation and only renders the areas it is given, which should
+     * cover the part of the buffer the moved content does not.
+     *
+     * The content is only kept if the last repaint completed and the
+     * size of the buffer, the tree and the double buffering setting
+     * do not change before the next repaint. Otherwise this is the
+     * same as <code>setTransform(usr2dev)</code>.
+     *
+     * @param usr2dev the new user space to device space transform.
+     * @param dx the horizontal translation, in device pixels.
+     * @param dy the vertical translation, in device pixels.
+     */
+    public void setTransform(AffineTransform usr2dev, int dx, int dy) {
+        if ((translation == null) || (currentRaster == null)) {
+            setTransform(usr2dev);
+            return;
+        }
+        this.usr2dev = new AffineTransform(usr2dev);
+        rootCR = null;
+        translation.translate(dx, dy);
     }
 
     /**
@@ -251,6 +297,7 @@ public class StaticRenderer implements ImageRenderer {
             currentBaseRaster = workingBaseRaster;
             currentRaster     = workingRaster;
         }
+        translation = null;
     }
 
 
@@ -263,6 +310,8 @@ public class StaticRenderer implements ImageRenderer {
      *
      */
     public void updateOffScreen(int width, int height) {
+        if ((width != offScreenWidth) || (height != offScreenHeight))
+            translation = null;
         offScreenWidth  = width;
         offScreenHeight = height;
     }
@@ -303,6 +352,7 @@ public class StaticRenderer implements ImageRenderer {
         if (isDoubleBuffered)
             return;
 
+        translation = null;
         updateWorkingBuffers();
         if ((rootCR == null)           ||
             (workingBaseRaster == null))
@@ -353,6 +403,10 @@ public class StaticRenderer implements ImageRenderer {
      * the failed rendering will be visible in the image returned
      * by getOffscreen.
      *
+     * The whole offscreen buffer is rendered, unless the transform was
+     * set with <code>setTransform(usr2dev, dx, dy)</code>: the content
+     * of the buffer is then moved and only the given areas are rendered.
+     *
      * @param areas a List of regions to be repainted, in the current
      * user space coordinate system.
      */
@@ -368,6 +422,12 @@ public class StaticRenderer implements ImageRenderer {
         CachableRed cr;
         WritableRaster syncRaster;
         WritableRaster copyRaster;
+        WritableRaster moveRaster = null;
+
+        Point t = translation;
+        if ((t != null) && ((t.x != 0) || (t.y != 0)))
+            moveRaster = currentRaster;
+        translation = null;
 
         // While we are synchronized pull all the relavent info out
         // of member variables into local variables.
@@ -390,10 +450,26 @@ public class StaticRenderer implements ImageRenderer {
 
         // Ensure only one thread works on baseRaster at a time...
         synchronized (syncRaster) {
-            cr.copyData(copyRaster);
+            if (moveRaster == null) {
+                cr.copyData(copyRaster);
+            } else {
+                moveOffScreen(moveRaster, copyRaster, t.x, t.y);
+                Rectangle dr = new Rectangle(0, 0, offScreenWidth,
+                                             offScreenHeight);
+                dr = dr.intersection(dstR);
+                for (Object area : areas) {
+                    Rectangle r = dr.intersection((Rectangle)area);
+                    if (r.isEmpty()) continue;
+                    cr.copyData(copyRaster.createWritableChild
+                                (r.x, r.y, r.width, r.height,
+                                 r.x, r.y, null));
+                }
+            }
         }
 
         if (!HaltingThread.hasBeenHalted()) {
+            translation = new Point(0, 0);
+
             // Swap the buffers if the rendering completed cleanly.
             BufferedImage tmpBI = workingOffScreen;
 
@@ -409,6 +485,190 @@ public class StaticRenderer implements ImageRenderer {
         }
     }
 
+    /**
+     * Renders the associated GVT tree into <code>dest</code>, over the
+     * <code>background</code> paint if not null. The image is in the
+     * device space and should have the size given to
+     * <code>updateOffScreen</code>; its previous content is replaced.
+     *
+     * If the image stores its pixels as packed ints, the tree is
+     * rendered in place, without the offscreen buffers, and then
+     * composited over the background a band of rows at a time.
+     * Otherwise this renders in the offscreen buffers and draws the
+     * result into the image.
+     *
+     * @param dest the image to render into.
+     * @param background the background paint, or null.
+     */
+    public void paint(BufferedImage dest, Paint background) {
+        CachableRed cr = null;
+        if (rootGN != null) {
+            if (rootFilter == null) {
+                rootFilter = rootGN.getGraphicsNodeRable(true);
+                rootCR = null;
+            }
+            cr = renderGNR();
+        }
+        WritableRaster view = null;
+        if (cr != null)
+            view = createPackedView(dest, cr.getSampleModel());
+
+        Graphics2D g2d = GraphicsUtil.createGraphics(dest);
+        if (view == null) {
+            BufferedImage rend = null;
+            if (cr != null) {
+                RectListManager rlm = new RectListManager();
+                rlm.add(new Rectangle(0, 0, offScreenWidth, offScreenHeight));
+                repaint(rlm);
+                rend = getOffScreen();
+            }
+            if (background != null) {
+                g2d.setComposite(AlphaComposite.SrcOver);
+                g2d.setPaint(background);
+                g2d.fillRect(0, 0, dest.getWidth(), dest.getHeight());
+            }
+            if (rend != null)
+                g2d.drawRenderedImage(rend, new AffineTransform());
+            g2d.dispose();
+            return;
+        }
+
+        // Render the whole area at once, the result may otherwise
+        // depend on how it is split.
+        Rectangle r = cr.getBounds().intersection(view.getBounds());
+        if (r.isEmpty())
+            r.setBounds(0, 0, 0, 0);
+        else
+            cr.copyData(view.createWritableChild(r.x, r.y,
+                                                 r.width, r.height,
+                                                 r.x, r.y, null));
+
+        // Then move each band of rows to a buffer and draw it over
+        // the background, where it was rendered.
+        int w  = view.getWidth();
+        int h  = view.getHeight();
+        int bh = Math.min(h, cr.getSampleModel().getHeight());
+        ColorModel cm = cr.getColorModel();
+        WritableRaster band = cm.createCompatibleWritableRaster(w, bh);
+        BufferedImage bandImage = new BufferedImage
+            (cm, band, cm.isAlphaPremultiplied(), null);
+        int [] src = ((DataBufferInt)view.getDataBuffer()).getData();
+        int [] dst = ((DataBufferInt)band.getDataBuffer()).getData();
+        int srcOff = view.getDataBuffer().getOffset();
+        int srcStride = ((SinglePixelPackedSampleModel)
+                         view.getSampleModel()).getScanlineStride();
+        int dstStride = ((SinglePixelPackedSampleModel)
+                         band.getSampleModel()).getScanlineStride();
+        int dstOff = band.getDataBuffer().getOffset();
+        g2d.setComposite(AlphaComposite.SrcOver);
+        if (background != null)
+            g2d.setPaint(background);
+        for (int y = 0; y < h; y += bh) {
+            int n = Math.min(bh, h-y);
+            for (int i = 0; i < n; i++) {
+                int sp = srcOff + (y+i)*srcStride;
+                int dp = dstOff + i*dstStride;
+                Arrays.fill(dst, dp, dp+w, 0);
+                if ((y+i >= r.y) && (y+i < r.y+r.height))
+                    System.arraycopy(src, sp+r.x, dst, dp+r.x, r.width);
+                Arrays.fill(src, sp, sp+w, 0);
+            }
+            if (background != null)
+                g2d.fillRect(0, y, w, n);
+            if (n == bh)
+                g2d.drawImage(bandImage, 0, y, null);
+            else
+                g2d.drawImage(bandImage.getSubimage(0, 0, w, n), 0, y, null);
+        }
+        g2d.dispose();
+    }
+
+    /**
+     * Returns a raster sharing the pixels of <code>img</code> and laid
+     * out as packed ints with the bit masks of <code>sm</code>, or null
+     * if the image or the sample model do not store packed ints.
+     */
+    protected static WritableRaster createPackedView(BufferedImage img,
+                                                     SampleModel sm) {
+        if (!(sm instanceof SinglePixelPackedSampleModel) ||
+            (sm.getDataType() != DataBuffer.TYPE_INT) ||
+            (sm.getNumBands() != 4))
+            return null;
+
+        WritableRaster wr = img.getRaster();
+        if (!(wr.getSampleModel() instanceof SinglePixelPackedSampleModel) ||
+            !(wr.getDataBuffer() instanceof DataBufferInt) ||
+            (wr.getSampleModelTranslateX() != 0) ||
+            (wr.getSampleModelTranslateY() != 0))
+            return null;
+
+        SinglePixelPackedSampleModel isppsm, sppsm;
+        isppsm = (SinglePixelPackedSampleModel)wr.getSampleModel();
+        sppsm  = (SinglePixelPackedSampleModel)sm;
+        SampleModel vsm = new SinglePixelPackedSampleModel
+            (DataBuffer.TYPE_INT, wr.getWidth(), wr.getHeight(),
+             isppsm.getScanlineStride(), sppsm.getBitMasks());
+        return Raster.createWritableRaster(vsm, wr.getDataBuffer(),
+                                           new Point(0, 0));
+    }
+
+    /**
+     * Copies the offscreen area of <code>src</code> into <code>dst</code>,
+     * moved by <code>dx</code>, <code>dy</code>. The rasters are in the
+     * device space and may share their data, as they do when not double
+     * buffering.
+     */
+    protected void moveOffScreen(Raster src, WritableRaster dst,
+                                 int dx, int dy) {
+        Rectangle r = new Rectangle(0, 0, offScreenWidth, offScreenHeight);
+        r = r.intersection(src.getBounds());
+        r.translate(dx, dy);
+        r = r.intersection(new Rectangle(0, 0,
+                                         offScreenWidth, offScreenHeight));
+        r = r.intersection(dst.getBounds());
+        if (r.isEmpty())
+            return;
+
+        int sx = r.x-dx-src.getSampleModelTranslateX();
+        int sy = r.y-dy-src.getSampleModelTranslateY();
+        int tx = r.x-dst.getSampleModelTranslateX();
+        int ty = r.y-dst.getSampleModelTranslateY();
+
+        // When the data is shared, copy the rows in the order that
+        // reads each row before it is overwritten.
+        int first = 0, step = 1;
+        if ((src.getDataBuffer() == dst.getDataBuffer()) && (ty > sy)) {
+            first = r.height-1;
+            step  = -1;
+        }
+
+        SampleModel ssm = src.getSampleModel();
+        SampleModel dsm = dst.getSampleModel();
+        if ((ssm instanceof SinglePixelPackedSampleModel) &&
+            (dsm instanceof SinglePixelPackedSampleModel) &&
+            (src.getDataBuffer() instanceof DataBufferInt) &&
+            (dst.getDataBuffer() instanceof DataBufferInt)) {
+            int [] sd = ((DataBufferInt)src.getDataBuffer()).getData();
+            int [] dd = ((DataBufferInt)dst.getDataBuffer()).getData();
+            int sStride = ((SinglePixelPackedSampleModel)ssm)
+                .getScanlineStride();
+            int dStride = ((SinglePixelPackedSampleModel)dsm)
+                .getScanlineStride();
+            int sOff = src.getDataBuffer().getOffset() + sy*sStride + sx;
+            int dOff = dst.getDataBuffer().getOffset() + ty*dStride + tx;
+            for (int i = 0, y = first; i < r.height; i++, y += step)
+                System.arraycopy(sd, sOff+y*sStride,
+                                 dd, dOff+y*dStride, r.width);
+            return;
+        }
+
+        Object row = null;
+        for (int i = 0, y = first; i < r.height; i++, y += step) {
+            row = src.getDataElements(r.x-dx, r.y-dy+y, r.width, 1, row);
+            dst.setDataElements(r.x, r.y+y, r.width, 1, row);
+        }
+    }
+
     /**
      * Flush any cached image data.
      */
@@ -0,0 +1,376 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.gvt.renderer;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.NoninvertibleTransformException;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.WritableRaster;
+import java.awt.image.renderable.RenderContext;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.batik.ext.awt.image.GraphicsUtil;
+import org.apache.batik.ext.awt.image.rendered.CachableRed;
+import org.apache.batik.ext.awt.image.rendered.TileCacheRed;
+import org.apache.batik.ext.awt.image.rendered.TranslateRed;
+import org.apache.batik.gvt.GraphicsNode;
+
+/**
+ * A renderer which keeps the tiles it renders for each zoom level, so
+ * that panning and going back to a zoom level reuse them. A zoom level
+ * is the transform without the integral part of its translation; its
+ * tiles are those of the rendering of the tree with this transform,
+ * cached in the <code>TileCache</code>, which bounds the memory they
+ * use. They are then shifted by whole pixels, so panning by fractions
+ * of pixels renders a new zoom level, and the tree is drawn exactly
+ * where the transform puts it.
+ *
+ * The <code>StaticRenderer</code> only keeps the tiles of its current
+ * transform. Flushing an area drops the tiles it touches in every zoom
+ * level, so this renderer can also be repainted by an
+ * <code>UpdateManager</code>.
+ *
+ * @version $Id$
+ */
+public class TilePyramidRenderer extends StaticRenderer {
+
+    /**
+     * The maximum number of zoom levels whose tiles are kept.
+     */
+    public static final int MAX_LEVELS = 8;
+
+    /**
+     * The zoom levels, by transform, the most recently used last.
+     */
+    protected Map levels = new LinkedHashMap(16, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry e) {
+                if (size() <= MAX_LEVELS)
+                    return false;
+                ((Level)e.getValue()).clear();
+                return true;
+            }
+        };
+
+    /**
+     * Creates a new TilePyramidRenderer.
+     */
+    public TilePyramidRenderer() {
+    }
+
+    /**
+     * @param rh Hints for rendering.
+     * @param at Starting user to device coordinate system transform.
+     */
+    public TilePyramidRenderer(RenderingHints rh, AffineTransform at) {
+        super(rh, at);
+    }
+
+    /**
+     * Disposes all resources of this renderer.
+     */
+    public void dispose() {
+        clearLevels();
+        super.dispose();
+    }
+
+    public void setTree(GraphicsNode rootGN) {
+        clearLevels();
+        super.setTree(rootGN);
+    }
+
+    public void setRenderingHints(RenderingHints rh) {
+        clearLevels();
+        super.setRenderingHints(rh);
+    }
+
+    /**
+     * Returns an image of the given size showing the tree with the given
+     * transform as well as the cached tiles allow, without rendering:
+     * the tiles of the zoom level nearest to the transform are scaled,
+     * and the tiles of the zoom level of the transform are drawn over
+     * them. Returns null if no cached tile is visible.
+     */
+    public BufferedImage createPreview(AffineTransform at, int w, int h) {
+        Level exact;
+        Level nearest = null;
+        double scale = getScale(at);
+        synchronized (levels) {
+            exact = (Level)levels.get(getLevelTransform(at));
+            double best = Double.MAX_VALUE;
+            Iterator it = levels.values().iterator();
+            while (it.hasNext()) {
+                Level l = (Level)it.next();
+                double d = Math.abs(Math.log(getScale(l.transform) / scale));
+                if ((l != exact) && (d < best)) {
+                    nearest = l;
+                    best = d;
+                }
+            }
+        }
+
+        BufferedImage img =
+            new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB_PRE);
+        Graphics2D g2d = GraphicsUtil.createGraphics(img);
+        boolean drawn = false;
+        if (nearest != null) {
+            g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                                 RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            AffineTransform l2d = new AffineTransform(at);
+            try {
+                l2d.concatenate(nearest.transform.createInverse());
+                drawn |= drawTiles(g2d, nearest, l2d, w, h);
+            } catch (NoninvertibleTransformException e) {
+            }
+        }
+        if (exact != null) {
+            g2d.setComposite(AlphaComposite.Src);
+            AffineTransform l2d = AffineTransform.getTranslateInstance
+                (Math.round((float)at.getTranslateX()),
+                 Math.round((float)at.getTranslateY()));
+            drawn |= drawTiles(g2d, exact, l2d, w, h);
+        }
+        g2d.dispose();
+        return drawn ? img : null;
+    }
+
+    /**
+     * Draws the cached tiles of a zoom level, with the given transform
+     * from the device space of the level, which are visible in an
+     * image of the given size. Returns true if a tile was drawn.
+     */
+    protected boolean drawTiles(Graphics2D g2d, Level level,
+                                AffineTransform l2d, int w, int h) {
+        TileCacheRed cache = level.cache;
+        if (cache == null)
+            return false;
+        Rectangle r;
+        try {
+            r = l2d.createInverse().createTransformedShape
+                (new Rectangle(0, 0, w, h)).getBounds();
+        } catch (NoninvertibleTransformException e) {
+            return false;
+        }
+        boolean drawn = false;
+        ColorModel cm = cache.getColorModel();
+        int x1 = cache.getXTile(r.x + r.width  - 1);
+        int y1 = cache.getYTile(r.y + r.height - 1);
+        for (int y = cache.getYTile(r.y); y <= y1; y++) {
+            for (int x = cache.getXTile(r.x); x <= x1; x++) {
+                Raster tile = cache.getTileStore().getTileNoCompute(x, y);
+                if (tile == null)
+                    continue;
+                WritableRaster wr;
+                if (tile instanceof WritableRaster) {
+                    wr = ((WritableRaster)tile)
+                        .createWritableTranslatedChild(0, 0);
+                } else {
+                    wr = tile.createCompatibleWritableRaster();
+                    wr.setRect(-tile.getMinX(), -tile.getMinY(), tile);
+                }
+                BufferedImage bi = new BufferedImage
+                    (cm, wr, cm.isAlphaPremultiplied(), null);
+                AffineTransform at = new AffineTransform(l2d);
+                at.translate(tile.getMinX(), tile.getMinY());
+                g2d.drawRenderedImage(bi, at);
+                drawn = true;
+            }
+        }
+        return drawn;
+    }
+
+    /**
+     * Flush any cached image data.
+     */
+    public void flush() {
+        clearLevels();
+    }
+
+    /**
+     * Flush the tiles of every zoom level under the given areas, in the
+     * user space.
+     */
+    public void flush(Collection areas) {
+        synchronized (levels) {
+            Iterator it = levels.values().iterator();
+            while (it.hasNext()) {
+                ((Level)it.next()).flush(areas);
+            }
+        }
+    }
+
+    /**
+     * Flush the tiles of every zoom level under the given area, in the
+     * device space.
+     */
+    public void flush(Rectangle r) {
+        try {
+            Shape s = usr2dev.createInverse().createTransformedShape(r);
+            flush(Collections.singletonList(s));
+        } catch (NoninvertibleTransformException e) {
+            flush();
+        }
+    }
+
+    /**
+     * Drops the tiles of all the zoom levels.
+     */
+    protected void clearLevels() {
+        synchronized (levels) {
+            Iterator it = levels.values().iterator();
+            while (it.hasNext()) {
+                ((Level)it.next()).clear();
+            }
+            levels.clear();
+        }
+    }
+
+    /**
+     * Returns the zoom level of the given transform, which is created
+     * if needed.
+     */
+    protected Level getLevel(AffineTransform at) {
+        AffineTransform lt = getLevelTransform(at);
+        synchronized (levels) {
+            Level l = (Level)levels.get(lt);
+            if (l == null) {
+                l = new Level(lt);
+                levels.put(lt, l);
+            }
+            return l;
+        }
+    }
+
+    /**
+     * Returns the transform of the zoom level of <code>at</code>, that
+     * is <code>at</code> without the integral part of its translation,
+     * which is the one the tiles are shifted by.
+     */
+    protected static AffineTransform getLevelTransform(AffineTransform at) {
+        double tx = at.getTranslateX();
+        double ty = at.getTranslateY();
+        return new AffineTransform(at.getScaleX(), at.getShearY(),
+                                   at.getShearX(), at.getScaleY(),
+                                   tx - Math.round((float)tx),
+                                   ty - Math.round((float)ty));
+    }
+
+    /**
+     * Returns the scale factor of the given transform.
+     */
+    protected static double getScale(AffineTransform at) {
+        return Math.sqrt(Math.abs(at.getDeterminant()));
+    }
+
+    /**
+     * Renders the tree through the tile cache of the zoom level of the
+     * current transform.
+     */
+    protected CachableRed renderGNR() {
+        CachableRed ret = getLevel(usr2dev).getCache();
+        if (ret == null)
+            return null;
+
+        int dx = Math.round((float)usr2dev.getTranslateX());
+        int dy = Math.round((float)usr2dev.getTranslateY());
+        ret = new TranslateRed(ret, ret.getMinX()+dx, ret.getMinY()+dy);
+        ret = GraphicsUtil.convertTosRGB(ret);
+
+        return ret;
+    }
+
+    /**
+     * Creates the tile cache of a zoom level.
+     * @param cr the rendering of the tree for the zoom level.
+     */
+    protected TileCacheRed createCache(CachableRed cr) {
+        return new TileCacheRed(cr);
+    }
+
+    /**
+     * The tiles of a zoom level.
+     */
+    protected class Level {
+
+        /**
+         * The transform of this level, whose translation is at most
+         * half a pixel.
+         */
+        protected AffineTransform transform;
+
+        /**
+         * The tile cache of the rendering of the tree for this level,
+         * or null.
+         */
+        protected TileCacheRed cache;
+
+        protected Level(AffineTransform transform) {
+            this.transform = transform;
+        }
+
+        /**
+         * Returns the tile cache of the rendering of the tree for this
+         * level, or null if there is nothing to render.
+         */
+        public synchronized TileCacheRed getCache() {
+            if ((cache == null) && (rootFilter != null)) {
+                RenderContext rc =
+                    new RenderContext(transform, null, renderingHints);
+                RenderedImage ri = rootFilter.createRendering(rc);
+                if (ri != null)
+                    cache = createCache(GraphicsUtil.wrap(ri));
+            }
+            return cache;
+        }
+
+        /**
+         * Drops the tiles under the given areas, in the user space.
+         */
+        public synchronized void flush(Collection areas) {
+            if (cache == null)
+                return;
+            Iterator it = areas.iterator();
+            while (it.hasNext()) {
+                Shape s = (Shape)it.next();
+                cache.flushCache
+                    (transform.createTransformedShape(s).getBounds());
+            }
+        }
+
+        /**
+         * Drops all the tiles of this level.
+         */
+        public synchronized void clear() {
+            if (cache != null)
+                cache.flushCache(cache.getBounds());
+            cache = null;
+        }
+    }
+}
@@ -82,6 +82,11 @@ public class DOMGroupManager implements SVGSyntax, ErrorConstants {
      */
     protected Element currentGroup;
 
+    /**
+     * Number of children in the current group
+     */
+    protected int currentGroupSize;
+
     /**
      * Constructor
      * @param gc graphic context whose state will be reflected in the
@@ -113,6 +118,7 @@ public class DOMGroupManager implements SVGSyntax, ErrorConstants {
         // Create new initial current group node
         currentGroup = domTreeManager.getDOMFactory().
             createElementNS(SVG_NAMESPACE_URI, SVG_G_TAG);
+        currentGroupSize = 0;
     }
 
     /**
@@ -134,6 +140,7 @@ public class DOMGroupManager implements SVGSyntax, ErrorConstants {
         //
         if (!currentGroup.hasChildNodes()) {
             currentGroup.appendChild(element);
+            currentGroupSize = 1;
 
             groupGC = domTreeManager.gcConverter.toSVG(gc);
             SVGGraphicContext deltaGC;
@@ -172,8 +179,10 @@ public class DOMGroupManager implements SVGSyntax, ErrorConstants {
                 // of differences, then add the node to the current
                 // group and set its attributes
                 trimContextForElement(deltaGC, element);
-                if (countOverrides(deltaGC) <= domTreeManager.maxGCOverrides) {
+                if (countOverrides(deltaGC) <= domTreeManager.maxGCOverrides
+                    && !domTreeManager.isGroupFull(currentGroupSize)) {
                     currentGroup.appendChild(element);
+                    currentGroupSize++;
                     // as there already are children we put all
                     // attributes (group + element) on the element itself.
                     if ((method & DRAW) == 0) {
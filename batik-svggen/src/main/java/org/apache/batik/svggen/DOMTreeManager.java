@@ -185,6 +185,17 @@ public class DOMTreeManager implements SVGSyntax, ErrorConstants {
         }
     }
 
+    /**
+     * Returns true if a group with the given number of children should
+     * not receive more children, in which case the group manager starts
+     * a new group. Groups are not limited by default.
+     *
+     * @param groupSize number of children in the group
+     */
+    protected boolean isGroupFull(int groupSize) {
+        return false;
+    }
+
     /**
      * Reset the state of this object to handler a new topLevelGroup
      */
@@ -324,6 +335,10 @@ public class DOMTreeManager implements SVGSyntax, ErrorConstants {
      * the various converters. This also resets the converters.
      */
     public List getDefinitionSet(){
+        // Images encoded asynchronously must be complete before
+        // the definitions are used.
+        flushImages();
+
         //
         // The definition set contains all the definitions minus
         // any definition that has been placed in the generic definition set
@@ -343,6 +358,24 @@ public class DOMTreeManager implements SVGSyntax, ErrorConstants {
         return defSet;
     }
 
+    /**
+     * Writes the images the image handler encodes asynchronously,
+     * if any.
+     */
+    protected void flushImages() {
+        GenericImageHandler imageHandler = generatorContext.genericImageHandler;
+        if (imageHandler instanceof CachedImageHandler) {
+            ImageCacher imageCacher =
+                ((CachedImageHandler)imageHandler).getImageCacher();
+            try {
+                imageCacher.flush();
+            } catch (SVGGraphics2DIOException e) {
+                generatorContext.errorHandler.
+                    handleError(new SVGGraphics2DRuntimeException(e));
+            }
+        }
+    }
+
     /**
      * Lets custom implementations for various extensions add
      * elements to the &lt;defs&gt; sections.
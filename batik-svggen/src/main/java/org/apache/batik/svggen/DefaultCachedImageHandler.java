@@ -25,10 +25,10 @@ import java.awt.geom.AffineTransform;
 import java.awt.image.BufferedImage;
 import java.awt.image.RenderedImage;
 import java.awt.image.renderable.RenderableImage;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
 
 import org.w3c.dom.Element;
 
@@ -78,12 +78,27 @@ public abstract class DefaultCachedImageHandler
             dtm = this.imageCacher.getDOMTreeManager();
         }
 
+        if (this.imageCacher != null){
+            imageCacher.setEncodingExecutor
+                (this.imageCacher.getEncodingExecutor());
+        }
+
         this.imageCacher = imageCacher;
         if (dtm != null){
             this.imageCacher.setDOMTreeManager(dtm);
         }
     }
 
+    /**
+     * Sets the executor new images are encoded on. When null, which
+     * is the default, images are encoded synchronously.
+     *
+     * @see ImageCacher#setEncodingExecutor
+     */
+    public void setEncodingExecutor(ExecutorService encodingExecutor) {
+        imageCacher.setEncodingExecutor(encodingExecutor);
+    }
+
     /**
      * This <code>GenericImageHandler</code> implementation does not
      * need to interact with the DOMTreeManager.
@@ -398,27 +413,12 @@ public abstract class DefaultCachedImageHandler
                                       SVGGeneratorContext generatorContext)
         throws SVGGraphics2DIOException {
 
-        ByteArrayOutputStream os;
-
         if (generatorContext == null)
             throw new SVGGraphics2DRuntimeException(ERR_CONTEXT_NULL);
 
-        try {
-            os = new ByteArrayOutputStream();
-            // encode the image in memory
-            encodeImage(buf, os);
-            os.flush();
-            os.close();
-        } catch (IOException e) {
-            // should not happen since we do in-memory processing
-            throw new SVGGraphics2DIOException(ERR_UNEXPECTED, e);
-        }
-
-        // ask the cacher for a reference
-        String ref = imageCacher.lookup(os,
-                                                  buf.getWidth(),
-                                                  buf.getHeight(),
-                                                  generatorContext);
+        // ask the cacher for a reference, it only encodes the
+        // image if it was not seen before
+        String ref = imageCacher.lookup(buf, this, generatorContext);
 
         // set the URL
         imageElement.setAttributeNS(XLINK_NAMESPACE_URI,
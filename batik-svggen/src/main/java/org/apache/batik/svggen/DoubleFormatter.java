@@ -0,0 +1,154 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.svggen;
+
+import java.text.DecimalFormat;
+
+/**
+ * Formats double values with a maximum number of decimal places,
+ * appending the digits directly to a <code>StringBuilder</code>.
+ *
+ * The output is the same as the one of the
+ * <code>SVGGeneratorContext.decimalFormats</code>: values are rounded
+ * with the half-even rule, trailing zeros are dropped and no exponent
+ * is used. Unlike <code>DecimalFormat</code>, this class does not
+ * depend on the default locale, holds no state and does not allocate
+ * memory. Values that are within a few ulps of a rounding tie, where
+ * <code>DecimalFormat</code> rounds the shortest decimal
+ * representation rather than the exact value, and values too large
+ * for the fast path are delegated to the <code>DecimalFormat</code>.
+ *
+ * @version $Id$
+ */
+final class DoubleFormatter {
+
+    /**
+     * The maximum number of decimal places supported.
+     */
+    static final int MAX_PRECISION = 12;
+
+    /**
+     * Scaled values must be below this limit to be rounded with
+     * double arithmetic (2^45, so that the ulp is at most 1/128).
+     */
+    private static final double MAX_SCALED_VALUE = 1L << 45;
+
+    /**
+     * Distance to a rounding tie, in ulps of the scaled value, under
+     * which the <code>DecimalFormat</code> is used.
+     */
+    private static final double TIE_ULPS = 4;
+
+    private static final long[] POWERS_OF_TEN = new long[MAX_PRECISION + 1];
+
+    static {
+        long p = 1;
+        for (int i = 0; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = p;
+            p *= 10;
+        }
+    }
+
+    private DoubleFormatter() {
+    }
+
+    /**
+     * Returns the input value formatted with at most
+     * <code>precision</code> decimal places.
+     */
+    static String toString(double value, int precision) {
+        StringBuilder sb = new StringBuilder(24);
+        append(sb, value, precision);
+        return sb.toString();
+    }
+
+    /**
+     * Appends the input value with at most <code>precision</code>
+     * decimal places.
+     *
+     * @param sb the buffer the value is appended to
+     * @param value the value to format
+     * @param precision the number of decimal places, in the
+     *        [0, MAX_PRECISION] range
+     */
+    static void append(StringBuilder sb, double value, int precision) {
+        if (Double.isNaN(value)) {
+            sb.append("NaN");
+            return;
+        }
+        if (Double.isInfinite(value)) {
+            sb.append(value > 0 ? "\u221E" : "-\u221E");
+            return;
+        }
+
+        boolean negative = value < 0;
+        double abs = Math.abs(value);
+        long scale = POWERS_OF_TEN[precision];
+        double scaled = abs * scale;
+
+        if (scaled >= MAX_SCALED_VALUE) {
+            appendDecimalFormat(sb, value, precision);
+            return;
+        }
+
+        // The product is correctly rounded, so it is within half an
+        // ulp of the exact one: rint gives the right result unless
+        // the product is that close to a tie.
+        double fraction = scaled - Math.floor(scaled);
+        if (Math.abs(fraction - 0.5) <= TIE_ULPS * Math.ulp(scaled)) {
+            appendDecimalFormat(sb, value, precision);
+            return;
+        }
+        long rounded = (long) Math.rint(scaled);
+
+        if (negative) {
+            sb.append('-');
+        }
+        sb.append(rounded / scale);
+        long decimals = rounded % scale;
+        if (decimals == 0) {
+            return;
+        }
+
+        // Drop the trailing zeros, then pad with leading zeros.
+        int digits = precision;
+        while (decimals % 10 == 0) {
+            decimals /= 10;
+            digits--;
+        }
+        sb.append('.');
+        for (int i = digits - 1; i > 0 && decimals < POWERS_OF_TEN[i]; i--) {
+            sb.append('0');
+        }
+        sb.append(decimals);
+    }
+
+    /**
+     * Appends the value formatted by the <code>DecimalFormat</code>
+     * with the same precision. The formats are shared, so their use
+     * is synchronized.
+     */
+    private static void appendDecimalFormat(StringBuilder sb, double value,
+                                            int precision) {
+        DecimalFormat format = SVGGeneratorContext.decimalFormats[precision];
+        synchronized (format) {
+            sb.append(format.format(value));
+        }
+    }
+}
@@ -73,6 +73,14 @@ public interface ErrorConstants {
         "topLevelGroup should not be null";
     String ERR_TOP_LEVEL_GROUP_NOT_G =
         "topLevelGroup should be a group <g>";
+    String ERR_MAXGROUPSIZE_OUTOFRANGE =
+        "maxGroupSize should be greater than zero";
+    String ERR_STREAM_CLOSED =
+        "content cannot be added once the stream is closed";
+    String ERR_STREAM_WRITE =
+        "could not write the streamed content";
+    String ERR_STREAMED_CONTENT =
+        "the tree is not available once its content is streamed";
 
     // SVGClip/Font/Hint/Stroke descriptor
     String ERR_CLIP_NULL = "clipPathValue should not be null";
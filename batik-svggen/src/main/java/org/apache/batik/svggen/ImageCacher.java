@@ -18,17 +18,27 @@
  */
 package org.apache.batik.svggen;
 
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.zip.Adler32;
 import java.util.zip.Checksum;
 
@@ -39,20 +49,54 @@ import org.w3c.dom.Element;
 /**
  * This class implements caching functionality for raster images.
  *
+ * Images looked up as <code>BufferedImage</code>s are identified by a
+ * 128 bit digest of their raster data, so an image that was already
+ * seen is neither encoded nor compared again. New images can be
+ * encoded on an <code>ExecutorService</code> (see
+ * <code>setEncodingExecutor</code>): the reference to the image is
+ * returned immediately and the encoded data is written when
+ * <code>flush</code> is invoked, which the <code>DOMTreeManager</code>
+ * does before it hands out the definition set.
+ *
  * @author <a href="mailto:paul_evenblij@compuware.com">Paul Evenblij</a>
  * @version $Id$
  */
 public abstract class ImageCacher implements SVGSyntax, ErrorConstants {
 
+    /**
+     * Algorithm of the digest used to identify images.
+     */
+    static final String DIGEST_ALGORITHM = "MD5";
+
     DOMTreeManager  domTreeManager = null;
     Map             imageCache;
     Checksum        checkSum;
 
+    /**
+     * Maps the digest of the images looked up as
+     * <code>BufferedImage</code>s to their reference.
+     */
+    Map             digestCache;
+
+    /**
+     * The executor new images are encoded on, or null if images
+     * are encoded synchronously.
+     */
+    ExecutorService encodingExecutor;
+
+    /**
+     * The images whose encoding has been submitted to the
+     * executor and which have not been flushed yet.
+     */
+    List            pendingImages;
+
     /**
      * Creates an ImageCacher.
      */
     public ImageCacher() {
         imageCache = new HashMap();
+        digestCache = new HashMap();
+        pendingImages = new LinkedList();
         checkSum = new Adler32();
     }
 
@@ -82,6 +126,231 @@ public abstract class ImageCacher implements SVGSyntax, ErrorConstants {
         return domTreeManager;
     }
 
+    /**
+     * Sets the executor new images are encoded on. When null, which
+     * is the default, images are encoded synchronously. The executor
+     * is not shut down by this cacher.
+     */
+    public void setEncodingExecutor(ExecutorService encodingExecutor) {
+        this.encodingExecutor = encodingExecutor;
+    }
+
+    /**
+     * Returns the executor new images are encoded on, or null if
+     * images are encoded synchronously.
+     */
+    public ExecutorService getEncodingExecutor() {
+        return encodingExecutor;
+    }
+
+    /**
+     * Checks if the image is already in the cache, and adds it if
+     * not. Returns a unique id for the entry. The image is identified
+     * by a digest of its raster data and is only encoded, with the
+     * handler's <code>encodeImage</code> method, if it is not in the
+     * cache already.
+     *
+     * @param buf      the image
+     * @param handler  the handler used to encode the image
+     * @param ctx      the SVGGeneratorContext
+     *
+     * @return a URI for the image
+     * @throws SVGGraphics2DIOException if an error occurs during image file i/o
+     */
+    public String lookup(BufferedImage buf,
+                         DefaultCachedImageHandler handler,
+                         SVGGeneratorContext ctx)
+                             throws SVGGraphics2DIOException {
+        String digest = getDigest(buf);
+        String href = (String) digestCache.get(digest);
+        if (href == null) {
+            if (encodingExecutor != null) {
+                // The caller may reuse its image once drawImage
+                // returns, so encode a copy.
+                BufferedImage copy = new BufferedImage
+                    (buf.getColorModel(),
+                     buf.getRaster().createCompatibleWritableRaster(),
+                     buf.isAlphaPremultiplied(), null);
+                buf.copyData(copy.getRaster());
+                buf = copy;
+            }
+            href = createEntry(buf, handler, ctx);
+            digestCache.put(digest, href);
+        }
+        return href;
+    }
+
+    /**
+     * Writes the data of the images encoded asynchronously, waiting
+     * for their encoding to be complete if needed.
+     *
+     * @throws SVGGraphics2DIOException if an image could not be encoded
+     *         or written
+     */
+    public void flush() throws SVGGraphics2DIOException {
+        while (!pendingImages.isEmpty()) {
+            PendingImage pending = (PendingImage) pendingImages.remove(0);
+            Object data;
+            try {
+                data = pending.future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SVGGraphics2DIOException(ERR_UNEXPECTED);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof SVGGraphics2DIOException) {
+                    throw (SVGGraphics2DIOException) cause;
+                }
+                if (cause instanceof IOException) {
+                    throw new SVGGraphics2DIOException
+                        (ERR_UNEXPECTED, (IOException) cause);
+                }
+                throw new SVGGraphics2DRuntimeException(ERR_UNEXPECTED,
+                                                        (Exception) cause);
+            }
+            complete(pending.target, data);
+        }
+    }
+
+    /**
+     * Encodes the image now, or on the encoding executor if one is
+     * set. In the latter case, <code>complete</code> is invoked with
+     * the encoded data and the target on <code>flush</code>.
+     *
+     * @param buf     the image to encode
+     * @param handler the handler used to encode the image
+     * @param target  implementation-dependent object the encoded
+     *                data is written to
+     */
+    void encode(final BufferedImage buf,
+                final DefaultCachedImageHandler handler,
+                final Object target) throws SVGGraphics2DIOException {
+        if (encodingExecutor == null) {
+            Object data;
+            try {
+                data = encodeData(buf, handler, target);
+            } catch (SVGGraphics2DIOException e) {
+                throw e;
+            } catch (IOException e) {
+                throw new SVGGraphics2DIOException(ERR_UNEXPECTED, e);
+            }
+            complete(target, data);
+        } else {
+            Callable task = new Callable() {
+                    public Object call() throws IOException {
+                        return encodeData(buf, handler, target);
+                    }
+                };
+            pendingImages.add
+                (new PendingImage(encodingExecutor.submit(task), target));
+        }
+    }
+
+    /**
+     * Encodes the image. This may be invoked from a thread of the
+     * encoding executor, so it must not access the DOM tree.
+     *
+     * @return the data passed to <code>complete</code>
+     */
+    abstract Object encodeData(BufferedImage buf,
+                               DefaultCachedImageHandler handler,
+                               Object target) throws IOException;
+
+    /**
+     * Writes the data returned by <code>encodeData</code>. This is
+     * always invoked on the thread using the SVGGraphics2D.
+     */
+    abstract void complete(Object target, Object data);
+
+    /**
+     * Creates a new entry for the image, encoding it with
+     * <code>encode</code>.
+     *
+     * @param buf      the image
+     * @param handler  the handler used to encode the image
+     * @param ctx      the SVGGeneratorContext
+     * @return a URI for the image
+     */
+    abstract String createEntry(BufferedImage buf,
+                                DefaultCachedImageHandler handler,
+                                SVGGeneratorContext ctx)
+                                    throws SVGGraphics2DIOException;
+
+    /**
+     * Computes a digest of the image size, type and raster data.
+     * The data is read directly from the raster, without encoding
+     * the image.
+     */
+    String getDigest(BufferedImage buf) {
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance(DIGEST_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new SVGGraphics2DRuntimeException(ERR_UNEXPECTED, e);
+        }
+
+        int w = buf.getWidth();
+        int h = buf.getHeight();
+        byte[] bytes = new byte[Math.max(12, w * 4)];
+        putInt(bytes, 0, w);
+        putInt(bytes, 4, h);
+        putInt(bytes, 8, buf.getType());
+        md.update(bytes, 0, 12);
+
+        Raster raster = buf.getRaster();
+        int minX = raster.getMinX();
+        int minY = raster.getMinY();
+        int dataType = raster.getTransferType();
+        Object row = null;
+        for (int y = 0; y < h; y++) {
+            row = raster.getDataElements(minX, minY + y, w, 1, row);
+            switch (dataType) {
+            case DataBuffer.TYPE_BYTE:
+                md.update((byte[]) row);
+                break;
+            case DataBuffer.TYPE_INT: {
+                int[] ints = (int[]) row;
+                for (int i = 0; i < ints.length; i += w) {
+                    int n = Math.min(w, ints.length - i);
+                    for (int j = 0; j < n; j++) {
+                        putInt(bytes, j * 4, ints[i + j]);
+                    }
+                    md.update(bytes, 0, n * 4);
+                }
+                break;
+            }
+            default: {
+                // Other transfer types are rare enough to go through
+                // the pixel accessors.
+                int[] pixels = raster.getPixels(minX, minY + y, w, 1,
+                                                (int[]) null);
+                for (int i = 0; i < pixels.length; i += w) {
+                    int n = Math.min(w, pixels.length - i);
+                    for (int j = 0; j < n; j++) {
+                        putInt(bytes, j * 4, pixels[i + j]);
+                    }
+                    md.update(bytes, 0, n * 4);
+                }
+            }
+            }
+        }
+
+        byte[] digest = md.digest();
+        StringBuffer sb = new StringBuffer(digest.length * 2);
+        for (byte b : digest) {
+            sb.append(Character.forDigit((b >> 4) & 0xf, 16));
+            sb.append(Character.forDigit(b & 0xf, 16));
+        }
+        return sb.toString();
+    }
+
+    private static void putInt(byte[] bytes, int off, int v) {
+        bytes[off]     = (byte) (v >>> 24);
+        bytes[off + 1] = (byte) (v >>> 16);
+        bytes[off + 2] = (byte) (v >>> 8);
+        bytes[off + 3] = (byte) v;
+    }
+
     /**
      * Checks if the image is already in the cache, and
      * adds it if not. Returns a unique id for the entry.
@@ -209,6 +478,23 @@ public abstract class ImageCacher implements SVGSyntax, ErrorConstants {
         }
     }
 
+    /**
+     * An image whose encoding has been submitted to the executor.
+     */
+    private static class PendingImage {
+
+        /** The result of the encoding */
+        public Future future;
+
+        /** The implementation-dependent object the data is written to */
+        public Object target;
+
+        PendingImage(Future future, Object target) {
+            this.future = future;
+            this.target = target;
+        }
+    }
+
     /**
      * Cache implementation for images embedded in the SVG file.
      */
@@ -225,6 +511,7 @@ public abstract class ImageCacher implements SVGSyntax, ErrorConstants {
             if(this.domTreeManager != domTreeManager) {
                 this.domTreeManager = domTreeManager;
                 this.imageCache     = new HashMap();
+                this.digestCache    = new HashMap();
             }
         }
 
@@ -253,13 +540,46 @@ public abstract class ImageCacher implements SVGSyntax, ErrorConstants {
             return new ImageCacheEntry(checksum, data, SIGN_POUND + id);    // <<<<<<<<<< error ??
         }
 
+        String createEntry(BufferedImage buf,
+                           DefaultCachedImageHandler handler,
+                           SVGGeneratorContext ctx)
+            throws SVGGraphics2DIOException {
+
+            // Get a new unique id
+            String id = ctx.idGenerator.generateID(ID_PREFIX_IMAGE);
+
+            // Add the image element to the <defs> section now, so that
+            // it keeps its place; its href is set once encoded.
+            Element imageElement = addToTree(id, null,
+                                             buf.getWidth(), buf.getHeight(),
+                                             ctx);
+            encode(buf, handler, imageElement);
+
+            return SIGN_POUND + id;
+        }
+
+        Object encodeData(BufferedImage buf,
+                          DefaultCachedImageHandler handler,
+                          Object target) throws IOException {
+            ByteArrayOutputStream os = new ByteArrayOutputStream();
+            handler.encodeImage(buf, os);
+            os.close();
+            return DATA_PROTOCOL_PNG_PREFIX + os.toString();
+        }
+
+        void complete(Object target, Object data) {
+            ((Element) target).setAttributeNS
+                (DefaultImageHandler.XLINK_NAMESPACE_URI,
+                 XLINK_HREF_QNAME, (String) data);
+        }
+
         /**
          *  Adds a new image element to the defs section for cached images.
          */
-        private void addToTree(String id,
-                               String href,
-                               int width, int height,
-                               SVGGeneratorContext ctx) {
+        private Element addToTree(String id,
+                                  String href,
+                                  int width, int height,
+                                  SVGGeneratorContext ctx) {
 
             Document domFactory = domTreeManager.getDOMFactory();
             // Element imageDefs = getImageDefs(domFactory, ctx);
@@ -273,11 +593,14 @@ public abstract class ImageCacher implements SVGSyntax, ErrorConstants {
                                               Integer.toString(width));
             imageElement.setAttributeNS(null, SVG_HEIGHT_ATTRIBUTE,
                                               Integer.toString(height));
-            imageElement.setAttributeNS(DefaultImageHandler.XLINK_NAMESPACE_URI,
-                                              XLINK_HREF_QNAME,
-                                              href);
+            if (href != null) {
+                imageElement.setAttributeNS(DefaultImageHandler.XLINK_NAMESPACE_URI,
+                                                  XLINK_HREF_QNAME,
+                                                  href);
+            }
             // imageDefs.appendChild(imageElement);
             domTreeManager.addOtherDef(imageElement);
+            return imageElement;
         }
 
 
@@ -385,6 +708,52 @@ public abstract class ImageCacher implements SVGSyntax, ErrorConstants {
             return new ImageCacheEntry(checksum, imageFile, imageFile.getName());   // <<<<<<<<<< error ??
         }
 
+        String createEntry(BufferedImage buf,
+                           DefaultCachedImageHandler handler,
+                           SVGGeneratorContext ctx)
+            throws SVGGraphics2DIOException {
+
+            // Create a new file in image directory. The file is created
+            // right away so that its name is reserved until the image
+            // is encoded.
+            File imageFile = null;
+            try {
+                while (imageFile == null) {
+                    String fileId = ctx.idGenerator.generateID(prefix);
+                    imageFile = new File(imageDir, fileId + suffix);
+                    if (!imageFile.createNewFile())
+                        imageFile = null;
+                }
+            } catch(IOException e) {
+                throw new SVGGraphics2DIOException(ERR_WRITE+imageFile.getName());
+            }
+
+            encode(buf, handler, imageFile);
+
+            return imageFile.getName();
+        }
+
+        Object encodeData(BufferedImage buf,
+                          DefaultCachedImageHandler handler,
+                          Object target) throws IOException {
+            File imageFile = (File) target;
+            OutputStream outputStream = null;
+            try {
+                outputStream = new FileOutputStream(imageFile);
+                handler.encodeImage(buf, outputStream);
+            } catch(IOException e) {
+                throw new SVGGraphics2DIOException(ERR_WRITE+imageFile.getName());
+            } finally {
+                if (outputStream != null)
+                    outputStream.close();
+            }
+            return null;
+        }
+
+        void complete(Object target, Object data) {
+            // The image file is written by encodeData.
+        }
+
     }
 
 }
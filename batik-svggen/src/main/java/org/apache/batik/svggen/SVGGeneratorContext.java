@@ -432,7 +432,22 @@ public class SVGGeneratorContext implements ErrorConstants {
         }
         // under 10e-3 we have to put decimals
         else {
-            return decimalFormat.format(value);
+            return DoubleFormatter.toString(value, precision);
+        }
+    }
+
+    /**
+     * Appends the input double value to the buffer, with a number of
+     * decimal places controlled by the precision attribute. This gives
+     * the same result as appending <code>doubleString(value)</code>,
+     * without creating intermediate strings.
+     */
+    public final void appendDouble(StringBuilder sb, double value) {
+        double absvalue = Math.abs(value);
+        if (absvalue >= 10e7 || (int)value == value) {
+            sb.append((int)value);
+        } else {
+            DoubleFormatter.append(sb, value, precision);
         }
     }
 
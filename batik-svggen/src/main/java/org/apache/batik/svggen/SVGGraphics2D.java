@@ -168,6 +168,10 @@ public class SVGGraphics2D extends AbstractGraphics2D
      */
     public final void setSVGCanvasSize(Dimension svgCanvasSize) {
         this.svgCanvasSize = new Dimension(svgCanvasSize);
+        if (domTreeManager instanceof StreamingDOMTreeManager) {
+            ((StreamingDOMTreeManager)domTreeManager).
+                setSVGCanvasSize(this.svgCanvasSize);
+        }
     }
 
     /**
@@ -324,6 +328,47 @@ public class SVGGraphics2D extends AbstractGraphics2D
         setGeneratorContext(generatorCtx);
     }
 
+    /**
+     * Creates a new SVGGraphics2D object that streams its content to
+     * the input writer as it is generated, instead of building the
+     * complete DOM tree. Only the group currently being filled and the
+     * definitions are kept in memory, so the memory used does not
+     * depend on the number of drawing operations. The content must be
+     * terminated by a call to <code>closeStream</code>. As the content
+     * written is removed from the tree, <code>getRoot</code>,
+     * <code>getTopLevelGroup</code> and the <code>stream</code> methods
+     * that serialize the tree throw an
+     * <code>SVGGraphics2DRuntimeException</code>.
+     *
+     * @param generatorCtx the <code>SVGGeneratorContext</code> instance
+     * that will provide all useful information to the generator.
+     * @param textAsShapes if true, all text is turned into SVG shapes in the
+     *        convertion. No SVG text is output.
+     * @param writer used to write out the SVG content
+     * @param useCss defines whether the output SVG should use CSS
+     *        style properties as opposed to plain attributes.
+     * @param escaped defines if the characters will be escaped
+     *
+     * @exception SVGGraphics2DRuntimeException if generatorContext is null.
+     * @see StreamingDOMTreeManager
+     */
+    public SVGGraphics2D(SVGGeneratorContext generatorCtx,
+                         boolean textAsShapes,
+                         Writer writer,
+                         boolean useCss,
+                         boolean escaped) {
+        this(generatorCtx, textAsShapes);
+
+        DOMTreeManager treeMgr =
+            new StreamingDOMTreeManager(gc, generatorCtx,
+                                        DEFAULT_MAX_GC_OVERRIDES,
+                                        writer, useCss, escaped);
+        this.domTreeManager.removeGroupManager(domGroupManager);
+        setDOMTreeManager(treeMgr);
+        setDOMGroupManager(new DOMGroupManager(gc, treeMgr));
+        treeMgr.addGroupManager(domGroupManager);
+    }
+
     /**
      * Sets an non null <code>SVGGeneratorContext</code>.
      */
@@ -510,6 +555,19 @@ public class SVGGraphics2D extends AbstractGraphics2D
         }
     }
 
+    /**
+     * Terminates the content of an SVGGraphics2D created with a
+     * streaming writer: the remaining groups and the definitions are
+     * written and the writer is flushed. The writer is not closed.
+     * This has no effect if this SVGGraphics2D does not stream its
+     * content.
+     */
+    public void closeStream() throws SVGGraphics2DIOException {
+        if (domTreeManager instanceof StreamingDOMTreeManager) {
+            ((StreamingDOMTreeManager)domTreeManager).close();
+        }
+    }
+
     /**
      * Invoking this method will return a set of definition element that
      * contain all the definitions referenced by the attributes generated by
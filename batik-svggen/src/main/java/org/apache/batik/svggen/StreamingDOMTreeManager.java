@@ -0,0 +1,377 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.svggen;
+
+import java.awt.Dimension;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+import org.apache.batik.ext.awt.g2d.GraphicContext;
+import org.w3c.dom.Comment;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * A <code>DOMTreeManager</code> that writes the generated content to
+ * a <code>Writer</code> as soon as groups are complete, instead of
+ * accumulating the whole drawing in the DOM tree.
+ *
+ * A group is complete as soon as another group is appended to the
+ * top level group: at that point, all the group managers have been
+ * asked to recycle their current group, so none of the groups
+ * already in the tree can receive new children. Those groups are
+ * serialized and removed from the tree, so only the currently open
+ * group and the definitions referenced by the content are kept in
+ * memory. The size of the open group is bounded as well, see
+ * <code>setMaxGroupSize</code>. The definitions are written at the end of the document,
+ * when <code>close</code> is invoked.
+ * <br>
+ * Because the root element is written before the drawing is over,
+ * its attributes only reflect the state known when the first group
+ * is flushed. In particular, the <code>enable-background</code>
+ * attribute is only set if a composite requiring background access
+ * was used before that point.
+ * <br>
+ * Since the groups are removed from the tree once written, the tree
+ * cannot be retrieved with <code>getRoot</code> or
+ * <code>getTopLevelGroup</code>: both throw an exception.
+ * <br>
+ * The output paints the same elements as the one produced by
+ * <code>SVGGraphics2D.stream</code>, but the definitions come after
+ * the groups, since they are only complete once the drawing is over:
+ * <br>
+ * [svg]
+ *   |
+ *   +-- [g]    Top level group
+ *   |    |
+ *   |    +-- [g]    Group 1
+ *   |    +-- ...
+ *   |    +-- [g]    Group n
+ *   |    +-- [defs] Contains definitions specific to rendering
+ *   +-- [defs] Contain generic definitions
+ *
+ * @version $Id$
+ */
+public class StreamingDOMTreeManager extends DOMTreeManager {
+
+    /**
+     * Indentation level of the groups written under the top level
+     * group.
+     */
+    protected static final int GROUP_INDENT_LEVEL = 4;
+
+    /**
+     * Default maximum number of children in a group.
+     */
+    public static final int DEFAULT_MAX_GROUP_SIZE = 256;
+
+    /**
+     * The writer the content is streamed to.
+     */
+    protected XmlWriter.IndentWriter out;
+
+    /**
+     * Defines whether the output should use CSS style properties.
+     */
+    protected boolean useCss;
+
+    /**
+     * Defines if the characters will be escaped.
+     */
+    protected boolean escaped;
+
+    /**
+     * SVG canvas size, written on the root element.
+     */
+    protected Dimension svgCanvasSize;
+
+    /**
+     * The root element, once its start tag has been written.
+     */
+    protected Element svgRoot;
+
+    /**
+     * The top level group, once its start tag has been written.
+     */
+    protected Element streamedTopLevelGroup;
+
+    /**
+     * Maximum number of children in a group. This bounds the memory
+     * used by the currently open group.
+     */
+    protected int maxGroupSize = DEFAULT_MAX_GROUP_SIZE;
+
+    /**
+     * Whether <code>close</code> has been invoked.
+     */
+    protected boolean closed;
+
+    /**
+     * Number of groups written so far.
+     */
+    protected int flushedGroupCount;
+
+    /**
+     * Constructor
+     * @param gc default graphic context state
+     * @param generatorContext the SVG generator context
+     * @param maxGCOverrides defines how many overrides are allowed
+     *                       in children nodes of the current group.
+     * @param writer the writer the SVG content is streamed to
+     * @param useCss defines whether the output SVG should use CSS
+     *        style properties as opposed to plain attributes.
+     * @param escaped defines if the characters will be escaped
+     */
+    public StreamingDOMTreeManager(GraphicContext gc,
+                                   SVGGeneratorContext generatorContext,
+                                   int maxGCOverrides,
+                                   Writer writer,
+                                   boolean useCss,
+                                   boolean escaped) {
+        super(gc, generatorContext, maxGCOverrides);
+        if (writer instanceof XmlWriter.IndentWriter) {
+            out = (XmlWriter.IndentWriter)writer;
+        } else {
+            out = new XmlWriter.IndentWriter(writer);
+        }
+        this.useCss = useCss;
+        this.escaped = escaped;
+    }
+
+    /**
+     * Sets the canvas size written on the root element. This has
+     * no effect once the root element has been written.
+     */
+    public void setSVGCanvasSize(Dimension svgCanvasSize) {
+        this.svgCanvasSize = svgCanvasSize;
+    }
+
+    /**
+     * Sets the maximum number of children in a group. Once a group
+     * is full, a new group is started and the full group is written
+     * out as soon as the new group is appended.
+     */
+    public void setMaxGroupSize(int maxGroupSize) {
+        if (maxGroupSize <= 0)
+            throw new SVGGraphics2DRuntimeException(ERR_MAXGROUPSIZE_OUTOFRANGE);
+        this.maxGroupSize = maxGroupSize;
+    }
+
+    /**
+     * Returns the maximum number of children in a group.
+     */
+    public int getMaxGroupSize() {
+        return maxGroupSize;
+    }
+
+    protected boolean isGroupFull(int groupSize) {
+        return groupSize >= maxGroupSize;
+    }
+
+    /**
+     * Returns the number of groups written so far.
+     */
+    public int getFlushedGroupCount() {
+        return flushedGroupCount;
+    }
+
+    /**
+     * Flushes the groups that are complete, then appends the new
+     * group to the top level group.
+     *
+     * @param group new group to be appended to the topLevelGroup
+     * @param groupManager DOMTreeManager that produced the group.
+     */
+    public void appendGroup(Element group, DOMGroupManager groupManager) {
+        if (closed) {
+            throw new SVGGraphics2DRuntimeException(ERR_STREAM_CLOSED);
+        }
+        try {
+            flushCompleteGroups();
+        } catch (IOException e) {
+            generatorContext.errorHandler.
+                handleError(new SVGGraphics2DRuntimeException(ERR_STREAM_WRITE, e));
+        }
+        super.appendGroup(group, groupManager);
+    }
+
+    /**
+     * Writes all the groups currently held by the top level group
+     * and removes them from the tree.
+     */
+    protected void flushCompleteGroups() throws IOException {
+        Node child = topLevelGroup.getFirstChild();
+        while (child != null) {
+            Node next = child.getNextSibling();
+            if (!isDefinition(child)) {
+                writeGroup(child);
+                topLevelGroup.removeChild(child);
+            }
+            child = next;
+        }
+    }
+
+    /**
+     * Writes a complete group, writing the document header and the
+     * start tags of the root element and of the top level group first
+     * if needed.
+     */
+    protected void writeGroup(Node group) throws IOException {
+        writeHeader();
+        if (useCss) {
+            SVGCSSStyler.style(group);
+        }
+        out.setIndentLevel(GROUP_INDENT_LEVEL);
+        out.printIndent();
+        XmlWriter.writeXml(group, out, escaped);
+        flushedGroupCount++;
+    }
+
+    /**
+     * Writes the document header and the start tags of the root
+     * element and of the top level group, unless already done.
+     */
+    protected void writeHeader() throws IOException {
+        if (svgRoot != null) {
+            return;
+        }
+
+        svgRoot = generatorContext.domFactory.
+            createElementNS(SVG_NAMESPACE_URI, SVG_SVG_TAG);
+        svgRoot.setAttributeNS(XMLNS_NAMESPACE_URI,
+                               XMLNS_PREFIX,
+                               SVG_NAMESPACE_URI);
+        svgRoot.setAttributeNS(XMLNS_NAMESPACE_URI,
+                               XMLNS_PREFIX + ":" + XLINK_PREFIX,
+                               XLINK_NAMESPACE_URI);
+        if (svgCanvasSize != null) {
+            svgRoot.setAttributeNS(null, SVG_WIDTH_ATTRIBUTE,
+                                   String.valueOf(svgCanvasSize.width));
+            svgRoot.setAttributeNS(null, SVG_HEIGHT_ATTRIBUTE,
+                                   String.valueOf(svgCanvasSize.height));
+        }
+        if (gcConverter.getCompositeConverter().
+            getAlphaCompositeConverter().requiresBackgroundAccess())
+            svgRoot.setAttributeNS
+                (null, SVG_ENABLE_BACKGROUND_ATTRIBUTE, SVG_NEW_VALUE);
+        applyDefaultRenderingStyle(svgRoot);
+        if (useCss) {
+            SVGCSSStyler.style(svgRoot);
+        }
+
+        streamedTopLevelGroup = generatorContext.domFactory.
+            createElementNS(SVG_NAMESPACE_URI, SVG_G_TAG);
+
+        XmlWriter.writeDocumentHeader(out);
+        out.setIndentLevel(0);
+        XmlWriter.writeStartTag(svgRoot, out, escaped);
+        if (generatorContext.generatorComment != null) {
+            Comment generatorComment = generatorContext.domFactory.
+                createComment(generatorContext.generatorComment);
+            out.setIndentLevel(2);
+            out.printIndent();
+            XmlWriter.writeXml(generatorComment, out, escaped);
+        }
+        out.setIndentLevel(2);
+        out.printIndent();
+        XmlWriter.writeStartTag(streamedTopLevelGroup, out, escaped);
+    }
+
+    /**
+     * Writes the remaining groups, the definitions and the end tags
+     * of the document, then flushes the writer. The writer is not
+     * closed. No content can be added once this method has been
+     * invoked.
+     */
+    public void close() throws SVGGraphics2DIOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        try {
+            flushCompleteGroups();
+            writeHeader();
+
+            List defSet = getDefinitionSet();
+            if (defSet.size() > 0) {
+                Element defElement = generatorContext.domFactory.
+                    createElementNS(SVG_NAMESPACE_URI, SVG_DEFS_TAG);
+                defElement.setAttributeNS(null, SVG_ID_ATTRIBUTE,
+                                          generatorContext.idGenerator.
+                                          generateID(ID_PREFIX_DEFS));
+                for (Object aDefSet : defSet) {
+                    defElement.appendChild((Element) aDefSet);
+                }
+                writeGroup(defElement);
+            }
+
+            out.setIndentLevel(2);
+            out.printIndent();
+            XmlWriter.writeEndTag(streamedTopLevelGroup, out);
+
+            Element genericDefs = getGenericDefinitions();
+            if (useCss) {
+                SVGCSSStyler.style(genericDefs);
+            }
+            out.setIndentLevel(2);
+            out.printIndent();
+            XmlWriter.writeXml(genericDefs, out, escaped);
+
+            out.setIndentLevel(0);
+            out.printIndent();
+            XmlWriter.writeEndTag(svgRoot, out);
+            out.write(XmlWriter.EOL);
+            out.flush();
+        } catch (SVGGraphics2DIOException e) {
+            generatorContext.errorHandler.handleError(e);
+        } catch (IOException e) {
+            generatorContext.errorHandler.
+                handleError(new SVGGraphics2DIOException(e));
+        }
+    }
+
+    /**
+     * The tree cannot be retrieved, as the groups already written have
+     * been removed from it.
+     * @exception SVGGraphics2DRuntimeException always
+     */
+    public Element getRoot(Element svgElement) {
+        throw new SVGGraphics2DRuntimeException(ERR_STREAMED_CONTENT);
+    }
+
+    /**
+     * The top level group cannot be retrieved, as the groups already
+     * written have been removed from it.
+     * @exception SVGGraphics2DRuntimeException always
+     */
+    public Element getTopLevelGroup(boolean includeDefinitionSet) {
+        throw new SVGGraphics2DRuntimeException(ERR_STREAMED_CONTENT);
+    }
+
+    /**
+     * Returns true if the input node is a definition element that
+     * must stay in the top level group.
+     */
+    protected boolean isDefinition(Node node) {
+        return node.getNodeType() == Node.ELEMENT_NODE
+            && SVG_DEFS_TAG.equals(((Element)node).getTagName());
+    }
+}
@@ -46,7 +46,7 @@ import org.w3c.dom.Text;
  */
 class XmlWriter implements SVGConstants {
 
-    private static String EOL;
+    static String EOL;
     private static final String TAG_END = "/>";
     private static final String TAG_START = "</";
 
@@ -376,7 +376,8 @@ class XmlWriter implements SVGConstants {
             }
         }
 
-        boolean lastElem = (element.getParentNode().getLastChild()==element);
+        Node parent = element.getParentNode();
+        boolean lastElem = (parent == null || parent.getLastChild()==element);
 
         //
         // Write empty nodes as "<EMPTY />" to make sure version 3
@@ -408,6 +409,40 @@ class XmlWriter implements SVGConstants {
         out.write (TAG_END, 1, 1);  // ">"
     }
 
+    /**
+     * Writes the start tag of the input element, with its attributes,
+     * but none of its children.
+     */
+    static void writeStartTag(Element element, IndentWriter out,
+                              boolean escaped)
+        throws IOException {
+        out.write (TAG_START, 0, 1);    // "<"
+        out.write (element.getTagName());
+
+        NamedNodeMap attributes = element.getAttributes();
+        if (attributes != null){
+            int nAttr = attributes.getLength();
+            for(int i=0; i<nAttr; i++){
+                Attr attr = (Attr)attributes.item(i);
+                out.write(' ');
+                writeXml(attr, out, escaped);
+            }
+        }
+        out.printIndent ();
+        out.write(TAG_END, 1, 1);   // ">"
+    }
+
+    /**
+     * Writes the end tag of the input element.
+     */
+    static void writeEndTag(Element element, IndentWriter out)
+        throws IOException {
+        out.write (TAG_START, 0, 2);        // "</"
+        out.write (element.getTagName());
+        out.printIndent ();
+        out.write (TAG_END, 1, 1);  // ">"
+    }
+
     private static void writeChildrenXml(Element element, IndentWriter out,
                                          boolean escaped)
         throws IOException, SVGGraphics2DIOException {
@@ -418,7 +453,7 @@ class XmlWriter implements SVGConstants {
         }
     }
 
-    private static void writeDocumentHeader(IndentWriter out)
+    static void writeDocumentHeader(IndentWriter out)
         throws IOException {
         String  encoding = null;
 
@@ -20,12 +20,19 @@ package org.apache.batik.swing.gvt;
 
 import java.awt.Shape;
 import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 
+import org.apache.batik.bridge.DeferredGraphicsNode;
+import org.apache.batik.bridge.GVTBuilder;
 import org.apache.batik.bridge.InterruptedBridgeException;
+import org.apache.batik.ext.awt.geom.RectListManager;
+import org.apache.batik.gvt.CompositeGraphicsNode;
+import org.apache.batik.gvt.GraphicsNode;
 import org.apache.batik.gvt.renderer.ImageRenderer;
+import org.apache.batik.gvt.renderer.StaticRenderer;
 import org.apache.batik.util.EventDispatcher;
 import org.apache.batik.util.EventDispatcher.Dispatcher;
 import org.apache.batik.util.HaltingThread;
@@ -69,6 +76,29 @@ public class GVTTreeRenderer extends HaltingThread {
      */
     protected boolean doubleBuffering;
 
+    /**
+     * Whether to paint the content built so far while the deferred
+     * content of the area of interest is built.
+     */
+    protected boolean progressive;
+
+    /**
+     * The minimum delay between two progressive rendering passes, in
+     * milliseconds.
+     */
+    protected long passInterval = 200;
+
+    /**
+     * The areas of the offscreen buffer not covered by its previous
+     * content once translated, or null to render the whole buffer.
+     */
+    protected RectListManager exposedAreas;
+
+    /**
+     * The translation of the previous content, in device pixels.
+     */
+    protected int translateX, translateY;
+
     /**
      * The listeners.
      */
@@ -94,6 +124,42 @@ public class GVTTreeRenderer extends HaltingThread {
         this.height = height;
     }
 
+    /**
+     * Sets whether to paint the content built so far while the deferred
+     * content of the area of interest is built. Each pass is notified
+     * to the listeners which implement
+     * <code>GVTTreeRendererProgressListener</code>. This has
+     * no effect if the tree has no deferred content.
+     * @see org.apache.batik.bridge.BridgeContext#setDeferredBuild(boolean)
+     */
+    public void setProgressive(boolean progressive) {
+        this.progressive = progressive;
+    }
+
+    /**
+     * Returns whether the content built so far is painted while the
+     * deferred content of the area of interest is built.
+     */
+    public boolean isProgressive() {
+        return progressive;
+    }
+
+    /**
+     * Makes this renderer keep the content rendered by the previous
+     * rendering, which must have completed with the same renderer and
+     * buffer size, and with a transform differing from the transform of
+     * this renderer by a translation of <code>dx</code>, <code>dy</code>
+     * device pixels. The content is moved by the translation and only the
+     * given areas, in the device space, are rendered. This has no effect
+     * if the renderer is not a StaticRenderer.
+     * @see StaticRenderer#setTransform(AffineTransform,int,int)
+     */
+    public void setExposedAreas(RectListManager areas, int dx, int dy) {
+        exposedAreas = areas;
+        translateX = dx;
+        translateY = dy;
+    }
+
     /**
      * Runs this renderer.
      */
@@ -102,10 +168,20 @@ public class GVTTreeRenderer extends HaltingThread {
         try {
             fireEvent(prepareDispatcher, ev);
 
-            renderer.setTransform(user2DeviceTransform);
+            RectListManager areas = null;
+            if ((exposedAreas != null) &&
+                (renderer instanceof StaticRenderer)) {
+                areas = exposedAreas;
+                ((StaticRenderer)renderer).setTransform
+                    (user2DeviceTransform, translateX, translateY);
+            } else {
+                renderer.setTransform(user2DeviceTransform);
+            }
             renderer.setDoubleBuffered(doubleBuffering);
             renderer.updateOffScreen(width, height);
-            renderer.clearOffScreen();
+            if (areas == null) {
+                renderer.clearOffScreen();
+            }
 
             if (isHalted()) {
                 fireEvent(cancelledDispatcher, ev);
@@ -120,7 +196,20 @@ public class GVTTreeRenderer extends HaltingThread {
                 return;
             }
 
-            renderer.repaint(areaOfInterest);
+            if (areas != null) {
+                renderer.repaint(areas);
+            } else {
+                if (progressive) {
+                    renderProgressively();
+
+                    if (isHalted()) {
+                        fireEvent(cancelledDispatcher, ev);
+                        return;
+                    }
+                }
+
+                renderer.repaint(areaOfInterest);
+            }
 
             if (isHalted()) {
                 fireEvent(cancelledDispatcher, ev);
@@ -145,6 +234,94 @@ public class GVTTreeRenderer extends HaltingThread {
         }
     }
 
+    /**
+     * Builds the deferred content intersecting the area of interest,
+     * in paint order, and paints the content built so far first and
+     * then at most every <code>passInterval</code> milliseconds. The
+     * content outside the area of interest is left to be built when
+     * needed.
+     */
+    protected void renderProgressively() {
+        LinkedList pending = new LinkedList();
+        collectDeferredNodes(renderer.getTree(), pending);
+        if (pending.isEmpty()) {
+            return;
+        }
+        GVTBuilder builder =
+            ((DeferredGraphicsNode)pending.getFirst()).getBuilder();
+        builder.setBuildOnPaint(false);
+        try {
+            renderPass();
+            long next = System.currentTimeMillis() + passInterval;
+            while (!pending.isEmpty()) {
+                if (isHalted()) {
+                    return;
+                }
+                DeferredGraphicsNode node =
+                    (DeferredGraphicsNode)pending.removeFirst();
+                node.build();
+
+                // The nested deferred content comes next in paint order.
+                List nested = new LinkedList();
+                collectDeferredNodes(node, nested);
+                pending.addAll(0, nested);
+
+                if (!pending.isEmpty() &&
+                    System.currentTimeMillis() >= next) {
+                    renderPass();
+                    next = System.currentTimeMillis() + passInterval;
+                }
+            }
+        } finally {
+            builder.setBuildOnPaint(true);
+        }
+        renderer.flush();
+    }
+
+    /**
+     * Paints the content built so far and notifies the listeners.
+     */
+    protected void renderPass() {
+        renderer.flush();
+        renderer.repaint(areaOfInterest);
+        if (!isHalted()) {
+            GVTTreeRendererEvent ev =
+                new GVTTreeRendererEvent(this, renderer.getOffScreen());
+            fireEvent(progressDispatcher, ev);
+        }
+    }
+
+    /**
+     * Adds to the given list, in paint order, the deferred graphics
+     * nodes of the given tree which are not built and intersect the
+     * area of interest.
+     */
+    protected void collectDeferredNodes(GraphicsNode gn, List nodes) {
+        if (gn instanceof DeferredGraphicsNode) {
+            DeferredGraphicsNode dgn = (DeferredGraphicsNode)gn;
+            if (!dgn.isBuilt()) {
+                // Computing the bounds may build the content.
+                Rectangle2D r = dgn.getBounds();
+                if (r == null) {
+                    return;
+                }
+                Shape s = dgn.getGlobalTransform().createTransformedShape(r);
+                if (!areaOfInterest.intersects(s.getBounds2D())) {
+                    return;
+                }
+                if (!dgn.isBuilt()) {
+                    nodes.add(dgn);
+                    return;
+                }
+            }
+        }
+        if (gn instanceof CompositeGraphicsNode) {
+            for (Object child : ((CompositeGraphicsNode)gn).getChildren()) {
+                collectDeferredNodes((GraphicsNode)child, nodes);
+            }
+        }
+    }
+
     public void fireEvent(Dispatcher dispatcher, Object event) {
         EventDispatcher.fireEvent(dispatcher, listeners, event, true);
     }
@@ -187,6 +364,16 @@ public class GVTTreeRenderer extends HaltingThread {
             }
         };
 
+    static Dispatcher progressDispatcher = new Dispatcher() {
+            public void dispatch(Object listener,
+                                 Object event) {
+                if (listener instanceof GVTTreeRendererProgressListener) {
+                    ((GVTTreeRendererProgressListener)listener)
+                        .gvtRenderingProgress((GVTTreeRendererEvent)event);
+                }
+            }
+        };
+
     static Dispatcher completedDispatcher = new Dispatcher() {
             public void dispatch(Object listener,
                                  Object event) {
@@ -25,7 +25,8 @@ package org.apache.batik.swing.gvt;
  * @author <a href="mailto:tkormann@apache.org">Thierry Kormann</a>
  * @version $Id$
  */
-public abstract class GVTTreeRendererAdapter implements GVTTreeRendererListener {
+public abstract class GVTTreeRendererAdapter
+    implements GVTTreeRendererProgressListener {
 
     /**
      * Called when a rendering is in its preparing phase.
@@ -37,6 +38,11 @@ public abstract class GVTTreeRendererAdapter implements GVTTreeRendererListener
      */
     public void gvtRenderingStarted(GVTTreeRendererEvent e) {}
 
+    /**
+     * Called when a progressive rendering pass was completed.
+     */
+    public void gvtRenderingProgress(GVTTreeRendererEvent e) {}
+
     /**
      * Called when a rendering was completed.
      */
@@ -52,6 +52,7 @@ import java.util.List;
 import javax.swing.JComponent;
 
 import org.apache.batik.bridge.Mark;
+import org.apache.batik.ext.awt.geom.RectListManager;
 import org.apache.batik.gvt.GraphicsNode;
 import org.apache.batik.gvt.event.AWTEventDispatcher;
 import org.apache.batik.gvt.event.EventDispatcher;
@@ -60,6 +61,7 @@ import org.apache.batik.gvt.event.SelectionEvent;
 import org.apache.batik.gvt.renderer.ConcreteImageRendererFactory;
 import org.apache.batik.gvt.renderer.ImageRenderer;
 import org.apache.batik.gvt.renderer.ImageRendererFactory;
+import org.apache.batik.gvt.renderer.TilePyramidRenderer;
 import org.apache.batik.util.HaltingThread;
 import org.apache.batik.util.Platform;
 
@@ -113,6 +115,11 @@ public class JGVTComponent extends JComponent {
      */
     protected boolean progressivePaint;
 
+    /**
+     * Whether to render the deferred content of the tree in passes.
+     */
+    protected boolean progressiveRendering;
+
     /**
      * The progressive paint thread.
      */
@@ -173,6 +180,33 @@ public class JGVTComponent extends JComponent {
      */
     protected boolean doubleBufferedRendering;
 
+    /**
+     * The margin, in pixels, rendered around the visible area.
+     */
+    protected int overscan;
+
+    /**
+     * The margin of the current rendering.
+     */
+    protected int renderingOverscan;
+
+    /**
+     * The last rendering which completed, whose content is still in the
+     * offscreen buffer of the renderer, or null.
+     */
+    protected GVTTreeRenderer completedRendering;
+
+    /**
+     * Whether the renderings are composed of tiles cached per zoom level.
+     */
+    protected boolean tiledRendering;
+
+    /**
+     * The image shown while the current rendering is in progress, built
+     * from the cached tiles, or null.
+     */
+    protected BufferedImage previewImage;
+
     /**
      * Whether the GVT tree should be reactive to mouse and key events.
      */
@@ -521,6 +555,60 @@ public class JGVTComponent extends JComponent {
         return progressivePaint;
     }
 
+    /**
+     * Sets whether the deferred content of the tree is rendered in
+     * passes, each pass showing the visible content built so far.
+     * @see GVTTreeRenderer#setProgressive(boolean)
+     */
+    public void setProgressiveRendering(boolean b) {
+        progressiveRendering = b;
+    }
+
+    /**
+     * Tells whether the deferred content of the tree is rendered in
+     * passes.
+     */
+    public boolean getProgressiveRendering() {
+        return progressiveRendering;
+    }
+
+    /**
+     * Sets the margin, in pixels, rendered around the visible area, so
+     * that the content shown while panning is rendered instead of
+     * being left blank. The change will be effective during the next
+     * rendering. The image returned by getOffScreen includes the margin.
+     */
+    public void setOverscan(int overscan) {
+        this.overscan = Math.max(0, overscan);
+    }
+
+    /**
+     * Returns the margin, in pixels, rendered around the visible area.
+     */
+    public int getOverscan() {
+        return overscan;
+    }
+
+    /**
+     * Sets whether the renderings are composed of tiles cached for each
+     * zoom level, so that panning and going back to a zoom level reuse
+     * them, and the cached tiles of the nearest zoom level are shown
+     * while a new zoom level is rendered. The change will be effective
+     * for the next GVT tree.
+     * @see TilePyramidRenderer
+     */
+    public void setTiledRendering(boolean b) {
+        tiledRendering = b;
+    }
+
+    /**
+     * Tells whether the renderings are composed of tiles cached for each
+     * zoom level.
+     */
+    public boolean getTiledRendering() {
+        return tiledRendering;
+    }
+
     public Rectangle getRenderRect() {
         Dimension d = getSize();
         return new Rectangle(0, 0, d.width, d.height);
@@ -574,7 +662,9 @@ public class JGVTComponent extends JComponent {
             if (paintingTransform != null) {
                 g2d.transform(paintingTransform);
             }
-            g2d.drawRenderedImage(image, null);
+            g2d.drawRenderedImage
+                (image, AffineTransform.getTranslateInstance
+                 (-renderingOverscan, -renderingOverscan));
             g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
                                  RenderingHints.VALUE_ANTIALIAS_OFF);
             for (Object overlay : overlays) {
@@ -699,6 +789,9 @@ public class JGVTComponent extends JComponent {
      * Creates a new renderer.
      */
     protected ImageRenderer createImageRenderer() {
+        if (tiledRendering) {
+            return new TilePyramidRenderer();
+        }
         return rendererFactory.createStaticImageRenderer();
     }
 
@@ -716,21 +809,46 @@ public class JGVTComponent extends JComponent {
             renderer = createImageRenderer();
             renderer.setTree(gvtRoot);
         }
-
-        // Area of interest computation.
+        GVTTreeRenderer previous = completedRendering;
+        completedRendering = null;
+
+        // Area of interest computation, including the overscan margin.
+        int m = canReuseOffScreen() ? overscan : 0;
+        Rectangle r = new Rectangle(visRect.x - m, visRect.y - m,
+                                    visRect.width + 2 * m,
+                                    visRect.height + 2 * m);
         AffineTransform inv;
         try {
             inv = renderingTransform.createInverse();
         } catch (NoninvertibleTransformException e) {
             throw new IllegalStateException( "NoninvertibleTransformEx:" + e.getMessage() );
         }
-        Shape s = inv.createTransformedShape(visRect);
+        Shape s = inv.createTransformedShape(r);
+        AffineTransform at = AffineTransform.getTranslateInstance(m, m);
+        at.concatenate(renderingTransform);
+        renderingOverscan = m;
+
+        // Shows what the cached tiles allow until the rendering completes.
+        previewImage = null;
+        if (renderer instanceof TilePyramidRenderer) {
+            previewImage = ((TilePyramidRenderer)renderer).createPreview
+                (at, r.width, r.height);
+            if (previewImage != null) {
+                image = previewImage;
+                paintingTransform = null;
+                immediateRepaint();
+            }
+        }
 
         // Rendering thread setup.
-        gvtTreeRenderer = new GVTTreeRenderer(renderer, renderingTransform,
+        gvtTreeRenderer = new GVTTreeRenderer(renderer, at,
                                               doubleBufferedRendering, s,
-                                              visRect.width, visRect.height);
+                                              r.width, r.height);
         gvtTreeRenderer.setPriority(Thread.MIN_PRIORITY);
+        gvtTreeRenderer.setProgressive(progressiveRendering);
+        if (previous != null && canReuseOffScreen()) {
+            setExposedAreas(previous, gvtTreeRenderer);
+        }
 
         for (Object gvtTreeRendererListener : gvtTreeRendererListeners) {
             gvtTreeRenderer.addGVTTreeRendererListener
@@ -746,6 +864,63 @@ public class JGVTComponent extends JComponent {
         gvtTreeRenderer.start();
     }
 
+    /**
+     * Tells whether the offscreen buffer of the renderer is only changed
+     * by the renderings of this component, so that a rendering can keep
+     * the content of the previous one, and the overscan margin can be
+     * rendered.
+     */
+    protected boolean canReuseOffScreen() {
+        return true;
+    }
+
+    /**
+     * Makes the given rendering keep the content of the previous one if
+     * their transforms only differ by a translation of whole pixels, so
+     * that only the areas this translation exposes are rendered.
+     */
+    protected void setExposedAreas(GVTTreeRenderer previous,
+                                   GVTTreeRenderer next) {
+        int w = next.width;
+        int h = next.height;
+        if ((previous.renderer != next.renderer) ||
+            (previous.width  != w) ||
+            (previous.height != h) ||
+            (previous.doubleBuffering != next.doubleBuffering)) {
+            return;
+        }
+        AffineTransform pat = previous.user2DeviceTransform;
+        AffineTransform nat = next.user2DeviceTransform;
+        if ((pat.getScaleX() != nat.getScaleX()) ||
+            (pat.getShearY() != nat.getShearY()) ||
+            (pat.getShearX() != nat.getShearX()) ||
+            (pat.getScaleY() != nat.getScaleY())) {
+            return;
+        }
+        double tx = nat.getTranslateX() - pat.getTranslateX();
+        double ty = nat.getTranslateY() - pat.getTranslateY();
+        int dx = (int)Math.round(tx);
+        int dy = (int)Math.round(ty);
+        if ((Math.abs(tx - dx) > 0.001) || (Math.abs(ty - dy) > 0.001) ||
+            (Math.abs(dx) >= w) || (Math.abs(dy) >= h)) {
+            return;
+        }
+
+        RectListManager areas = new RectListManager();
+        if (dy > 0) {
+            areas.add(new Rectangle(0, 0, w, dy));
+        } else if (dy < 0) {
+            areas.add(new Rectangle(0, h + dy, w, -dy));
+        }
+        if (dx > 0) {
+            areas.add(new Rectangle(0, Math.max(dy, 0), dx, h - Math.abs(dy)));
+        } else if (dx < 0) {
+            areas.add(new Rectangle(w + dx, Math.max(dy, 0),
+                                    -dx, h - Math.abs(dy)));
+        }
+        next.setExposedAreas(areas, dx, dy);
+    }
+
     /**
      * Computes the initial value of the transform used for rendering.
      * Return true if a repaint is required, otherwise false.
@@ -787,6 +962,8 @@ public class JGVTComponent extends JComponent {
         renderer = null;
         image = null;
         gvtRoot = null;
+        completedRendering = null;
+        previewImage = null;
     }
 
     /**
@@ -812,7 +989,7 @@ public class JGVTComponent extends JComponent {
      * To hide the listener methods.
      */
     protected class Listener
-        implements GVTTreeRendererListener,
+        implements GVTTreeRendererProgressListener,
                    KeyListener,
                    MouseListener,
                    MouseMotionListener,
@@ -837,7 +1014,8 @@ public class JGVTComponent extends JComponent {
          */
         public void gvtRenderingPrepare(GVTTreeRendererEvent e) {
             suspendInteractions = true;
-            if (!progressivePaint && !doubleBufferedRendering) {
+            if (!progressivePaint && !doubleBufferedRendering &&
+                image != previewImage) {
                 image = null;
             }
         }
@@ -882,6 +1060,18 @@ public class JGVTComponent extends JComponent {
             }
         }
 
+        /**
+         * Called when a progressive rendering pass was completed.
+         */
+        public void gvtRenderingProgress(GVTTreeRendererEvent e) {
+            if (gvtTreeRenderer != e.getSource()) {
+                return;
+            }
+            paintingTransform = null;
+            image = e.getImage();
+            immediateRepaint();
+        }
+
         /**
          * Called when a rendering was completed.
          */
@@ -893,6 +1083,8 @@ public class JGVTComponent extends JComponent {
                 suspendInteractions = false;
             }
 
+            completedRendering = (GVTTreeRenderer)e.getSource();
+            previewImage = null;
             gvtTreeRenderer = null;
             if (needRender) {
                 renderGVTTree();
@@ -72,6 +72,7 @@ import org.apache.batik.gvt.CompositeGraphicsNode;
 import org.apache.batik.gvt.GraphicsNode;
 import org.apache.batik.gvt.event.EventDispatcher;
 import org.apache.batik.gvt.renderer.ImageRenderer;
+import org.apache.batik.gvt.renderer.TilePyramidRenderer;
 import org.apache.batik.script.Interpreter;
 import org.apache.batik.swing.gvt.GVTTreeRendererEvent;
 import org.apache.batik.swing.gvt.JGVTComponent;
@@ -385,6 +386,11 @@ public class JSVGComponent extends JGVTComponent {
 
     protected boolean recenterOnResize = true;
 
+    /**
+     * Whether the content of the static documents is built lazily.
+     */
+    protected boolean deferredBuild;
+
     protected AffineTransform viewingTransform = null;
 
     /**
@@ -482,6 +488,24 @@ public class JSVGComponent extends JGVTComponent {
         this.recenterOnResize = recenterOnResize;
     }
 
+    /**
+     * Tells whether the content of the static documents is built
+     * lazily, as it is first painted or its bounds are needed.
+     */
+    public boolean isDeferredBuild() {
+        return deferredBuild;
+    }
+
+    /**
+     * Sets whether the content of the static documents is built
+     * lazily. This applies to the documents loaded afterwards, and is
+     * implied by the progressive rendering.
+     * @see BridgeContext#setDeferredBuild(boolean)
+     */
+    public void setDeferredBuild(boolean deferredBuild) {
+        this.deferredBuild = deferredBuild;
+    }
+
     /**
      * Tells whether the component use dynamic features to
      * process the current document.
@@ -764,6 +788,7 @@ public class JSVGComponent extends JGVTComponent {
         }
 
         setBridgeContextAnimationLimitingMode();
+        bridgeContext.setDeferredBuild(deferredBuild || progressiveRendering);
 
         updateZoomAndPanEnable(doc);
 
@@ -895,7 +920,9 @@ public class JSVGComponent extends JGVTComponent {
      * Creates a new renderer.
      */
     protected ImageRenderer createImageRenderer() {
-        if (isDynamicDocument) {
+        if (tiledRendering) {
+            return new TilePyramidRenderer();
+        } else if (isDynamicDocument) {
             return rendererFactory.createDynamicImageRenderer();
         } else {
             return rendererFactory.createStaticImageRenderer();
@@ -1063,6 +1090,15 @@ public class JSVGComponent extends JGVTComponent {
         return true;
     }
 
+    /**
+     * Tells whether the offscreen buffer of the renderer is only changed
+     * by the renderings of this component, which is not the case when
+     * the update manager repaints a dynamic document.
+     */
+    protected boolean canReuseOffScreen() {
+        return !isDynamicDocument;
+    }
+
     /**
      * Renders the GVT tree.
      */
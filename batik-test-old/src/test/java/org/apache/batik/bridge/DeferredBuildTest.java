@@ -0,0 +1,122 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.bridge;
+
+import java.awt.Graphics2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.io.StringReader;
+
+import org.apache.batik.anim.dom.SAXSVGDocumentFactory;
+import org.apache.batik.gvt.GraphicsNode;
+import org.apache.batik.test.AbstractTest;
+import org.apache.batik.util.XMLResourceDescriptor;
+
+import org.w3c.dom.Document;
+
+/**
+ * Checks that a tree built with deferred content paints like the tree
+ * built eagerly, that the estimated bounds contain the actual ones and
+ * that the listeners are notified when the whole content is built.
+ *
+ * @version $Id$
+ */
+public class DeferredBuildTest extends AbstractTest {
+
+    protected static final String SVG =
+        "<svg xmlns='http://www.w3.org/2000/svg' width='200' height='200'>\n" +
+        "<g fill='blue'>\n" +
+        "<rect x='10' y='10' width='30' height='20'/>\n" +
+        "<circle cx='60' cy='30' r='15' stroke='black' stroke-width='6'/>\n" +
+        "</g>\n" +
+        "<g transform='rotate(30 100 100)' stroke='red'>\n" +
+        "<path d='M20 120L80 180L140 120z' stroke-linejoin='miter' " +
+        "stroke-miterlimit='8' stroke-width='4'/>\n" +
+        "<g transform='scale(0.5)'><ellipse cx='300' cy='100' " +
+        "rx='40' ry='20'/></g>\n" +
+        "</g>\n" +
+        "<g><text x='20' y='190' font-size='20'>Deferred</text></g>\n" +
+        "<polyline points='150,20 190,60 150,100' fill='none' " +
+        "stroke='green'/>\n" +
+        "</svg>\n";
+
+    protected Document document;
+
+    protected int completed;
+
+    public boolean runImplBasic() throws Exception {
+        SAXSVGDocumentFactory f = new SAXSVGDocumentFactory
+            (XMLResourceDescriptor.getXMLParserClassName());
+        document = f.createDocument("http://example.org/deferred.svg",
+                                    new StringReader(SVG));
+
+        GraphicsNode eager = new GVTBuilder().build
+            (new BridgeContext(new UserAgentAdapter()), document);
+
+        BridgeContext ctx = new BridgeContext(new UserAgentAdapter());
+        ctx.setDeferredBuild(true);
+        GVTBuilder builder = new GVTBuilder();
+        builder.addDeferredBuildListener(new DeferredBuildListener() {
+                public void deferredContentBuilt(DeferredBuildEvent e) {
+                }
+                public void deferredBuildCompleted(DeferredBuildEvent e) {
+                    completed++;
+                }
+            });
+        GraphicsNode deferred = builder.build(ctx, document);
+        assertTrue(builder.hasDeferredContent());
+        assertEquals(0, completed);
+
+        Rectangle2D eb = eager.getSensitiveBounds();
+        Rectangle2D db = deferred.getSensitiveBounds();
+        assertTrue(db.contains(eb));
+        assertTrue(builder.hasDeferredContent());
+
+        assertTrue(samePixels(paint(eager), paint(deferred)));
+        assertTrue(!builder.hasDeferredContent());
+        assertEquals(1, completed);
+
+        builder = new GVTBuilder();
+        deferred = builder.build(ctx, document);
+        builder.completeBuild();
+        assertTrue(!builder.hasDeferredContent());
+        assertEquals(eager.getGeometryBounds(), deferred.getGeometryBounds());
+        return true;
+    }
+
+    protected static BufferedImage paint(GraphicsNode gn) {
+        BufferedImage img = new BufferedImage(200, 200,
+                                              BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = img.createGraphics();
+        gn.paint(g);
+        g.dispose();
+        return img;
+    }
+
+    protected static boolean samePixels(BufferedImage a, BufferedImage b) {
+        for (int y = 0; y < a.getHeight(); y++) {
+            for (int x = 0; x < a.getWidth(); x++) {
+                if (a.getRGB(x, y) != b.getRGB(x, y)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,124 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.bridge;
+
+import java.awt.Color;
+import java.awt.Rectangle;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.batik.gvt.CompositeGraphicsNode;
+import org.apache.batik.gvt.FillShapePainter;
+import org.apache.batik.gvt.RootGraphicsNode;
+import org.apache.batik.gvt.ShapeNode;
+import org.apache.batik.gvt.UpdateTracker;
+import org.apache.batik.gvt.renderer.DynamicRenderer;
+import org.apache.batik.test.PerformanceTest;
+
+/**
+ * This test compares the time needed to update the rendering of a tree
+ * where many scattered nodes move at each frame, when the dirty
+ * rectangles are merged into a bounded number of rectangles
+ * (<code>runOp</code>) and when they are not (<code>runRef</code>).
+ *
+ * @version $Id$
+ */
+public class DirtyRegionPerformanceTest extends PerformanceTest {
+
+    static final int WIDTH = 1600;
+    static final int HEIGHT = 1200;
+
+    /**
+     * The spacing of the nodes, in pixels.
+     */
+    static final int SPACING = 40;
+
+    /**
+     * One node out of STEP moves at each frame.
+     */
+    static final int STEP = 13;
+
+    protected List nodes = new ArrayList();
+
+    protected UpdateTracker tracker = new UpdateTracker();
+
+    protected RepaintManager repaintManager;
+
+    protected int frame;
+
+    public DirtyRegionPerformanceTest() {
+        RootGraphicsNode root = new RootGraphicsNode();
+        CompositeGraphicsNode g = new CompositeGraphicsNode();
+        g.setTransform(AffineTransform.getTranslateInstance(5, 5));
+        root.getChildren().add(g);
+        for (int y = 0; y < HEIGHT; y += SPACING) {
+            for (int x = 0; x < WIDTH; x += SPACING) {
+                ShapeNode n = new ShapeNode();
+                n.setShape(new Rectangle2D.Float(x, y, 6, 6));
+                FillShapePainter p = new FillShapePainter(n.getShape());
+                p.setPaint(Color.blue);
+                n.setShapePainter(p);
+                g.getChildren().add(n);
+                nodes.add(n);
+            }
+        }
+        root.addTreeGraphicsNodeChangeListener(tracker);
+
+        DynamicRenderer renderer = new DynamicRenderer();
+        renderer.setTree(root);
+        repaintManager = new RepaintManager(renderer);
+        repaintManager.setupRenderer(new AffineTransform(), true,
+                                     new Rectangle(0, 0, WIDTH, HEIGHT),
+                                     WIDTH, HEIGHT);
+        List l = new ArrayList(1);
+        l.add(new Rectangle(0, 0, WIDTH, HEIGHT));
+        update(l);
+    }
+
+    protected void update(List areas) {
+        try {
+            repaintManager.updateRendering(areas);
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e.getMessage());
+        }
+    }
+
+    protected void runFrame(int maxRectangles) {
+        frame++;
+        AffineTransform at =
+            AffineTransform.getTranslateInstance(frame % 3, frame % 2);
+        for (int i = frame % STEP; i < nodes.size(); i += STEP) {
+            ((ShapeNode) nodes.get(i)).setTransform(at);
+        }
+        List areas = tracker.getDirtyAreas();
+        tracker.clear();
+        repaintManager.setMaxRectangles(maxRectangles);
+        update(areas);
+    }
+
+    public void runRef() {
+        runFrame(Integer.MAX_VALUE);
+    }
+
+    public void runOp() {
+        runFrame(RepaintManager.DEFAULT_MAX_RECTANGLES);
+    }
+}
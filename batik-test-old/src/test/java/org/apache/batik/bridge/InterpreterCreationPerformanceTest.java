@@ -0,0 +1,71 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.bridge;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+
+import org.apache.batik.test.PerformanceTest;
+
+/**
+ * This test compares the time needed to create an interpreter and run
+ * a small script with the shared compiled scripts and standard objects
+ * (<code>runOp</code>) and without them (<code>runRef</code>).
+ *
+ * @version $Id$
+ */
+public class InterpreterCreationPerformanceTest extends PerformanceTest {
+
+    protected static final String SCRIPT =
+        "function onClick(evt) { evt.target.setAttribute('fill', 'red'); }"
+        + "var n = 0; for (var i = 0; i < 10; i++) { n += i; }";
+
+    protected URL documentURL;
+
+    public InterpreterCreationPerformanceTest() {
+        try {
+            documentURL = new URL("http://example.org/document.svg");
+        } catch (MalformedURLException e) {
+            throw new RuntimeException(e.getMessage());
+        }
+    }
+
+    protected void createInterpreter(boolean shared) {
+        boolean b = RhinoInterpreter.isUsingSharedScope();
+        try {
+            RhinoInterpreter.setUseSharedScope(shared);
+            if (!shared) {
+                RhinoInterpreter.clearCompiledScripts();
+            }
+            RhinoInterpreter interp = new RhinoInterpreter(documentURL);
+            interp.evaluate(SCRIPT);
+            interp.dispose();
+        } finally {
+            RhinoInterpreter.setUseSharedScope(b);
+        }
+    }
+
+    public void runRef() {
+        createInterpreter(false);
+    }
+
+    public void runOp() {
+        createInterpreter(true);
+    }
+}
@@ -0,0 +1,73 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.bridge;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.StringReader;
+
+import org.apache.batik.anim.dom.SAXSVGDocumentFactory;
+import org.apache.batik.gvt.GraphicsNode;
+import org.apache.batik.gvt.PatternTileCache;
+import org.apache.batik.test.AbstractTest;
+import org.apache.batik.util.XMLResourceDescriptor;
+
+import org.w3c.dom.Document;
+
+/**
+ * Checks that disposing a <code>BridgeContext</code> drops the shared
+ * tiles of its patterns, so they don't keep its GVT tree reachable.
+ *
+ * @version $Id$
+ */
+public class PatternTileCacheDisposeTest extends AbstractTest {
+
+    protected static final String CONTENT =
+        "<svg xmlns='http://www.w3.org/2000/svg' width='100' height='100'>\n" +
+        "<defs>\n" +
+        "<pattern id='p' patternUnits='userSpaceOnUse' " +
+        "width='10' height='10'>\n" +
+        "<circle cx='5' cy='5' r='4' fill='blue'/>\n" +
+        "</pattern>\n" +
+        "</defs>\n" +
+        "<rect width='50' height='50' fill='url(#p)'/>\n" +
+        "<rect x='50' y='50' width='50' height='50' fill='url(#p)'/>\n" +
+        "</svg>\n";
+
+    public boolean runImplBasic() throws Exception {
+        PatternTileCache.clear();
+        SAXSVGDocumentFactory f = new SAXSVGDocumentFactory
+            (XMLResourceDescriptor.getXMLParserClassName());
+        Document doc = f.createDocument("http://example.org/pattern.svg",
+                                        new StringReader(CONTENT));
+
+        BridgeContext ctx = new BridgeContext(new UserAgentAdapter());
+        GraphicsNode gn = new GVTBuilder().build(ctx, doc);
+        BufferedImage img = new BufferedImage(100, 100,
+                                              BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = img.createGraphics();
+        gn.paint(g);
+        g.dispose();
+        assertTrue(PatternTileCache.getMemory() > 0);
+
+        ctx.dispose();
+        assertEquals(0L, PatternTileCache.getMemory());
+        return true;
+    }
+}
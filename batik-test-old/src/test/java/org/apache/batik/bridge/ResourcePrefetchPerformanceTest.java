@@ -0,0 +1,192 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.bridge;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+import org.apache.batik.anim.dom.SAXSVGDocumentFactory;
+import org.apache.batik.ext.awt.image.spi.ImageTagRegistry;
+import org.apache.batik.gvt.GraphicsNode;
+import org.apache.batik.test.PerformanceTest;
+import org.apache.batik.util.XMLResourceDescriptor;
+
+import org.w3c.dom.Document;
+
+/**
+ * This test compares the time needed to build a document referencing
+ * many images served with some latency by a local HTTP server, when
+ * the images are fetched concurrently before the build
+ * (<code>runOp</code>) and when they are opened one after another by
+ * the bridges (<code>runRef</code>).
+ *
+ * @version $Id$
+ */
+public class ResourcePrefetchPerformanceTest extends PerformanceTest {
+
+    static final int N_IMAGES = 16;
+
+    /**
+     * The latency of the server, in milliseconds.
+     */
+    static final int LATENCY = 10;
+
+    static final String IMAGE = "samples/tests/resources/images/png.png";
+
+    /**
+     * The content of the image.
+     */
+    protected byte[] data;
+
+    public ResourcePrefetchPerformanceTest() {
+        try {
+            File f = new File(IMAGE);
+            data = new byte[(int) f.length()];
+            FileInputStream in = new FileInputStream(f);
+            try {
+                int n = 0;
+                while (n < data.length) {
+                    n += in.read(data, n, data.length - n);
+                }
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e.getMessage());
+        }
+    }
+
+    /**
+     * Creates the document referencing the images of the server
+     * listening on the given port.
+     */
+    protected Document createDocument(int port) throws IOException {
+        String base = "http://localhost:" + port + "/";
+        StringBuffer sb = new StringBuffer();
+        sb.append("<svg xmlns='http://www.w3.org/2000/svg' ");
+        sb.append("xmlns:xlink='http://www.w3.org/1999/xlink' ");
+        sb.append("width='400' height='100'>\n");
+        for (int i = 0; i < N_IMAGES; i++) {
+            sb.append("<image x='").append(i * 25);
+            sb.append("' y='0' width='20' height='20' xlink:href='");
+            sb.append("image").append(i).append(".png'/>\n");
+        }
+        sb.append("</svg>\n");
+
+        SAXSVGDocumentFactory df = new SAXSVGDocumentFactory
+            (XMLResourceDescriptor.getXMLParserClassName());
+        return df.createDocument(base + "images.svg",
+                                 new StringReader(sb.toString()));
+    }
+
+    /**
+     * Starts a server answering every request with the image after
+     * the latency, on daemon threads, until it is closed.
+     */
+    protected ServerSocket startServer() throws IOException {
+        final ServerSocket server =
+            new ServerSocket(0, N_IMAGES, InetAddress.getByName("localhost"));
+        Thread t = new Thread() {
+                public void run() {
+                    try {
+                        for (;;) {
+                            serve(server.accept());
+                        }
+                    } catch (IOException e) {
+                    }
+                }
+            };
+        t.setDaemon(true);
+        t.start();
+        return server;
+    }
+
+    protected void serve(final Socket s) {
+        Thread t = new Thread() {
+                public void run() {
+                    try {
+                        BufferedReader r = new BufferedReader
+                            (new InputStreamReader(s.getInputStream(),
+                                                   "ISO-8859-1"));
+                        String line;
+                        do {
+                            line = r.readLine();
+                        } while (line != null && line.length() > 0);
+                        Thread.sleep(LATENCY);
+                        OutputStream out = s.getOutputStream();
+                        out.write(("HTTP/1.0 200 OK\r\n"
+                                   + "Content-Type: image/png\r\n"
+                                   + "Content-Length: " + data.length
+                                   + "\r\n\r\n").getBytes("ISO-8859-1"));
+                        out.write(data);
+                        out.flush();
+                        s.close();
+                    } catch (Exception e) {
+                    }
+                }
+            };
+        t.setDaemon(true);
+        t.start();
+    }
+
+    /**
+     * Builds the document served by a new server, with the images
+     * prefetched by a new <code>DefaultResourceLoader</code> or not.
+     * The server and the loader are released once the document is built.
+     */
+    protected void build(boolean prefetch) {
+        try {
+            ServerSocket server = startServer();
+            DefaultResourceLoader loader =
+                prefetch ? new DefaultResourceLoader() : null;
+            try {
+                Document document = createDocument(server.getLocalPort());
+                ImageTagRegistry.getRegistry().flushCache();
+                BridgeContext ctx = new BridgeContext(new UserAgentAdapter());
+                ctx.setResourceLoader(loader);
+                GraphicsNode gn = new GVTBuilder().build(ctx, document);
+                gn.getBounds();
+                ctx.dispose();
+            } finally {
+                if (loader != null) {
+                    loader.dispose();
+                }
+                server.close();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e.getMessage());
+        }
+    }
+
+    public void runRef() {
+        build(false);
+    }
+
+    public void runOp() {
+        build(true);
+    }
+}
@@ -0,0 +1,113 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.bridge;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+
+import org.apache.batik.anim.dom.SAXSVGDocumentFactory;
+import org.apache.batik.ext.awt.image.spi.ImageTagRegistry;
+import org.apache.batik.gvt.GraphicsNode;
+import org.apache.batik.test.AbstractTest;
+import org.apache.batik.util.ParsedURL;
+import org.apache.batik.util.XMLResourceDescriptor;
+
+import org.w3c.dom.Document;
+
+/**
+ * Checks that the images of a document are fetched once each by the
+ * resource loader of the bridge context, and that the document then
+ * paints like when the bridges open the images themselves.
+ *
+ * @version $Id$
+ */
+public class ResourcePrefetchTest extends AbstractTest {
+
+    protected static final String[] IMAGES = {
+        "samples/tests/resources/images/hotSpotN.png",
+        "samples/tests/resources/images/hotSpotE.png",
+        "samples/tests/resources/images/hotSpotS.png",
+        "samples/tests/resources/images/svg.svg",
+        "samples/tests/resources/images/hotSpotN.png"
+    };
+
+    /**
+     * The URLs fetched by the loader.
+     */
+    protected List fetched = new ArrayList();
+
+    public boolean runImplBasic() throws Exception {
+        StringBuffer sb = new StringBuffer();
+        sb.append("<svg xmlns='http://www.w3.org/2000/svg' ");
+        sb.append("xmlns:xlink='http://www.w3.org/1999/xlink' ");
+        sb.append("width='200' height='200'>\n");
+        for (int i = 0; i < IMAGES.length; i++) {
+            String uri = new File(IMAGES[i]).toURI().toString();
+            sb.append("<image x='").append(i * 40);
+            sb.append("' y='20' width='32' height='32' xlink:href='");
+            sb.append(uri).append("'/>\n");
+        }
+        sb.append("</svg>\n");
+
+        SAXSVGDocumentFactory f = new SAXSVGDocumentFactory
+            (XMLResourceDescriptor.getXMLParserClassName());
+        Document document = f.createDocument
+            (new File("prefetch.svg").toURI().toString(),
+             new StringReader(sb.toString()));
+
+        final DefaultResourceLoader loader = new DefaultResourceLoader(2);
+        BridgeContext ctx = new BridgeContext(new UserAgentAdapter());
+        ctx.setResourceLoader(new ResourceLoader() {
+                public Future fetch(ParsedURL purl, List mimeTypes) {
+                    fetched.add(purl.toString());
+                    return loader.fetch(purl, mimeTypes);
+                }
+            });
+        ImageTagRegistry.getRegistry().flushCache();
+        BufferedImage prefetched =
+            paint(new GVTBuilder().build(ctx, document));
+        loader.dispose();
+
+        // The duplicate image is fetched once.
+        assertEquals(IMAGES.length - 1, fetched.size());
+        assertEquals(null, ctx.getResourcePrefetcher().getResource
+                     (new ParsedURL((String) fetched.get(0))));
+        ctx.dispose();
+
+        ImageTagRegistry.getRegistry().flushCache();
+        BufferedImage opened = paint(new GVTBuilder().build
+            (new BridgeContext(new UserAgentAdapter()), document));
+        assertTrue(DeferredBuildTest.samePixels(prefetched, opened));
+        return true;
+    }
+
+    protected static BufferedImage paint(GraphicsNode gn) {
+        BufferedImage img = new BufferedImage(200, 200,
+                                              BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = img.createGraphics();
+        gn.paint(g);
+        g.dispose();
+        return img;
+    }
+}
@@ -0,0 +1,106 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.bridge;
+
+import java.net.URL;
+
+import org.apache.batik.script.InterpreterException;
+import org.apache.batik.test.AbstractTest;
+
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.ContextAction;
+import org.mozilla.javascript.Script;
+
+/**
+ * Checks that the compiled scripts are shared by the interpreters with
+ * the same security domain only, and that the interpreters created
+ * with the shared scope keep their own global objects.
+ *
+ * @version $Id$
+ */
+public class RhinoInterpreterCacheTest extends AbstractTest {
+
+    protected static final String SCRIPT = "var a = 1; a + 1";
+
+    public boolean runImplBasic() throws Exception {
+        URL u1 = new URL("http://example.org/a.svg");
+        URL u2 = new URL("http://example.com/b.svg");
+
+        RhinoInterpreter.clearCompiledScripts();
+        RhinoInterpreter i1 = new RhinoInterpreter(u1);
+        RhinoInterpreter i2 = new RhinoInterpreter(u1);
+        RhinoInterpreter i3 = new RhinoInterpreter(u2);
+        Script s1 = compile(i1, SCRIPT);
+        assertTrue(s1 == compile(i2, SCRIPT));
+        assertTrue(s1 != compile(i3, SCRIPT));
+
+        boolean shared = RhinoInterpreter.isUsingSharedScope();
+        try {
+            RhinoInterpreter.setUseSharedScope(true);
+            checkInterpreters(u1);
+            RhinoInterpreter.setUseSharedScope(false);
+            checkInterpreters(u1);
+        } finally {
+            RhinoInterpreter.setUseSharedScope(shared);
+        }
+        return true;
+    }
+
+    /**
+     * Checks that two interpreters do not see each other's variables
+     * and that the standard objects and the imported classes are
+     * available.
+     */
+    protected void checkInterpreters(URL u) throws Exception {
+        RhinoInterpreter i1 = new RhinoInterpreter(u);
+        RhinoInterpreter i2 = new RhinoInterpreter(u);
+        i1.evaluate("var x = 'one'");
+        i2.evaluate("var x = 'two'");
+        assertEquals("one", i1.evaluate("x"));
+        assertEquals("two", i2.evaluate("x"));
+        assertEquals("undefined", i1.evaluate("typeof y"));
+        i2.evaluate("y = 2");
+        assertEquals("undefined", i1.evaluate("typeof y"));
+        assertEquals("3,2,1", i1.evaluate("[1, 2, 3].reverse().join()"));
+        assertEquals("b", i1.evaluate("/b/.exec('abc')[0]"));
+        assertEquals("1", i2.evaluate("String(Math.abs(-1))"));
+        assertEquals("8", i1.evaluate("String(DOMException.NOT_FOUND_ERR)"));
+        assertEquals("function", i2.evaluate("typeof setTimeout"));
+        if (RhinoInterpreter.isUsingSharedScope()) {
+            try {
+                i1.evaluate("String.prototype.shout = function () {}");
+                error("sealed.scope.modified");
+            } catch (InterpreterException e) {
+            }
+        } else {
+            i1.evaluate("String.prototype.shout = function () {}");
+            assertEquals("undefined",
+                         i2.evaluate("typeof ''.shout"));
+        }
+    }
+
+    protected static Script compile(final RhinoInterpreter interp,
+                                    final String source) {
+        return (Script)interp.getContextFactory().call(new ContextAction() {
+            public Object run(Context cx) {
+                return interp.getCompiledScript(cx, source, "test", 1);
+            }
+        });
+    }
+}
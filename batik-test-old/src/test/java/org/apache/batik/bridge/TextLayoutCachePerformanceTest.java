@@ -0,0 +1,87 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.bridge;
+
+import java.io.StringReader;
+
+import org.apache.batik.anim.dom.SAXSVGDocumentFactory;
+import org.apache.batik.gvt.GraphicsNode;
+import org.apache.batik.test.PerformanceTest;
+import org.apache.batik.util.XMLResourceDescriptor;
+
+import org.w3c.dom.Document;
+
+/**
+ * This test compares the time needed to lay out a document with many
+ * repeated labels with the <code>TextLayoutCache</code>
+ * (<code>runOp</code>) and without it (<code>runRef</code>).
+ *
+ * @version $Id$
+ */
+public class TextLayoutCachePerformanceTest extends PerformanceTest {
+    static final int N_LABELS = 1000;
+
+    protected Document document;
+
+    public TextLayoutCachePerformanceTest() {
+        StringBuffer sb = new StringBuffer();
+        sb.append("<svg xmlns='http://www.w3.org/2000/svg' ");
+        sb.append("width='1000' height='1000' font-family='sans-serif' ");
+        sb.append("font-size='10'>\n");
+        for (int i=0; i<N_LABELS; i++) {
+            int x = (i % 50) * 20;
+            int y = (i / 50) * 20 + 10;
+            sb.append("<text x='").append(x).append("' y='").append(y);
+            sb.append("'>").append((i % 10) * 100).append("</text>\n");
+            sb.append("<text x='").append(x).append("' y='").append(y + 8);
+            sb.append("' text-anchor='middle' font-size='8'>Label ");
+            sb.append((char)('A' + (i % 4))).append("</text>\n");
+        }
+        sb.append("</svg>\n");
+
+        try {
+            SAXSVGDocumentFactory f = new SAXSVGDocumentFactory
+                (XMLResourceDescriptor.getXMLParserClassName());
+            document = f.createDocument("http://example.org/labels.svg",
+                                        new StringReader(sb.toString()));
+        } catch (java.io.IOException e) {
+            throw new RuntimeException(e.getMessage());
+        }
+    }
+
+    protected void layout(BridgeContext ctx) {
+        GraphicsNode gn = new GVTBuilder().build(ctx, document);
+        // Computing the bounds lays out all the texts.
+        gn.getBounds();
+        ctx.dispose();
+    }
+
+    public void runRef() {
+        BridgeContext ctx = new BridgeContext(new UserAgentAdapter());
+        StrokingTextPainter painter = new StrokingTextPainter();
+        painter.setTextLayoutCache(null);
+        ctx.setTextPainter(painter);
+        layout(ctx);
+    }
+
+    public void runOp() {
+        TextLayoutCache.getSharedCache().clear();
+        layout(new BridgeContext(new UserAgentAdapter()));
+    }
+}
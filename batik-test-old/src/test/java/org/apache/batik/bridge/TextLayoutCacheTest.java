@@ -0,0 +1,108 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.bridge;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.lang.ref.WeakReference;
+
+import org.apache.batik.anim.dom.SAXSVGDocumentFactory;
+import org.apache.batik.ext.awt.RenderingHintsKeyExt;
+import org.apache.batik.gvt.GraphicsNode;
+import org.apache.batik.test.AbstractTest;
+import org.apache.batik.util.XMLResourceDescriptor;
+
+import org.w3c.dom.Document;
+
+/**
+ * Checks that the text samples render the same pixels when their
+ * layouts are shared through a <code>TextLayoutCache</code> as when
+ * every text is laid out.
+ *
+ * @version $Id$
+ */
+public class TextLayoutCacheTest extends AbstractTest {
+
+    protected static final String SAMPLES_DIR = "samples/tests/spec/text/";
+
+    protected static final String[] SAMPLES = {
+        "smallFonts.svg", "textAnchor.svg", "textAnchor2.svg",
+        "textAnchor3.svg", "textBiDi.svg", "textDecoration.svg",
+        "textDecoration2.svg", "textEffect.svg", "textFeatures.svg",
+        "textLayout.svg", "textLayout2.svg",
+        "textOnPath.svg", "textPCDATA.svg", "textPosition.svg",
+        "textPosition2.svg", "textProperties.svg", "textProperties2.svg",
+        "textStyles.svg", "verticalText.svg", "xmlSpace.svg"
+    };
+
+    protected static final int SIZE = 450;
+
+    public boolean runImplBasic() throws Exception {
+        SAXSVGDocumentFactory f = new SAXSVGDocumentFactory
+            (XMLResourceDescriptor.getXMLParserClassName());
+        TextLayoutCache cache = new TextLayoutCache
+            (TextLayoutCache.DEFAULT_CAPACITY);
+        for (int i = 0; i < SAMPLES.length; i++) {
+            String uri = new File(SAMPLES_DIR + SAMPLES[i]).toURI().toString();
+            Document doc = f.createDocument(uri);
+
+            BufferedImage ref = paint(doc, null);
+            // Once to fill the cache, then with the cached layouts.
+            paint(doc, cache);
+            long hits = cache.getHitCount();
+            BufferedImage cached = paint(doc, cache);
+            assertTrue(cache.getHitCount() > hits);
+            assertTrue(samePixels(ref, cached));
+        }
+        return true;
+    }
+
+    protected static BufferedImage paint(Document doc,
+                                         TextLayoutCache cache) {
+        BridgeContext ctx = new BridgeContext(new UserAgentAdapter());
+        StrokingTextPainter painter = new StrokingTextPainter();
+        painter.setTextLayoutCache(cache);
+        ctx.setTextPainter(painter);
+        GraphicsNode gn = new GVTBuilder().build(ctx, doc);
+        BufferedImage img = new BufferedImage(SIZE, SIZE,
+                                              BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = img.createGraphics();
+        g.setRenderingHint(RenderingHintsKeyExt.KEY_BUFFERED_IMAGE,
+                           new WeakReference(img));
+        g.setPaint(Color.white);
+        g.fillRect(0, 0, SIZE, SIZE);
+        gn.paint(g);
+        g.dispose();
+        ctx.dispose();
+        return img;
+    }
+
+    protected static boolean samePixels(BufferedImage a, BufferedImage b) {
+        for (int y = 0; y < a.getHeight(); y++) {
+            for (int x = 0; x < a.getWidth(); x++) {
+                if (a.getRGB(x, y) != b.getRGB(x, y)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,91 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.bridge;
+
+import java.io.StringReader;
+
+import org.apache.batik.anim.dom.SAXSVGDocumentFactory;
+import org.apache.batik.gvt.GraphicsNode;
+import org.apache.batik.test.PerformanceTest;
+import org.apache.batik.util.XMLResourceDescriptor;
+
+import org.w3c.dom.Document;
+
+/**
+ * This test compares the time needed to build a document with many
+ * &lt;use&gt; elements referencing the same symbols with the shared
+ * content (<code>runOp</code>) and without it (<code>runRef</code>).
+ *
+ * @version $Id$
+ */
+public class UseInstancingPerformanceTest extends PerformanceTest {
+    static final int N_USES = 1000;
+
+    protected Document document;
+
+    public UseInstancingPerformanceTest() {
+        StringBuffer sb = new StringBuffer();
+        sb.append("<svg xmlns='http://www.w3.org/2000/svg' ");
+        sb.append("xmlns:xlink='http://www.w3.org/1999/xlink' ");
+        sb.append("width='1000' height='1000'>\n");
+        sb.append("<defs>\n");
+        sb.append("<symbol id='marker' viewBox='0 0 20 20'>\n");
+        sb.append("<circle cx='10' cy='10' r='8' fill='currentColor'/>\n");
+        sb.append("<path d='M4 10L10 4L16 10L10 16z' fill='white' ");
+        sb.append("stroke='black'/>\n");
+        sb.append("<rect x='8' y='8' width='4' height='4'/>\n");
+        sb.append("</symbol>\n");
+        sb.append("</defs>\n");
+        String[] colors = { "red", "green", "blue", "orange" };
+        for (int i=0; i<N_USES; i++) {
+            int x = (i % 50) * 20;
+            int y = (i / 50) * 20;
+            sb.append("<use xlink:href='#marker' x='").append(x);
+            sb.append("' y='").append(y).append("' width='16' height='16' ");
+            sb.append("color='").append(colors[i % colors.length]);
+            sb.append("'/>\n");
+        }
+        sb.append("</svg>\n");
+
+        try {
+            SAXSVGDocumentFactory f = new SAXSVGDocumentFactory
+                (XMLResourceDescriptor.getXMLParserClassName());
+            document = f.createDocument("http://example.org/symbols.svg",
+                                        new StringReader(sb.toString()));
+        } catch (java.io.IOException e) {
+            throw new RuntimeException(e.getMessage());
+        }
+    }
+
+    protected void build(boolean useInstancing) {
+        BridgeContext ctx = new BridgeContext(new UserAgentAdapter());
+        ctx.setUseInstancing(useInstancing);
+        GraphicsNode gn = new GVTBuilder().build(ctx, document);
+        gn.getBounds();
+        ctx.dispose();
+    }
+
+    public void runRef() {
+        build(false);
+    }
+
+    public void runOp() {
+        build(true);
+    }
+}
@@ -0,0 +1,193 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.bridge;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.StringReader;
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+
+import org.apache.batik.anim.dom.SAXSVGDocumentFactory;
+import org.apache.batik.anim.dom.SVGOMUseElement;
+import org.apache.batik.ext.awt.RenderingHintsKeyExt;
+import org.apache.batik.gvt.CompositeGraphicsNode;
+import org.apache.batik.gvt.GraphicsNode;
+import org.apache.batik.gvt.ProxyGraphicsNode;
+import org.apache.batik.test.AbstractTest;
+import org.apache.batik.util.XMLResourceDescriptor;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+
+/**
+ * Checks that sharing the content of the &lt;use&gt; elements does
+ * not change the rendering, and that each &lt;use&gt; element still
+ * gets its own shadow tree.
+ *
+ * @version $Id$
+ */
+public class UseInstancingTest extends AbstractTest {
+
+    protected static final int WIDTH = 200;
+    protected static final int HEIGHT = 100;
+
+    /**
+     * Symbols with inherited colors and sizes.
+     */
+    protected static final String SYMBOLS =
+        "<svg xmlns='http://www.w3.org/2000/svg' " +
+        "xmlns:xlink='http://www.w3.org/1999/xlink' " +
+        "width='200' height='100'>\n" +
+        "<defs>\n" +
+        "<symbol id='s' viewBox='0 0 20 20'>\n" +
+        "<circle cx='10' cy='10' r='8' fill='currentColor'/>\n" +
+        "<rect x='5' y='5' width='50%' height='4' stroke='black'/>\n" +
+        "</symbol>\n" +
+        "<g id='g'><use xlink:href='#s' width='10' height='10'/></g>\n" +
+        "</defs>\n" +
+        "<use xlink:href='#s' x='0' y='0' width='40' height='40' " +
+        "color='red'/>\n" +
+        "<use xlink:href='#s' x='40' y='0' width='40' height='40' " +
+        "color='red'/>\n" +
+        "<use xlink:href='#s' x='80' y='0' width='40' height='40' " +
+        "color='blue'/>\n" +
+        "<use xlink:href='#s' x='120' y='0' width='20' height='40' " +
+        "color='blue'/>\n" +
+        "<use xlink:href='#g' x='0' y='50' color='green'/>\n" +
+        "<use xlink:href='#g' x='20' y='50' color='green'/>\n" +
+        "<use xlink:href='#g' x='40' y='50' color='green' " +
+        "transform='scale(2)'/>\n" +
+        "</svg>\n";
+
+    /**
+     * Content reading the background image of its enable-background
+     * ancestor: the filter swaps the red and blue channels of the
+     * blue background, so the &lt;use&gt; elements paint red squares.
+     */
+    protected static final String BACKGROUND =
+        "<svg xmlns='http://www.w3.org/2000/svg' " +
+        "xmlns:xlink='http://www.w3.org/1999/xlink' " +
+        "width='200' height='100' enable-background='new'>\n" +
+        "<defs>\n" +
+        "<filter id='f' x='0' y='0' width='1' height='1'>\n" +
+        "<feColorMatrix in='BackgroundImage' type='matrix' " +
+        "values='0 0 1 0 0  0 1 0 0 0  1 0 0 0 0  0 0 0 1 0'/>\n" +
+        "</filter>\n" +
+        "<g id='c'><rect width='40' height='40' fill='blue' " +
+        "filter='url(#f)'/></g>\n" +
+        "</defs>\n" +
+        "<rect width='200' height='100' fill='blue'/>\n" +
+        "<use xlink:href='#c' x='10' y='10'/>\n" +
+        "<use xlink:href='#c' x='100' y='10'/>\n" +
+        "</svg>\n";
+
+    /**
+     * The number of proxies in the tree painted last.
+     */
+    protected int proxies;
+
+    public boolean runImplBasic() throws Exception {
+        BridgeContext ctx = new BridgeContext(new UserAgentAdapter());
+        assertTrue(!ctx.isUseInstancing());
+        ctx.dispose();
+
+        Document doc = createDocument(SYMBOLS);
+        BufferedImage ref = paint(doc, false);
+        assertEquals(0, proxies);
+        BufferedImage shared = paint(doc, true);
+        assertTrue(proxies > 0);
+        assertTrue(samePixels(ref, shared));
+
+        doc = createDocument(BACKGROUND);
+        ref = paint(doc, false);
+        shared = paint(doc, true);
+        assertEquals(0xffff0000, ref.getRGB(30, 30));
+        assertEquals(0xffff0000, ref.getRGB(120, 30));
+        assertEquals(0xff0000ff, ref.getRGB(80, 30));
+        assertTrue(samePixels(ref, shared));
+        // The background of the shared content would not be the one
+        // of the <use> elements.
+        assertEquals(0, proxies);
+        return true;
+    }
+
+    protected static Document createDocument(String content)
+        throws Exception {
+        SAXSVGDocumentFactory f = new SAXSVGDocumentFactory
+            (XMLResourceDescriptor.getXMLParserClassName());
+        return f.createDocument("http://example.org/use.svg",
+                                new StringReader(content));
+    }
+
+    protected BufferedImage paint(Document doc, boolean useInstancing)
+        throws Exception {
+        BridgeContext ctx = new BridgeContext(new UserAgentAdapter());
+        ctx.setUseInstancing(useInstancing);
+        GraphicsNode gn = new GVTBuilder().build(ctx, doc);
+
+        // Shared or not, every rendered <use> element has its shadow tree.
+        for (Node n = doc.getDocumentElement().getFirstChild();
+             n != null;
+             n = n.getNextSibling()) {
+            if (n instanceof SVGOMUseElement) {
+                assertTrue(((SVGOMUseElement) n).getCSSFirstChild() != null);
+            }
+        }
+        proxies = countProxies(gn);
+
+        BufferedImage img = new BufferedImage(WIDTH, HEIGHT,
+                                              BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = img.createGraphics();
+        g.setRenderingHint(RenderingHintsKeyExt.KEY_BUFFERED_IMAGE,
+                           new WeakReference(img));
+        g.setPaint(Color.white);
+        g.fillRect(0, 0, WIDTH, HEIGHT);
+        gn.paint(g);
+        g.dispose();
+        ctx.dispose();
+        return img;
+    }
+
+    protected static int countProxies(GraphicsNode gn) {
+        if (gn instanceof ProxyGraphicsNode) {
+            return 1;
+        }
+        int n = 0;
+        if (gn instanceof CompositeGraphicsNode) {
+            Iterator it = ((CompositeGraphicsNode) gn).getChildren().iterator();
+            while (it.hasNext()) {
+                n += countProxies((GraphicsNode) it.next());
+            }
+        }
+        return n;
+    }
+
+    protected static boolean samePixels(BufferedImage a, BufferedImage b) {
+        for (int y = 0; y < a.getHeight(); y++) {
+            for (int x = 0; x < a.getWidth(); x++) {
+                if (a.getRGB(x, y) != b.getRGB(x, y)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,73 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.ext.awt;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.geom.Point2D;
+import java.awt.image.BufferedImage;
+
+import org.apache.batik.test.PerformanceTest;
+
+/**
+ * This test compares the time needed to fill many small shapes with
+ * gradients sharing their stops (<code>runOp</code>), whose tables
+ * are computed once, and with gradients that all differ
+ * (<code>runRef</code>).
+ *
+ * @version $Id$
+ */
+public class GradientCachePerformanceTest extends PerformanceTest {
+
+    protected static final float[] FRACTIONS = { 0f, .3f, .7f, 1f };
+
+    protected int count;
+
+    protected void fill(boolean shared) {
+        BufferedImage bi = new BufferedImage
+            (400, 400, BufferedImage.TYPE_INT_ARGB_PRE);
+        Graphics2D g = bi.createGraphics();
+        for (int y = 0; y < 400; y += 10) {
+            for (int x = 0; x < 400; x += 10) {
+                // Unshared gradients get colors never used before.
+                int c = shared ? 0 : ++count;
+                Color[] colors = {
+                    new Color(c & 0xffffff), Color.yellow,
+                    new Color(0x80, 0x40, 0x20, 0x80), Color.blue
+                };
+                g.setPaint(new LinearGradientPaint
+                           (new Point2D.Float(x, y),
+                            new Point2D.Float(x + 10, y + 10),
+                            FRACTIONS, colors,
+                            MultipleGradientPaint.REFLECT,
+                            MultipleGradientPaint.LINEAR_RGB));
+                g.fillRect(x, y, 10, 10);
+            }
+        }
+        g.dispose();
+    }
+
+    public void runRef() {
+        fill(false);
+    }
+
+    public void runOp() {
+        fill(true);
+    }
+}
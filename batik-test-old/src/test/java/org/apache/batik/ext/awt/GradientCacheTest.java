@@ -0,0 +1,152 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.ext.awt;
+
+import java.awt.Color;
+import java.awt.PaintContext;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Point2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.Raster;
+import java.util.Arrays;
+
+import org.apache.batik.test.AbstractTest;
+
+/**
+ * Checks that gradient paint contexts sharing the tables of a cached
+ * gradient produce the same rasters as contexts computing them, for
+ * premultiplied and non premultiplied output and all cycle methods.
+ *
+ * @version $Id$
+ */
+public class GradientCacheTest extends AbstractTest {
+
+    protected static final int SIZE = 64;
+
+    /**
+     * More gradients than the tables cache holds.
+     */
+    protected static final int FLUSH_COUNT = 100;
+
+    protected static final float[] FRACTIONS = { 0f, .2f, .6f, 1f };
+
+    protected static final MultipleGradientPaint.CycleMethodEnum[] CYCLES = {
+        MultipleGradientPaint.NO_CYCLE,
+        MultipleGradientPaint.REFLECT,
+        MultipleGradientPaint.REPEAT
+    };
+
+    protected static final MultipleGradientPaint.ColorSpaceEnum[] SPACES = {
+        MultipleGradientPaint.SRGB,
+        MultipleGradientPaint.LINEAR_RGB
+    };
+
+    protected static final ColorModel RGB_MODEL =
+        new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB).getColorModel();
+
+    protected static final ColorModel PRE_MODEL =
+        new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB_PRE)
+        .getColorModel();
+
+    /**
+     * Used to create gradients that were never cached.
+     */
+    protected int count;
+
+    public boolean runImplBasic() throws Exception {
+        for (int c = 0; c < CYCLES.length; c++) {
+            for (int s = 0; s < SPACES.length; s++) {
+                check(createPaint(false, CYCLES[c], SPACES[s]));
+                check(createPaint(true, CYCLES[c], SPACES[s]));
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Compares the rasters of contexts computing the tables of the
+     * given paint with the ones of contexts sharing them, in both
+     * orders of the color models.
+     */
+    protected void check(MultipleGradientPaint p) throws Exception {
+        int[] rgb = getPixels(p, RGB_MODEL);
+        flush();
+        int[] pre = getPixels(p, PRE_MODEL);
+        assertTrue(Arrays.equals(rgb, getPixels(p, RGB_MODEL)));
+        assertTrue(Arrays.equals(pre, getPixels(p, PRE_MODEL)));
+
+        flush();
+        assertTrue(Arrays.equals(pre, getPixels(p, PRE_MODEL)));
+        assertTrue(Arrays.equals(rgb, getPixels(p, RGB_MODEL)));
+    }
+
+    /**
+     * Returns the pixels of a raster of the given paint for the given
+     * color model. The context is disposed, so the next one may reuse
+     * its raster.
+     */
+    protected static int[] getPixels(MultipleGradientPaint p, ColorModel cm) {
+        Rectangle r = new Rectangle(0, 0, SIZE, SIZE);
+        PaintContext ctx = p.createContext
+            (cm, r, r, new AffineTransform(), new RenderingHints(null));
+        Raster ras = ctx.getRaster(0, 0, SIZE, SIZE);
+        int[] pixels = ras.getPixels(ras.getMinX(), ras.getMinY(),
+                                     SIZE, SIZE, (int[]) null);
+        ctx.dispose();
+        return pixels;
+    }
+
+    /**
+     * Evicts the tables of the previous gradients from the cache.
+     */
+    protected void flush() {
+        for (int i = 0; i < FLUSH_COUNT; i++) {
+            getPixels(createPaint(false, MultipleGradientPaint.NO_CYCLE,
+                                  MultipleGradientPaint.SRGB),
+                      RGB_MODEL);
+        }
+    }
+
+    /**
+     * Returns a translucent gradient whose stops were never used.
+     */
+    protected MultipleGradientPaint createPaint
+        (boolean radial,
+         MultipleGradientPaint.CycleMethodEnum cycleMethod,
+         MultipleGradientPaint.ColorSpaceEnum colorSpace) {
+        count++;
+        Color[] colors = {
+            new Color(count & 0xff, (count >> 8) & 0xff, 0x40, 0xff),
+            new Color(0xff, 0xff, 0x00, 0x80),
+            new Color(0x20, 0x80, 0xc0, 0x30),
+            new Color(0x00, 0x00, 0xff, 0xd0)
+        };
+        if (radial) {
+            return new RadialGradientPaint
+                (new Point2D.Float(32, 32), 12, new Point2D.Float(28, 30),
+                 FRACTIONS, colors, cycleMethod, colorSpace);
+        }
+        return new LinearGradientPaint
+            (new Point2D.Float(10, 12), new Point2D.Float(25, 20),
+             FRACTIONS, colors, cycleMethod, colorSpace);
+    }
+}
@@ -0,0 +1,77 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.ext.awt.image.codec.png;
+
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.awt.image.renderable.RenderContext;
+import java.io.ByteArrayInputStream;
+
+import org.apache.batik.ext.awt.image.renderable.RedRable;
+import org.apache.batik.ext.awt.image.rendered.CachableRed;
+import org.apache.batik.test.PerformanceTest;
+
+/**
+ * This test compares the time needed to render a thumbnail of a large
+ * PNG image when the image is decoded with the subsampling of the
+ * rendering (<code>runOp</code>) and when it is decoded whole
+ * (<code>runRef</code>).
+ *
+ * @version $Id$
+ */
+public class PNGSubsamplingPerformanceTest extends PerformanceTest {
+
+    protected static final int WIDTH = 2400;
+    protected static final int HEIGHT = 1800;
+
+    protected static final AffineTransform THUMBNAIL =
+        AffineTransform.getScaleInstance(0.1, 0.1);
+
+    protected byte [] data;
+
+    protected byte [] getData() {
+        if (data == null) {
+            try {
+                data = PNGSubsamplingTest.encode
+                    (PNGSubsamplingTest.createImage
+                     (WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB), false);
+            } catch (Exception e) {
+                throw new IllegalStateException(e.getMessage());
+            }
+        }
+        return data;
+    }
+
+    public void runRef() {
+        try {
+            CachableRed cr = PNGRegistryEntry.decode
+                (new ByteArrayInputStream(getData()), false, null, 1);
+            new RedRable(cr).createRendering
+                (new RenderContext(THUMBNAIL, null, null)).getData();
+        } catch (Exception e) {
+            throw new IllegalStateException(e.getMessage());
+        }
+    }
+
+    public void runOp() {
+        new PNGRegistryEntry.PNGSubsamplingRable
+            (getData(), WIDTH, HEIGHT, false).createRendering
+            (new RenderContext(THUMBNAIL, null, null)).getData();
+    }
+}
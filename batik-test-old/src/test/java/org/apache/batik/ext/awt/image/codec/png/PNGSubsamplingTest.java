@@ -0,0 +1,218 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.ext.awt.image.codec.png;
+
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Ellipse2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.renderable.RenderContext;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.apache.batik.ext.awt.image.renderable.DeferRable;
+import org.apache.batik.ext.awt.image.renderable.Filter;
+import org.apache.batik.ext.awt.image.renderable.RedRable;
+import org.apache.batik.ext.awt.image.renderable.SubsamplingRable;
+import org.apache.batik.ext.awt.image.rendered.CachableRed;
+import org.apache.batik.ext.awt.image.spi.BrokenLinkProvider;
+import org.apache.batik.test.AbstractTest;
+
+/**
+ * Checks that decoding a part of a PNG image with subsampling gives the
+ * pixels of the whole image, and that the <code>PNGRegistryEntry</code>
+ * renders a large image from the decoded parts it needs, or reports it
+ * as broken if it cannot be decoded.
+ *
+ * @version $Id$
+ */
+public class PNGSubsamplingTest extends AbstractTest {
+
+    public boolean runImplBasic() throws Exception {
+        int [] types = { BufferedImage.TYPE_INT_RGB,
+                         BufferedImage.TYPE_INT_ARGB,
+                         BufferedImage.TYPE_BYTE_GRAY,
+                         BufferedImage.TYPE_BYTE_BINARY };
+        Rectangle [] regions = { null,
+                                 new Rectangle(13, 7, 50, 41),
+                                 new Rectangle(90, 60, 100, 100) };
+        int [] subsamplings = { 1, 3, 8 };
+        for (int i = 0; i < types.length; i++) {
+            for (int j = 0; j < 2; j++) {
+                byte [] data = encode(createImage(120, 90, types[i]), j == 1);
+                Raster all = decode(data, null, 1).getData();
+                for (int k = 0; k < regions.length; k++) {
+                    for (int l = 0; l < subsamplings.length; l++) {
+                        checkPart(data, all, regions[k], subsamplings[l]);
+                    }
+                }
+            }
+        }
+
+        // A large image is decoded when it is rendered, with the
+        // subsampling the rendering needs.
+        byte [] data = encode(createImage(1200, 1000,
+                                          BufferedImage.TYPE_INT_RGB), false);
+        Filter f = new PNGRegistryEntry().handleStream
+            (new ByteArrayInputStream(data), null, false);
+        f = ((DeferRable)f).getSource();
+        assertTrue(f instanceof SubsamplingRable);
+        assertEquals(1200.0, f.getBounds2D().getWidth());
+
+        final int [] decoded = new int[3];
+        f = new PNGRegistryEntry.PNGSubsamplingRable(data, 1200, 1000, false) {
+                protected CachableRed decode(Rectangle region,
+                                             int subsampling)
+                    throws IOException {
+                    decoded[0]++;
+                    decoded[1] = region.width;
+                    decoded[2] = subsampling;
+                    return super.decode(region, subsampling);
+                }
+            };
+        AffineTransform at = AffineTransform.getScaleInstance(0.1, 0.1);
+        RenderedImage ri = f.createRendering(new RenderContext(at, null, null));
+        assertEquals(1, decoded[0]);
+        assertEquals(1200, decoded[1]);
+        assertEquals(10, decoded[2]);
+        CachableRed cr = PNGRegistryEntry.decode
+            (new ByteArrayInputStream(data), false, null, 1);
+        RenderedImage ref = new RedRable(cr).createRendering
+            (new RenderContext(at, null, null));
+        assertEquals(ref.getWidth(), ri.getWidth());
+        assertEquals(ref.getHeight(), ri.getHeight());
+        assertTrue(getMeanDifference(ref, ri) < 4);
+
+        // Only the visible part of the image is decoded, and a close
+        // one is decoded again.
+        at = AffineTransform.getScaleInstance(2, 2);
+        RenderContext rc =
+            new RenderContext(at, new Rectangle(100, 100, 50, 50), null);
+        f.createRendering(rc);
+        assertEquals(2, decoded[0]);
+        assertTrue(decoded[1] < 200);
+        assertEquals(1, decoded[2]);
+        rc.setAreaOfInterest(new Rectangle(110, 110, 50, 50));
+        f.createRendering(rc);
+        assertEquals(2, decoded[0]);
+
+        // A truncated large image is reported as broken when it is
+        // read, as a small one is, rather than rendering nothing.
+        byte [] truncated = new byte[data.length / 2];
+        System.arraycopy(data, 0, truncated, 0, truncated.length);
+        f = new PNGRegistryEntry().handleStream
+            (new ByteArrayInputStream(truncated), null, false);
+        f = ((DeferRable)f).getSource();
+        assertTrue(BrokenLinkProvider.hasBrokenLinkProperty(f));
+        return true;
+    }
+
+    /**
+     * Checks a part of an image decoded with subsampling against the
+     * whole image.
+     */
+    protected void checkPart(byte [] data, Raster all,
+                             Rectangle region, int subsampling)
+        throws Exception {
+        Rectangle r = (region == null) ? all.getBounds()
+            : region.intersection(all.getBounds());
+        Raster part = decode(data, region, subsampling).getData();
+        assertEquals((r.width  + subsampling - 1) / subsampling,
+                     part.getWidth());
+        assertEquals((r.height + subsampling - 1) / subsampling,
+                     part.getHeight());
+        int [] p = null;
+        int [] q = null;
+        for (int y = 0; y < part.getHeight(); y++) {
+            for (int x = 0; x < part.getWidth(); x++) {
+                p = part.getPixel(x, y, p);
+                q = all.getPixel(r.x + x * subsampling,
+                                 r.y + y * subsampling, q);
+                for (int b = 0; b < p.length; b++) {
+                    assertEquals(q[b], p[b]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the mean difference of the samples of two renderings.
+     */
+    protected static double getMeanDifference(RenderedImage a,
+                                              RenderedImage b) {
+        Raster ra = a.getData();
+        Raster rb = b.getData();
+        int [] p = null;
+        int [] q = null;
+        long sum = 0;
+        int n = 0;
+        for (int y = 0; y < ra.getHeight(); y++) {
+            for (int x = 0; x < ra.getWidth(); x++) {
+                p = ra.getPixel(ra.getMinX() + x, ra.getMinY() + y, p);
+                q = rb.getPixel(rb.getMinX() + x, rb.getMinY() + y, q);
+                for (int i = 0; i < p.length; i++) {
+                    sum += Math.abs(p[i] - q[i]);
+                    n++;
+                }
+            }
+        }
+        return sum / (double)n;
+    }
+
+    protected static CachableRed decode(byte [] data, Rectangle region,
+                                        int subsampling)
+        throws Exception {
+        PNGDecodeParam param = new PNGDecodeParam();
+        param.setSourceRegion(region);
+        param.setSubsampling(subsampling);
+        return new PNGRed(new ByteArrayInputStream(data), param);
+    }
+
+    protected static byte [] encode(BufferedImage image, boolean interlaced)
+        throws Exception {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        PNGEncodeParam param = PNGEncodeParam.getDefaultEncodeParam(image);
+        param.setInterlacing(interlaced);
+        new PNGImageEncoder(bos, param).encode(image);
+        return bos.toByteArray();
+    }
+
+    /**
+     * Creates an image with gradients and translucent shapes.
+     */
+    protected static BufferedImage createImage(int w, int h, int type) {
+        BufferedImage image = new BufferedImage(w, h, type);
+        Graphics2D g = image.createGraphics();
+        g.setPaint(new GradientPaint(0, 0, Color.red, w, h, Color.blue));
+        g.fillRect(0, 0, w, h);
+        for (int i = 0; i < 10; i++) {
+            g.setPaint(new Color(i * 25, 255 - i * 25, i * 10, 50 + i * 20));
+            g.fill(new Ellipse2D.Double(i * w / 12.0, i * h / 15.0,
+                                        w / 3.0, h / 4.0));
+        }
+        g.dispose();
+        return image;
+    }
+}
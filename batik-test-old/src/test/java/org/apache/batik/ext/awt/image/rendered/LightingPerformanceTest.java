@@ -0,0 +1,72 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.ext.awt.image.rendered;
+
+import java.awt.Rectangle;
+
+import org.apache.batik.ext.awt.image.Light;
+import org.apache.batik.test.PerformanceTest;
+
+/**
+ * This test compares the time needed to compute diffuse and specular
+ * lightings with each kind of light with <code>DiffuseLightingRed</code>
+ * and <code>SpecularLightingRed</code> (<code>runOp</code>) and from
+ * arrays of normals and light vectors, as they used to be computed
+ * (<code>runRef</code>).
+ *
+ * @version $Id$
+ */
+public class LightingPerformanceTest extends PerformanceTest {
+
+    protected static final Rectangle REGION = new Rectangle(0, 0, 200, 150);
+
+    protected CachableRed texture;
+    protected BumpMap bumpMap;
+    protected Light [] lights;
+
+    protected void init() {
+        if (bumpMap == null) {
+            texture = LightingRedTest.createTexture();
+            bumpMap = new BumpMap(texture, LightingRedTest.SURFACE_SCALE,
+                                  1, 1);
+            lights = LightingRedTest.createLights();
+        }
+    }
+
+    public void runRef() {
+        init();
+        for (int i = 0; i < lights.length; i++) {
+            LightingRedTest.diffuseRef(1.3, lights[i], texture,
+                                       LightingRedTest.SURFACE_SCALE, REGION);
+            LightingRedTest.specularRef(1.1, 7.5, lights[i], texture,
+                                        LightingRedTest.SURFACE_SCALE,
+                                        REGION, true);
+        }
+    }
+
+    public void runOp() {
+        init();
+        for (int i = 0; i < lights.length; i++) {
+            new DiffuseLightingRed(1.3, lights[i], bumpMap, REGION,
+                                   1, 1, false).getData(REGION);
+            new SpecularLightingRed(1.1, 7.5, lights[i], bumpMap, REGION,
+                                    1, 1, true).getData(REGION);
+        }
+    }
+}
@@ -0,0 +1,698 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.ext.awt.image.rendered;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.SinglePixelPackedSampleModel;
+
+import org.apache.batik.ext.awt.image.DistantLight;
+import org.apache.batik.ext.awt.image.Light;
+import org.apache.batik.ext.awt.image.PointLight;
+import org.apache.batik.ext.awt.image.SpotLight;
+import org.apache.batik.test.AbstractTest;
+
+/**
+ * Checks that <code>DiffuseLightingRed</code> and
+ * <code>SpecularLightingRed</code>, which compute the normals and the
+ * light vectors row by row with <code>BumpMap.getNormalRow</code> and
+ * <code>AbstractLight.getLightRow</code>, give the same pixels as the
+ * computation from arrays of normals, computed as
+ * <code>BumpMap.getNormalArray</code> used to compute them, and of
+ * light vectors, including for a light which does not extend
+ * <code>AbstractLight</code>.
+ *
+ * @version $Id$
+ */
+public class LightingRedTest extends AbstractTest {
+
+    protected static final Rectangle [] REGIONS = {
+        new Rectangle(0, 0, 200, 150),
+        new Rectangle(-3, -3, 206, 156),
+        new Rectangle(37, 21, 50, 1),
+        new Rectangle(199, 10, 5, 40),
+    };
+
+    protected static final double SURFACE_SCALE = 3.5;
+
+    public boolean runImplBasic() throws Exception {
+        CachableRed texture = createTexture();
+        BumpMap bumpMap = new BumpMap(texture, SURFACE_SCALE, 1, 1);
+        Light [] lights = createLights();
+        for (int i = 0; i < lights.length; i++) {
+            for (int j = 0; j < REGIONS.length; j++) {
+                Rectangle r = REGIONS[j];
+                DiffuseLightingRed diffuse = new DiffuseLightingRed
+                    (1.3, lights[i], bumpMap, r, 1, 1, false);
+                assertEquals(0, countDifferences
+                             (diffuseRef(1.3, lights[i], texture,
+                                         SURFACE_SCALE, r),
+                              diffuse.getData(r)));
+
+                SpecularLightingRed specular = new SpecularLightingRed
+                    (1.1, 7.5, lights[i], bumpMap, r, 1, 1, true);
+                assertEquals(0, countDifferences
+                             (specularRef(1.1, 7.5, lights[i], texture,
+                                          SURFACE_SCALE, r, true),
+                              specular.getData(r)));
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Creates a blurred texture whose alpha channel is used as bump map.
+     */
+    protected static CachableRed createTexture() {
+        BufferedImage bi = new BufferedImage
+            (200, 150, BufferedImage.TYPE_INT_ARGB_PRE);
+        Graphics2D g = bi.createGraphics();
+        g.setColor(Color.red);
+        g.fillOval(20, 15, 120, 90);
+        g.setColor(new Color(0, 0, 255, 160));
+        g.fillRect(90, 60, 100, 80);
+        g.setColor(Color.black);
+        g.drawString("Lighting", 30, 140);
+        g.dispose();
+        // The blur is computed once, since it may give slightly
+        // different pixels for different requests.
+        CachableRed blur = new GaussianBlurRed8Bit
+            (new BufferedImageCachableRed(bi), 3, null);
+        blur.copyData(bi.getRaster());
+        return new BufferedImageCachableRed(bi);
+    }
+
+    /**
+     * Creates one light of each kind.
+     */
+    protected static Light [] createLights() {
+        return new Light [] {
+            new DistantLight(45, 35, new Color(255, 208, 128)),
+            new PointLight(60, 20, 40, new Color(128, 192, 255)),
+            new SpotLight(10, -20, 60, 60, 60, 0, 3, 30, Color.white),
+            new DelegatingLight(new PointLight(150, 100, 25, Color.green)),
+        };
+    }
+
+    /**
+     * A light which does not extend <code>AbstractLight</code>, whose
+     * light rows are computed pixel by pixel.
+     */
+    protected static class DelegatingLight implements Light {
+        protected Light light;
+
+        public DelegatingLight(Light light) {
+            this.light = light;
+        }
+
+        public boolean isConstant() {
+            return light.isConstant();
+        }
+
+        public void getLight(double x, double y, double z, double[] L) {
+            light.getLight(x, y, z, L);
+        }
+
+        public double[][][] getLightMap(double x, double y,
+                                        double dx, double dy,
+                                        int width, int height,
+                                        double[][][] z) {
+            return light.getLightMap(x, y, dx, dy, width, height, z);
+        }
+
+        public double[][] getLightRow(double x, double y,
+                                      double dx, int width,
+                                      double[][] z,
+                                      double[][] lightRow) {
+            return light.getLightRow(x, y, dx, width, z, lightRow);
+        }
+
+        public double[] getColor(boolean linear) {
+            return light.getColor(linear);
+        }
+
+        public void setColor(Color color) {
+            light.setColor(color);
+        }
+    }
+
+    /**
+     * Computes the pixels of a diffuse lighting from arrays of normals
+     * and light vectors.
+     */
+    protected static int [] diffuseRef(double kd, Light light,
+                                       RenderedImage texture,
+                                       double surfaceScale, Rectangle r) {
+        double [] lightColor = light.getColor(false);
+        double [][][] NA = normalArray(texture, surfaceScale, 1, 1,
+                                       r.x, r.y, r.width, r.height);
+        double [][] LA = new double[r.width][3];
+        int [] pixels = new int[r.width*r.height];
+        int p = 0;
+        for (int i = 0; i < r.height; i++) {
+            light.getLightRow(r.x, r.y+i, 1, r.width, NA[i], LA);
+            for (int j = 0; j < r.width; j++) {
+                double [] N = NA[i][j];
+                double [] L = LA[j];
+                double NL = 255.*kd*(N[0]*L[0] + N[1]*L[1] + N[2]*L[2]);
+                pixels[p++] = (0xff000000
+                               | clamp((int)(NL*lightColor[0])) << 16
+                               | clamp((int)(NL*lightColor[1])) << 8
+                               | clamp((int)(NL*lightColor[2])));
+            }
+        }
+        return pixels;
+    }
+
+    /**
+     * Computes the pixels of a specular lighting from arrays of
+     * normals and light vectors.
+     */
+    protected static int [] specularRef(double ks, double exp, Light light,
+                                        RenderedImage texture,
+                                        double surfaceScale, Rectangle r,
+                                        boolean linear) {
+        double [] lightColor = light.getColor(linear);
+        double mult = Math.max(Math.max(lightColor[0], lightColor[1]),
+                               lightColor[2]);
+        double scale = 255/mult;
+        int pixel = (((int)(lightColor[0]*scale+0.5)) << 16 |
+                     ((int)(lightColor[1]*scale+0.5)) << 8 |
+                     ((int)(lightColor[2]*scale+0.5)));
+        mult *= 255*ks;
+
+        double [][][] NA = normalArray(texture, surfaceScale, 1, 1,
+                                       r.x, r.y, r.width, r.height);
+        double [][] LA = new double[r.width][4];
+        double [] H = null;
+        if (light.isConstant()) {
+            H = new double[3];
+            light.getLight(0, 0, 0, H);
+            H[2] += 1;
+            double norm = Math.sqrt(H[0]*H[0] + H[1]*H[1] + H[2]*H[2]);
+            H[0] /= norm;
+            H[1] /= norm;
+            H[2] /= norm;
+        }
+        int [] pixels = new int[r.width*r.height];
+        int p = 0;
+        for (int i = 0; i < r.height; i++) {
+            if (light instanceof SpotLight) {
+                ((SpotLight)light).getLightRow4(r.x, r.y+i, 1, r.width,
+                                                NA[i], LA);
+            } else if (!light.isConstant()) {
+                light.getLightRow(r.x, r.y+i, 1, r.width, NA[i], LA);
+            }
+            for (int j = 0; j < r.width; j++) {
+                double [] N = NA[i][j];
+                double [] L = LA[j];
+                double v;
+                if (H != null) {
+                    v = Math.pow(N[0]*H[0] + N[1]*H[1] + N[2]*H[2], exp);
+                } else {
+                    double vs = (light instanceof SpotLight) ? L[3] : 1;
+                    if (vs == 0) {
+                        pixels[p++] = pixel;
+                        continue;
+                    }
+                    L[2] += 1;
+                    double norm = Math.sqrt(L[0]*L[0] + L[1]*L[1] +
+                                            L[2]*L[2]);
+                    double dot = N[0]*L[0] + N[1]*L[1] + N[2]*L[2];
+                    v = Math.pow(dot/norm, exp);
+                    if (light instanceof SpotLight)
+                        v = vs*v;
+                }
+                pixels[p++] = clamp((int)(mult*v + 0.5)) << 24 | pixel;
+            }
+        }
+        return pixels;
+    }
+
+    /**
+     * Computes the normals of the given region of a bump map as
+     * <code>BumpMap.getNormalArray</code> used to compute them, before
+     * the normals were computed row by row.
+     */
+    protected static double[][][] normalArray(RenderedImage texture,
+                                              double surfaceScale,
+                                              double scaleX, double scaleY,
+                                              final int x, final int y,
+                                              final int w, final int h) {
+        final double surfaceScaleX = surfaceScale*scaleX;
+        final double surfaceScaleY = surfaceScale*scaleY;
+        final double[][][] N = new double[h][w][4];
+
+        Rectangle srcRect = new Rectangle(x-1, y-1, w+2, h+2);
+        Rectangle srcBound = new Rectangle
+            (texture.getMinX(), texture.getMinY(),
+             texture.getWidth(), texture.getHeight());
+
+        if ( ! srcRect.intersects(srcBound) )
+            return N;
+
+        srcRect = srcRect.intersection(srcBound);
+        final Raster r = texture.getData(srcRect);
+
+        srcRect = r.getBounds();
+
+        // System.out.println("SrcRect: " + srcRect);
+        // System.out.println("rect: [" +
+        //                    x + ", " + y + ", " +
+        //                    w + ", " + h + "]");
+
+        final DataBufferInt db = (DataBufferInt)r.getDataBuffer();
+
+
+        final int[] pixels = db.getBankData()[0];
+
+        final SinglePixelPackedSampleModel sppsm;
+        sppsm = (SinglePixelPackedSampleModel)r.getSampleModel();
+
+
+        final int scanStride = sppsm.getScanlineStride();
+        final int scanStridePP = scanStride + 1;
+        final int scanStrideMM = scanStride - 1;
+        double prpc=0, prcc=0, prnc=0;
+        double crpc=0, crcc=0, crnc=0;
+        double nrpc=0, nrcc=0, nrnc=0;
+        double invNorm;
+
+        final double quarterSurfaceScaleX = surfaceScaleX / 4f;
+        final double quarterSurfaceScaleY = surfaceScaleY / 4f;
+        final double halfSurfaceScaleX = surfaceScaleX / 2f;
+        final double halfSurfaceScaleY = surfaceScaleY /2;
+        final double thirdSurfaceScaleX = surfaceScaleX / 3f;
+        final double thirdSurfaceScaleY = surfaceScaleY / 3f;
+        final double twoThirdSurfaceScaleX = surfaceScaleX * 2 / 3f;
+        final double twoThirdSurfaceScaleY = surfaceScaleY * 2 / 3f;
+
+        final double pixelScale = 1.0/255;
+
+        if(w <= 0)
+            return N;
+        // Process pixels on the border
+        if(h <= 0)
+            return N;
+
+        final int xEnd   = Math.min(srcRect.x+srcRect.width -1, x+w);
+        final int yEnd   = Math.min(srcRect.y+srcRect.height-1, y+h);
+        final int offset =
+            (db.getOffset() +
+             sppsm.getOffset(srcRect.x -r.getSampleModelTranslateX(),
+                             srcRect.y -r.getSampleModelTranslateY()));
+
+        int yloc=y;
+        if (yloc < srcRect.y) {
+            yloc = srcRect.y;
+        }
+
+        // Top edge extend filters...
+        if (yloc == srcRect.y) {
+            if (yloc == yEnd) {
+                // Only one row of pixels...
+                final double [][] NRow = N[yloc-y];
+                int xloc=x;
+                if (xloc < srcRect.x)
+                    xloc = srcRect.x;
+                int p  = (offset + (xloc-srcRect.x) +
+                          scanStride*(yloc-srcRect.y));
+
+                crcc = (pixels[p] >>> 24)*pixelScale;
+
+                if (xloc != srcRect.x) {
+                    crpc = (pixels[p - 1] >>> 24)*pixelScale;
+                }
+                else if (xloc < xEnd) {
+                    // Top left pixel, in src (0, 0);
+                    crnc = (pixels[p+1] >>> 24)*pixelScale;
+
+                    final double [] n = NRow[xloc-x];
+
+                    n[0] = 2*surfaceScaleX*(crcc - crnc);
+                    invNorm = 1.0/Math.sqrt(n[0]*n[0] + 1);
+                    n[0] *= invNorm;
+                    n[1]  = 0;
+                    n[2]  = invNorm;
+                    n[3]  = crcc*surfaceScale;
+                    p++;
+                    xloc++;
+                    crpc = crcc;
+                    crcc = crnc;
+                } else {
+                    // Single pix.
+                    crpc = crcc;
+                }
+
+                for (; xloc<xEnd; xloc++) {
+                    // Middle Top row...
+                    crnc = (pixels[p+1] >>> 24)*pixelScale;
+                    final double [] n = NRow[xloc-x];
+
+                    n[0] = surfaceScaleX * (crpc - crnc );
+                    invNorm = 1.0/Math.sqrt(n[0]*n[0] + 1);
+                    n[0] *= invNorm;
+                    n[1]  = 0;
+                    n[2]  = invNorm;
+                    n[3]  = crcc*surfaceScale;
+                    p++;
+                    crpc = crcc;
+                    crcc = crnc;
+                }
+
+                if ((xloc < x+w) &&
+                    (xloc == srcRect.x+srcRect.width-1)) {
+                    // Last pixel of top row
+                    final double [] n = NRow[xloc-x];
+
+                    n[0] = 2*surfaceScaleX*(crpc - crcc);
+                    invNorm = 1.0/Math.sqrt(n[0]*n[0] + n[1]*n[1] + 1);
+                    n[0] *= invNorm;
+                    n[1] *= invNorm;
+                    n[2]  = invNorm;
+                    n[3]  = crcc*surfaceScale;
+                }
+                return N;
+            }
+
+            final double [][] NRow = N[yloc-y];
+            int p  = offset + scanStride*(yloc-srcRect.y);
+            int xloc=x;
+            if (xloc < srcRect.x)
+                xloc = srcRect.x;
+            p += xloc-srcRect.x;
+
+            crcc = (pixels[p] >>> 24)*pixelScale;
+            nrcc = (pixels[p + scanStride] >>> 24)*pixelScale;
+
+            if (xloc != srcRect.x) {
+                crpc = (pixels[p - 1] >>> 24)*pixelScale;
+                nrpc = (pixels[p + scanStrideMM] >>> 24)*pixelScale;
+            }
+            else if (xloc < xEnd) {
+                // Top left pixel, in src (0, 0);
+                crnc = (pixels[p+1] >>> 24)*pixelScale;
+                nrnc = (pixels[p + scanStridePP] >>> 24)*pixelScale;
+
+                final double [] n = NRow[xloc-x];
+
+                n[0] = - twoThirdSurfaceScaleX *
+                    ((2*crnc + nrnc - 2*crcc - nrcc));
+                n[1] = - twoThirdSurfaceScaleY *
+                    ((2*nrcc + nrnc - 2*crcc - crnc));
+                invNorm = 1.0/Math.sqrt(n[0]*n[0] + n[1]*n[1] + 1);
+                n[0] *= invNorm;
+                n[1] *= invNorm;
+                n[2]  = invNorm;
+                n[3]  = crcc*surfaceScale;
+                p++;
+                xloc++;
+                crpc = crcc;
+                nrpc = nrcc;
+                crcc = crnc;
+                nrcc = nrnc;
+            } else {
+                // Single pix
+                crpc = crcc;
+                nrpc = nrcc;
+            }
+
+            for (; xloc<xEnd; xloc++) {
+                // Middle Top row...
+                crnc = (pixels[p+1] >>> 24)*pixelScale;
+                nrnc = (pixels[p + scanStridePP] >>> 24)*pixelScale;
+
+                final double [] n = NRow[xloc-x];
+
+                n[0] = - thirdSurfaceScaleX * (( 2*crnc + nrnc)
+                                               - (2*crpc + nrpc));
+                n[1] = - halfSurfaceScaleY *(( nrpc + 2*nrcc + nrnc)
+                                             - (crpc + 2*crcc + crnc));
+
+                invNorm = 1.0/Math.sqrt(n[0]*n[0] + n[1]*n[1] + 1);
+                n[0] *= invNorm;
+                n[1] *= invNorm;
+                n[2]  = invNorm;
+                n[3]  = crcc*surfaceScale;
+                p++;
+                crpc = crcc;
+                nrpc = nrcc;
+                crcc = crnc;
+                nrcc = nrnc;
+            }
+
+            if ((xloc < x+w) &&
+                (xloc == srcRect.x+srcRect.width-1)) {
+                // Last pixel of top row
+                final double [] n = NRow[xloc-x];
+
+                n[0] = - twoThirdSurfaceScaleX *(( 2*crcc + nrcc)
+                                                 - (2*crpc + nrpc));
+                n[1] = - twoThirdSurfaceScaleY *(( 2*nrcc + nrpc)
+                                                 - (2*crcc + crpc));
+
+                invNorm = 1.0/Math.sqrt(n[0]*n[0] + n[1]*n[1] + 1);
+                n[0] *= invNorm;
+                n[1] *= invNorm;
+                n[2]  = invNorm;
+                n[3]  = crcc*surfaceScale;
+            }
+            yloc++;
+        }
+
+        for (; yloc<yEnd; yloc++) {
+            final double [][] NRow = N[yloc-y];
+            int p  = offset + scanStride*(yloc-srcRect.y);
+
+            int xloc=x;
+            if (xloc < srcRect.x)
+                xloc = srcRect.x;
+
+            p += xloc-srcRect.x;
+
+            prcc = (pixels[p - scanStride] >>> 24)*pixelScale;
+            crcc = (pixels[p] >>> 24)*pixelScale;
+            nrcc = (pixels[p + scanStride] >>> 24)*pixelScale;
+
+            if (xloc != srcRect.x) {
+                prpc = (pixels[p - scanStridePP] >>> 24)*pixelScale;
+                crpc = (pixels[p - 1] >>> 24)*pixelScale;
+                nrpc = (pixels[p + scanStrideMM] >>> 24)*pixelScale;
+            }
+            else if (xloc < xEnd) {
+                // Now, process left column, from (0, 1) to (0, h-1)
+                crnc = (pixels[p+1] >>> 24)*pixelScale;
+                prnc = (pixels[p - scanStrideMM] >>> 24)*pixelScale;
+                nrnc = (pixels[p + scanStridePP] >>> 24)*pixelScale;
+
+                final double [] n = NRow[xloc-x];
+
+                n[0] = - halfSurfaceScaleX *(( prnc + 2*crnc + nrnc)
+                                             - (prcc + 2*crcc + nrcc));
+                n[1] = - thirdSurfaceScaleY *(( 2*prcc + prnc)
+                                              - ( 2*crcc + crnc));
+
+                invNorm = 1.0/Math.sqrt(n[0]*n[0] + n[1]*n[1] + 1);
+                n[0] *= invNorm;
+                n[1] *= invNorm;
+                n[2]  = invNorm;
+                n[3]  = crcc*surfaceScale;
+
+                p++;
+                xloc++;
+
+                prpc = prcc;
+                crpc = crcc;
+                nrpc = nrcc;
+                prcc = prnc;
+                crcc = crnc;
+                nrcc = nrnc;
+            } else {
+                // Single pix
+                prpc = prcc;
+                crpc = crcc;
+                nrpc = nrcc;
+            }
+
+            for (; xloc<xEnd; xloc++) {
+                // Middle Middle row...
+                prnc = (pixels[p - scanStrideMM] >>> 24)*pixelScale;
+                crnc = (pixels[p+1] >>> 24)*pixelScale;
+                nrnc = (pixels[p + scanStridePP] >>> 24)*pixelScale;
+
+                final double [] n = NRow[xloc-x];
+
+                n[0] = - quarterSurfaceScaleX *(( prnc + 2*crnc + nrnc)
+                                                - (prpc + 2*crpc + nrpc));
+                n[1] = - quarterSurfaceScaleY *(( nrpc + 2*nrcc + nrnc)
+                                                - (prpc + 2*prcc + prnc));
+
+                invNorm = 1.0/Math.sqrt(n[0]*n[0] + n[1]*n[1] + 1);
+                n[0] *= invNorm;
+                n[1] *= invNorm;
+                n[2]  = invNorm;
+                n[3]  = crcc*surfaceScale;
+
+                p++;
+                prpc = prcc;
+                crpc = crcc;
+                nrpc = nrcc;
+                prcc = prnc;
+                crcc = crnc;
+                nrcc = nrnc;
+            }
+
+            if ((xloc < x+w) &&
+                (xloc == srcRect.x+srcRect.width-1)) {
+                // Now, proces right column, from (w-1, 1) to (w-1, h-1)
+                final double [] n = NRow[xloc-x];
+
+                n[0] = - halfSurfaceScaleX *( (prcc + 2*crcc + nrcc)
+                                             -(prpc + 2*crpc + nrpc));
+                n[1] = - thirdSurfaceScaleY *(( nrpc + 2*nrcc)
+                                              - ( prpc + 2*prcc));
+
+                invNorm = 1.0/Math.sqrt(n[0]*n[0] + n[1]*n[1] + 1);
+                n[0] *= invNorm;
+                n[1] *= invNorm;
+                n[2]  = invNorm;
+                n[3]  = crcc*surfaceScale;
+            }
+        }
+
+        if ((yloc < y+h) &&
+            (yloc == srcRect.y+srcRect.height-1)) {
+            final double [][] NRow = N[yloc-y];
+            int p  = offset + scanStride*(yloc-srcRect.y);
+            int xloc=x;
+            if (xloc < srcRect.x)
+                xloc = srcRect.x;
+
+            p += xloc-srcRect.x;
+
+            crcc = (pixels[p] >>> 24)*pixelScale;
+            prcc = (pixels[p - scanStride] >>> 24)*pixelScale;
+
+            if (xloc != srcRect.x) {
+                prpc = (pixels[p - scanStridePP] >>> 24)*pixelScale;
+                crpc = (pixels[p - 1] >>> 24)*pixelScale;
+            }
+            else if (xloc < xEnd) {
+                // Process first pixel of last row
+                crnc = (pixels[p + 1] >>> 24)*pixelScale;
+                prnc = (pixels[p - scanStrideMM] >>> 24)*pixelScale;
+
+                final double [] n = NRow[xloc-x];
+
+                n[0] = - twoThirdSurfaceScaleX * ((2*crnc + prnc - 2*crcc - prcc));
+                n[1] = - twoThirdSurfaceScaleY * ((2*crcc + crnc - 2*prcc - prnc));
+                invNorm = 1.0/Math.sqrt(n[0]*n[0] + n[1]*n[1] + 1);
+                n[0] *= invNorm;
+                n[1] *= invNorm;
+                n[2]  = invNorm;
+                n[3]  = crcc*surfaceScale;
+
+                p++;
+                xloc++;
+                crpc = crcc;
+                prpc = prcc;
+                crcc = crnc;
+                prcc = prnc;
+            } else {
+                // Single pix
+                crpc = crcc;
+                prpc = prcc;
+            }
+
+            for (; xloc<xEnd; xloc++) {
+                // Middle of Bottom row...
+                crnc = (pixels[p + 1] >>> 24)*pixelScale;
+                prnc = (pixels[p - scanStrideMM] >>> 24)*pixelScale;
+
+                // System.out.println("Vals: " +
+                //                    prpc + "," + prcc + "," + prnc + "  " +
+                //                    crpc + "," + crcc + "," + crnc );
+
+                final double [] n = NRow[xloc-x];
+
+                n[0] = - thirdSurfaceScaleX *(( 2*crnc + prnc)
+                                              - (2*crpc + prpc));
+                n[1] = - halfSurfaceScaleY *(( crpc + 2*crcc + crnc)
+                                             - (prpc + 2*prcc + prnc));
+
+                invNorm = 1.0/Math.sqrt(n[0]*n[0] + n[1]*n[1] + 1);
+                n[0] *= invNorm;
+                n[1] *= invNorm;
+                n[2]  = invNorm;
+                n[3]  = crcc*surfaceScale;
+
+                p++;
+                crpc = crcc;
+                prpc = prcc;
+                crcc = crnc;
+                prcc = prnc;
+            }
+
+            if ((xloc < x+w) &&
+                (xloc == srcRect.x+srcRect.width-1)) {
+                // Bottom right corner
+                final double [] n = NRow[xloc-x];
+
+                n[0] = - twoThirdSurfaceScaleX *(( 2*crcc + prcc)
+                                                 - (2*crpc + prpc));
+                n[1] = - twoThirdSurfaceScaleY *(( 2*crcc + crpc)
+                                                 - (2*prcc + prpc));
+
+                invNorm = 1.0/Math.sqrt(n[0]*n[0] + n[1]*n[1] + 1);
+                n[0] *= invNorm;
+                n[1] *= invNorm;
+                n[2]  = invNorm;
+                n[3]  = crcc*surfaceScale;
+            }
+        }
+        return N;
+    }
+
+    protected static int clamp(int v) {
+        if ((v & 0xFFFFFF00) != 0)
+            v = ((v & 0x80000000) != 0) ? 0 : 255;
+        return v;
+    }
+
+    protected int countDifferences(int [] expected, Raster r) {
+        int [] row = null;
+        int count = 0;
+        int p = 0;
+        for (int y = r.getMinY(); y < r.getMinY() + r.getHeight(); y++) {
+            row = (int [])r.getDataElements(r.getMinX(), y,
+                                            r.getWidth(), 1, row);
+            for (int x = 0; x < row.length; x++) {
+                if (row[x] != expected[p++]) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,67 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.ext.awt.image.rendered;
+
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+
+import org.apache.batik.test.PerformanceTest;
+
+/**
+ * This test compares the time needed to dilate an image with a large
+ * radius with <code>VanHerkMorphologyOp</code> (<code>runOp</code>)
+ * and with <code>MorphologyOp</code> (<code>runRef</code>).
+ *
+ * @version $Id$
+ */
+public class MorphologyPerformanceTest extends PerformanceTest {
+
+    protected static final int RADIUS = 24;
+
+    protected BufferedImage src;
+
+    protected BufferedImage getSource() {
+        if (src == null) {
+            src = new BufferedImage(400, 300,
+                                    BufferedImage.TYPE_INT_ARGB_PRE);
+            // MorphologyOp is slowest when the max leaves the kernel at
+            // each step, as in gradients.
+            Graphics2D g = src.createGraphics();
+            g.setPaint(new GradientPaint(0, 0, Color.white,
+                                         400, 300, new Color(0, 0, 0, 0)));
+            g.fillRect(0, 0, 400, 300);
+            g.setColor(Color.black);
+            g.drawString("Morphology halos", 40, 100);
+            g.setColor(new Color(0, 0, 255, 128));
+            g.fillOval(150, 120, 200, 150);
+            g.dispose();
+        }
+        return src;
+    }
+
+    public void runRef() {
+        new MorphologyOp(RADIUS, RADIUS, true).filter(getSource(), null);
+    }
+
+    public void runOp() {
+        new VanHerkMorphologyOp(RADIUS, RADIUS, true).filter(getSource(), null);
+    }
+}
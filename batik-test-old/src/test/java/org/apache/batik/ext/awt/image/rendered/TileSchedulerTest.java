@@ -0,0 +1,129 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.ext.awt.image.rendered;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+
+import org.apache.batik.ext.awt.image.DistantLight;
+import org.apache.batik.ext.awt.image.GraphicsUtil;
+import org.apache.batik.ext.awt.image.Light;
+import org.apache.batik.test.AbstractTest;
+
+/**
+ * Checks that a filter chain computed concurrently by the
+ * <code>TileScheduler</code> gives the same pixels as when it is
+ * computed sequentially, and that the lighting filters are only
+ * computed concurrently if their bump map is thread safe.
+ *
+ * @version $Id$
+ */
+public class TileSchedulerTest extends AbstractTest {
+
+    public boolean runImplBasic() throws Exception {
+        int parallelism = TileScheduler.getParallelism();
+        try {
+            TileScheduler.setParallelism(1);
+            BufferedImage ref = draw();
+            Raster refData = getData();
+
+            TileScheduler.setParallelism(4);
+            BufferedImage cmp = draw();
+            Raster cmpData = getData();
+
+            assertEquals(0, countDifferences(ref.getRaster(), cmp.getRaster()));
+            assertEquals(0, countDifferences(refData, cmpData));
+        } finally {
+            TileScheduler.setParallelism(parallelism);
+        }
+
+        // The lighting filters read their bump map texture, which is
+        // not one of their sources.
+        BufferedImage bi = new BufferedImage
+            (20, 20, BufferedImage.TYPE_INT_ARGB_PRE);
+        Light light = new DistantLight(45, 35, Color.white);
+        Rectangle r = new Rectangle(0, 0, 20, 20);
+        BumpMap safe = new BumpMap(new BufferedImageCachableRed(bi), 1, 1, 1);
+        BumpMap unsafe = new BumpMap(bi, 1, 1, 1);
+        assertTrue(new DiffuseLightingRed
+                   (1, light, safe, r, 1, 1, false).isThreadSafe());
+        assertTrue(!new DiffuseLightingRed
+                   (1, light, unsafe, r, 1, 1, false).isThreadSafe());
+        assertTrue(new SpecularLightingRed
+                   (1, 1, light, safe, r, 1, 1, false).isThreadSafe());
+        assertTrue(!new SpecularLightingRed
+                   (1, 1, light, unsafe, r, 1, 1, false).isThreadSafe());
+        return true;
+    }
+
+    /**
+     * Creates a tiled filter chain over a new source image.
+     */
+    protected CachableRed createChain() {
+        BufferedImage bi = new BufferedImage
+            (700, 500, BufferedImage.TYPE_INT_ARGB_PRE);
+        Graphics2D g = bi.createGraphics();
+        g.setColor(Color.red);
+        g.fillOval(50, 50, 400, 300);
+        g.setColor(Color.blue);
+        g.fillRect(300, 200, 350, 250);
+        g.dispose();
+
+        CachableRed cr = new BufferedImageCachableRed(bi);
+        cr = new GaussianBlurRed8Bit(cr, 6, null);
+        return new TileCacheRed(cr, 64, 64);
+    }
+
+    /**
+     * Draws the filter chain with <code>GraphicsUtil</code>.
+     */
+    protected BufferedImage draw() {
+        BufferedImage bi = new BufferedImage
+            (700, 500, BufferedImage.TYPE_INT_ARGB_PRE);
+        Graphics2D g = GraphicsUtil.createGraphics(bi);
+        GraphicsUtil.drawImage(g, createChain());
+        g.dispose();
+        return bi;
+    }
+
+    /**
+     * Gets the data of the filter chain in one request.
+     */
+    protected Raster getData() {
+        return createChain().getData(new Rectangle(10, 10, 600, 400));
+    }
+
+    protected int countDifferences(Raster r1, Raster r2) {
+        int [] p1 = null, p2 = null;
+        int count = 0;
+        for (int y = r1.getMinY(); y < r1.getMinY() + r1.getHeight(); y++) {
+            p1 = r1.getPixels(r1.getMinX(), y, r1.getWidth(), 1, p1);
+            p2 = r2.getPixels(r1.getMinX(), y, r1.getWidth(), 1, p2);
+            for (int i = 0; i < p1.length; i++) {
+                if (p1[i] != p2[i]) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+}
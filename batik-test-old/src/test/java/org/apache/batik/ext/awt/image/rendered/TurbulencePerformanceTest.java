@@ -0,0 +1,58 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.ext.awt.image.rendered;
+
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.color.ColorSpace;
+import java.awt.geom.AffineTransform;
+
+import org.apache.batik.test.PerformanceTest;
+
+/**
+ * This test compares the time needed to generate turbulence with the
+ * row engine (<code>runOp</code>) and with the default one
+ * (<code>runRef</code>).
+ *
+ * @version $Id$
+ */
+public class TurbulencePerformanceTest extends PerformanceTest {
+
+    protected Rectangle bounds = new Rectangle(0, 0, 256, 256);
+
+    protected void generate(RenderingHints hints) {
+        AffineTransform txf = AffineTransform.getScaleInstance(.5, .5);
+        ColorSpace cs = ColorSpace.getInstance(ColorSpace.CS_sRGB);
+        TurbulencePatternRed turbulence = new TurbulencePatternRed
+            (.05, .05, 4, 0, false, null, txf, bounds, cs, true, hints);
+        TurbulencePatternRed fractal = new TurbulencePatternRed
+            (.05, .05, 4, 0, true, null, txf, bounds, cs, true, hints);
+        turbulence.getData(bounds);
+        fractal.getData(bounds);
+    }
+
+    public void runRef() {
+        generate(null);
+    }
+
+    public void runOp() {
+        generate(new RenderingHints(RenderingHints.KEY_RENDERING,
+                                    RenderingHints.VALUE_RENDER_SPEED));
+    }
+}
@@ -0,0 +1,83 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.ext.awt.image.rendered;
+
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.color.ColorSpace;
+import java.awt.geom.AffineTransform;
+import java.awt.image.Raster;
+
+import org.apache.batik.test.AbstractTest;
+
+/**
+ * Checks that the turbulence computed by the row engine of
+ * <code>TurbulencePatternRed</code> is within
+ * <code>FAST_TOLERANCE</code> of the default one.
+ *
+ * @version $Id$
+ */
+public class TurbulenceRowEngineTest extends AbstractTest {
+
+    public boolean runImplBasic() throws Exception {
+        AffineTransform [] txfs = {
+            new AffineTransform(),
+            AffineTransform.getScaleInstance(.25, .5),
+            AffineTransform.getRotateInstance(.3, 40, 20),
+        };
+        double [] freqs = { .01, .05, .3 };
+        int [] seeds = { 0, 7, -3 };
+        for (int t = 0; t < txfs.length; t++) {
+            for (int f = 0; f < freqs.length; f++) {
+                for (int n = 0; n < seeds.length; n++) {
+                    assertTrue(check(txfs[t], freqs[f], seeds[n], false));
+                    assertTrue(check(txfs[t], freqs[f], seeds[n], true));
+                }
+            }
+        }
+        return true;
+    }
+
+    protected boolean check(AffineTransform txf, double freq, int seed,
+                            boolean fractal) {
+        Rectangle r = new Rectangle(-20, 10, 150, 100);
+        ColorSpace cs = ColorSpace.getInstance(ColorSpace.CS_sRGB);
+        RenderingHints speed = new RenderingHints
+            (RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_SPEED);
+        Raster ref = new TurbulencePatternRed
+            (freq, freq, 4, seed, fractal, null, txf, r, cs, true)
+            .getData(r);
+        Raster cmp = new TurbulencePatternRed
+            (freq, freq, 4, seed, fractal, null, txf, r, cs, true, speed)
+            .getData(r);
+
+        int [] p1 = null, p2 = null;
+        for (int y = r.y; y < r.y + r.height; y++) {
+            p1 = ref.getPixels(r.x, y, r.width, 1, p1);
+            p2 = cmp.getPixels(r.x, y, r.width, 1, p2);
+            for (int i = 0; i < p1.length; i++) {
+                if (Math.abs(p1[i] - p2[i]) >
+                    TurbulencePatternRed.FAST_TOLERANCE) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,146 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.ext.awt.image.rendered;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.util.Random;
+
+import org.apache.batik.test.AbstractTest;
+
+/**
+ * Checks that <code>VanHerkMorphologyOp</code> gives the max/min of
+ * the samples under the kernel clipped to the image, on packed and on
+ * byte rasters.
+ *
+ * @version $Id$
+ */
+public class VanHerkMorphologyOpTest extends AbstractTest {
+
+    protected static final int [][] SIZES_AND_RADII = {
+        // width, height, radiusX, radiusY
+        { 64, 48, 1, 1 },
+        { 64, 48, 3, 7 },
+        { 37, 29, 20, 2 },
+        { 37, 29, 5, 40 },
+        { 10, 10, 50, 50 },
+        { 1, 17, 2, 3 },
+        { 200, 150, 31, 12 },
+    };
+
+    public boolean runImplBasic() throws Exception {
+        Random rand = new Random(1234);
+        for (int i = 0; i < SIZES_AND_RADII.length; i++) {
+            int [] t = SIZES_AND_RADII[i];
+            BufferedImage src = createImage(t[0], t[1], rand);
+            BufferedImage bytes = new BufferedImage
+                (t[0], t[1], BufferedImage.TYPE_4BYTE_ABGR_PRE);
+            bytes.setData(src.getRaster());
+            BufferedImage gray = new BufferedImage
+                (t[0], t[1], BufferedImage.TYPE_BYTE_GRAY);
+            gray.getRaster().setSamples
+                (0, 0, t[0], t[1], 0,
+                 src.getRaster().getSamples(0, 0, t[0], t[1], 1,
+                                            (int [])null));
+            for (int d = 0; d < 2; d++) {
+                boolean dilate = (d == 0);
+                VanHerkMorphologyOp op =
+                    new VanHerkMorphologyOp(t[2], t[3], dilate);
+
+                Raster expected = morphology(src.getRaster(), t[2], t[3],
+                                             dilate);
+                BufferedImage res = op.filter(src, null);
+                assertEquals(0, countDifferences(expected, res.getRaster()));
+
+                res = op.filter(bytes, null);
+                assertEquals(DataBuffer.TYPE_BYTE,
+                             res.getSampleModel().getDataType());
+                assertEquals(0, countDifferences(expected, res.getRaster()));
+
+                expected = morphology(gray.getRaster(), t[2], t[3], dilate);
+                res = op.filter(gray, null);
+                assertEquals(0, countDifferences(expected, res.getRaster()));
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Computes the morphology of the given raster sample by sample.
+     */
+    protected Raster morphology(Raster src, int rx, int ry,
+                                boolean dilate) {
+        int w = src.getWidth();
+        int h = src.getHeight();
+        WritableRaster dst = src.createCompatibleWritableRaster();
+        for (int b = 0; b < src.getNumBands(); b++) {
+            for (int y = 0; y < h; y++) {
+                for (int x = 0; x < w; x++) {
+                    int m = dilate ? 0 : 255;
+                    for (int yy = Math.max(0, y - ry);
+                         yy <= Math.min(h - 1, y + ry); yy++) {
+                        for (int xx = Math.max(0, x - rx);
+                             xx <= Math.min(w - 1, x + rx); xx++) {
+                            int v = src.getSample(xx, yy, b);
+                            m = dilate ? Math.max(m, v) : Math.min(m, v);
+                        }
+                    }
+                    dst.setSample(x, y, b, m);
+                }
+            }
+        }
+        return dst;
+    }
+
+    /**
+     * Creates an image of random premultiplied pixels, with areas of
+     * uniform color so that both large and small values spread.
+     */
+    protected BufferedImage createImage(int w, int h, Random rand) {
+        BufferedImage bi = new BufferedImage
+            (w, h, BufferedImage.TYPE_INT_ARGB_PRE);
+        for (int y = 0; y < h; y++) {
+            for (int x = 0; x < w; x++) {
+                int a = rand.nextInt(4) == 0 ? 255 : rand.nextInt(256);
+                int r = rand.nextInt(a + 1);
+                int g = rand.nextInt(a + 1);
+                int b = rand.nextInt(a + 1);
+                bi.getRaster().setPixel(x, y, new int[] { r, g, b, a });
+            }
+        }
+        return bi;
+    }
+
+    protected int countDifferences(Raster r1, Raster r2) {
+        int [] p1 = null, p2 = null;
+        int count = 0;
+        for (int y = r1.getMinY(); y < r1.getMinY() + r1.getHeight(); y++) {
+            p1 = r1.getPixels(r1.getMinX(), y, r1.getWidth(), 1, p1);
+            p2 = r2.getPixels(r1.getMinX(), y, r1.getWidth(), 1, p2);
+            for (int i = 0; i < p1.length; i++) {
+                if (p1[i] != p2[i]) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+}
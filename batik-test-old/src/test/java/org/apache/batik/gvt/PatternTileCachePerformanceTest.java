@@ -0,0 +1,44 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.gvt;
+
+import org.apache.batik.test.PerformanceTest;
+
+/**
+ * This test compares the time needed to fill many shapes with a
+ * pattern when their paints share the tiles (<code>runOp</code>) and
+ * when each paint renders its own tiles (<code>runRef</code>).
+ *
+ * @version $Id$
+ */
+public class PatternTileCachePerformanceTest extends PerformanceTest {
+
+    protected RootGraphicsNode content =
+        PatternTileCacheTest.createContent();
+
+    public void runRef() {
+        PatternTileCacheTest.paint(content, false);
+    }
+
+    public void runOp() {
+        // Only share the tiles among the shapes of one paint.
+        PatternTileCache.clear();
+        PatternTileCacheTest.paint(content, true);
+    }
+}
@@ -0,0 +1,155 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.gvt;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Shape;
+import java.awt.geom.Line2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+
+import org.apache.batik.ext.awt.image.GraphicsUtil;
+import org.apache.batik.test.AbstractTest;
+
+/**
+ * Checks that shapes filled with <code>PatternPaint</code>s sharing
+ * their tiles look the same as with unshared tiles, and that the
+ * shared tiles are dropped when the pattern content changes.
+ *
+ * @version $Id$
+ */
+public class PatternTileCacheTest extends AbstractTest {
+
+    protected static final Rectangle2D REGION =
+        new Rectangle2D.Double(0, 0, 12, 12);
+
+    public boolean runImplBasic() throws Exception {
+        PatternTileCache.clear();
+        RootGraphicsNode content = createContent();
+
+        BufferedImage ref = paint(content, false);
+        BufferedImage cmp = paint(content, true);
+        assertEquals(0, countDifferences(ref.getRaster(), cmp.getRaster()));
+        assertTrue(PatternTileCache.getMemory() > 0);
+
+        // Changing the content drops its tiles.
+        content.getChildren().add(createHatch(Color.red, 6));
+        assertEquals(0L, PatternTileCache.getMemory());
+
+        ref = paint(content, false);
+        cmp = paint(content, true);
+        assertEquals(0, countDifferences(ref.getRaster(), cmp.getRaster()));
+
+        PatternTileCache.clear();
+        return true;
+    }
+
+    /**
+     * Creates hatching pattern content.
+     */
+    protected static RootGraphicsNode createContent() {
+        RootGraphicsNode content = new RootGraphicsNode();
+        content.getChildren().add(createHatch(Color.blue, 0));
+        return content;
+    }
+
+    protected static ShapeNode createHatch(Color color, float offset) {
+        ShapeNode sn = new ShapeNode();
+        StrokeShapePainter sp = new StrokeShapePainter
+            (new Line2D.Float(offset, 0, 12, 12 - offset));
+        sp.setPaint(color);
+        sp.setStroke(new BasicStroke(2));
+        sn.setShapePainter(sp);
+        sn.setShape(new Line2D.Float(offset, 0, 12, 12 - offset));
+        return sn;
+    }
+
+    /**
+     * Paints many shapes filled with the pattern, each with its own
+     * paint.
+     */
+    protected static BufferedImage paint(RootGraphicsNode content,
+                                         boolean shared) {
+        BufferedImage bi = new BufferedImage
+            (300, 300, BufferedImage.TYPE_INT_ARGB_PRE);
+        Graphics2D g = GraphicsUtil.createGraphics(bi);
+        g.translate(.5, .25);
+        g.scale(1.5, 1.5);
+        for (int y = 0; y < 200; y += 20) {
+            for (int x = 0; x < 200; x += 20) {
+                PatternPaint pp;
+                if (shared) {
+                    pp = new PatternPaint(new PatternContentNode(content),
+                                          REGION, false, null,
+                                          content, null);
+                } else {
+                    pp = new PatternPaint(new PatternContentNode(content),
+                                          REGION, false, null);
+                }
+                g.setPaint(pp);
+                g.fill(new Rectangle2D.Float(x, y, 16, 16));
+            }
+        }
+        g.dispose();
+        return bi;
+    }
+
+    /**
+     * Paints the pattern content, which has no parent.
+     */
+    protected static class PatternContentNode extends AbstractGraphicsNode {
+        protected GraphicsNode content;
+        public PatternContentNode(GraphicsNode content) {
+            this.content = content;
+        }
+        public void primitivePaint(Graphics2D g2d) {
+            content.paint(g2d);
+        }
+        public Rectangle2D getPrimitiveBounds() {
+            return content.getBounds();
+        }
+        public Rectangle2D getGeometryBounds() {
+            return content.getGeometryBounds();
+        }
+        public Rectangle2D getSensitiveBounds() {
+            return content.getSensitiveBounds();
+        }
+        public Shape getOutline() {
+            return content.getOutline();
+        }
+    }
+
+    protected int countDifferences(Raster r1, Raster r2) {
+        int [] p1 = null, p2 = null;
+        int count = 0;
+        for (int y = r1.getMinY(); y < r1.getMinY() + r1.getHeight(); y++) {
+            p1 = r1.getPixels(r1.getMinX(), y, r1.getWidth(), 1, p1);
+            p2 = r2.getPixels(r1.getMinX(), y, r1.getWidth(), 1, p2);
+            for (int i = 0; i < p1.length; i++) {
+                if (p1[i] != p2[i]) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+}
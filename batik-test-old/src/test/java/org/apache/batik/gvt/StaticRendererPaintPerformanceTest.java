@@ -0,0 +1,49 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.gvt;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+
+import org.apache.batik.test.PerformanceTest;
+
+/**
+ * This test compares the time needed to render a large image when the
+ * renderer paints into it directly (<code>runOp</code>) and when it
+ * renders into its offscreen buffer, which is then drawn into the
+ * image (<code>runRef</code>).
+ *
+ * @version $Id$
+ */
+public class StaticRendererPaintPerformanceTest extends PerformanceTest {
+
+    static final int SIZE = 2000;
+
+    protected GraphicsNode content = StaticRendererPaintTest.createContent(4);
+
+    public void runRef() {
+        StaticRendererPaintTest.paintOffScreen
+            (content, SIZE, SIZE, BufferedImage.TYPE_INT_RGB, Color.white);
+    }
+
+    public void runOp() {
+        StaticRendererPaintTest.paint
+            (content, SIZE, SIZE, BufferedImage.TYPE_INT_RGB, Color.white);
+    }
+}
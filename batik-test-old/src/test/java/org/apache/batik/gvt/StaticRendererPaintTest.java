@@ -0,0 +1,153 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.gvt;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Paint;
+import java.awt.Rectangle;
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+
+import org.apache.batik.ext.awt.image.GraphicsUtil;
+import org.apache.batik.gvt.renderer.StaticRenderer;
+import org.apache.batik.test.AbstractTest;
+
+/**
+ * Checks that <code>StaticRenderer.paint</code> renders into an image
+ * the same pixels as a rendering in the offscreen buffer drawn over
+ * the background, for images storing packed ints or not.
+ *
+ * @version $Id$
+ */
+public class StaticRendererPaintTest extends AbstractTest {
+
+    protected static final int [] TYPES = {
+        BufferedImage.TYPE_INT_ARGB,
+        BufferedImage.TYPE_INT_ARGB_PRE,
+        BufferedImage.TYPE_INT_RGB,
+        BufferedImage.TYPE_4BYTE_ABGR
+    };
+
+    public boolean runImplBasic() throws Exception {
+        GraphicsNode content = createContent(20);
+        Paint [] backgrounds = { null, new Color(255, 255, 0, 128) };
+        for (int i = 0; i < TYPES.length; i++) {
+            for (int j = 0; j < backgrounds.length; j++) {
+                BufferedImage ref =
+                    paintOffScreen(content, 300, 200, TYPES[i],
+                                   backgrounds[j]);
+                BufferedImage cmp =
+                    paint(content, 300, 200, TYPES[i], backgrounds[j]);
+                assertEquals(0, countDifferences(ref, cmp));
+                assertTrue(ref.getRGB(150, 100) != 0);
+            }
+        }
+
+        // Content entirely outside of the image.
+        StaticRenderer r = createRenderer(content, 300, 200);
+        r.setTransform(AffineTransform.getTranslateInstance(400, 0));
+        BufferedImage dest =
+            new BufferedImage(300, 200, BufferedImage.TYPE_INT_ARGB);
+        r.paint(dest, null);
+        assertEquals(0, dest.getRGB(150, 100));
+        return true;
+    }
+
+    /**
+     * Creates overlapping translucent shapes.
+     */
+    protected static GraphicsNode createContent(int n) {
+        RootGraphicsNode content = new RootGraphicsNode();
+        for (int i = 0; i < n; i++) {
+            Shape s = new Ellipse2D.Double(i * 9.5, i * 6.25, 60, 40);
+            ShapeNode sn = new ShapeNode();
+            FillShapePainter sp = new FillShapePainter(s);
+            sp.setPaint(new Color(i * 12, 80, 255 - i * 12, 160));
+            sn.setShape(s);
+            sn.setShapePainter(sp);
+            content.getChildren().add(sn);
+        }
+        Shape s = new Rectangle2D.Double(0.5, 0.5, 150, 10);
+        ShapeNode sn = new ShapeNode();
+        FillShapePainter sp = new FillShapePainter(s);
+        sp.setPaint(Color.black);
+        sn.setShape(s);
+        sn.setShapePainter(sp);
+        content.getChildren().add(sn);
+        return content;
+    }
+
+    protected static StaticRenderer createRenderer(GraphicsNode gn,
+                                                   int w, int h) {
+        StaticRenderer r = new StaticRenderer();
+        r.updateOffScreen(w, h);
+        // Scales the content to the image.
+        r.setTransform(AffineTransform.getScaleInstance(w / 240d, h / 160d));
+        r.setTree(gn);
+        return r;
+    }
+
+    /**
+     * Renders in the offscreen buffer, then draws it over the
+     * background of a new image.
+     */
+    protected static BufferedImage paintOffScreen(GraphicsNode gn,
+                                                  int w, int h, int type,
+                                                  Paint background) {
+        StaticRenderer r = createRenderer(gn, w, h);
+        r.repaint(new Rectangle(0, 0, w, h));
+        BufferedImage rend = r.getOffScreen();
+        BufferedImage dest = new BufferedImage(w, h, type);
+        Graphics2D g2d = GraphicsUtil.createGraphics(dest);
+        if (background != null) {
+            g2d.setPaint(background);
+            g2d.fillRect(0, 0, w, h);
+        }
+        g2d.drawRenderedImage(rend, new AffineTransform());
+        g2d.dispose();
+        return dest;
+    }
+
+    /**
+     * Renders directly into a new image.
+     */
+    protected static BufferedImage paint(GraphicsNode gn, int w, int h,
+                                         int type, Paint background) {
+        StaticRenderer r = createRenderer(gn, w, h);
+        BufferedImage dest = new BufferedImage(w, h, type);
+        r.paint(dest, background);
+        return dest;
+    }
+
+    protected static int countDifferences(BufferedImage a, BufferedImage b) {
+        int n = 0;
+        for (int y = 0; y < a.getHeight(); y++) {
+            for (int x = 0; x < a.getWidth(); x++) {
+                if (a.getRGB(x, y) != b.getRGB(x, y)) {
+                    n++;
+                }
+            }
+        }
+        return n;
+    }
+}
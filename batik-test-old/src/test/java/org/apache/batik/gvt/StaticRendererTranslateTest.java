@@ -0,0 +1,167 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.gvt;
+
+import java.awt.Rectangle;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+
+import org.apache.batik.ext.awt.geom.RectListManager;
+import org.apache.batik.gvt.renderer.DynamicRenderer;
+import org.apache.batik.gvt.renderer.StaticRenderer;
+import org.apache.batik.test.AbstractTest;
+
+/**
+ * Checks that translating the transform of a renderer while keeping
+ * its offscreen buffer, and rendering the exposed areas, gives the same
+ * pixels as rendering the whole buffer with the translated transform.
+ *
+ * @version $Id$
+ */
+public class StaticRendererTranslateTest extends AbstractTest {
+
+    protected static final int W = 300;
+    protected static final int H = 200;
+
+    protected static final int [][] TRANSLATIONS = {
+        { 37, -21 }, { -50, 13 }, { 0, 64 }, { -121, 0 }, { 299, -199 }
+    };
+
+    public boolean runImplBasic() throws Exception {
+        GraphicsNode content = StaticRendererPaintTest.createContent(20);
+        for (int i = 0; i < 4; i++) {
+            boolean dynamic = (i & 1) != 0;
+            boolean doubleBuffered = (i & 2) != 0;
+            StaticRenderer r = createRenderer(content, dynamic,
+                                              doubleBuffered);
+            AffineTransform at = new AffineTransform(r.getTransform());
+            r.repaint(getArea());
+            for (int j = 0; j < TRANSLATIONS.length; j++) {
+                int dx = TRANSLATIONS[j][0];
+                int dy = TRANSLATIONS[j][1];
+                at.preConcatenate
+                    (AffineTransform.getTranslateInstance(dx, dy));
+                BufferedImage ref = render(content, at);
+
+                // Only the moved content.
+                r.setTransform(at, dx, dy);
+                r.repaint(new RectListManager());
+                Rectangle kept = new Rectangle(dx, dy, W, H).intersection
+                    (new Rectangle(0, 0, W, H));
+                assertEquals(0, countDifferences(ref, r.getOffScreen(),
+                                                 kept));
+
+                // The moved content and the exposed areas.
+                at.preConcatenate
+                    (AffineTransform.getTranslateInstance(-dx, -dy));
+                r.setTransform(at);
+                r.repaint(getArea());
+                at.preConcatenate
+                    (AffineTransform.getTranslateInstance(dx, dy));
+                r.setTransform(at, dx, dy);
+                r.repaint(getExposedAreas(dx, dy, W, H));
+                assertEquals(0, countDifferences
+                             (ref, r.getOffScreen(),
+                              new Rectangle(0, 0, W, H)));
+            }
+        }
+
+        // The content is rendered again when the transform was changed.
+        StaticRenderer r = createRenderer(content, false, false);
+        r.repaint(getArea());
+        AffineTransform at = new AffineTransform(r.getTransform());
+        at.preConcatenate(AffineTransform.getScaleInstance(0.5, 0.5));
+        r.setTransform(at);
+        at.preConcatenate(AffineTransform.getTranslateInstance(10, 10));
+        r.setTransform(at, 10, 10);
+        r.repaint(new RectListManager());
+        assertEquals(0, countDifferences(render(content, at),
+                                         r.getOffScreen(),
+                                         new Rectangle(0, 0, W, H)));
+        return true;
+    }
+
+    protected static StaticRenderer createRenderer(GraphicsNode gn,
+                                                   boolean dynamic,
+                                                   boolean doubleBuffered) {
+        StaticRenderer r = dynamic ? new DynamicRenderer()
+                                   : new StaticRenderer();
+        r.setDoubleBuffered(doubleBuffered);
+        r.updateOffScreen(W, H);
+        AffineTransform at = AffineTransform.getTranslateInstance(10, 5);
+        at.scale(1.25, 1.25);
+        r.setTransform(at);
+        r.setTree(gn);
+        return r;
+    }
+
+    /**
+     * Renders the whole offscreen buffer of a new renderer.
+     */
+    protected static BufferedImage render(GraphicsNode gn,
+                                          AffineTransform at) {
+        StaticRenderer r = new StaticRenderer();
+        r.updateOffScreen(W, H);
+        r.setTransform(at);
+        r.setTree(gn);
+        r.repaint(getArea());
+        return r.getOffScreen();
+    }
+
+    /**
+     * Returns the whole offscreen buffer, in the device space.
+     */
+    protected static RectListManager getArea() {
+        return new RectListManager(new Rectangle(0, 0, W, H));
+    }
+
+    /**
+     * Returns the areas of a buffer the content does not cover once
+     * translated.
+     */
+    protected static RectListManager getExposedAreas(int dx, int dy,
+                                                     int w, int h) {
+        RectListManager areas = new RectListManager();
+        if (dy > 0) {
+            areas.add(new Rectangle(0, 0, w, dy));
+        } else if (dy < 0) {
+            areas.add(new Rectangle(0, h + dy, w, -dy));
+        }
+        if (dx > 0) {
+            areas.add(new Rectangle(0, Math.max(dy, 0), dx, h - Math.abs(dy)));
+        } else if (dx < 0) {
+            areas.add(new Rectangle(w + dx, Math.max(dy, 0),
+                                    -dx, h - Math.abs(dy)));
+        }
+        return areas;
+    }
+
+    protected static int countDifferences(BufferedImage a, BufferedImage b,
+                                          Rectangle r) {
+        int n = 0;
+        for (int y = r.y; y < r.y + r.height; y++) {
+            for (int x = r.x; x < r.x + r.width; x++) {
+                if (a.getRGB(x, y) != b.getRGB(x, y)) {
+                    n++;
+                }
+            }
+        }
+        return n;
+    }
+}
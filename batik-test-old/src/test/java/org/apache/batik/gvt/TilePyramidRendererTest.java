@@ -0,0 +1,200 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.gvt;
+
+import java.awt.Color;
+import java.awt.Rectangle;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Point2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.WritableRaster;
+import java.util.Collections;
+
+import org.apache.batik.ext.awt.geom.RectListManager;
+import org.apache.batik.ext.awt.image.rendered.CachableRed;
+import org.apache.batik.ext.awt.image.rendered.TileCacheRed;
+import org.apache.batik.gvt.renderer.StaticRenderer;
+import org.apache.batik.gvt.renderer.TilePyramidRenderer;
+import org.apache.batik.test.AbstractTest;
+
+/**
+ * Checks that the <code>TilePyramidRenderer</code> renders the same
+ * pixels as the <code>StaticRenderer</code>, including the fractional
+ * part of the translation, only renders the tiles it does not have for
+ * a zoom level, and renders again the flushed ones.
+ *
+ * @version $Id$
+ */
+public class TilePyramidRendererTest extends AbstractTest {
+
+    protected static final int W = 300;
+    protected static final int H = 200;
+
+    /**
+     * The number of pixels rendered.
+     */
+    protected int pixels;
+
+    public boolean runImplBasic() throws Exception {
+        GraphicsNode content = StaticRendererPaintTest.createContent(20);
+        AffineTransform [] transforms = {
+            new AffineTransform(1.25, 0, 0, 1.25, 10, 5),
+            new AffineTransform(1, 0, 0, 1, -37.3, 12.6),
+            new AffineTransform(2.5, 0, 0, 2.5, -120, -80),
+            AffineTransform.getRotateInstance(0.3, 100, 100)
+        };
+        for (int i = 0; i < transforms.length; i++) {
+            for (int j = 0; j < 2; j++) {
+                TilePyramidRenderer r = createRenderer(content);
+                r.setDoubleBuffered(j == 1);
+                BufferedImage img = render(r, transforms[i]);
+                assertEquals(0, countDifferences
+                             (renderExact(content, transforms[i]), img));
+            }
+        }
+
+        // Going back to a zoom level only renders the missing tiles.
+        TilePyramidRenderer r = createRenderer(content);
+        AffineTransform at = new AffineTransform(transforms[2]);
+        render(r, at);
+        int full = pixels;
+        assertTrue(full > 0);
+        render(r, transforms[0]);
+        pixels = 0;
+        render(r, at);
+        assertEquals(0, pixels);
+        at.preConcatenate(AffineTransform.getTranslateInstance(-300, 0));
+        render(r, at);
+        int n = pixels;
+        pixels = 0;
+        render(createRenderer(content), at);
+        assertTrue((n > 0) && (n < pixels));
+
+        // The cached tiles of the zoom level give the same image, and
+        // the other zoom levels are scaled.
+        BufferedImage img = render(r, at);
+        BufferedImage preview = r.createPreview(at, W, H);
+        assertEquals(0, countDifferences(img, copy(preview)));
+        AffineTransform at2 = new AffineTransform(at);
+        at2.scale(1.5, 1.5);
+        assertTrue(r.createPreview(at2, W, H) != null);
+        assertTrue(createRenderer(content).createPreview(at, W, H) == null);
+
+        // Flushing an area renders its tiles again, as it does with
+        // the StaticRenderer.
+        StaticRenderer sr = new StaticRenderer();
+        render(sr, content, transforms[2]);
+        ShapeNode sn = (ShapeNode)((CompositeGraphicsNode)content)
+            .getChildren().get(0);
+        ((FillShapePainter)sn.getShapePainter()).setPaint(Color.red);
+        r.flush(Collections.singletonList(sn.getBounds()));
+        sr.flush(Collections.singletonList(sn.getBounds()));
+        pixels = 0;
+        img = render(r, transforms[2]);
+        assertTrue((pixels > 0) && (pixels < full));
+        assertEquals(0, countDifferences(render(sr, transforms[2]), img));
+        return true;
+    }
+
+    /**
+     * Creates a renderer counting the pixels it renders.
+     */
+    protected TilePyramidRenderer createRenderer(GraphicsNode gn) {
+        TilePyramidRenderer r = new TilePyramidRenderer() {
+                protected TileCacheRed createCache(CachableRed cr) {
+                    return new TileCacheRed(cr) {
+                            public void genRect(WritableRaster wr) {
+                                pixels += wr.getWidth() * wr.getHeight();
+                                super.genRect(wr);
+                            }
+                        };
+                }
+            };
+        r.setTree(gn);
+        return r;
+    }
+
+    protected static BufferedImage render(StaticRenderer r,
+                                          GraphicsNode gn,
+                                          AffineTransform at) {
+        r.setTree(gn);
+        return render(r, at);
+    }
+
+    /**
+     * Renders the tree with a <code>StaticRenderer</code>, which shifts
+     * its rendering by whole pixels, after moving the fractional part
+     * of the translation of the given transform into the tree.
+     */
+    protected static BufferedImage renderExact(GraphicsNode gn,
+                                               AffineTransform at)
+            throws Exception {
+        double tx = at.getTranslateX();
+        double ty = at.getTranslateY();
+        int ix = Math.round((float)tx);
+        int iy = Math.round((float)ty);
+        AffineTransform dev = new AffineTransform
+            (at.getScaleX(), at.getShearY(),
+             at.getShearX(), at.getScaleY(), ix, iy);
+        Point2D d = dev.createInverse().deltaTransform
+            (new Point2D.Double(tx - ix, ty - iy), null);
+        // The transform of the root node is not rendered.
+        CompositeGraphicsNode root = new CompositeGraphicsNode();
+        CompositeGraphicsNode shift = new CompositeGraphicsNode();
+        shift.setTransform
+            (AffineTransform.getTranslateInstance(d.getX(), d.getY()));
+        root.getChildren().add(shift);
+        shift.getChildren().add(gn);
+        try {
+            return render(new StaticRenderer(), root, dev);
+        } finally {
+            shift.getChildren().remove(gn);
+        }
+    }
+
+    /**
+     * Renders the whole offscreen buffer and returns a copy of it.
+     */
+    protected static BufferedImage render(StaticRenderer r,
+                                          AffineTransform at) {
+        r.updateOffScreen(W, H);
+        r.setTransform(at);
+        r.repaint(new RectListManager(new Rectangle(0, 0, W, H)));
+        return copy(r.getOffScreen());
+    }
+
+    protected static BufferedImage copy(BufferedImage src) {
+        BufferedImage img =
+            new BufferedImage(W, H, BufferedImage.TYPE_INT_ARGB);
+        img.createGraphics().drawImage(src, 0, 0, null);
+        return img;
+    }
+
+    protected static int countDifferences(BufferedImage a, BufferedImage b) {
+        int n = 0;
+        for (int y = 0; y < a.getHeight(); y++) {
+            for (int x = 0; x < a.getWidth(); x++) {
+                if (a.getRGB(x, y) != b.getRGB(x, y)) {
+                    n++;
+                }
+            }
+        }
+        return n;
+    }
+}
@@ -0,0 +1,105 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.gvt;
+
+import java.awt.Color;
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.batik.ext.awt.image.renderable.FloodRable8Bit;
+import org.apache.batik.test.AbstractTest;
+
+/**
+ * Checks the dirty areas the update tracker reports for nodes moved
+ * under transformed and filtered ancestors.
+ *
+ * @version $Id$
+ */
+public class UpdateTrackerTest extends AbstractTest {
+
+    public boolean runImplBasic() throws Exception {
+        RootGraphicsNode root = new RootGraphicsNode();
+        CompositeGraphicsNode g = new CompositeGraphicsNode();
+        g.setTransform(AffineTransform.getTranslateInstance(10, 20));
+        root.getChildren().add(g);
+
+        ShapeNode s = createShape(0, 0);
+        g.getChildren().add(s);
+
+        CompositeGraphicsNode f = new CompositeGraphicsNode();
+        f.setTransform(AffineTransform.getTranslateInstance(5, 5));
+        f.setFilter(new FloodRable8Bit
+                    (new Rectangle2D.Double(0, 0, 50, 50), Color.red));
+        g.getChildren().add(f);
+        ShapeNode [] fs = new ShapeNode[3];
+        for (int i = 0; i < fs.length; i++) {
+            fs[i] = createShape(i * 10, 0);
+            f.getChildren().add(fs[i]);
+        }
+
+        UpdateTracker tracker = new UpdateTracker();
+        root.addTreeGraphicsNodeChangeListener(tracker);
+
+        // The old and new areas of a node, in the space of the root.
+        s.setTransform(AffineTransform.getTranslateInstance(100, 0));
+        List areas = tracker.getDirtyAreas();
+        tracker.clear();
+        assertEquals(2, areas.size());
+        assertTrue(contains(areas, new Rectangle2D.Double(10, 20, 10, 10)));
+        assertTrue(contains(areas, new Rectangle2D.Double(110, 20, 10, 10)));
+
+        // The region of a filter is reported once for all the nodes
+        // changed under it.
+        for (int i = 0; i < fs.length; i++) {
+            fs[i].setTransform(AffineTransform.getTranslateInstance(0, 7));
+        }
+        areas = tracker.getDirtyAreas();
+        tracker.clear();
+        assertEquals(fs.length + 1, areas.size());
+        assertTrue(contains(areas, new Rectangle2D.Double(15, 25, 50, 50)));
+        for (int i = 0; i < fs.length; i++) {
+            assertTrue(contains(areas, new Rectangle2D.Double
+                                (15 + i * 10, 25, 10, 10)));
+        }
+        return true;
+    }
+
+    protected static ShapeNode createShape(int x, int y) {
+        ShapeNode sn = new ShapeNode();
+        sn.setShape(new Rectangle2D.Double(x, y, 10, 10));
+        FillShapePainter p = new FillShapePainter(sn.getShape());
+        p.setPaint(Color.blue);
+        sn.setShapePainter(p);
+        return sn;
+    }
+
+    protected static boolean contains(List areas, Rectangle2D r) {
+        Iterator i = areas.iterator();
+        while (i.hasNext()) {
+            Shape s = (Shape) i.next();
+            if (r.equals(s.getBounds2D())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
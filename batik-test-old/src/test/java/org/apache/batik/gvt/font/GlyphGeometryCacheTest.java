@@ -0,0 +1,110 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.gvt.font;
+
+import java.awt.Font;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.batik.test.AbstractTest;
+
+/**
+ * Checks the hits, misses and evictions of the glyph geometry cache,
+ * and that the glyphs of a font are shared by all its sizes.
+ *
+ * @version $Id$
+ */
+public class GlyphGeometryCacheTest extends AbstractTest {
+
+    public boolean runImplBasic() throws Exception {
+        GlyphGeometryCache cache =
+            new GlyphGeometryCache(GlyphGeometryCache.SEGMENTS * 2);
+        AWTGlyphGeometryCache.Value v = createValue();
+
+        // Hits and misses.
+        assertNull(cache.get("font", 1));
+        cache.put("font", 1, v);
+        assertTrue(cache.get("font", 1) == v);
+        assertNull(cache.get("font", 2));
+        assertNull(cache.get("other", 1));
+        assertEquals(1L, cache.getHitCount());
+        assertEquals(3L, cache.getMissCount());
+        assertEquals(0L, cache.getEvictionCount());
+        assertEquals(1, cache.size());
+
+        // Three glyph codes in the same segment, which holds two.
+        cache.clear();
+        List codes = new ArrayList();
+        Object segment = cache.segmentFor
+            (new GlyphGeometryCache.Key("font", 0));
+        for (int i = 0; codes.size() < 3; i++) {
+            if (cache.segmentFor(new GlyphGeometryCache.Key("font", i))
+                == segment) {
+                codes.add(new Integer(i));
+            }
+        }
+        int c0 = ((Integer) codes.get(0)).intValue();
+        int c1 = ((Integer) codes.get(1)).intValue();
+        int c2 = ((Integer) codes.get(2)).intValue();
+        cache.put("font", c0, v);
+        cache.put("font", c1, v);
+        // The least recently used entry is evicted.
+        assertTrue(null != cache.get("font", c0));
+        cache.put("font", c2, v);
+        assertEquals(1L, cache.getEvictionCount());
+        assertNull(cache.get("font", c1));
+        assertTrue(null != cache.get("font", c0));
+        assertTrue(null != cache.get("font", c2));
+        assertEquals(2, cache.size());
+
+        // The capacity bounds the size.
+        cache.clear();
+        for (int i = 0; i < 1000; i++) {
+            cache.put("font", i, v);
+        }
+        assertTrue(cache.size() <= GlyphGeometryCache.SEGMENTS * 2);
+        assertEquals(1000L - cache.size(), cache.getEvictionCount());
+        assertEquals(0L, cache.getHitCount());
+
+        // The glyphs of a font are computed once for all its sizes.
+        GlyphGeometryCache shared = GlyphGeometryCache.getSharedCache();
+        AWTGVTFont small = new AWTGVTFont("SansSerif", Font.PLAIN, 12);
+        AWTGVTFont large = new AWTGVTFont("SansSerif", Font.PLAIN, 37);
+        GlyphVector gv = small.awtFont.createGlyphVector
+            (new FontRenderContext(null, true, true), "g");
+        Point2D pos = gv.getGlyphPosition(0);
+        long hits = shared.getHitCount();
+        AWTGlyphGeometryCache.Value sv =
+            AWTGVTFont.getGlyphGeometry(small, gv, 0, pos);
+        AWTGlyphGeometryCache.Value lv =
+            AWTGVTFont.getGlyphGeometry(large, gv, 0, pos);
+        assertTrue(sv == lv);
+        assertTrue(shared.getHitCount() > hits);
+        return true;
+    }
+
+    protected static AWTGlyphGeometryCache.Value createValue() {
+        Rectangle2D r = new Rectangle2D.Float(0, 0, 1, 1);
+        return new AWTGlyphGeometryCache.Value(r, r);
+    }
+}
@@ -0,0 +1,52 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.svggen;
+
+import java.text.DecimalFormat;
+
+import org.apache.batik.test.PerformanceTest;
+
+/**
+ * This test compares the <code>DoubleFormatter</code> used by
+ * <code>SVGGeneratorContext.appendDouble</code> (<code>runOp</code>)
+ * with the <code>DecimalFormat</code> it replaces (<code>runRef</code>).
+ *
+ * @version $Id$
+ */
+public class DoubleFormatterPerformanceTest extends PerformanceTest {
+    static final int N_VALUES = 200000;
+    static final int PRECISION = 4;
+
+    public void runRef() {
+        DecimalFormat format = SVGGeneratorContext.decimalFormats[PRECISION];
+        StringBuilder sb = new StringBuilder();
+        for (int i=0; i<N_VALUES; i++) {
+            sb.setLength(0);
+            sb.append(format.format(i * 0.0137));
+        }
+    }
+
+    public void runOp() {
+        StringBuilder sb = new StringBuilder();
+        for (int i=0; i<N_VALUES; i++) {
+            sb.setLength(0);
+            DoubleFormatter.append(sb, i * 0.0137, PRECISION);
+        }
+    }
+}
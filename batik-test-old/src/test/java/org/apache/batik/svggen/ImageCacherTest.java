@@ -0,0 +1,161 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.svggen;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.w3c.dom.Document;
+
+import org.apache.batik.dom.GenericDOMImplementation;
+import org.apache.batik.test.AbstractTest;
+import org.apache.batik.util.SVGConstants;
+
+/**
+ * Checks that the images cached by the SVGGraphics2D are identified by
+ * their raster data, and that encoding them on an executor gives the
+ * same output as encoding them synchronously.
+ *
+ * @version $Id$
+ */
+public class ImageCacherTest extends AbstractTest {
+
+    public boolean runImplBasic() throws Exception {
+        // Two distinct images with the same raster give one definition.
+        String svg = paint(new CachedImageHandlerBase64Encoder(), null);
+        assertEquals(2, count(svg, "<image "));
+        assertEquals(3, count(svg, "<use "));
+
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            // Embedded images.
+            assertEquals(svg, paint(new CachedImageHandlerBase64Encoder(),
+                                    executor));
+
+            // Images written to files.
+            File dir = createTempDir();
+            File asyncDir = createTempDir();
+            try {
+                String ref = paint(new CachedImageHandlerPNGEncoder
+                                   (dir.getPath(), "images"), null);
+                String async = paint(new CachedImageHandlerPNGEncoder
+                                     (asyncDir.getPath(), "images"),
+                                     executor);
+                assertEquals(ref, async);
+                String[] files = dir.list();
+                Arrays.sort(files);
+                String[] asyncFiles = asyncDir.list();
+                Arrays.sort(asyncFiles);
+                assertEquals(2, files.length);
+                assertTrue(Arrays.equals(files, asyncFiles));
+                for (int i = 0; i < files.length; i++) {
+                    assertTrue(Arrays.equals
+                               (read(new File(dir, files[i])),
+                                read(new File(asyncDir, files[i]))));
+                }
+            } finally {
+                delete(dir);
+                delete(asyncDir);
+            }
+        } finally {
+            executor.shutdown();
+        }
+        return true;
+    }
+
+    /**
+     * Draws two copies of an image and another image, then streams
+     * the document.
+     */
+    protected static String paint(DefaultCachedImageHandler handler,
+                                  ExecutorService executor)
+        throws Exception {
+        Document domFactory = GenericDOMImplementation.getDOMImplementation()
+            .createDocument(SVGConstants.SVG_NAMESPACE_URI,
+                            SVGConstants.SVG_SVG_TAG, null);
+        SVGGeneratorContext ctx = SVGGeneratorContext.createDefault(domFactory);
+        ctx.setGenericImageHandler(handler);
+        handler.setEncodingExecutor(executor);
+        SVGGraphics2D g = new SVGGraphics2D(ctx, false);
+        g.drawImage(createImage(Color.red), 0, 0, null);
+        g.drawImage(createImage(Color.red), 40, 0, null);
+        g.drawImage(createImage(Color.blue), 80, 0, null);
+        StringWriter out = new StringWriter();
+        g.stream(out);
+        return out.toString();
+    }
+
+    protected static BufferedImage createImage(Color c) {
+        BufferedImage img = new BufferedImage(30, 20,
+                                              BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = img.createGraphics();
+        g.setPaint(c);
+        g.fillRect(0, 0, 30, 10);
+        g.setPaint(Color.green);
+        g.fillRect(0, 10, 30, 10);
+        g.dispose();
+        return img;
+    }
+
+    protected static int count(String s, String sub) {
+        int n = 0;
+        for (int i = s.indexOf(sub); i != -1; i = s.indexOf(sub, i + 1)) {
+            n++;
+        }
+        return n;
+    }
+
+    protected static File createTempDir() throws IOException {
+        File f = File.createTempFile("ImageCacherTest", "");
+        f.delete();
+        f.mkdir();
+        return f;
+    }
+
+    protected static void delete(File dir) {
+        File[] files = dir.listFiles();
+        for (int i = 0; i < files.length; i++) {
+            files[i].delete();
+        }
+        dir.delete();
+    }
+
+    protected static byte[] read(File f) throws IOException {
+        byte[] data = new byte[(int) f.length()];
+        InputStream in = new FileInputStream(f);
+        try {
+            int off = 0;
+            while (off < data.length) {
+                off += in.read(data, off, data.length - off);
+            }
+        } finally {
+            in.close();
+        }
+        return data;
+    }
+}
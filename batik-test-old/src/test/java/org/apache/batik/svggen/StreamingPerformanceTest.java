@@ -0,0 +1,89 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.svggen;
+
+import java.awt.Color;
+import java.awt.geom.Line2D;
+import java.awt.geom.Rectangle2D;
+import java.io.IOException;
+import java.io.Writer;
+
+import org.w3c.dom.Document;
+
+import org.apache.batik.dom.GenericDOMImplementation;
+import org.apache.batik.test.PerformanceTest;
+import org.apache.batik.util.SVGConstants;
+
+/**
+ * This test compares the throughput of the streaming SVGGraphics2D
+ * (<code>runOp</code>) with the one of the DOM based SVGGraphics2D
+ * (<code>runRef</code>).
+ *
+ * @version $Id$
+ */
+public class StreamingPerformanceTest extends PerformanceTest {
+    static final int N_SHAPES = 20000;
+
+    /**
+     * Writer discarding its output, so that only the generation
+     * and serialization are measured.
+     */
+    static class NullWriter extends Writer {
+        public void write(char[] cbuf, int off, int len) { }
+        public void flush() { }
+        public void close() { }
+    }
+
+    static Document createDocument() {
+        return GenericDOMImplementation.getDOMImplementation()
+            .createDocument(SVGConstants.SVG_NAMESPACE_URI,
+                            SVGConstants.SVG_SVG_TAG, null);
+    }
+
+    static void paint(SVGGraphics2D g) {
+        for (int i=0; i<N_SHAPES; i++) {
+            g.setPaint(new Color(i % 255, 0, 0));
+            g.fill(new Rectangle2D.Double(i % 100, i % 77, 5, 5));
+            g.draw(new Line2D.Double(0, 0, i % 50, i % 60));
+        }
+    }
+
+    public void runRef() {
+        try {
+            SVGGraphics2D g = new SVGGraphics2D(createDocument());
+            paint(g);
+            g.stream(new NullWriter());
+        } catch (IOException e) {
+            throw new RuntimeException(e.getMessage());
+        }
+    }
+
+    public void runOp() {
+        try {
+            SVGGeneratorContext ctx =
+                SVGGeneratorContext.createDefault(createDocument());
+            SVGGraphics2D g =
+                new SVGGraphics2D(ctx, false, new NullWriter(), false, false);
+            paint(g);
+            g.closeStream();
+        } catch (IOException e) {
+            throw new RuntimeException(e.getMessage());
+        }
+    }
+}
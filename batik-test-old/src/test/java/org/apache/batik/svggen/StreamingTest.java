@@ -0,0 +1,253 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.svggen;
+
+import java.awt.Dimension;
+import java.awt.Font;
+import java.awt.geom.AffineTransform;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import org.apache.batik.dom.GenericDOMImplementation;
+import org.apache.batik.dom.util.SAXDocumentFactory;
+import org.apache.batik.parser.AWTTransformProducer;
+import org.apache.batik.svggen.SVGGeneratorContext.GraphicContextDefaults;
+import org.apache.batik.test.AbstractTest;
+import org.apache.batik.util.SVGConstants;
+import org.apache.batik.util.XMLResourceDescriptor;
+
+/**
+ * Checks that the content streamed by an SVGGraphics2D paints the same
+ * elements with the same definitions as the document written by
+ * <code>stream</code> for the same drawing, and that the tree cannot
+ * be retrieved once streamed.
+ *
+ * @version $Id$
+ */
+public class StreamingTest extends AbstractTest {
+
+    public static final Dimension CANVAS_SIZE = new Dimension(400, 400);
+
+    protected static final Painter[] PAINTERS = {
+        new BasicShapes(), new Paints(), new Gradient(), new Clip(),
+        new Texture(), new Font1(), new TransformCollapse()
+    };
+
+    public boolean runImplBasic() throws Exception {
+        for (int i = 0; i < PAINTERS.length; i++) {
+            Document ref = parse(paint(PAINTERS[i], null));
+            // Groups are split after each element with a group size of
+            // one, and not at all with the default size.
+            for (int maxGroupSize = 1; maxGroupSize <= 256;
+                 maxGroupSize *= 256) {
+                Document streamed = parse(paint(PAINTERS[i], maxGroupSize));
+                assertEquals(getElements(ref), getElements(streamed));
+                assertEquals(getDefinitions(ref), getDefinitions(streamed));
+            }
+        }
+
+        SVGGraphics2D g = createGraphics(new StringWriter(), 256);
+        new BasicShapes().paint(g);
+        try {
+            g.getRoot();
+            return false;
+        } catch (SVGGraphics2DRuntimeException e) {
+        }
+        try {
+            g.stream(new StringWriter());
+            return false;
+        } catch (SVGGraphics2DRuntimeException e) {
+        }
+        try {
+            g.getTopLevelGroup();
+            return false;
+        } catch (SVGGraphics2DRuntimeException e) {
+        }
+        return true;
+    }
+
+    /**
+     * Paints with an SVGGraphics2D streaming its content when a
+     * maximum group size is given, or with one building the tree.
+     */
+    protected static String paint(Painter painter, Integer maxGroupSize)
+        throws Exception {
+        StringWriter out = new StringWriter();
+        SVGGraphics2D g = createGraphics
+            (maxGroupSize == null ? null : out,
+             maxGroupSize == null ? 0 : maxGroupSize.intValue());
+        g.setSVGCanvasSize(CANVAS_SIZE);
+        painter.paint(g);
+        if (maxGroupSize == null) {
+            g.stream(out);
+        } else {
+            g.closeStream();
+        }
+        return out.toString();
+    }
+
+    protected static SVGGraphics2D createGraphics(StringWriter out,
+                                                  int maxGroupSize) {
+        Document domFactory = GenericDOMImplementation.getDOMImplementation()
+            .createDocument(SVGConstants.SVG_NAMESPACE_URI,
+                            SVGConstants.SVG_SVG_TAG, null);
+        SVGGeneratorContext ctx = SVGGeneratorContext.createDefault(domFactory);
+        GraphicContextDefaults defaults = new GraphicContextDefaults();
+        defaults.font = new Font("Arial", Font.PLAIN, 12);
+        ctx.setGraphicContextDefaults(defaults);
+        if (out == null) {
+            return new SVGGraphics2D(ctx, false);
+        }
+        SVGGraphics2D g = new SVGGraphics2D(ctx, false, out, false, false);
+        ((StreamingDOMTreeManager) g.getDOMTreeManager())
+            .setMaxGroupSize(maxGroupSize);
+        return g;
+    }
+
+    /**
+     * Returns the elements painted by a document, in order, each with
+     * the attributes it inherits from the groups above it. The
+     * whitespace and the order of the attributes are ignored.
+     */
+    protected static List getElements(Document doc) {
+        List elements = new ArrayList();
+        addElements(doc.getDocumentElement(), new TreeMap(), elements);
+        return elements;
+    }
+
+    protected static void addElements(Element e, Map attributes,
+                                      List elements) {
+        String name = e.getLocalName();
+        if (SVGConstants.SVG_DEFS_TAG.equals(name)) {
+            return;
+        }
+        Map m = new TreeMap(attributes);
+        NamedNodeMap attrs = e.getAttributes();
+        for (int i = 0; i < attrs.getLength(); i++) {
+            Node a = attrs.item(i);
+            Object value = a.getNodeValue();
+            if (SVGConstants.SVG_TRANSFORM_ATTRIBUTE.equals(a.getNodeName())) {
+                // Transforms are composed rather than inherited.
+                AffineTransform at = AWTTransformProducer.
+                    createAffineTransform(a.getNodeValue());
+                if (m.containsKey(a.getNodeName())) {
+                    at.preConcatenate((AffineTransform) m.get(a.getNodeName()));
+                }
+                value = at;
+            }
+            m.put(a.getNodeName(), value);
+        }
+        if (!SVGConstants.SVG_G_TAG.equals(name)
+            && !SVGConstants.SVG_SVG_TAG.equals(name)) {
+            Object at = m.get(SVGConstants.SVG_TRANSFORM_ATTRIBUTE);
+            if (at != null) {
+                m.put(SVGConstants.SVG_TRANSFORM_ATTRIBUTE,
+                      toString((AffineTransform) at));
+            }
+            elements.add(name + m + getContent(e));
+            return;
+        }
+        for (Node n = e.getFirstChild(); n != null; n = n.getNextSibling()) {
+            if (n.getNodeType() == Node.ELEMENT_NODE) {
+                addElements((Element) n, m, elements);
+            }
+        }
+    }
+
+    /**
+     * Returns a string for a transform, rounded so that the same
+     * transform written as one or several transforms compare equal.
+     */
+    protected static String toString(AffineTransform at) {
+        double[] m = new double[6];
+        at.getMatrix(m);
+        StringBuffer sb = new StringBuffer();
+        for (int i = 0; i < m.length; i++) {
+            sb.append(Math.round(m[i] * 100) / 100.0).append(' ');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Returns the definitions of a document by id, wherever they are.
+     */
+    protected static Map getDefinitions(Document doc) {
+        Map defs = new TreeMap();
+        NodeList l = doc.getElementsByTagNameNS
+            (SVGConstants.SVG_NAMESPACE_URI, SVGConstants.SVG_DEFS_TAG);
+        for (int i = 0; i < l.getLength(); i++) {
+            for (Node n = l.item(i).getFirstChild(); n != null;
+                 n = n.getNextSibling()) {
+                if (n.getNodeType() == Node.ELEMENT_NODE) {
+                    Element e = (Element) n;
+                    defs.put(e.getAttributeNS(null, SVGConstants.SVG_ID_ATTRIBUTE),
+                             toString(e));
+                }
+            }
+        }
+        return defs;
+    }
+
+    /**
+     * Returns a string for an element and its content, ignoring the
+     * whitespace and the order of the attributes.
+     */
+    protected static String toString(Element e) {
+        Map m = new TreeMap();
+        NamedNodeMap attrs = e.getAttributes();
+        for (int i = 0; i < attrs.getLength(); i++) {
+            Node a = attrs.item(i);
+            m.put(a.getNodeName(), a.getNodeValue());
+        }
+        return e.getLocalName() + m + getContent(e);
+    }
+
+    /**
+     * Returns a string for the content of an element.
+     */
+    protected static String getContent(Element e) {
+        StringBuffer sb = new StringBuffer("[");
+        for (Node n = e.getFirstChild(); n != null; n = n.getNextSibling()) {
+            if (n.getNodeType() == Node.ELEMENT_NODE) {
+                sb.append(toString((Element) n));
+            } else if (n.getNodeType() == Node.TEXT_NODE) {
+                sb.append(n.getNodeValue().trim());
+            }
+        }
+        return sb.append(']').toString();
+    }
+
+    protected static Document parse(String svg) throws Exception {
+        SAXDocumentFactory f = new SAXDocumentFactory
+            (GenericDOMImplementation.getDOMImplementation(),
+             XMLResourceDescriptor.getXMLParserClassName());
+        return f.createDocument("http://example.org/test.svg",
+                                new StringReader(svg));
+    }
+}
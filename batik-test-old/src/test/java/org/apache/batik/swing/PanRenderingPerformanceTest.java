@@ -0,0 +1,121 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.swing;
+
+import java.awt.Rectangle;
+import java.awt.geom.AffineTransform;
+import java.io.File;
+
+import org.apache.batik.anim.dom.SAXSVGDocumentFactory;
+import org.apache.batik.bridge.BridgeContext;
+import org.apache.batik.bridge.GVTBuilder;
+import org.apache.batik.bridge.UserAgentAdapter;
+import org.apache.batik.ext.awt.geom.RectListManager;
+import org.apache.batik.gvt.GraphicsNode;
+import org.apache.batik.gvt.renderer.StaticRenderer;
+import org.apache.batik.swing.gvt.GVTTreeRenderer;
+import org.apache.batik.test.PerformanceTest;
+import org.apache.batik.util.XMLResourceDescriptor;
+
+import org.w3c.dom.Document;
+
+/**
+ * This test compares the time needed to pan a map by small steps when
+ * each rendering keeps the content of the previous one and only renders
+ * the exposed areas (<code>runOp</code>) and when each rendering renders
+ * the whole buffer (<code>runRef</code>).
+ *
+ * @version $Id$
+ */
+public class PanRenderingPerformanceTest extends PerformanceTest {
+
+    static final int WIDTH = 800;
+    static final int HEIGHT = 600;
+    static final int STEPS = 10;
+    static final int STEP = 16;
+
+    protected StaticRenderer renderer = new StaticRenderer();
+
+    protected AffineTransform transform =
+        AffineTransform.getScaleInstance(2, 2);
+
+    public PanRenderingPerformanceTest() {
+        try {
+            SAXSVGDocumentFactory f = new SAXSVGDocumentFactory
+                (XMLResourceDescriptor.getXMLParserClassName());
+            Document doc = f.createDocument
+                (new File("samples/mapWaadt.svg").toURI().toString());
+            GraphicsNode gvtRoot = new GVTBuilder().build
+                (new BridgeContext(new UserAgentAdapter()), doc);
+            renderer.setTree(gvtRoot);
+        } catch (Exception e) {
+            throw new IllegalStateException(e.getMessage());
+        }
+        render(null, 0, 0);
+    }
+
+    public void runRef() {
+        pan(false);
+    }
+
+    public void runOp() {
+        pan(true);
+    }
+
+    /**
+     * Pans towards the bottom right corner of the map, then back.
+     */
+    protected void pan(boolean keep) {
+        for (int i = 0; i < 2 * STEPS; i++) {
+            int dx = (i < STEPS) ? -STEP : STEP;
+            int dy = dx / 2;
+            transform.preConcatenate
+                (AffineTransform.getTranslateInstance(dx, dy));
+            RectListManager areas = null;
+            if (keep) {
+                areas = new RectListManager();
+                if (dx < 0) {
+                    areas.add(new Rectangle(0, HEIGHT + dy, WIDTH, -dy));
+                    areas.add(new Rectangle(WIDTH + dx, 0, -dx, HEIGHT + dy));
+                } else {
+                    areas.add(new Rectangle(0, 0, WIDTH, dy));
+                    areas.add(new Rectangle(0, dy, dx, HEIGHT - dy));
+                }
+            }
+            render(areas, dx, dy);
+        }
+    }
+
+    protected void render(RectListManager areas, int dx, int dy) {
+        Rectangle aoi = new Rectangle(0, 0, WIDTH, HEIGHT);
+        GVTTreeRenderer gtr;
+        try {
+            gtr = new GVTTreeRenderer
+                (renderer, new AffineTransform(transform), false,
+                 transform.createInverse().createTransformedShape(aoi),
+                 WIDTH, HEIGHT);
+        } catch (Exception e) {
+            throw new IllegalStateException(e.getMessage());
+        }
+        if (areas != null) {
+            gtr.setExposedAreas(areas, dx, dy);
+        }
+        gtr.run();
+    }
+}
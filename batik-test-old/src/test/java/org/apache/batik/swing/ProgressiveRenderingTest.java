@@ -0,0 +1,133 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.swing;
+
+import java.awt.Rectangle;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.batik.anim.dom.SAXSVGDocumentFactory;
+import org.apache.batik.bridge.BridgeContext;
+import org.apache.batik.bridge.GVTBuilder;
+import org.apache.batik.bridge.UserAgentAdapter;
+import org.apache.batik.gvt.GraphicsNode;
+import org.apache.batik.gvt.renderer.ImageRenderer;
+import org.apache.batik.gvt.renderer.StaticRenderer;
+import org.apache.batik.swing.gvt.GVTTreeRenderer;
+import org.apache.batik.swing.gvt.GVTTreeRendererAdapter;
+import org.apache.batik.swing.gvt.GVTTreeRendererEvent;
+import org.apache.batik.test.AbstractTest;
+import org.apache.batik.util.XMLResourceDescriptor;
+
+import org.w3c.dom.Document;
+
+/**
+ * Checks that the progressive rendering of a tree with deferred content
+ * notifies passes showing the content built so far, builds only the
+ * visible content and ends with the same image as the eager rendering.
+ *
+ * @version $Id$
+ */
+public class ProgressiveRenderingTest extends AbstractTest {
+
+    protected static final String SVG =
+        "<svg xmlns='http://www.w3.org/2000/svg' width='100' height='100'>\n" +
+        "<rect width='10' height='10' fill='black'/>\n" +
+        "<g fill='red'><rect x='20' y='20' width='30' height='30'/>\n" +
+        "<g fill='blue'><circle cx='70' cy='70' r='20'/></g></g>\n" +
+        "<g fill='green'><rect x='200' y='200' width='10' height='10'/></g>\n" +
+        "</svg>\n";
+
+    protected List images = new ArrayList();
+
+    public boolean runImplBasic() throws Exception {
+        SAXSVGDocumentFactory f = new SAXSVGDocumentFactory
+            (XMLResourceDescriptor.getXMLParserClassName());
+        Document doc = f.createDocument("http://example.org/progressive.svg",
+                                        new StringReader(SVG));
+
+        BufferedImage eager = render
+            (new GVTBuilder().build(new BridgeContext
+                                    (new UserAgentAdapter()), doc), false);
+
+        BridgeContext ctx = new BridgeContext(new UserAgentAdapter());
+        ctx.setDeferredBuild(true);
+        GVTBuilder builder = new GVTBuilder();
+        BufferedImage progressive = render(builder.build(ctx, doc), true);
+
+        // One pass before building the red group, one before building
+        // the nested blue group.
+        assertEquals(2, images.size());
+        BufferedImage first = (BufferedImage)images.get(0);
+        assertEquals(0xff000000, first.getRGB(5, 5));
+        assertEquals(0, first.getRGB(30, 30));
+        assertEquals(0, first.getRGB(70, 70));
+        BufferedImage second = (BufferedImage)images.get(1);
+        assertEquals(0xffff0000, second.getRGB(30, 30));
+        assertEquals(0, second.getRGB(70, 70));
+        assertTrue(samePixels(eager, progressive));
+        assertTrue(builder.hasDeferredContent());
+        return true;
+    }
+
+    protected BufferedImage render(GraphicsNode gn, boolean progressive) {
+        ImageRenderer r = new StaticRenderer();
+        r.setTree(gn);
+        GVTTreeRenderer gtr = new GVTTreeRenderer
+            (r, new AffineTransform(), false,
+             new Rectangle(0, 0, 100, 100), 100, 100) {
+                {
+                    passInterval = 0;
+                }
+            };
+        gtr.setProgressive(progressive);
+        final BufferedImage[] result = new BufferedImage[1];
+        gtr.addGVTTreeRendererListener(new GVTTreeRendererAdapter() {
+                public void gvtRenderingProgress(GVTTreeRendererEvent e) {
+                    images.add(copy(e.getImage()));
+                }
+                public void gvtRenderingCompleted(GVTTreeRendererEvent e) {
+                    result[0] = copy(e.getImage());
+                }
+            });
+        gtr.run();
+        return result[0];
+    }
+
+    protected static BufferedImage copy(BufferedImage img) {
+        BufferedImage c = new BufferedImage(img.getWidth(), img.getHeight(),
+                                            BufferedImage.TYPE_INT_ARGB);
+        c.createGraphics().drawImage(img, 0, 0, null);
+        return c;
+    }
+
+    protected static boolean samePixels(BufferedImage a, BufferedImage b) {
+        for (int y = 0; y < a.getHeight(); y++) {
+            for (int x = 0; x < a.getWidth(); x++) {
+                if (a.getRGB(x, y) != b.getRGB(x, y)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+}
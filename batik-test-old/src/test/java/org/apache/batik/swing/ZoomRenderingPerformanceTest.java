@@ -0,0 +1,105 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.swing;
+
+import java.awt.Rectangle;
+import java.awt.geom.AffineTransform;
+import java.io.File;
+
+import org.apache.batik.anim.dom.SAXSVGDocumentFactory;
+import org.apache.batik.bridge.BridgeContext;
+import org.apache.batik.bridge.GVTBuilder;
+import org.apache.batik.bridge.UserAgentAdapter;
+import org.apache.batik.gvt.GraphicsNode;
+import org.apache.batik.gvt.renderer.StaticRenderer;
+import org.apache.batik.gvt.renderer.TilePyramidRenderer;
+import org.apache.batik.swing.gvt.GVTTreeRenderer;
+import org.apache.batik.test.PerformanceTest;
+import org.apache.batik.util.XMLResourceDescriptor;
+
+import org.w3c.dom.Document;
+
+/**
+ * This test compares the time needed to zoom a map in and out with a
+ * renderer keeping the tiles of each zoom level (<code>runOp</code>)
+ * and with a renderer only keeping those of the current zoom level
+ * (<code>runRef</code>).
+ *
+ * @version $Id$
+ */
+public class ZoomRenderingPerformanceTest extends PerformanceTest {
+
+    static final int WIDTH = 800;
+    static final int HEIGHT = 600;
+    static final double [] SCALES = { 1, 1.5, 2, 3, 2, 1.5 };
+
+    protected StaticRenderer staticRenderer = new StaticRenderer();
+
+    protected StaticRenderer pyramidRenderer = new TilePyramidRenderer();
+
+    public ZoomRenderingPerformanceTest() {
+        try {
+            SAXSVGDocumentFactory f = new SAXSVGDocumentFactory
+                (XMLResourceDescriptor.getXMLParserClassName());
+            Document doc = f.createDocument
+                (new File("samples/mapWaadt.svg").toURI().toString());
+            GraphicsNode gvtRoot = new GVTBuilder().build
+                (new BridgeContext(new UserAgentAdapter()), doc);
+            staticRenderer.setTree(gvtRoot);
+            pyramidRenderer.setTree(gvtRoot);
+        } catch (Exception e) {
+            throw new IllegalStateException(e.getMessage());
+        }
+    }
+
+    public void runRef() {
+        zoom(staticRenderer);
+    }
+
+    public void runOp() {
+        zoom(pyramidRenderer);
+    }
+
+    /**
+     * Zooms in then out around the center of the map.
+     */
+    protected void zoom(StaticRenderer renderer) {
+        for (int i = 0; i < SCALES.length; i++) {
+            AffineTransform at = AffineTransform.getTranslateInstance
+                (WIDTH / 2, HEIGHT / 2);
+            at.scale(SCALES[i], SCALES[i]);
+            at.translate(-WIDTH / 2, -HEIGHT / 2);
+            render(renderer, at);
+        }
+    }
+
+    protected void render(StaticRenderer renderer, AffineTransform at) {
+        Rectangle aoi = new Rectangle(0, 0, WIDTH, HEIGHT);
+        GVTTreeRenderer gtr;
+        try {
+            gtr = new GVTTreeRenderer
+                (renderer, at, false,
+                 at.createInverse().createTransformedShape(aoi),
+                 WIDTH, HEIGHT);
+        } catch (Exception e) {
+            throw new IllegalStateException(e.getMessage());
+        }
+        gtr.run();
+    }
+}
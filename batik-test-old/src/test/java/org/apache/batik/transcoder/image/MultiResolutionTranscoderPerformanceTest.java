@@ -0,0 +1,68 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.transcoder.image;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+
+import org.apache.batik.test.PerformanceTest;
+import org.apache.batik.transcoder.TranscoderException;
+import org.apache.batik.transcoder.TranscoderInput;
+import org.apache.batik.transcoder.TranscoderOutput;
+
+/**
+ * This test compares the time needed to transcode a document to PNG
+ * images of several widths with a <code>MultiResolutionTranscoder</code>
+ * (<code>runOp</code>) and with one <code>PNGTranscoder</code> per
+ * width (<code>runRef</code>).
+ *
+ * @version $Id$
+ */
+public class MultiResolutionTranscoderPerformanceTest
+        extends PerformanceTest {
+
+    static final String INPUT = "samples/asf-logo.svg";
+
+    static final float [] WIDTHS = { 16, 32, 64, 128 };
+
+    protected String uri = new File(INPUT).toURI().toString();
+
+    public void runRef() {
+        try {
+            for (int i = 0; i < WIDTHS.length; i++) {
+                PNGTranscoder t = new PNGTranscoder();
+                t.addTranscodingHint(ImageTranscoder.KEY_WIDTH, WIDTHS[i]);
+                t.transcode(new TranscoderInput(uri),
+                            new TranscoderOutput(new ByteArrayOutputStream()));
+            }
+        } catch (TranscoderException e) {
+            throw new RuntimeException(e.getMessage());
+        }
+    }
+
+    public void runOp() throws TranscoderException {
+        TranscoderOutput [] outputs = new TranscoderOutput[WIDTHS.length];
+        for (int i = 0; i < outputs.length; i++) {
+            outputs[i] = new TranscoderOutput(new ByteArrayOutputStream());
+        }
+        MultiResolutionTranscoder t =
+            new MultiResolutionTranscoder(new PNGTranscoder());
+        t.transcode(new TranscoderInput(uri), WIDTHS, outputs);
+    }
+}
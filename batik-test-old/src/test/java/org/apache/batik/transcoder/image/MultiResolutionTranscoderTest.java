@@ -0,0 +1,95 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.transcoder.image;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+
+import org.apache.batik.test.AbstractTest;
+import org.apache.batik.transcoder.TranscoderInput;
+import org.apache.batik.transcoder.TranscoderOutput;
+
+/**
+ * Checks that the images rendered by a
+ * <code>MultiResolutionTranscoder</code> are the ones rendered by
+ * transcoding the document once for each width.
+ *
+ * @version $Id$
+ */
+public class MultiResolutionTranscoderTest extends AbstractTest {
+
+    protected static final float [] WIDTHS = { 16, 24, 32, 48, 64, 128, 256 };
+
+    /**
+     * The URI of the input document.
+     */
+    protected String inputURI;
+
+    public MultiResolutionTranscoderTest(String inputURI) {
+        this.inputURI = inputURI;
+    }
+
+    public String getName() {
+        return inputURI;
+    }
+
+    public boolean runImplBasic() throws Exception {
+        String uri = new File(inputURI).toURI().toString();
+        MultiResolutionTranscoder t =
+            new MultiResolutionTranscoder(new ImageCapture());
+        BufferedImage [] images = t.transcode(new TranscoderInput(uri),
+                                              WIDTHS);
+        assertEquals(WIDTHS.length, images.length);
+
+        for (int i = 0; i < WIDTHS.length; i++) {
+            ImageCapture ref = new ImageCapture();
+            ref.addTranscodingHint(ImageTranscoder.KEY_WIDTH, WIDTHS[i]);
+            ref.transcode(new TranscoderInput(uri), null);
+            assertEquals(ref.image.getWidth(), images[i].getWidth());
+            assertEquals(ref.image.getHeight(), images[i].getHeight());
+            assertEquals(0, countDifferences(ref.image, images[i]));
+        }
+        return true;
+    }
+
+    protected static int countDifferences(BufferedImage a, BufferedImage b) {
+        int n = 0;
+        for (int y = 0; y < a.getHeight(); y++) {
+            for (int x = 0; x < a.getWidth(); x++) {
+                if (a.getRGB(x, y) != b.getRGB(x, y)) {
+                    n++;
+                }
+            }
+        }
+        return n;
+    }
+
+    /**
+     * An image transcoder keeping the last image it has written.
+     */
+    protected static class ImageCapture extends ImageTranscoder {
+        protected BufferedImage image;
+        public BufferedImage createImage(int w, int h) {
+            return new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+        }
+        public void writeImage(BufferedImage img, TranscoderOutput output) {
+            image = img;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.transcoder.image;
+
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+
+import org.apache.batik.test.PerformanceTest;
+import org.apache.batik.transcoder.TranscoderException;
+import org.apache.batik.transcoder.TranscoderInput;
+import org.apache.batik.transcoder.TranscoderOutput;
+
+/**
+ * This test compares the time needed to transcode a document to the PNG
+ * tiles of two zoom levels with a <code>TilePyramidTranscoder</code>
+ * (<code>runOp</code>) and with one <code>PNGTranscoder</code> per
+ * tile, using the area of interest hint (<code>runRef</code>).
+ *
+ * @version $Id$
+ */
+public class TilePyramidTranscoderPerformanceTest extends PerformanceTest {
+
+    static final String INPUT = "samples/batikCandy.svg";
+
+    /**
+     * The largest dimension of the document.
+     */
+    static final float SIZE = 500;
+
+    static final int TILE_SIZE = 128;
+
+    static final int MAX_ZOOM = 1;
+
+    protected String uri = new File(INPUT).toURI().toString();
+
+    /**
+     * Transcoder discarding its images, so that only the build and the
+     * rendering of the tiles are measured, as with the tile handler
+     * of <code>runOp</code>.
+     */
+    static class DiscardingTranscoder extends PNGTranscoder {
+        public void writeImage(BufferedImage img, TranscoderOutput output) {
+        }
+    }
+
+    public void runRef() {
+        try {
+            for (int z = 0; z <= MAX_ZOOM; z++) {
+                float s = SIZE / (1 << z);
+                for (int y = 0; y < (1 << z); y++) {
+                    for (int x = 0; x < (1 << z); x++) {
+                        ImageTranscoder t = new DiscardingTranscoder();
+                        t.addTranscodingHint
+                            (ImageTranscoder.KEY_AOI,
+                             new Rectangle2D.Float(x * s, y * s, s, s));
+                        t.addTranscodingHint(ImageTranscoder.KEY_WIDTH,
+                                             new Float(TILE_SIZE));
+                        t.addTranscodingHint(ImageTranscoder.KEY_HEIGHT,
+                                             new Float(TILE_SIZE));
+                        t.transcode(new TranscoderInput(uri),
+                                    new TranscoderOutput());
+                    }
+                }
+            }
+        } catch (TranscoderException e) {
+            throw new RuntimeException(e.getMessage());
+        }
+    }
+
+    public void runOp() throws TranscoderException {
+        TilePyramidTranscoder t = new TilePyramidTranscoder();
+        t.addTranscodingHint(TilePyramidTranscoder.KEY_TILE_SIZE,
+                             new Integer(TILE_SIZE));
+        t.addTranscodingHint(TilePyramidTranscoder.KEY_MAX_ZOOM,
+                             new Integer(MAX_ZOOM));
+        t.transcode(new TranscoderInput(uri),
+                    new TilePyramidTranscoder.TileHandler() {
+                        public void handleTile(int zoom, int x, int y,
+                                               BufferedImage tile)
+                                throws TranscoderException {
+                        }
+                    });
+    }
+}
@@ -0,0 +1,132 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.transcoder.image;
+
+import java.awt.image.BufferedImage;
+import java.io.StringReader;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.batik.test.AbstractTest;
+import org.apache.batik.transcoder.TranscoderInput;
+
+/**
+ * Checks that the tiles of a <code>TilePyramidTranscoder</code> are
+ * the parts of the image of their zoom level, and that the tiles
+ * without content are skipped.
+ *
+ * @version $Id$
+ */
+public class TilePyramidTranscoderTest extends AbstractTest {
+
+    /**
+     * A document with content in its upper left quarter only.
+     */
+    protected static final String DOCUMENT =
+        "<svg xmlns='http://www.w3.org/2000/svg' width='400' height='300' " +
+        "viewBox='0 0 400 300'>\n" +
+        "<linearGradient id='g'><stop offset='0' stop-color='red'/>" +
+        "<stop offset='1' stop-color='blue'/></linearGradient>\n" +
+        "<rect x='10' y='10' width='150' height='100' fill='url(#g)'/>\n" +
+        "<circle cx='120' cy='90' r='50' fill='green' " +
+        "fill-opacity='0.5' stroke='black'/>\n" +
+        "<path d='M20 140L180 20' stroke='orange' stroke-width='3'/>\n" +
+        "</svg>\n";
+
+    public boolean runImplBasic() throws Exception {
+        // The level 2 of 64 pixels tiles has the size of the level 0
+        // of 256 pixels tiles.
+        Map whole = transcode(256, 0, 0);
+        Map tiles = transcode(64, 2, 2);
+        BufferedImage img = (BufferedImage)whole.get("0/0/0");
+        assertTrue(img != null);
+
+        int n = 0;
+        for (int y = 0; y < 4; y++) {
+            for (int x = 0; x < 4; x++) {
+                BufferedImage tile =
+                    (BufferedImage)tiles.get("2/" + x + "/" + y);
+                BufferedImage part = img.getSubimage(x * 64, y * 64, 64, 64);
+                if (tile == null) {
+                    // Only tiles without content may be skipped.
+                    assertEquals(0, countNonTransparent(part));
+                    continue;
+                }
+                n++;
+                assertEquals(0, countDifferences(tile, part));
+            }
+        }
+        assertEquals(tiles.size(), n);
+        // The lower right tiles are empty.
+        assertTrue(n < 16);
+        return true;
+    }
+
+    /**
+     * Transcodes the document in tiles of the given size, and returns
+     * them by their zoom/x/y name.
+     */
+    protected Map transcode(int tileSize, int minZoom, int maxZoom)
+            throws Exception {
+        TilePyramidTranscoder t = new TilePyramidTranscoder();
+        t.addTranscodingHint(TilePyramidTranscoder.KEY_TILE_SIZE,
+                             new Integer(tileSize));
+        t.addTranscodingHint(TilePyramidTranscoder.KEY_MIN_ZOOM,
+                             new Integer(minZoom));
+        t.addTranscodingHint(TilePyramidTranscoder.KEY_MAX_ZOOM,
+                             new Integer(maxZoom));
+        final Map tiles = new HashMap();
+        TranscoderInput input =
+            new TranscoderInput(new StringReader(DOCUMENT));
+        input.setURI("http://example.org/tiles.svg");
+        t.transcode(input, new TilePyramidTranscoder.TileHandler() {
+                public void handleTile(int zoom, int x, int y,
+                                       BufferedImage tile) {
+                    synchronized (tiles) {
+                        tiles.put(zoom + "/" + x + "/" + y, tile);
+                    }
+                }
+            });
+        return tiles;
+    }
+
+    protected static int countNonTransparent(BufferedImage img) {
+        int n = 0;
+        for (int y = 0; y < img.getHeight(); y++) {
+            for (int x = 0; x < img.getWidth(); x++) {
+                if ((img.getRGB(x, y) >>> 24) != 0) {
+                    n++;
+                }
+            }
+        }
+        return n;
+    }
+
+    protected static int countDifferences(BufferedImage a, BufferedImage b) {
+        int n = 0;
+        for (int y = 0; y < a.getHeight(); y++) {
+            for (int x = 0; x < a.getWidth(); x++) {
+                if (a.getRGB(x, y) != b.getRGB(x, y)) {
+                    n++;
+                }
+            }
+        }
+        return n;
+    }
+}
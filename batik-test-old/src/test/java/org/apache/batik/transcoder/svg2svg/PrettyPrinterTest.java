@@ -0,0 +1,112 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.transcoder.svg2svg;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import org.apache.batik.test.AbstractTest;
+import org.apache.batik.test.TestReport;
+import org.apache.batik.transcoder.TranscoderInput;
+import org.apache.batik.transcoder.TranscoderOutput;
+
+/**
+ * Checks the output of the PrettyPrinter, which is produced while the
+ * document is scanned, and that the SVGTranscoder accepts an input
+ * stream.
+ *
+ * @version $Id$
+ */
+public class PrettyPrinterTest extends AbstractTest {
+
+    /**
+     * The document to print.
+     */
+    public static final String DOCUMENT =
+        "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+        "<!-- A comment -->\n" +
+        "<svg xmlns=\"http://www.w3.org/2000/svg\"  width = '100'" +
+        " height=\"100\" >\n" +
+        "<g id=\"a&amp;b\" transform=\"translate(10,&#x31;0)\"" +
+        " style=\"fill:red;stroke:blue;stroke-width:2\">" +
+        "<rect x=\"0\" y=\"0\" width=\"10\" height=\"10\"/>\n" +
+        "<text xml:space=\"preserve\" x=\"1\">  Some   text  </text>" +
+        "<text>Caf\u00e9 &#169; a somewhat longer text which has to be" +
+        " wrapped over several lines.</text>\n" +
+        "<style><![CDATA[ rect { fill: blue } ]]></style>" +
+        "<empty></empty   ></g>\n" +
+        "</svg>\n";
+
+    /**
+     * The expected formatted output, with a document width of 60.
+     */
+    public static final String FORMATTED =
+        "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+        "\n" +
+        "<!-- A comment -->\n" +
+        "\n" +
+        "<svg xmlns=\"http://www.w3.org/2000/svg\" width='100'\n" +
+        "     height=\"100\">\n" +
+        "    <g id=\"a&amp;b\" transform=\"translate(10,&#x31;0)\"\n" +
+        "       style=\"fill:red;stroke:blue;stroke-width:2\">\n" +
+        "        <rect x=\"0\" y=\"0\" width=\"10\" height=\"10\"/>\n" +
+        "        <text xml:space=\"preserve\" x=\"1\">  Some   text  " +
+        "</text><text>\n" +
+        "            Caf\u00e9 &#169; a somewhat longer text which has to\n" +
+        "            be wrapped over several lines.\n" +
+        "        </text>\n" +
+        "        <style><![CDATA[ rect { fill: blue } ]]>\n" +
+        "        </style>\n" +
+        "        <empty>\n" +
+        "        </empty>\n" +
+        "    </g>\n" +
+        "</svg>\n";
+
+    public TestReport runImpl() throws Exception {
+        PrettyPrinter pp = new PrettyPrinter();
+        pp.setDocumentWidth(60);
+        StringWriter w = new StringWriter();
+        pp.print(new StringReader(DOCUMENT), w);
+        assertEquals(FORMATTED, w.toString());
+
+        // Without formatting, the document is printed unchanged.
+        pp = new PrettyPrinter();
+        pp.setFormat(false);
+        w = new StringWriter();
+        pp.print(new StringReader(DOCUMENT), w);
+        assertEquals(DOCUMENT, w.toString());
+
+        // The encoding of a stream is determined from its content.
+        String[] encodings = { "UTF-8", "UTF-16" };
+        for (String encoding : encodings) {
+            String doc = DOCUMENT.replaceFirst("UTF-8", encoding);
+            SVGTranscoder t = new SVGTranscoder();
+            t.addTranscodingHint(SVGTranscoder.KEY_DOCUMENT_WIDTH, 60);
+            w = new StringWriter();
+            t.transcode(new TranscoderInput
+                        (new ByteArrayInputStream(doc.getBytes(encoding))),
+                        new TranscoderOutput(w));
+            assertEquals(FORMATTED.replaceFirst("UTF-8", encoding),
+                         w.toString());
+        }
+
+        return reportSuccess();
+    }
+}
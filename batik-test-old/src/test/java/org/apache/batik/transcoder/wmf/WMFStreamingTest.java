@@ -0,0 +1,142 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.transcoder.wmf;
+
+import java.awt.Dimension;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+
+import org.apache.batik.svggen.SVGGraphics2D;
+import org.apache.batik.test.AbstractTest;
+import org.apache.batik.transcoder.TranscoderException;
+import org.apache.batik.transcoder.TranscoderInput;
+import org.apache.batik.transcoder.TranscoderOutput;
+import org.apache.batik.transcoder.wmf.tosvg.WMFPainter;
+import org.apache.batik.transcoder.wmf.tosvg.WMFRecordStore;
+import org.apache.batik.transcoder.wmf.tosvg.WMFTranscoder;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+/**
+ * Checks that the <code>WMFTranscoder</code>, which paints the records
+ * as they are read, generates the same SVG as painting them once all of
+ * them are read in a <code>WMFRecordStore</code>. The id of the test
+ * is the path of the WMF file.
+ *
+ * @version $Id$
+ */
+public class WMFStreamingTest extends AbstractTest {
+
+    public boolean runImplBasic() throws Exception {
+        File f = new File(getId());
+        byte[] data = new byte[(int) f.length()];
+        DataInputStream in = new DataInputStream(new FileInputStream(f));
+        try {
+            in.readFully(data);
+        } finally {
+            in.close();
+        }
+
+        check(data, false);
+        // The size hints change the painter and the viewBox.
+        check(data, true);
+        return true;
+    }
+
+    protected void check(byte[] data, boolean hints) throws Exception {
+        // WMFPainter keeps the default stroke of the last picture it
+        // painted in a static field, so both outputs are generated
+        // after a picture transcoded with the same hints.
+        transcode(new StoredWMFTranscoder(), data, hints);
+        String ref = transcode(new StoredWMFTranscoder(), data, hints);
+        assertEquals(ref, transcode(new WMFTranscoder(), data, hints));
+    }
+
+    protected static String transcode(WMFTranscoder t, byte[] data,
+                                      boolean hints)
+        throws TranscoderException {
+        if (hints) {
+            t.addTranscodingHint(WMFTranscoder.KEY_WIDTH, 123f);
+            t.addTranscodingHint(WMFTranscoder.KEY_XOFFSET, 10);
+            t.addTranscodingHint(WMFTranscoder.KEY_YOFFSET, 20);
+        }
+        StringWriter w = new StringWriter();
+        t.transcode(new TranscoderInput(new ByteArrayInputStream(data)),
+                    new TranscoderOutput(w));
+        return w.toString();
+    }
+
+    /**
+     * Transcodes a WMF file by painting its records once all of them
+     * are read, as the <code>WMFTranscoder</code> did before it painted
+     * them as they are read.
+     */
+    protected static class StoredWMFTranscoder extends WMFTranscoder {
+
+        public void transcode(TranscoderInput input, TranscoderOutput output)
+            throws TranscoderException {
+            WMFRecordStore currentStore = new WMFRecordStore();
+            try {
+                currentStore.read
+                    (new DataInputStream(input.getInputStream()));
+            } catch (IOException e) {
+                throw new TranscoderException(e);
+            }
+
+            float wmfwidth = currentStore.getWidthPixels();
+            float conv = 1.0f;
+            if (hints.containsKey(KEY_WIDTH)) {
+                conv = (Float) hints.get(KEY_WIDTH) / wmfwidth;
+            }
+            int xOffset = 0;
+            int yOffset = 0;
+            if (hints.containsKey(KEY_XOFFSET)) {
+                xOffset = (Integer) hints.get(KEY_XOFFSET);
+            }
+            if (hints.containsKey(KEY_YOFFSET)) {
+                yOffset = (Integer) hints.get(KEY_YOFFSET);
+            }
+
+            float sizeFactor = currentStore.getUnitsToPixels() * conv;
+            int vpX = (int)(currentStore.getVpX() * sizeFactor);
+            int vpY = (int)(currentStore.getVpY() * sizeFactor);
+            int vpW = (int)(currentStore.getWidthUnits() * sizeFactor);
+            int vpH = (int)(currentStore.getHeightUnits() * sizeFactor);
+
+            WMFPainter painter =
+                new WMFPainter(currentStore, xOffset, yOffset, conv);
+            Document doc = createDocument(output);
+            svgGenerator = new SVGGraphics2D(doc);
+            svgGenerator.getGeneratorContext().setPrecision(4);
+            painter.paint(svgGenerator);
+
+            svgGenerator.setSVGCanvasSize(new Dimension(vpW, vpH));
+            Element svgRoot = svgGenerator.getRoot();
+            svgRoot.setAttributeNS(null, SVG_VIEW_BOX_ATTRIBUTE,
+                                   String.valueOf(vpX) + ' ' + vpY + ' ' +
+                                   vpW + ' ' + vpH);
+            writeSVGToOutput(svgGenerator, svgRoot, output);
+        }
+    }
+}
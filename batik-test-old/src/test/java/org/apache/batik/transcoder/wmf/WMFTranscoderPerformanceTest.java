@@ -0,0 +1,113 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.transcoder.wmf;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+
+import org.apache.batik.anim.dom.SVGDOMImplementation;
+import org.apache.batik.svggen.SVGGraphics2D;
+import org.apache.batik.test.PerformanceTest;
+import org.apache.batik.transcoder.TranscoderException;
+import org.apache.batik.transcoder.TranscoderInput;
+import org.apache.batik.transcoder.TranscoderOutput;
+import org.apache.batik.transcoder.wmf.tosvg.WMFPainter;
+import org.apache.batik.transcoder.wmf.tosvg.WMFRecordStore;
+import org.apache.batik.transcoder.wmf.tosvg.WMFTranscoder;
+import org.apache.batik.util.SVGConstants;
+
+import org.w3c.dom.Document;
+
+/**
+ * This test compares the time needed to transcode the WMF test files
+ * to SVG with the <code>WMFTranscoder</code>, which paints the records
+ * as they are read (<code>runOp</code>), and by reading all the records
+ * in a <code>WMFRecordStore</code> before painting them
+ * (<code>runRef</code>).
+ *
+ * @version $Id$
+ */
+public class WMFTranscoderPerformanceTest extends PerformanceTest {
+
+    static final String[] INPUTS = {
+        "samples/tests/resources/wmf/black_shapes.wmf",
+        "samples/tests/resources/wmf/imageWMF.wmf",
+        "samples/tests/resources/wmf/negApmText1.wmf",
+        "samples/tests/resources/wmf/negApmText2.wmf",
+        "samples/tests/resources/wmf/testChart.wmf",
+        "samples/tests/resources/wmf/textGreek.wmf"
+    };
+
+    /**
+     * The content of the input files, read once.
+     */
+    protected byte[][] data;
+
+    public WMFTranscoderPerformanceTest() {
+        data = new byte[INPUTS.length][];
+        try {
+            for (int i = 0; i < INPUTS.length; i++) {
+                File f = new File(INPUTS[i]);
+                data[i] = new byte[(int) f.length()];
+                DataInputStream in =
+                    new DataInputStream(new FileInputStream(f));
+                try {
+                    in.readFully(data[i]);
+                } finally {
+                    in.close();
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e.getMessage());
+        }
+    }
+
+    public void runRef() {
+        try {
+            for (byte[] d : data) {
+                WMFRecordStore store = new WMFRecordStore();
+                store.read(new DataInputStream(new ByteArrayInputStream(d)));
+                WMFPainter painter = new WMFPainter(store, 0, 0, 1.0f);
+                Document doc = SVGDOMImplementation.getDOMImplementation()
+                    .createDocument(SVGConstants.SVG_NAMESPACE_URI,
+                                    SVGConstants.SVG_SVG_TAG, null);
+                SVGGraphics2D g = new SVGGraphics2D(doc);
+                g.getGeneratorContext().setPrecision(4);
+                painter.paint(g);
+                g.stream(g.getRoot(), new StringWriter(), false, false);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e.getMessage());
+        }
+    }
+
+    public void runOp() throws TranscoderException {
+        for (byte[] d : data) {
+            InputStream in = new ByteArrayInputStream(d);
+            new WMFTranscoder().transcode(new TranscoderInput(in),
+                                          new TranscoderOutput
+                                          (new StringWriter()));
+        }
+    }
+}
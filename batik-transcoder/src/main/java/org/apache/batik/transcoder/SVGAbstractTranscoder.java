@@ -231,6 +231,26 @@ public abstract class SVGAbstractTranscoder extends XMLAbstractTranscoder {
         float docHeight = (float)ctx.getDocumentSize().getHeight();
 
         setImageSize(docWidth, docHeight);
+        setViewingTransform(gvtRoot, uri, docWidth, docHeight);
+
+        this.root = gvtRoot;
+    }
+
+    /**
+     * Sets up curTxf and curAOI for the current image size, and the
+     * viewing transform of the canvas graphics node of the tree if any.
+     *
+     * @param gvtRoot the root of the GVT tree of the document
+     * @param uri the uri of the document or null if any
+     * @param docWidth the width of the document
+     * @param docHeight the height of the document
+     */
+    protected void setViewingTransform(GraphicsNode gvtRoot,
+                                       String uri,
+                                       float docWidth,
+                                       float docHeight) {
+        SVGSVGElement root =
+            ((SVGOMDocument)ctx.getDocument()).getRootElement();
 
         // compute the preserveAspectRatio matrix
         AffineTransform Px;
@@ -284,8 +304,6 @@ public abstract class SVGAbstractTranscoder extends XMLAbstractTranscoder {
         } else {
             curTxf = Px;
         }
-
-        this.root = gvtRoot;
     }
 
     protected CanvasGraphicsNode getCanvasGraphicsNode(GraphicsNode gn) {
@@ -32,6 +32,7 @@ import org.apache.batik.ext.awt.image.GraphicsUtil;
 import org.apache.batik.gvt.renderer.ConcreteImageRendererFactory;
 import org.apache.batik.gvt.renderer.ImageRenderer;
 import org.apache.batik.gvt.renderer.ImageRendererFactory;
+import org.apache.batik.gvt.renderer.StaticRenderer;
 import org.apache.batik.transcoder.SVGAbstractTranscoder;
 import org.apache.batik.transcoder.TranscoderException;
 import org.apache.batik.transcoder.TranscoderOutput;
@@ -105,28 +106,38 @@ public abstract class ImageTranscoder extends SVGAbstractTranscoder {
         this.root = null; // We're done with it...
 
         try {
-            // now we are sure that the aoi is the image size
-            Shape raoi = new Rectangle2D.Float(0, 0, width, height);
-            // Warning: the renderer's AOI must be in user space
-            renderer.repaint(curTxf.createInverse().
-                             createTransformedShape(raoi));
-            BufferedImage rend = renderer.getOffScreen();
-            renderer = null; // We're done with it...
+            BufferedImage dest;
+            if (renderer instanceof StaticRenderer) {
+                // Paint straight into the image to write, rather than
+                // into an offscreen buffer copied into it afterwards.
+                dest = createImage(w, h);
+                Paint bgcolor = (Paint)hints.get(KEY_BACKGROUND_COLOR);
+                ((StaticRenderer)renderer).paint(dest, bgcolor);
+                renderer = null;
+            } else {
+                // now we are sure that the aoi is the image size
+                Shape raoi = new Rectangle2D.Float(0, 0, width, height);
+                // Warning: the renderer's AOI must be in user space
+                renderer.repaint(curTxf.createInverse().
+                                 createTransformedShape(raoi));
+                BufferedImage rend = renderer.getOffScreen();
+                renderer = null; // We're done with it...
 
-            BufferedImage dest = createImage(w, h);
+                dest = createImage(w, h);
 
-            Graphics2D g2d = GraphicsUtil.createGraphics(dest);
-            if (hints.containsKey(KEY_BACKGROUND_COLOR)) {
-                Paint bgcolor = (Paint)hints.get(KEY_BACKGROUND_COLOR);
-                g2d.setComposite(AlphaComposite.SrcOver);
-                g2d.setPaint(bgcolor);
-                g2d.fillRect(0, 0, w, h);
-            }
-            if (rend != null) { // might be null if the svg document is empty
-                g2d.drawRenderedImage(rend, new AffineTransform());
+                Graphics2D g2d = GraphicsUtil.createGraphics(dest);
+                if (hints.containsKey(KEY_BACKGROUND_COLOR)) {
+                    Paint bgcolor = (Paint)hints.get(KEY_BACKGROUND_COLOR);
+                    g2d.setComposite(AlphaComposite.SrcOver);
+                    g2d.setPaint(bgcolor);
+                    g2d.fillRect(0, 0, w, h);
+                }
+                if (rend != null) { // might be null if the svg document is empty
+                    g2d.drawRenderedImage(rend, new AffineTransform());
+                }
+                g2d.dispose();
+                rend = null; // We're done with it...
             }
-            g2d.dispose();
-            rend = null; // We're done with it...
             writeImage(dest, output);
         } catch (Exception ex) {
             throw new TranscoderException(ex);
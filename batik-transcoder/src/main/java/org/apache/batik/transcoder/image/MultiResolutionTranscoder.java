@@ -0,0 +1,294 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.transcoder.image;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.Paint;
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+
+import org.apache.batik.ext.awt.image.GraphicsUtil;
+import org.apache.batik.ext.awt.image.rendered.TileScheduler;
+import org.apache.batik.gvt.GraphicsNode;
+import org.apache.batik.gvt.renderer.ConcreteImageRendererFactory;
+import org.apache.batik.gvt.renderer.ImageRenderer;
+import org.apache.batik.gvt.renderer.ImageRendererFactory;
+import org.apache.batik.gvt.renderer.StaticRenderer;
+import org.apache.batik.transcoder.SVGAbstractTranscoder;
+import org.apache.batik.transcoder.TranscoderException;
+import org.apache.batik.transcoder.TranscoderInput;
+import org.apache.batik.transcoder.TranscoderOutput;
+import org.w3c.dom.Document;
+
+/**
+ * This class transcodes an input to images of several widths, building
+ * the GVT tree of the document only once.
+ *
+ * <p>The hints are the ones of <code>ImageTranscoder</code>. The size
+ * they give (by default the size of the document) is the reference:
+ * each image is this size scaled to the requested width, so all the
+ * images have the same aspect ratio. Without size hints, the image of
+ * each width is the one an <code>ImageTranscoder</code> renders with
+ * this width as <code>KEY_WIDTH</code>.
+ *
+ * <p>The images are created and written by an
+ * <code>ImageTranscoder</code> of the output format, the writer. When
+ * the images are written, they are encoded concurrently on the threads
+ * of the <code>TileScheduler</code>, since encoders do not depend on
+ * each other. The images are rendered one after the other since the
+ * GVT tree may only be painted by one thread at a time.
+ *
+ * @version $Id$
+ */
+public class MultiResolutionTranscoder extends SVGAbstractTranscoder {
+
+    /**
+     * The transcoder creating and writing the images by default.
+     */
+    protected ImageTranscoder writer;
+
+    /**
+     * The widths of the images to render.
+     */
+    protected float [] widths;
+
+    /**
+     * The transcoders writing each image, or null.
+     */
+    protected ImageTranscoder [] writers;
+
+    /**
+     * The images rendered by the last transcoding.
+     */
+    protected BufferedImage [] images;
+
+    /**
+     * Constructs a new <code>MultiResolutionTranscoder</code>.
+     * @param writer the transcoder creating and writing the images.
+     */
+    public MultiResolutionTranscoder(ImageTranscoder writer) {
+        this.writer = writer;
+    }
+
+    /**
+     * Transcodes the specified input in images of the given widths,
+     * which are returned.
+     * @param input the input to transcode
+     * @param widths the widths of the images, in pixels
+     * @exception TranscoderException if an error occured while transcoding
+     */
+    public BufferedImage [] transcode(TranscoderInput input, float [] widths)
+            throws TranscoderException {
+        this.widths = widths;
+        this.writers = null;
+        this.images = null;
+        try {
+            transcode(input, (TranscoderOutput)null);
+            return images;
+        } finally {
+            this.widths = null;
+            this.images = null;
+        }
+    }
+
+    /**
+     * Transcodes the specified input in images of the given widths
+     * and writes each of them in the output of the same index.
+     * @param input the input to transcode
+     * @param widths the widths of the images, in pixels
+     * @param outputs the outputs where to write the images
+     * @exception TranscoderException if an error occured while transcoding
+     */
+    public void transcode(TranscoderInput input,
+                          float [] widths,
+                          TranscoderOutput [] outputs)
+            throws TranscoderException {
+        transcode(input, widths, null, outputs);
+    }
+
+    /**
+     * Transcodes the specified input in images of the given widths
+     * and writes each of them in the output of the same index, with
+     * the transcoder of the same index.
+     * @param input the input to transcode
+     * @param widths the widths of the images, in pixels
+     * @param writers the transcoders creating and writing each image;
+     *        a null array or entry stands for the default writer
+     * @param outputs the outputs where to write the images
+     * @exception TranscoderException if an error occured while transcoding
+     */
+    public void transcode(TranscoderInput input,
+                          float [] widths,
+                          ImageTranscoder [] writers,
+                          final TranscoderOutput [] outputs)
+            throws TranscoderException {
+        this.widths = widths;
+        this.writers = writers;
+        this.images = null;
+        try {
+            transcode(input, (TranscoderOutput)null);
+            if (images == null)
+                return;
+
+            final TranscoderException [] errors =
+                new TranscoderException[images.length];
+            Runnable [] tasks = new Runnable[images.length];
+            for (int i = 0; i < tasks.length; i++) {
+                final int idx = i;
+                final ImageTranscoder w = getWriter(i);
+                final BufferedImage img = images[i];
+                tasks[i] = new Runnable() {
+                        public void run() {
+                            try {
+                                w.writeImage(img, outputs[idx]);
+                            } catch (TranscoderException ex) {
+                                errors[idx] = ex;
+                            }
+                        }
+                    };
+            }
+            TileScheduler.run(tasks);
+            for (int i = 0; i < errors.length; i++) {
+                if (errors[i] != null)
+                    throw errors[i];
+            }
+        } finally {
+            this.widths = null;
+            this.writers = null;
+            this.images = null;
+        }
+    }
+
+    /**
+     * Transcodes the specified Document in images of the widths given
+     * to <code>transcode</code>. When no widths were given, a single
+     * image of the reference size is written in the specified output.
+     *
+     * @param document the document to transcode
+     * @param uri the uri of the document or null if any
+     * @param output the ouput where to transcode, if no widths were given
+     * @exception TranscoderException if an error occured while transcoding
+     */
+    protected void transcode(Document document,
+                             String uri,
+                             TranscoderOutput output)
+            throws TranscoderException {
+
+        // Sets up root, curTxf & curAoi
+        super.transcode(document, uri, output);
+
+        if (widths != null) {
+            images = renderImages(widths, uri);
+        } else {
+            BufferedImage [] imgs =
+                renderImages(new float[] { width }, uri);
+            writer.writeImage(imgs[0], output);
+        }
+    }
+
+    /**
+     * Renders the tree built by <code>transcode</code> in images of
+     * the given widths.
+     *
+     * @param widths the widths of the images, in pixels
+     * @param uri the uri of the document or null if any
+     * @exception TranscoderException if an error occured while rendering
+     */
+    protected BufferedImage [] renderImages(float [] widths, String uri)
+            throws TranscoderException {
+        GraphicsNode gvtRoot = this.root;
+        this.root = null; // We're done with it...
+        float docWidth = (float)ctx.getDocumentSize().getWidth();
+        float docHeight = (float)ctx.getDocumentSize().getHeight();
+        float refWidth = width;
+        float refHeight = height;
+
+        ImageRenderer renderer = createRenderer();
+        renderer.setTree(gvtRoot);
+
+        BufferedImage [] result = new BufferedImage[widths.length];
+        try {
+            for (int i = 0; i < widths.length; i++) {
+                // Compute the size and the transform as they would be
+                // computed for a document transcoded at this width.
+                width = widths[i];
+                height = (refHeight * width) / refWidth;
+                setViewingTransform(gvtRoot, uri, docWidth, docHeight);
+
+                int w = (int)(width + 0.5);
+                int h = (int)(height + 0.5);
+                renderer.updateOffScreen(w, h);
+                renderer.setTransform(curTxf);
+
+                ImageTranscoder it = getWriter(i);
+                Paint bgcolor = (Paint)hints.get
+                    (ImageTranscoder.KEY_BACKGROUND_COLOR);
+                if (bgcolor == null)
+                    bgcolor = (Paint)it.getTranscodingHints().get
+                        (ImageTranscoder.KEY_BACKGROUND_COLOR);
+
+                BufferedImage dest = it.createImage(w, h);
+                if (renderer instanceof StaticRenderer) {
+                    ((StaticRenderer)renderer).paint(dest, bgcolor);
+                } else {
+                    Shape raoi = new Rectangle2D.Float(0, 0, width, height);
+                    // Warning: the renderer's AOI must be in user space
+                    renderer.repaint(curTxf.createInverse().
+                                     createTransformedShape(raoi));
+                    BufferedImage rend = renderer.getOffScreen();
+                    Graphics2D g2d = GraphicsUtil.createGraphics(dest);
+                    if (bgcolor != null) {
+                        g2d.setComposite(AlphaComposite.SrcOver);
+                        g2d.setPaint(bgcolor);
+                        g2d.fillRect(0, 0, w, h);
+                    }
+                    if (rend != null) { // might be null if the svg document is empty
+                        g2d.drawRenderedImage(rend, new AffineTransform());
+                    }
+                    g2d.dispose();
+                }
+                result[i] = dest;
+            }
+        } catch (Exception ex) {
+            throw new TranscoderException(ex);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the transcoder creating and writing the image of the
+     * given index.
+     */
+    protected ImageTranscoder getWriter(int i) {
+        if ((writers != null) && (writers[i] != null))
+            return writers[i];
+        return writer;
+    }
+
+    /**
+     * Method so subclasses can modify the Renderer used to render document.
+     */
+    protected ImageRenderer createRenderer() {
+        ImageRendererFactory rendFactory = new ConcreteImageRendererFactory();
+        return rendFactory.createStaticImageRenderer();
+    }
+}
@@ -0,0 +1,434 @@
+/*
+
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+
+ */
+package org.apache.batik.transcoder.image;
+
+import java.awt.Paint;
+import java.awt.Rectangle;
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.NoninvertibleTransformException;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.apache.batik.ext.awt.image.rendered.TileScheduler;
+import org.apache.batik.gvt.CompositeGraphicsNode;
+import org.apache.batik.gvt.GraphicsNode;
+import org.apache.batik.gvt.renderer.StaticRenderer;
+import org.apache.batik.transcoder.SVGAbstractTranscoder;
+import org.apache.batik.transcoder.TranscoderException;
+import org.apache.batik.transcoder.TranscoderInput;
+import org.apache.batik.transcoder.TranscoderOutput;
+import org.apache.batik.transcoder.TranscodingHints;
+import org.apache.batik.transcoder.keys.IntegerKey;
+import org.w3c.dom.Document;
+
+/**
+ * This class transcodes an input to a pyramid of square tiles, as
+ * used by slippy map viewers, building the GVT tree of the document
+ * only once.
+ *
+ * <p>At zoom level 0 the image, of the size given by the hints of
+ * <code>SVGAbstractTranscoder</code>, is scaled to fit in a single
+ * tile; each zoom level doubles its size. The tile <i>x</i>, <i>y</i>
+ * of a level covers the pixels from <i>x</i> and <i>y</i> times the
+ * tile size of the image of that level. Tiles that no node of the
+ * tree intersects are skipped.
+ *
+ * <p>The tiles are handed to a <code>TileHandler</code>, which may
+ * write them in a directory (see <code>DirectoryTileHandler</code>).
+ * Tiles are rendered one after the other since the GVT tree may only
+ * be painted by one thread at a time, but they are handled
+ * concurrently on the threads of the <code>TileScheduler</code>, while
+ * the next tiles are rendered.
+ *
+ * @version $Id$
+ */
+public class TilePyramidTranscoder extends SVGAbstractTranscoder {
+
+    /**
+     * The default size of the tiles.
+     */
+    public static final int DEFAULT_TILE_SIZE = 256;
+
+    /**
+     * The handler of the tiles of the current transcoding.
+     */
+    protected TileHandler handler;
+
+    /**
+     * Constructs a new <code>TilePyramidTranscoder</code>.
+     */
+    public TilePyramidTranscoder() {
+    }
+
+    /**
+     * Transcodes the specified input in tiles handed to the given
+     * handler.
+     * @param input the input to transcode
+     * @param handler the handler of the tiles
+     * @exception TranscoderException if an error occured while transcoding
+     */
+    public void transcode(TranscoderInput input, TileHandler handler)
+            throws TranscoderException {
+        this.handler = handler;
+        try {
+            transcode(input, (TranscoderOutput)null);
+        } finally {
+            this.handler = null;
+        }
+    }
+
+    /**
+     * Transcodes the specified Document in tiles handed to the
+     * handler given to <code>transcode</code>.
+     *
+     * @param document the document to transcode
+     * @param uri the uri of the document or null if any
+     * @param output unused
+     * @exception TranscoderException if an error occured while transcoding
+     */
+    protected void transcode(Document document,
+                             String uri,
+                             TranscoderOutput output)
+            throws TranscoderException {
+
+        // Sets up root, curTxf & curAoi
+        super.transcode(document, uri, output);
+
+        GraphicsNode gvtRoot = this.root;
+        this.root = null; // We're done with it...
+        if (handler == null)
+            return;
+
+        int tileSize = getIntegerHint(KEY_TILE_SIZE, DEFAULT_TILE_SIZE);
+        int minZoom = getIntegerHint(KEY_MIN_ZOOM, 0);
+        int maxZoom = getIntegerHint(KEY_MAX_ZOOM, minZoom);
+
+        float docWidth = (float)ctx.getDocumentSize().getWidth();
+        float docHeight = (float)ctx.getDocumentSize().getHeight();
+        float scale = tileSize / Math.max(width, height);
+        float refWidth = width * scale;
+        float refHeight = height * scale;
+
+        StaticRenderer renderer = createRenderer();
+        renderer.setTree(gvtRoot);
+        renderer.updateOffScreen(tileSize, tileSize);
+
+        for (int z = minZoom; z <= maxZoom; z++) {
+            width = refWidth * (1 << z);
+            height = refHeight * (1 << z);
+            setViewingTransform(gvtRoot, uri, docWidth, docHeight);
+            transcodeLevel(gvtRoot, renderer, z, tileSize);
+        }
+    }
+
+    /**
+     * Renders and handles the tiles of a zoom level, once the viewing
+     * transform for the level is set up.
+     */
+    protected void transcodeLevel(GraphicsNode gvtRoot,
+                                  final StaticRenderer renderer,
+                                  final int zoom,
+                                  final int tileSize)
+            throws TranscoderException {
+        int nx = (int)Math.ceil(width / tileSize);
+        int ny = (int)Math.ceil(height / tileSize);
+
+        // Find the tiles to render before handing out any work.
+        AffineTransform inv;
+        try {
+            inv = curTxf.createInverse();
+        } catch (NoninvertibleTransformException ex) {
+            return;
+        }
+        List tiles = new LinkedList();
+        for (int y = 0; y < ny; y++) {
+            for (int x = 0; x < nx; x++) {
+                Rectangle r = new Rectangle(x * tileSize, y * tileSize,
+                                            tileSize, tileSize);
+                if (intersects(gvtRoot, inv.createTransformedShape(r)))
+                    tiles.add(r);
+            }
+        }
+
+        final Paint bgcolor =
+            (Paint)hints.get(ImageTranscoder.KEY_BACKGROUND_COLOR);
+        final TranscoderException [] error = new TranscoderException[1];
+        Runnable [] tasks = new Runnable[tiles.size()];
+        Iterator it = tiles.iterator();
+        for (int i = 0; i < tasks.length; i++) {
+            final Rectangle r = (Rectangle)it.next();
+            tasks[i] = new Runnable() {
+                    public void run() {
+                        final BufferedImage [] tile = new BufferedImage[1];
+                        TileScheduler.runConfined(new Runnable() {
+                                public void run() {
+                                    renderer.setTransform
+                                        (getTileTransform(r));
+                                    tile[0] = createImage(tileSize,
+                                                          tileSize);
+                                    renderer.paint(tile[0], bgcolor);
+                                }
+                            });
+                        try {
+                            handler.handleTile(zoom, r.x / tileSize,
+                                               r.y / tileSize, tile[0]);
+                        } catch (TranscoderException ex) {
+                            synchronized (error) {
+                                if (error[0] == null)
+                                    error[0] = ex;
+                            }
+                        }
+                    }
+                };
+        }
+        TileScheduler.run(tasks);
+        if (error[0] != null)
+            throw error[0];
+    }
+
+    /**
+     * Returns the transform from the user space of the tree to the
+     * tile covering the given area of the image of the current level.
+     */
+    protected AffineTransform getTileTransform(Rectangle r) {
+        AffineTransform txf =
+            AffineTransform.getTranslateInstance(-r.x, -r.y);
+        txf.concatenate(curTxf);
+        return txf;
+    }
+
+    /**
+     * Returns true if the given node may paint in the given area, in
+     * the coordinate system of its parent. Only the bounds of the
+     * nodes, which are cached, are used.
+     */
+    protected static boolean intersects(GraphicsNode gn, Shape aoi) {
+        AffineTransform at = gn.getTransform();
+        if (at != null) {
+            try {
+                aoi = at.createInverse().createTransformedShape(aoi);
+            } catch (NoninvertibleTransformException ex) {
+                return false;
+            }
+        }
+        Rectangle2D b = gn.getBounds();
+        if ((b == null) || !aoi.intersects(b))
+            return false;
+
+        // A filter may paint outside of the children.
+        if (!(gn instanceof CompositeGraphicsNode) ||
+            (gn.getFilter() != null))
+            return true;
+
+        Iterator i = ((CompositeGraphicsNode)gn).getChildren().iterator();
+        while (i.hasNext()) {
+            if (intersects((GraphicsNode)i.next(), aoi))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the value of the given integer hint, or the default
+     * value if it is not set.
+     */
+    protected int getIntegerHint(TranscodingHints.Key key, int def) {
+        Integer i = (Integer)hints.get(key);
+        return (i == null) ? def : i.intValue();
+    }
+
+    /**
+     * Creates a new image for a tile. Subclasses may override this
+     * method for image formats without alpha channel.
+     * @param width the image width in pixels
+     * @param height the image height in pixels
+     */
+    public BufferedImage createImage(int width, int height) {
+        return new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+    }
+
+    /**
+     * Method so subclasses can modify the Renderer used to render document.
+     */
+    protected StaticRenderer createRenderer() {
+        return new StaticRenderer();
+    }
+
+    /**
+     * The interface of the objects tiles are handed to. Tiles may be
+     * handed concurrently.
+     */
+    public interface TileHandler {
+
+        /**
+         * Handles the tile <code>x</code>, <code>y</code> of the given
+         * zoom level.
+         * @param zoom the zoom level of the tile
+         * @param x the column of the tile
+         * @param y the row of the tile
+         * @param tile the image of the tile
+         * @throws TranscoderException if the tile could not be handled
+         */
+        void handleTile(int zoom, int x, int y, BufferedImage tile)
+            throws TranscoderException;
+    }
+
+    /**
+     * A <code>TileHandler</code> writing each tile in the file
+     * <i>zoom</i>/<i>x</i>/<i>y</i>.<i>suffix</i> of a directory, with
+     * an <code>ImageTranscoder</code> of the format of the tiles.
+     */
+    public static class DirectoryTileHandler implements TileHandler {
+
+        protected File directory;
+        protected ImageTranscoder writer;
+        protected String suffix;
+
+        /**
+         * @param directory the directory where to write the tiles
+         * @param writer the transcoder writing the tiles
+         * @param suffix the suffix of the names of the files, such
+         *        as <code>png</code>
+         */
+        public DirectoryTileHandler(File directory,
+                                    ImageTranscoder writer,
+                                    String suffix) {
+            this.directory = directory;
+            this.writer = writer;
+            this.suffix = suffix;
+        }
+
+        public void handleTile(int zoom, int x, int y, BufferedImage tile)
+                throws TranscoderException {
+            File dir = new File(directory, zoom + File.separator + x);
+            if (!dir.mkdirs() && !dir.isDirectory()) {
+                throw new TranscoderException
+                    ("Cannot create the directory " + dir);
+            }
+            File f = new File(dir, y + "." + suffix);
+            try {
+                OutputStream ostream = new FileOutputStream(f);
+                try {
+                    writer.writeImage(tile, new TranscoderOutput(ostream));
+                } finally {
+                    ostream.close();
+                }
+            } catch (IOException ex) {
+                throw new TranscoderException(ex);
+            }
+        }
+    }
+
+    // --------------------------------------------------------------------
+    // Keys definition
+    // --------------------------------------------------------------------
+
+    /**
+     * The tile size key.
+     * <table summary="" border="0" cellspacing="0" cellpadding="1">
+     *   <tr>
+     *     <th valign="top" align="right">Key:</th>
+     *     <td valign="top">KEY_TILE_SIZE</td>
+     *   </tr>
+     *   <tr>
+     *     <th valign="top" align="right">Value:</th>
+     *     <td valign="top">Integer</td>
+     *   </tr>
+     *   <tr>
+     *     <th valign="top" align="right">Default:</th>
+     *     <td valign="top">256</td>
+     *   </tr>
+     *   <tr>
+     *     <th valign="top" align="right">Required:</th>
+     *     <td valign="top">No</td>
+     *   </tr>
+     *   <tr>
+     *     <th valign="top" align="right">Description:</th>
+     *     <td valign="top">Specify the width and height of the tiles, in
+     *       pixels.</td>
+     *   </tr>
+     * </table>
+     */
+    public static final TranscodingHints.Key KEY_TILE_SIZE
+        = new IntegerKey();
+
+    /**
+     * The minimum zoom level key.
+     * <table summary="" border="0" cellspacing="0" cellpadding="1">
+     *   <tr>
+     *     <th valign="top" align="right">Key:</th>
+     *     <td valign="top">KEY_MIN_ZOOM</td>
+     *   </tr>
+     *   <tr>
+     *     <th valign="top" align="right">Value:</th>
+     *     <td valign="top">Integer</td>
+     *   </tr>
+     *   <tr>
+     *     <th valign="top" align="right">Default:</th>
+     *     <td valign="top">0</td>
+     *   </tr>
+     *   <tr>
+     *     <th valign="top" align="right">Required:</th>
+     *     <td valign="top">No</td>
+     *   </tr>
+     *   <tr>
+     *     <th valign="top" align="right">Description:</th>
+     *     <td valign="top">Specify the first zoom level to render.</td>
+     *   </tr>
+     * </table>
+     */
+    public static final TranscodingHints.Key KEY_MIN_ZOOM
+        = new IntegerKey();
+
+    /**
+     * The maximum zoom level key.
+     * <table summary="" border="0" cellspacing="0" cellpadding="1">
+     *   <tr>
+     *     <th valign="top" align="right">Key:</th>
+     *     <td valign="top">KEY_MAX_ZOOM</td>
+     *   </tr>
+     *   <tr>
+     *     <th valign="top" align="right">Value:</th>
+     *     <td valign="top">Integer</td>
+     *   </tr>
+     *   <tr>
+     *     <th valign="top" align="right">Default:</th>
+     *     <td valign="top">The minimum zoom level</td>
+     *   </tr>
+     *   <tr>
+     *     <th valign="top" align="right">Required:</th>
+     *     <td valign="top">No</td>
+     *   </tr>
+     *   <tr>
+     *     <th valign="top" align="right">Description:</th>
+     *     <td valign="top">Specify the last zoom level to render.</td>
+     *   </tr>
+     * </table>
+     */
+    public static final TranscodingHints.Key KEY_MAX_ZOOM
+        = new IntegerKey();
+}
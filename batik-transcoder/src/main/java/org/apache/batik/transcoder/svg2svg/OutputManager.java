@@ -87,6 +87,21 @@ public class OutputManager {
      */
     protected boolean lineAttributes = false;
 
+    /**
+     * The length of the name of the element being started.
+     */
+    protected int elementNameLength;
+
+    /**
+     * The number of attributes printed in the current start tag.
+     */
+    protected int attributeCount;
+
+    /**
+     * The buffer used to print the margin.
+     */
+    protected char[] marginBuffer = new char[64];
+
     /**
      * Creates a new output manager.
      * @param pp The PrettyPrinter used for formatting the output.
@@ -134,9 +149,40 @@ public class OutputManager {
      * Prints a char array.
      */
     public void printCharacters(char[] ca) throws IOException {
-        for (char aCa : ca) {
-            printCharacter(aCa);
+        printCharacters(ca, 0, ca.length);
+    }
+
+    /**
+     * Prints a portion of a char array.  The characters between two
+     * newlines are written to the writer in a single call.
+     */
+    public void printCharacters(char[] ca, int off, int len)
+        throws IOException {
+        int end = off + len;
+        int s = off;
+        for (int i = off; i < end; i++) {
+            if (ca[i] == 10) {
+                writer.write(ca, s, i - s);
+                printNewline();
+                s = i + 1;
+            }
+        }
+        writer.write(ca, s, end - s);
+        column += end - s;
+    }
+
+    /**
+     * Prints the given margin.
+     */
+    protected void printMargin(CharSequence m) throws IOException {
+        int len = m.length();
+        if (marginBuffer.length < len) {
+            marginBuffer = new char[len * 2];
         }
+        for (int i = 0; i < len; i++) {
+            marginBuffer[i] = m.charAt(i);
+        }
+        printCharacters(marginBuffer, 0, len);
     }
 
     /**
@@ -145,12 +191,24 @@ public class OutputManager {
      * @param opt whether the space is optional.
      */
     public void printSpaces(char[] text, boolean opt) throws IOException {
+        printSpaces(text, 0, text.length, opt);
+    }
+
+    /**
+     * Prints white spaces.
+     * @param text The buffer containing the space text.
+     * @param off The offset of the space text in the buffer.
+     * @param len The length of the space text.
+     * @param opt whether the space is optional.
+     */
+    public void printSpaces(char[] text, int off, int len, boolean opt)
+        throws IOException {
         if (prettyPrinter.getFormat()) {
             if (!opt) {
                 printCharacter(' ');
             }
         } else {
-            printCharacters(text);
+            printCharacters(text, off, len);
         }
     }
 
@@ -159,13 +217,24 @@ public class OutputManager {
      * @param text The space text.
      */
     public void printTopSpaces(char[] text) throws IOException {
+        printTopSpaces(text, 0, text.length);
+    }
+
+    /**
+     * Prints top level white spaces.
+     * @param text The buffer containing the space text.
+     * @param off The offset of the space text in the buffer.
+     * @param len The length of the space text.
+     */
+    public void printTopSpaces(char[] text, int off, int len)
+        throws IOException {
         if (prettyPrinter.getFormat()) {
-            int nl = newlines(text);
+            int nl = newlines(text, off, len);
             for (int i = 0; i < nl; i++) {
                 printNewline();
             }
         } else {
-            printCharacters(text);
+            printCharacters(text, off, len);
         }
     }
 
@@ -174,26 +243,37 @@ public class OutputManager {
      * @param text The comment text.
      */
     public void printComment(char[] text) throws IOException {
+        printComment(text, 0, text.length);
+    }
+
+    /**
+     * Prints a comment.
+     * @param text The buffer containing the comment text.
+     * @param off The offset of the comment text in the buffer.
+     * @param len The length of the comment text.
+     */
+    public void printComment(char[] text, int off, int len)
+        throws IOException {
         if (prettyPrinter.getFormat()) {
             if (canIndent) {
                 printNewline();
-                printString(margin.toString());
+                printMargin(margin);
             }
             printString("<!--");
-            if (column + text.length + 3 < prettyPrinter.getDocumentWidth()) {
-                printCharacters(text);
+            if (column + len + 3 < prettyPrinter.getDocumentWidth()) {
+                printCharacters(text, off, len);
             } else {
-                formatText(text, margin.toString(), false);
+                formatText(text, off, len, margin, false);
                 printCharacter(' ');
             }
             if (column + 3 > prettyPrinter.getDocumentWidth()) {
                 printNewline();
-                printString(margin.toString());
+                printMargin(margin);
             }
             printString("-->");
         } else {
             printString("<!--");
-            printCharacters(text);
+            printCharacters(text, off, len);
             printString("-->");
         }
     }
@@ -293,7 +373,7 @@ public class OutputManager {
         if (prettyPrinter.getFormat()) {
             if (canIndent) {
                 printNewline();
-                printString(margin.toString());
+                printMargin(margin);
             }
         }
         printString("<?");
@@ -406,14 +486,26 @@ public class OutputManager {
      */
     public void printEntityReference(char[] name, 
                                      boolean first) throws IOException {
+        printEntityReference(name, 0, name.length, first);
+    }
+
+    /**
+     * Prints an entity reference.
+     * @param name The buffer containing the entity name.
+     * @param off The offset of the name in the buffer.
+     * @param len The length of the name.
+     * @param first Whether the reference starts the element content.
+     */
+    public void printEntityReference(char[] name, int off, int len,
+                                     boolean first) throws IOException {
         if ((prettyPrinter.getFormat()) &&
             (xmlSpace.get(0) != Boolean.TRUE) &&
             first) {
             printNewline();
-            printString(margin.toString());
+            printMargin(margin);
         }
         printCharacter('&');
-        printCharacters(name);
+        printCharacters(name, off, len);
         printCharacter(';');
     }
 
@@ -423,24 +515,40 @@ public class OutputManager {
     public void printCharacterEntityReference
         (char[] code, boolean first, boolean preceedingSpace) 
         throws IOException {
+        printCharacterEntityReference(code, 0, code.length,
+                                      first, preceedingSpace);
+    }
+
+    /**
+     * Prints a character entity reference.
+     * @param code The buffer containing the character code.
+     * @param off The offset of the code in the buffer.
+     * @param len The length of the code.
+     * @param first Whether the reference starts the element content.
+     * @param preceedingSpace Whether the reference follows white spaces.
+     */
+    public void printCharacterEntityReference
+        (char[] code, int off, int len,
+         boolean first, boolean preceedingSpace) 
+        throws IOException {
         if ((prettyPrinter.getFormat()) &&
             (xmlSpace.get(0) != Boolean.TRUE)) {
 
             if (first) {
                 printNewline();
-                printString(margin.toString());
+                printMargin(margin);
             } else if (preceedingSpace) {
-                int endCol = column + code.length + 3;
+                int endCol = column + len + 3;
                 if (endCol > prettyPrinter.getDocumentWidth()){
                     printNewline();
-                    printString(margin.toString());
+                    printMargin(margin);
                 } else {
                     printCharacter(' ');
                 }
             }
         }
         printString("&#");
-        printCharacters(code);
+        printCharacters(code, off, len);
         printCharacter(';');
     }
 
@@ -449,73 +557,22 @@ public class OutputManager {
      */
     public void printElementStart(char[] name, List attributes, char[] space)
         throws IOException {
-        xmlSpace.add(0, xmlSpace.get(0));
-
-        startingLines.add(0, line);
+        printElementStart(name, 0, name.length);
 
-        if (prettyPrinter.getFormat()) {
-            if (canIndent) {
-                printNewline();
-                printString(margin.toString());
-            }
-        }
-        printCharacter('<');
-        printCharacters(name);
+        for (Object attribute : attributes) {
+            AttributeInfo ai = (AttributeInfo) attribute;
 
-        if (prettyPrinter.getFormat()) {
-            Iterator it = attributes.iterator();
-            if (it.hasNext()) {
-                AttributeInfo ai = (AttributeInfo)it.next();
-
-                if (ai.isAttribute("xml:space")) {
-                    xmlSpace.set(0, (ai.value.equals("preserve")
-                                     ? Boolean.TRUE
-                                     : Boolean.FALSE));
-                }
-                
-                printCharacter(' ');
-                printCharacters(ai.name);
-                printCharacter('=');
-                printCharacter(ai.delimiter);
-                printString(ai.value);
-                printCharacter(ai.delimiter);
+            if (ai.isAttribute("xml:space")) {
+                xmlSpace.set(0, (ai.value.equals("preserve")
+                                 ? Boolean.TRUE
+                                 : Boolean.FALSE));
             }
-            while (it.hasNext()) {
-                AttributeInfo ai = (AttributeInfo)it.next();
 
-                if (ai.isAttribute("xml:space")) {
-                    xmlSpace.set(0, (ai.value.equals("preserve")
-                                     ? Boolean.TRUE
-                                     : Boolean.FALSE));
-                }
-                
-                int len = ai.name.length + ai.value.length() + 4;
-                if (lineAttributes ||
-                    len + column > prettyPrinter.getDocumentWidth()) {
-                    printNewline();
-                    printString(margin.toString());
-                    for (int i = 0; i < name.length + 2; i++) {
-                        printCharacter(' ');
-                    }
-                } else {
-                    printCharacter(' ');
-                }
+            if (prettyPrinter.getFormat()) {
+                printAttributeSeparator(ai.name.length + ai.value.length() + 4);
                 printCharacters(ai.name);
                 printCharacter('=');
-                printCharacter(ai.delimiter);
-                printString(ai.value);
-                printCharacter(ai.delimiter);
-            }
-        } else {
-            for (Object attribute : attributes) {
-                AttributeInfo ai = (AttributeInfo) attribute;
-
-                if (ai.isAttribute("xml:space")) {
-                    xmlSpace.set(0, (ai.value.equals("preserve")
-                            ? Boolean.TRUE
-                            : Boolean.FALSE));
-                }
-
+            } else {
                 printSpaces(ai.space, false);
                 printCharacters(ai.name);
 
@@ -526,16 +583,103 @@ public class OutputManager {
                 if (ai.space2 != null) {
                     printSpaces(ai.space2, true);
                 }
-
-                printCharacter(ai.delimiter);
-                printString(ai.value);
-                printCharacter(ai.delimiter);
             }
+            printCharacter(ai.delimiter);
+            printString(ai.value);
+            printCharacter(ai.delimiter);
         }
 
         if (space != null) {
             printSpaces(space, true);
         }
+        printAttributesEnd();
+    }
+
+    /**
+     * Prints the start of an element, up to its name.  The attributes
+     * must then be printed with {@link #printAttribute}, and the start
+     * tag completed with {@link #printAttributesEnd}.
+     * @param name The buffer containing the element name.
+     * @param off The offset of the name in the buffer.
+     * @param len The length of the name.
+     */
+    public void printElementStart(char[] name, int off, int len)
+        throws IOException {
+        xmlSpace.add(0, xmlSpace.get(0));
+
+        startingLines.add(0, line);
+
+        if (prettyPrinter.getFormat()) {
+            if (canIndent) {
+                printNewline();
+                printMargin(margin);
+            }
+        }
+        printCharacter('<');
+        printCharacters(name, off, len);
+
+        elementNameLength = len;
+        attributeCount = 0;
+    }
+
+    /**
+     * Prints an attribute of the element being started.  In the buffer,
+     * the attribute name must be followed by the '=' sign, the quoted
+     * value and the closing delimiter, as they were scanned.
+     * @param text The buffer containing the attribute.
+     * @param nameOff The offset of the attribute name in the buffer.
+     * @param nameLen The length of the attribute name.
+     * @param valueOff The offset of the attribute value in the buffer.
+     * @param valueLen The length of the attribute value.
+     */
+    public void printAttribute(char[] text,
+                               int nameOff, int nameLen,
+                               int valueOff, int valueLen)
+        throws IOException {
+        if (regionMatches(text, nameOff, nameLen, "xml:space")) {
+            xmlSpace.set(0, (regionMatches(text, valueOff, valueLen,
+                                           "preserve")
+                             ? Boolean.TRUE
+                             : Boolean.FALSE));
+        }
+
+        if (prettyPrinter.getFormat()) {
+            char delimiter = text[valueOff - 1];
+            printAttributeSeparator(nameLen + valueLen + 4);
+            printCharacters(text, nameOff, nameLen);
+            printCharacter('=');
+            printCharacter(delimiter);
+            printCharacters(text, valueOff, valueLen);
+            printCharacter(delimiter);
+        } else {
+            printCharacters(text, nameOff, valueOff + valueLen + 1 - nameOff);
+        }
+    }
+
+    /**
+     * Prints what separates an attribute from the previous token of
+     * a formatted start tag.
+     * @param len The length of the attribute, including the '=' sign
+     *            and the delimiters.
+     */
+    protected void printAttributeSeparator(int len) throws IOException {
+        if (attributeCount++ > 0 &&
+            (lineAttributes ||
+             len + column > prettyPrinter.getDocumentWidth())) {
+            printNewline();
+            printMargin(margin);
+            for (int i = 0; i < elementNameLength + 2; i++) {
+                printCharacter(' ');
+            }
+        } else {
+            printCharacter(' ');
+        }
+    }
+
+    /**
+     * Ends the attribute list of the element being started.
+     */
+    public void printAttributesEnd() throws IOException {
         level++;
         for (int i = 0; i < prettyPrinter.getTabulationWidth(); i++) {
             margin.append(' ');
@@ -547,28 +691,46 @@ public class OutputManager {
      * Prints the end of an element.
      */
     public void printElementEnd(char[] name, char[] space) throws IOException {
-        for (int i = 0; i < prettyPrinter.getTabulationWidth(); i++) {
-            margin.deleteCharAt(0);
-        }
-        level--;
         if (name != null) {
-            if (prettyPrinter.getFormat()) {
-                if (xmlSpace.get(0) != Boolean.TRUE &&
-                    (line != (Integer) startingLines.get(0) ||
-                     column + name.length + 3 >= prettyPrinter.getDocumentWidth())) {
-                    printNewline();
-                    printString(margin.toString());
-                }
-            }
-            printString("</");
-            printCharacters(name);
+            printElementEnd(name, 0, name.length);
             if (space != null) {
                 printSpaces(space, true);
             }
             printCharacter('>');
         } else {
+            for (int i = 0; i < prettyPrinter.getTabulationWidth(); i++) {
+                margin.deleteCharAt(0);
+            }
+            level--;
             printString("/>");
+            startingLines.remove(0);
+            xmlSpace.remove(0);
+        }
+    }
+
+    /**
+     * Prints the end tag of an element, up to its name.  The spaces
+     * and the '>' character must be printed next.
+     * @param name The buffer containing the element name.
+     * @param off The offset of the name in the buffer.
+     * @param len The length of the name.
+     */
+    public void printElementEnd(char[] name, int off, int len)
+        throws IOException {
+        for (int i = 0; i < prettyPrinter.getTabulationWidth(); i++) {
+            margin.deleteCharAt(0);
         }
+        level--;
+        if (prettyPrinter.getFormat()) {
+            if (xmlSpace.get(0) != Boolean.TRUE &&
+                (line != (Integer) startingLines.get(0) ||
+                 column + len + 3 >= prettyPrinter.getDocumentWidth())) {
+                printNewline();
+                printMargin(margin);
+            }
+        }
+        printString("</");
+        printCharacters(name, off, len);
         startingLines.remove(0);
         xmlSpace.remove(0);
     }
@@ -580,14 +742,31 @@ public class OutputManager {
                                       boolean first,
                                       boolean preceedingSpace) 
         throws IOException {
+        return printCharacterData(data, 0, data.length,
+                                  first, preceedingSpace);
+    }
+
+    /**
+     * Prints the character data of an element content.
+     * @param data The buffer containing the character data.
+     * @param off The offset of the character data in the buffer.
+     * @param len The length of the character data.
+     * @param first Whether the data starts the element content.
+     * @param preceedingSpace Whether the data follows white spaces.
+     * @return Whether the data ends with white spaces.
+     */
+    public boolean printCharacterData(char[] data, int off, int len,
+                                      boolean first,
+                                      boolean preceedingSpace) 
+        throws IOException {
         if (!prettyPrinter.getFormat()) {
-            printCharacters(data);
+            printCharacters(data, off, len);
             return false;
         }
 
         canIndent = true;
-        if (isWhiteSpace(data)) {
-            int nl = newlines(data);
+        if (isWhiteSpace(data, off, len)) {
+            int nl = newlines(data, off, len);
             for (int i = 0; i < nl - 1; i++) {
                 printNewline();
             }
@@ -595,24 +774,35 @@ public class OutputManager {
         }
 
         if (xmlSpace.get(0) == Boolean.TRUE) {
-            printCharacters(data);
+            printCharacters(data, off, len);
             canIndent = false;
             return false;
         }
 
         if (first) {
             printNewline();
-            printString(margin.toString());
+            printMargin(margin);
         }
-        return formatText(data, margin.toString(), preceedingSpace);
+        return formatText(data, off, len, margin, preceedingSpace);
     }
 
     /**
      * Prints a CDATA section.
      */
     public void printCDATASection(char[] data) throws IOException {
+        printCDATASection(data, 0, data.length);
+    }
+
+    /**
+     * Prints a CDATA section.
+     * @param data The buffer containing the section content.
+     * @param off The offset of the content in the buffer.
+     * @param len The length of the content.
+     */
+    public void printCDATASection(char[] data, int off, int len)
+        throws IOException {
         printString("<![CDATA[");
-        printCharacters(data);
+        printCharacters(data, off, len);
         printString("]]>");
     }
 
@@ -723,9 +913,16 @@ public class OutputManager {
      * Returns the number of newlines in the given char array.
      */
     protected int newlines(char[] text) {
+        return newlines(text, 0, text.length);
+    }
+
+    /**
+     * Returns the number of newlines in the given portion of a char array.
+     */
+    protected int newlines(char[] text, int off, int len) {
         int result = 0;
-        for (char aText : text) {
-            if (aText == 10) {
+        for (int i = off; i < off + len; i++) {
+            if (text[i] == 10) {
                 result++;
             }
         }
@@ -736,8 +933,33 @@ public class OutputManager {
      * Tells whether the given character represents white spaces.
      */
     protected boolean isWhiteSpace(char[] text) {
-        for (char aText : text) {
-            if (!XMLUtilities.isXMLSpace(aText)) {
+        return isWhiteSpace(text, 0, text.length);
+    }
+
+    /**
+     * Tells whether the given portion of a char array represents white
+     * spaces.
+     */
+    protected boolean isWhiteSpace(char[] text, int off, int len) {
+        for (int i = off; i < off + len; i++) {
+            if (!XMLUtilities.isXMLSpace(text[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Tells whether the given portion of a char array equals the given
+     * string.
+     */
+    protected static boolean regionMatches(char[] text, int off, int len,
+                                           String s) {
+        if (len != s.length()) {
+            return false;
+        }
+        for (int i = 0; i < len; i++) {
+            if (text[off + i] != s.charAt(i)) {
                 return false;
             }
         }
@@ -749,11 +971,22 @@ public class OutputManager {
      */
     protected boolean formatText(char[] text, String margin,
                                  boolean preceedingSpace) throws IOException {
-        int i = 0;
+        return formatText(text, 0, text.length, margin, preceedingSpace);
+    }
+
+    /**
+     * Formats the given portion of a char array.  The words are printed
+     * directly from the array.
+     */
+    protected boolean formatText(char[] text, int off, int len,
+                                 CharSequence margin,
+                                 boolean preceedingSpace) throws IOException {
+        int end = off + len;
+        int i = off;
         boolean startsWithSpace = preceedingSpace;
-        loop: while (i < text.length) {
+        loop: while (i < end) {
             for (;;) {
-                if (i >= text.length) {
+                if (i >= end) {
                     break loop;
                 }
                 if (!XMLUtilities.isXMLSpace(text[i])) {
@@ -762,31 +995,29 @@ public class OutputManager {
                 startsWithSpace = true;
                 i++;
             }
-            StringBuffer sb = new StringBuffer();
-            for (;;) {
-                if (i >= text.length || XMLUtilities.isXMLSpace(text[i])) {
-                    break;
-                }
-                sb.append(text[i++]);
+            int wordStart = i;
+            while (i < end && !XMLUtilities.isXMLSpace(text[i])) {
+                i++;
             }
-            if (sb.length() == 0) {
+            int wordLength = i - wordStart;
+            if (wordLength == 0) {
                 return startsWithSpace;
             }
             if (startsWithSpace) {
                 // Consider reformatting ws so things look nicer.
-                int endCol = column + sb.length();
+                int endCol = column + wordLength;
                 if ((endCol >= prettyPrinter.getDocumentWidth() - 1) &&
-                    ((margin.length() + sb.length() <
+                    ((margin.length() + wordLength <
                       prettyPrinter.getDocumentWidth() - 1) ||
                      (margin.length() < column))) {
                     printNewline();
-                    printString(margin);
+                    printMargin(margin);
                 } else if (column > margin.length()) {
                     // Don't print space at start of new line.
                     printCharacter(' ');
                 }
             }
-            printString(sb.toString());
+            printCharacters(text, wordStart, wordLength);
             startsWithSpace = false;
         }
         return startsWithSpace;
@@ -19,6 +19,7 @@
 package org.apache.batik.transcoder.svg2svg;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.Reader;
 import java.io.Writer;
 import java.util.LinkedList;
@@ -30,6 +31,7 @@ import org.apache.batik.util.SVGConstants;
 import org.apache.batik.xml.LexicalUnits;
 import org.apache.batik.xml.XMLException;
 import org.apache.batik.xml.XMLScanner;
+import org.apache.batik.xml.XMLUtilities;
 
 /**
  * This class represents an SVG source files pretty-printer.
@@ -193,8 +195,21 @@ public class PrettyPrinter {
         return documentWidth;
     }
 
+    /**
+     * Prints an SVG document from the given input stream to the given
+     * writer.  The encoding of the stream is determined from its first
+     * bytes, like a XML parser would.
+     */
+    public void print(InputStream is, Writer w) throws TranscoderException,
+                                                      IOException {
+        print(XMLUtilities.createXMLDocumentReader(is), w);
+    }
+
     /**
      * Prints an SVG document from the given reader to the given writer.
+     * The output is produced as the document is scanned: only the
+     * current token and the state of the open elements are kept in
+     * memory.
      */
     public void print(Reader r, Writer w) throws TranscoderException,
                                                  IOException {
@@ -209,12 +224,16 @@ public class PrettyPrinter {
             misc1: for (;;) {
                 switch (type) {
                 case LexicalUnits.S:
-                    output.printTopSpaces(getCurrentValue());
+                    output.printTopSpaces(scanner.getBuffer(),
+                                          getCurrentValueOffset(),
+                                          getCurrentValueLength());
                     scanner.clearBuffer();
                     type = scanner.next();
                     break;
                 case LexicalUnits.COMMENT:
-                    output.printComment(getCurrentValue());
+                    output.printComment(scanner.getBuffer(),
+                                        getCurrentValueOffset(),
+                                        getCurrentValueLength());
                     scanner.clearBuffer();
                     type = scanner.next();
                     break;
@@ -232,12 +251,16 @@ public class PrettyPrinter {
                 scanner.clearBuffer();
                 switch (type) {
                 case LexicalUnits.S:
-                    output.printTopSpaces(getCurrentValue());
+                    output.printTopSpaces(scanner.getBuffer(),
+                                          getCurrentValueOffset(),
+                                          getCurrentValueLength());
                     scanner.clearBuffer();
                     type = scanner.next();
                     break;
                 case LexicalUnits.COMMENT:
-                    output.printComment(getCurrentValue());
+                    output.printComment(scanner.getBuffer(),
+                                        getCurrentValueOffset(),
+                                        getCurrentValueLength());
                     scanner.clearBuffer();
                     type = scanner.next();
                     break;
@@ -258,12 +281,16 @@ public class PrettyPrinter {
             misc3: for (;;) {
                 switch (type) {
                 case LexicalUnits.S:
-                    output.printTopSpaces(getCurrentValue());
+                    output.printTopSpaces(scanner.getBuffer(),
+                                          getCurrentValueOffset(),
+                                          getCurrentValueLength());
                     scanner.clearBuffer();
                     type = scanner.next();
                     break;
                 case LexicalUnits.COMMENT:
-                    output.printComment(getCurrentValue());
+                    output.printComment(scanner.getBuffer(),
+                                        getCurrentValueOffset(),
+                                        getCurrentValueLength());
                     scanner.clearBuffer();
                     type = scanner.next();
                     break;
@@ -662,7 +689,9 @@ public class PrettyPrinter {
                             type = scanner.next();
                             break;
                         case LexicalUnits.COMMENT:
-                            output.printComment(getCurrentValue());
+                            output.printComment(scanner.getBuffer(),
+                                                getCurrentValueOffset(),
+                                                getCurrentValueLength());
                             scanner.clearBuffer();
                             type = scanner.next();
                             break;
@@ -823,29 +852,37 @@ public class PrettyPrinter {
     }
 
     /**
-     * Prints an element.
+     * Prints an element.  The start tag is printed as its attributes
+     * are scanned, so that no attribute list has to be built.
      */
     protected String printElement()
         throws TranscoderException,
                XMLException,
                IOException {
-        char[] name = getCurrentValue();
-        String nameStr = new String(name);
-        List attributes = new LinkedList();
-        char[] space = null;
+        int off = getCurrentValueOffset();
+        int len = getCurrentValueLength();
+        String nameStr = new String(scanner.getBuffer(), off, len);
+        output.printElementStart(scanner.getBuffer(), off, len);
+        scanner.clearBuffer();
 
         type = scanner.next();
         while (type == LexicalUnits.S) {
-            space = getCurrentValue();
+            output.printSpaces(scanner.getBuffer(),
+                               getCurrentValueOffset(),
+                               getCurrentValueLength(),
+                               true);
+            scanner.clearBuffer();
 
             type = scanner.next();
             if (type == LexicalUnits.NAME) {
-                char[] attName = getCurrentValue();
-                char[] space1 = null;
+                // The buffer is not cleared until the whole attribute
+                // has been printed: it is kept contiguous, from the
+                // name to the closing delimiter.
+                int nameOff = getCurrentValueOffset();
+                int nameLen = getCurrentValueLength();
 
                 type = scanner.next();
                 if (type == LexicalUnits.S) {
-                    space1 = getCurrentValue();
                     type = scanner.next();
                 }
                 if (type != LexicalUnits.EQ) {
@@ -853,9 +890,7 @@ public class PrettyPrinter {
                 }
                 type = scanner.next();
 
-                char[] space2 = null;
                 if (type == LexicalUnits.S) {
-                    space2 = getCurrentValue();
                     type = scanner.next();
                 }
                 if (type != LexicalUnits.STRING &&
@@ -863,48 +898,30 @@ public class PrettyPrinter {
                     throw fatalError("string", null);
                 }
 
-                char valueDelim = scanner.getStringDelimiter();
-                boolean hasEntityRef = false;
-
-                StringBuffer sb = new StringBuffer();
-                sb.append(getCurrentValue());
+                int valueOff = getCurrentValueOffset();
+                int valueEnd;
                 loop: for (;;) {
-                    scanner.clearBuffer();
+                    valueEnd = scanner.getEnd() + scanner.getEndOffset();
                     type = scanner.next();
                     switch (type) {
                     case LexicalUnits.STRING:
                     case LexicalUnits.FIRST_ATTRIBUTE_FRAGMENT:
                     case LexicalUnits.LAST_ATTRIBUTE_FRAGMENT:
                     case LexicalUnits.ATTRIBUTE_FRAGMENT:
-                        sb.append(getCurrentValue());
-                        break;
                     case LexicalUnits.CHARACTER_REFERENCE:
-                        hasEntityRef = true;
-                        sb.append("&#");
-                        sb.append(getCurrentValue());
-                        sb.append(";");
-                        break;
                     case LexicalUnits.ENTITY_REFERENCE:
-                        hasEntityRef = true;
-                        sb.append("&");
-                        sb.append(getCurrentValue());
-                        sb.append(";");
                         break;
                     default:
                         break loop;
                     }
                 }
 
-                attributes.add(new OutputManager.AttributeInfo(space,
-                                                               attName,
-                                                               space1, space2,
-                                                               new String(sb),
-                                                               valueDelim,
-                                                               hasEntityRef));
-                space = null;
+                output.printAttribute(scanner.getBuffer(),
+                                      nameOff, nameLen,
+                                      valueOff, valueEnd - valueOff);
             }
         }
-        output.printElementStart(name, attributes, space);
+        output.printAttributesEnd();
 
         switch (type) {
         default:
@@ -914,27 +931,34 @@ public class PrettyPrinter {
             break;
         case LexicalUnits.END_CHAR:
             output.printCharacter('>');
+            scanner.clearBuffer();
             type = scanner.next();
             printContent(allowSpaceAtStart(nameStr));
             if (type != LexicalUnits.END_TAG) {
                 throw fatalError("end.tag", null);
             }
-            name = getCurrentValue();
+            output.printElementEnd(scanner.getBuffer(),
+                                   getCurrentValueOffset(),
+                                   getCurrentValueLength());
+            scanner.clearBuffer();
 
             type = scanner.next();
-            space = null;
             if (type == LexicalUnits.S) {
-                space = getCurrentValue();
+                output.printSpaces(scanner.getBuffer(),
+                                   getCurrentValueOffset(),
+                                   getCurrentValueLength(),
+                                   true);
+                scanner.clearBuffer();
                 type = scanner.next();
             }
 
-            output.printElementEnd(name, space);
-
             if (type != LexicalUnits.END_CHAR) {
                 throw fatalError("end", null);
             }
+            output.printCharacter('>');
         }
 
+        scanner.clearBuffer();
         type = scanner.next();
         return nameStr;
     }
@@ -961,7 +985,9 @@ public class PrettyPrinter {
         content: for (;;) {
             switch (type) {
             case LexicalUnits.COMMENT:
-                output.printComment(getCurrentValue());
+                output.printComment(scanner.getBuffer(),
+                                    getCurrentValueOffset(),
+                                    getCurrentValueLength());
                 scanner.clearBuffer();
                 type = scanner.next();
                 preceedingSpace = false;
@@ -972,7 +998,10 @@ public class PrettyPrinter {
                 break;
             case LexicalUnits.CHARACTER_DATA:
                 preceedingSpace = output.printCharacterData
-                    (getCurrentValue(), spaceAtStart, preceedingSpace);
+                    (scanner.getBuffer(),
+                     getCurrentValueOffset(),
+                     getCurrentValueLength(),
+                     spaceAtStart, preceedingSpace);
                 scanner.clearBuffer();
                 type = scanner.next();
                 spaceAtStart = false;
@@ -982,7 +1011,9 @@ public class PrettyPrinter {
                 if (type != LexicalUnits.CHARACTER_DATA) {
                     throw fatalError("character.data", null);
                 }
-                output.printCDATASection(getCurrentValue());
+                output.printCDATASection(scanner.getBuffer(),
+                                         getCurrentValueOffset(),
+                                         getCurrentValueLength());
                 if (scanner.next() != LexicalUnits.SECTION_END) {
                     throw fatalError("section.end", null);
                 }
@@ -996,7 +1027,9 @@ public class PrettyPrinter {
                 spaceAtStart = allowSpaceAtStart(name);
                 break;
             case LexicalUnits.CHARACTER_REFERENCE:
-                output.printCharacterEntityReference(getCurrentValue(),
+                output.printCharacterEntityReference(scanner.getBuffer(),
+                                                     getCurrentValueOffset(),
+                                                     getCurrentValueLength(),
                                                      spaceAtStart,
                                                      preceedingSpace);
                 scanner.clearBuffer();
@@ -1005,7 +1038,10 @@ public class PrettyPrinter {
                 preceedingSpace = false;
                 break;
             case LexicalUnits.ENTITY_REFERENCE:
-                output.printEntityReference(getCurrentValue(), spaceAtStart);
+                output.printEntityReference(scanner.getBuffer(),
+                                            getCurrentValueOffset(),
+                                            getCurrentValueLength(),
+                                            spaceAtStart);
                 scanner.clearBuffer();
                 type = scanner.next();
                 spaceAtStart = false;
@@ -1734,14 +1770,30 @@ public class PrettyPrinter {
      * Returns the current lexical unit value.
      */
     protected char[] getCurrentValue() {
-        int off = scanner.getStart() + scanner.getStartOffset();
-        int len = scanner.getEnd() + scanner.getEndOffset() - off;
+        int off = getCurrentValueOffset();
+        int len = getCurrentValueLength();
         char[] result = new char[len];
         char[] buffer = scanner.getBuffer();
         System.arraycopy( buffer, off, result, 0, len );
         return result;
     }
 
+    /**
+     * Returns the offset of the current lexical unit value in the
+     * scanner buffer.
+     */
+    protected int getCurrentValueOffset() {
+        return scanner.getStart() + scanner.getStartOffset();
+    }
+
+    /**
+     * Returns the length of the current lexical unit value.
+     */
+    protected int getCurrentValueLength() {
+        return scanner.getEnd() + scanner.getEndOffset()
+            - getCurrentValueOffset();
+    }
+
     /**
      * Creates a transcoder exception.
      */
@@ -19,7 +19,9 @@
 
 package org.apache.batik.transcoder.svg2svg;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.Reader;
 import java.io.StringReader;
 import java.io.StringWriter;
@@ -35,6 +37,7 @@ import org.apache.batik.transcoder.TranscodingHints;
 import org.apache.batik.transcoder.keys.BooleanKey;
 import org.apache.batik.transcoder.keys.IntegerKey;
 import org.apache.batik.transcoder.keys.StringKey;
+import org.apache.batik.xml.XMLUtilities;
 import org.w3c.dom.Document;
 
 /**
@@ -167,10 +170,22 @@ public class SVGTranscoder extends AbstractTranscoder {
         Reader r = input.getReader();
         Writer w = output.getWriter();
 
+        if (r == null && input.getInputStream() != null) {
+            // The stream is decoded as it is scanned.
+            InputStream is = input.getInputStream();
+            try {
+                r = XMLUtilities.createXMLDocumentReader(is);
+            } catch (IOException e) {
+                getErrorHandler().fatalError
+                    (new TranscoderException(e.getMessage()));
+                return;
+            }
+        }
         if (r == null) {
             Document d = input.getDocument();
             if (d == null) {
-                throw new RuntimeException("Reader or Document expected");
+                throw new RuntimeException
+                    ("Reader, InputStream or Document expected");
             }
             StringWriter sw = new StringWriter( 1024 );
             try {
@@ -227,8 +242,13 @@ public class SVGTranscoder extends AbstractTranscoder {
                 pp.setXMLDeclaration(s);
             }
 
-            pp.print(in, out);
-            out.flush();
+            // The pretty printer mostly writes single characters.
+            Writer bw = new BufferedWriter(out);
+            try {
+                pp.print(in, bw);
+            } finally {
+                bw.flush();
+            }
         } catch (IOException e) {
             getErrorHandler().fatalError(new TranscoderException(e.getMessage()));
         }
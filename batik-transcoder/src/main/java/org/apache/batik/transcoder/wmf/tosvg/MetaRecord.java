@@ -19,13 +19,9 @@
 
 package org.apache.batik.transcoder.wmf.tosvg;
 
-import java.util.List;
-import java.util.ArrayList;
-
 /**
  * This is used to keep data while processing WMF-files.
- * It is tagged with a type and holds a list of Integer-objects.
- * It seems, it might be rewritten to keep just the plain int-data.
+ * It is tagged with a type and holds a list of int values.
  *
  * @author <a href="mailto:bella.robinson@cmis.csiro.au">Bella Robinson</a>
  * @version $Id$
@@ -35,30 +31,46 @@ public class MetaRecord /*implements Serializable*/ {
     public int functionId;
     public int numPoints;
 
-    private final List ptVector = new ArrayList();
+    /**
+     * The values of the record.
+     */
+    private int[] ptVector = new int[ 4 ];
+
+    /**
+     * The number of values of the record.
+     */
+    private int size;
 
     public MetaRecord() {
     }
 
     public void EnsureCapacity( int cc ) {
+        if ( cc > ptVector.length ) {
+            int[] t = new int[ cc ];
+            System.arraycopy( ptVector, 0, t, 0, size );
+            ptVector = t;
+        }
     }
 
     /**
      * when you are storing Integer-objects, consider using addElement( int ) instead.
-     * @param obj
+     * @param obj an Integer
      */
     public void AddElement( Object obj ) {
-        ptVector.add( obj );
+        addElement( (Integer) obj );
     }
 
     /**
-     * helper method to add int-values. This way we keep the call to Integer.valueOf()
-     * in one place, here.
+     * helper method to add int-values. The values are kept in an int array,
+     * so no Integer is created.
      *
-     * @param iValue  the value to add to ptVector, wrapped in an Integer
+     * @param iValue  the value to add to ptVector
      */
     public final void addElement( int iValue ){
-        ptVector.add(iValue);
+        if ( size == ptVector.length ) {
+            EnsureCapacity( size * 2 );
+        }
+        ptVector[ size++ ] = iValue;
     }
 
     /**
@@ -67,17 +79,20 @@ public class MetaRecord /*implements Serializable*/ {
      * which returns an <code>int</code>.
      */
     public Integer ElementAt( int offset ) {
-        return (Integer)ptVector.get( offset );
+        return elementAt( offset );
     }
 
     /**
-     * helper-method to return the plain int-value from the record
-     * and save the .intValue()-call at the caller's site.
+     * helper-method to return the plain int-value from the record.
      * @param offset of the element to get
      * @return the intValue of the element at offset
      */
     public final int elementAt( int offset ){
-        return (Integer) ptVector.get(offset);
+        if ( offset >= size ) {
+            throw new IndexOutOfBoundsException
+                ( "Index: " + offset + ", Size: " + size );
+        }
+        return ptVector[ offset ];
     }
 
     /** A record that contain byte arrays elements.
@@ -76,6 +76,15 @@ public class WMFPainter extends AbstractWMFPainter {
     private boolean opaque = false;
     private transient boolean firstEffectivePaint = true;
 
+    // Painting state, kept between calls to paintRecord
+    private transient Graphics2D g2d;
+    private transient Stack dcStack;
+    private transient Font font;
+    private float fontHeight, fontAngle, penWidth;
+    private float startX, startY;
+    private int brushObject = -1, penObject = -1, fontObject = -1;
+    private int numObjects;
+
     private static BasicStroke solid
         = new BasicStroke( 1.0f,
                            BasicStroke.CAP_BUTT,
@@ -129,53 +138,66 @@ public class WMFPainter extends AbstractWMFPainter {
      * Renders the WMF image(s).
      */
     public void paint( Graphics g ) {
-        // Objects on DC stack;
-        float fontHeight = 10;
-        float fontAngle = 0;
-        float penWidth = 0;
-        float startX = 0;
-        float startY = 0;
-        int brushObject = -1;
-        int penObject = -1;
-        int fontObject = -1;
-        Font font = null;
-        int lastObjectIdx;
-        Stack dcStack = new Stack();
+        if ( !currentStore.isReading()) {
+            beginPaint( g );
+
+            int numRecords = currentStore.getNumRecords();
+            for ( int iRec = 0; iRec < numRecords; iRec++ ) {
+                paintRecord( currentStore.getRecord( iRec ));
+            }
+        }
+    }
 
-        int numRecords = currentStore.getNumRecords();
-        int numObjects = currentStore.getNumObjects();
+    /**
+     * Prepares the painter for rendering records on the given graphics,
+     * one at a time with {@link #paintRecord(MetaRecord)}.  The size of the
+     * picture and the number of objects must already be known to the
+     * record store, but the records themselves need not have been read.
+     */
+    public void beginPaint( Graphics g ) {
+        // Objects on DC stack;
+        fontHeight = 10;
+        fontAngle = 0;
+        penWidth = 0;
+        startX = 0;
+        startY = 0;
+        font = null;
+        dcStack = new Stack();
+
+        numObjects = currentStore.getNumObjects();
         vpX = currentStore.getVpX() * scale;
         vpY = currentStore.getVpY() * scale;
         vpW = currentStore.getVpW() * scale;
         vpH = currentStore.getVpH() * scale;
 
-        if ( !currentStore.isReading()) {
-            GdiObject gdiObj;
-            int gdiIndex;
-            g.setPaintMode();
-
-            /** added stroke definition for lines
-             */
-            Graphics2D g2d = (Graphics2D)g;
-            g2d.setStroke(solid);
-
-            brushObject = -1;
-            penObject = -1;
-            fontObject = -1;
-            frgdColor = null;
-            bkgdColor = Color.white;
-            for ( int i = 0; i < numObjects; i++ ) {
-                gdiObj = currentStore.getObject( i );
-                gdiObj.clear();
-            }
-
-            float w = vpW;
-            float h = vpH;
+        g.setPaintMode();
+
+        /** added stroke definition for lines
+         */
+        g2d = (Graphics2D)g;
+        g2d.setStroke(solid);
+
+        brushObject = -1;
+        penObject = -1;
+        fontObject = -1;
+        frgdColor = null;
+        bkgdColor = Color.white;
+        for ( int i = 0; i < numObjects; i++ ) {
+            GdiObject gdiObj = currentStore.getObject( i );
+            gdiObj.clear();
+        }
 
-            g2d.setColor( Color.black );
+        g2d.setColor( Color.black );
+    }
 
-            for ( int iRec = 0; iRec < numRecords; iRec++ ) {
-                MetaRecord mr = currentStore.getRecord( iRec );
+    /**
+     * Renders a single record, following the ones already painted since
+     * the last call to {@link #beginPaint(Graphics)}.
+     */
+    public void paintRecord( MetaRecord mr ) {
+        GdiObject gdiObj;
+        int gdiIndex;
+        int lastObjectIdx;
 
                 switch ( mr.functionId ) {
                 case WMFConstants.META_SETWINDOWORG:
@@ -969,9 +991,6 @@ public class WMFPainter extends AbstractWMFPainter {
                     //os << " ------Unknown Function------";
                     break;
                 }
-            }
-
-        }
     }
 
     private Paint getPaint(byte[] bit) {
@@ -34,6 +34,7 @@ import org.apache.batik.transcoder.ToSVGAbstractTranscoder;
 import org.apache.batik.transcoder.TranscoderException;
 import org.apache.batik.transcoder.TranscoderInput;
 import org.apache.batik.transcoder.TranscoderOutput;
+import org.apache.batik.transcoder.wmf.WMFConstants;
 
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
@@ -105,9 +106,10 @@ public class WMFTranscoder extends ToSVGAbstractTranscoder {
         DataInputStream is = getCompatibleInput(input);
 
         //
-        // Build a RecordStore from the input
+        // Build a RecordStore from the input, painting the records
+        // as they are read
         //
-        WMFRecordStore currentStore = new WMFRecordStore();
+        StreamingRecordStore currentStore = new StreamingRecordStore(output);
         try {
             currentStore.read(is);
         } catch (IOException e){
@@ -115,81 +117,142 @@ public class WMFTranscoder extends ToSVGAbstractTranscoder {
             return;
         }
 
-        // determines the width and height of output image
-        float wmfwidth; // width in pixels
-        float wmfheight; // height in pixels
-        float conv = 1.0f; // conversion factor
-
-        if (hints.containsKey(KEY_INPUT_WIDTH)) {
-            wmfwidth = (Integer) hints.get(KEY_INPUT_WIDTH);
-            wmfheight = (Integer) hints.get(KEY_INPUT_HEIGHT);
-        } else {
-            wmfwidth = currentStore.getWidthPixels();
-            wmfheight = currentStore.getHeightPixels();
-        }
-        float width = wmfwidth;
-        float height = wmfheight;
-
-        // change the output width and height if required
-        if (hints.containsKey(KEY_WIDTH)) {
-            width = (Float) hints.get(KEY_WIDTH);
-            conv = width / wmfwidth;
-            height = height * width / wmfwidth;
-        }
+        // Pictures without a window extent are painted once read
+        currentStore.startPainting();
 
-        // determine the offset values
-        int xOffset = 0;
-        int yOffset = 0;
-        if (hints.containsKey(KEY_XOFFSET)) {
-            xOffset = (Integer) hints.get(KEY_XOFFSET);
-        }
-        if (hints.containsKey(KEY_YOFFSET)) {
-            yOffset = (Integer) hints.get(KEY_YOFFSET);
+        int vpW = currentStore.viewBoxWidth;
+        int vpH = currentStore.viewBoxHeight;
+        svgGenerator.setSVGCanvasSize(new Dimension(vpW, vpH));
+
+        Element svgRoot = svgGenerator.getRoot();
+
+        svgRoot.setAttributeNS(null, SVG_VIEW_BOX_ATTRIBUTE,
+                                String.valueOf( currentStore.viewBoxX ) + ' '
+                               + currentStore.viewBoxY + ' ' +
+                               vpW + ' ' + vpH );
+
+        // Now, write the SVG content to the output
+        writeSVGToOutput(svgGenerator, svgRoot, output);
+    }
+
+    /**
+     * A record store which paints the records on the SVG generator as
+     * they are read, rather than keeping them all in memory. The size of
+     * the picture is only known once the first window extent has been
+     * read, so the records preceding it are kept until then.
+     */
+    protected class StreamingRecordStore extends WMFRecordStore {
+
+        /**
+         * The output the document is created for.
+         */
+        protected TranscoderOutput output;
+
+        /**
+         * The painter, once the size of the picture is known.
+         */
+        protected WMFPainter painter;
+
+        /**
+         * The viewBox of the output document.
+         */
+        protected int viewBoxX, viewBoxY, viewBoxWidth, viewBoxHeight;
+
+        public StreamingRecordStore(TranscoderOutput output) {
+            this.output = output;
         }
 
-        // Set the size and viewBox on the output document
-        float sizeFactor = currentStore.getUnitsToPixels() * conv;
-
-        int vpX = (int)(currentStore.getVpX() * sizeFactor);
-        int vpY = (int)(currentStore.getVpY() * sizeFactor);
-
-        int vpW;
-        int vpH;
-        // if we took only a part of the image, we use its dimension for computing
-        if (hints.containsKey(KEY_INPUT_WIDTH)) {
-            vpW = (int)((Integer) hints.get(KEY_INPUT_WIDTH) * conv);
-            vpH = (int)((Integer) hints.get(KEY_INPUT_HEIGHT) * conv);
-        // else we took the whole image dimension
-        } else {
-            vpW = (int)(currentStore.getWidthUnits() * sizeFactor);
-            vpH = (int)(currentStore.getHeightUnits() * sizeFactor);
+        /**
+         * Paints the record if the painter is ready, keeps it otherwise.
+         */
+        protected void addRecord( MetaRecord mr ) {
+            if (painter != null) {
+                painter.paintRecord(mr);
+                return;
+            }
+            super.addRecord(mr);
+            if (mr.functionId == WMFConstants.META_SETWINDOWEXT) {
+                startPainting();
+            }
         }
 
-        // Build a painter for the RecordStore
-        WMFPainter painter = new WMFPainter(currentStore, xOffset, yOffset, conv);
+        /**
+         * Creates the SVG generator and the painter from the size read so
+         * far, and paints the records kept until now. Does nothing if the
+         * painting has already started.
+         */
+        public void startPainting() {
+            if (painter != null) {
+                return;
+            }
 
-        // Use SVGGraphics2D to generate SVG content
-        Document doc = this.createDocument(output);
-        svgGenerator = new SVGGraphics2D(doc);
+            // determines the width and height of output image
+            float wmfwidth; // width in pixels
+            float wmfheight; // height in pixels
+            float conv = 1.0f; // conversion factor
 
-        /** set precision
-         ** otherwise Ellipses aren't working (for example) (because of Decimal format
-         * modifications ins SVGGenerator Context
-         */
-        svgGenerator.getGeneratorContext().setPrecision(4);
+            if (hints.containsKey(KEY_INPUT_WIDTH)) {
+                wmfwidth = (Integer) hints.get(KEY_INPUT_WIDTH);
+                wmfheight = (Integer) hints.get(KEY_INPUT_HEIGHT);
+            } else {
+                wmfwidth = getWidthPixels();
+                wmfheight = getHeightPixels();
+            }
+            float width = wmfwidth;
+            float height = wmfheight;
+
+            // change the output width and height if required
+            if (hints.containsKey(KEY_WIDTH)) {
+                width = (Float) hints.get(KEY_WIDTH);
+                conv = width / wmfwidth;
+                height = height * width / wmfwidth;
+            }
 
-        painter.paint(svgGenerator);
+            // determine the offset values
+            int xOffset = 0;
+            int yOffset = 0;
+            if (hints.containsKey(KEY_XOFFSET)) {
+                xOffset = (Integer) hints.get(KEY_XOFFSET);
+            }
+            if (hints.containsKey(KEY_YOFFSET)) {
+                yOffset = (Integer) hints.get(KEY_YOFFSET);
+            }
 
-        svgGenerator.setSVGCanvasSize(new Dimension(vpW, vpH));
+            // Set the size and viewBox on the output document
+            float sizeFactor = getUnitsToPixels() * conv;
 
-        Element svgRoot = svgGenerator.getRoot();
+            viewBoxX = (int)(getVpX() * sizeFactor);
+            viewBoxY = (int)(getVpY() * sizeFactor);
 
-        svgRoot.setAttributeNS(null, SVG_VIEW_BOX_ATTRIBUTE,
-                                String.valueOf( vpX ) + ' ' + vpY + ' ' +
-                               vpW + ' ' + vpH );
+            // if we took only a part of the image, we use its dimension for computing
+            if (hints.containsKey(KEY_INPUT_WIDTH)) {
+                viewBoxWidth = (int)((Integer) hints.get(KEY_INPUT_WIDTH) * conv);
+                viewBoxHeight = (int)((Integer) hints.get(KEY_INPUT_HEIGHT) * conv);
+            // else we took the whole image dimension
+            } else {
+                viewBoxWidth = (int)(getWidthUnits() * sizeFactor);
+                viewBoxHeight = (int)(getHeightUnits() * sizeFactor);
+            }
 
-        // Now, write the SVG content to the output
-        writeSVGToOutput(svgGenerator, svgRoot, output);
+            // Build a painter for the RecordStore
+            painter = new WMFPainter(this, xOffset, yOffset, conv);
+
+            // Use SVGGraphics2D to generate SVG content
+            Document doc = createDocument(output);
+            svgGenerator = new SVGGraphics2D(doc);
+
+            /** set precision
+             ** otherwise Ellipses aren't working (for example) (because of Decimal format
+             * modifications ins SVGGenerator Context
+             */
+            svgGenerator.getGeneratorContext().setPrecision(4);
+
+            painter.beginPaint(svgGenerator);
+            for (Object record : records) {
+                painter.paintRecord((MetaRecord) record);
+            }
+            records.clear();
+        }
     }
 
     /**